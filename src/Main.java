@@ -1,13 +1,24 @@
 import managers.HttpTaskManager;
 import network.HttpTaskServer;
 import network.KVServer;
+import storage.LogStructuredKVStorage;
+
+import java.nio.file.Paths;
 
 public class Main {
 
     public static void main(String[] args) {
+        //С ключом на каждую задачу запросы к KVServer мелкие и частые: без TCP_NODELAY ответ на каждый ждёт ~40 мс
+        //(алгоритм Нейгла и отложенный ACK). Свойство общее для всех HttpServer в JVM и читается при создании
+        //первого из них, поэтому задаётся при запуске приложения; -Dsun.net.httpserver.nodelay=false его отключает.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
         try {
-            new KVServer().start();
-            new HttpTaskServer(new HttpTaskManager("http://localhost:8078/")).start();
+            new KVServer(new LogStructuredKVStorage(Paths.get("resources", "kv"))).start();//задачи переживут перезапуск
+            HttpTaskManager httpTaskManager = new HttpTaskManager("http://localhost:8078/");
+            httpTaskManager.loadFromKVServer();
+            new HttpTaskServer(httpTaskManager).start();
         } catch (Exception exception) {
             System.out.println(exception.getMessage());
             exception.printStackTrace();
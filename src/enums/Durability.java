@@ -0,0 +1,6 @@
+package enums;
+
+public enum Durability {
+    ASYNC,//изменение возвращается сразу после отправки запросов, ответы KV-сервера проверяет flush()
+    ACKNOWLEDGED//изменение возвращается, когда KV-сервер подтвердил все его запросы
+}
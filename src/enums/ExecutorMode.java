@@ -0,0 +1,7 @@
+package enums;
+
+public enum ExecutorMode {
+    DISPATCHER,//запросы обрабатывает единственный поток-диспетчер HttpServer, по одному
+    BOUNDED_POOL,//пул платформенных потоков фиксированного размера
+    VIRTUAL_THREADS//виртуальный поток на каждый запрос; нужна Java 21 и новее
+}
@@ -0,0 +1,7 @@
+package enums;
+
+public enum PersistenceMode {
+    SNAPSHOT,//полная перезапись файла при каждом изменении
+    JOURNAL,//запись изменений в журнал и периодический полный снимок
+    MAPPED//задачи в ячейках отображённого в память файла, изменение переписывает только свою ячейку
+}
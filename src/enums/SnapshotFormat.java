@@ -0,0 +1,6 @@
+package enums;
+
+public enum SnapshotFormat {
+    CSV,//текстовый снимок: строка задачи через запятую, блок истории после пустой строки
+    BINARY//двоичный снимок BinarySnapshotCodec
+}
@@ -0,0 +1,273 @@
+package managers;
+
+import enums.CurrentStatus;
+import enums.TaskType;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+//Двоичный снимок менеджера. Версия 1:
+//  "JKBS", байт версии;
+//  varint число задач, затем задачи: байт типа, varint id, строка заголовка, байт статуса, строка описания,
+//  байт флагов (1 - есть время начала, 2 - есть время окончания эпика), время начала, время окончания,
+//  продолжительность, у подзадачи - varint id эпика;
+//  varint длина истории, затем varint id задач в порядке просмотра.
+//Строка - varint (длина в байтах UTF-8 + 1) и байты, 0 - null. Время и продолжительность - varint минут
+//(зигзаг, сдвинутый на бит флага остатка), остаток меньше минуты - отдельным varint наносекунд.
+//Эпики пишутся раньше подзадач, подзадачи - в порядке их списка в эпике, так что порядок восстанавливается.
+final class BinarySnapshotCodec {
+    static final byte[] MAGIC = {'J', 'K', 'B', 'S'};
+    static final int VERSION = 1;
+
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final CurrentStatus[] STATUSES = CurrentStatus.values();
+    private static final int HAS_START_TIME = 1;
+    private static final int HAS_END_TIME = 2;
+
+    private BinarySnapshotCodec() {
+    }
+
+    static boolean isBinarySnapshot(byte[] head) {
+        return head.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(head, MAGIC.length), MAGIC);
+    }
+
+    static void write(OutputStream out, int taskCount, Iterable<? extends Task> tasks, Collection<Task> history)
+            throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(out);
+        writer.out.write(MAGIC);
+        writer.out.write(VERSION);
+        writer.writeVarLong(taskCount);
+        for (Task task : tasks) {
+            writer.writeTask(task);
+        }
+        writer.writeVarLong(history.size());
+        for (Task task : history) {
+            writer.writeVarLong(task.getId());
+        }
+        writer.flush();
+    }
+
+    static ParsedSnapshot read(InputStream in) throws IOException {
+        SnapshotReader reader = new SnapshotReader(in);
+        byte[] magic = reader.readBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Файл не является двоичным снимком.");
+        }
+        int version = reader.readByte();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия двоичного снимка: " + version);
+        }
+        int taskCount = reader.readCount();
+        List<Task> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(reader.readTask());
+        }
+        long[] history = new long[reader.readCount()];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = reader.readVarLong();
+        }
+        return new ParsedSnapshot(tasks, history);
+    }
+
+    private static class SnapshotWriter {
+        private final BufferedOutputStream out;
+
+        SnapshotWriter(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+        }
+
+        void writeTask(Task task) throws IOException {
+            out.write(task.getTaskType().ordinal());
+            writeVarLong(task.getId());
+            writeString(task.getHeader());
+            out.write(task.getStatus().ordinal());
+            writeString(task.getDescription());
+            LocalDateTime endTime = task.getTaskType() == TaskType.EPIC ? task.getEndTime() : null;
+            int flags = (task.getStartTime() != null ? HAS_START_TIME : 0) | (endTime != null ? HAS_END_TIME : 0);
+            out.write(flags);
+            if (task.getStartTime() != null) {
+                writeTime(task.getStartTime());
+            }
+            if (endTime != null) {
+                writeTime(endTime);
+            }
+            writeMinutes(task.getDurationInMinutes().getSeconds(), task.getDurationInMinutes().getNano());
+            if (task.getTaskType() == TaskType.SUBTASK) {
+                writeVarLong(((Subtask) task).getEpicId());
+            }
+        }
+
+        void writeTime(LocalDateTime time) throws IOException {
+            writeMinutes(time.toEpochSecond(ZoneOffset.UTC), time.getNano());
+        }
+
+        void writeMinutes(long seconds, int nanos) throws IOException {
+            long minutes = Math.floorDiv(seconds, 60);
+            long remainderNanos = Math.floorMod(seconds, 60) * 1_000_000_000L + nanos;
+            long zigzag = (minutes << 1) ^ (minutes >> 63);
+            writeVarLong(zigzag << 1 | (remainderNanos != 0 ? 1 : 0));
+            if (remainderNanos != 0) {
+                writeVarLong(remainderNanos);
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static class SnapshotReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+        private int limit;
+
+        SnapshotReader(InputStream in) {
+            this.in = in;
+        }
+
+        Task readTask() throws IOException {
+            TaskType taskType = TASK_TYPES[readByte()];
+            long id = readVarLong();
+            String header = readString();
+            CurrentStatus status = STATUSES[readByte()];
+            String description = readString();
+            int flags = readByte();
+            LocalDateTime startTime = (flags & HAS_START_TIME) != 0 ? readTime() : null;
+            LocalDateTime endTime = (flags & HAS_END_TIME) != 0 ? readTime() : null;
+            long[] duration = readMinutes();
+            Duration durationInMinutes = Duration.ofSeconds(duration[0], duration[1]);
+            if (taskType == TaskType.SUBTASK) {
+                return new Subtask(id, header, status, description, startTime, durationInMinutes, readVarLong());
+            }
+            if (taskType == TaskType.EPIC) {
+                return new Epic(id, header, status, description, startTime, endTime, durationInMinutes);
+            }
+            return new Task(id, header, status, description, startTime, durationInMinutes);
+        }
+
+        LocalDateTime readTime() throws IOException {
+            long[] time = readMinutes();
+            return LocalDateTime.ofEpochSecond(time[0], (int) time[1], ZoneOffset.UTC);
+        }
+
+        long[] readMinutes() throws IOException {//секунды и наносекунды
+            long value = readVarLong();
+            long zigzag = value >>> 1;
+            long minutes = (zigzag >>> 1) ^ -(zigzag & 1);
+            long remainderNanos = (value & 1) != 0 ? readVarLong() : 0;
+            return new long[]{minutes * 60 + remainderNanos / 1_000_000_000L, remainderNanos % 1_000_000_000L};
+        }
+
+        String readString() throws IOException {
+            int length = readCount();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (length <= buffer.length) {
+                ensure(length);
+                String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+                position += length;
+                return value;
+            }
+            return new String(readBytes(length), StandardCharsets.UTF_8);
+        }
+
+        byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                if (position == limit) {
+                    fill();
+                }
+                int chunk = Math.min(length - copied, limit - position);
+                System.arraycopy(buffer, position, bytes, copied, chunk);
+                position += chunk;
+                copied += chunk;
+            }
+            return bytes;
+        }
+
+        int readCount() throws IOException {
+            long value = readVarLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Неверная длина в двоичном снимке: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int next = readByte();
+                value |= (long) (next & 0x7F) << shift;
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Слишком длинный varint в двоичном снимке.");
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private void ensure(int length) throws IOException {//в буфере не меньше length непрочитанных байт
+            if (limit - position >= length) {
+                return;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < length) {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    throw new EOFException("Двоичный снимок оборван.");
+                }
+                limit += read;
+            }
+        }
+
+        private void fill() throws IOException {
+            position = 0;
+            limit = 0;
+            ensure(1);
+        }
+    }
+}
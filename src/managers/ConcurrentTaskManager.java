@@ -0,0 +1,801 @@
+package managers;
+
+import enums.TaskType;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import utils.LongOrderedSet;
+
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Потокобезопасный менеджер задач для HttpTaskServer с многопоточным исполнителем.
+//Чтение идёт из конкурентных коллекций без блокировок; эпики меняются на месте, поэтому представления,
+//история и getEpicById отдают их копии, снятые под блокировкой эпика. Изменения одной задачи или одного эпика с его подзадачами
+//защищены полосатыми блокировками по id, а проверка пересечения по времени вместе со вставкой в prioritizedTasks -
+//общей блокировкой расписания. Порядок захвата: расписание, затем блокировки по id в порядке возрастания номера полосы.
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int LOCK_STRIPES = 64;//степень двойки
+
+    private final AtomicLong id;
+    private final AtomicLong version;//растёт после изменения, когда оно уже видно читателям
+    private final AtomicLong historyViews;//растёт после получения задачи по id, см. getHistoryVersion
+    private final ConcurrentMap<Long, Task> taskStorage;
+    private final ConcurrentMap<Long, Epic> epicStorage;
+    private final ConcurrentMap<Long, Subtask> subStorage;
+    private final ConcurrentMap<Long, EpicTimeWindow> epicTimeWindows;
+    private final HistoryManager historyManager;//доступ только под synchronized (historyManager)
+    private volatile List<Task> historySnapshot;//неизменяемый снимок истории, сбрасывается при её изменении
+    private final NavigableSet<Task> prioritizedTasks;
+    private final ReentrantLock scheduleLock;
+    private final ReentrantLock[] idLocks;
+
+    public ConcurrentTaskManager() {
+        this.id = new AtomicLong();
+        this.version = new AtomicLong();
+        this.historyViews = new AtomicLong();
+        this.taskStorage = new ConcurrentHashMap<>();
+        this.epicStorage = new ConcurrentHashMap<>();
+        this.subStorage = new ConcurrentHashMap<>();
+        this.epicTimeWindows = new ConcurrentHashMap<>();
+        this.historyManager = Managers.getDefaultHistory();
+        this.prioritizedTasks = new ConcurrentSkipListSet<>(InMemoryTaskManager.START_TIME_ORDER);
+        this.scheduleLock = new ReentrantLock();
+        this.idLocks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            idLocks[i] = new ReentrantLock();
+        }
+    }
+
+    //Получение списка задач, отсортированных по времени начала:
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return new ArrayList<>(prioritizedTasks);
+    }
+
+    //Получение задач, начинающихся в интервале времени:
+    @Override
+    public Collection<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return Collections.unmodifiableCollection(
+                InMemoryTaskManager.prioritizedTasksInRange(prioritizedTasks, from, true, to));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime cursor, LocalDateTime to, int limit) {
+        return InMemoryTaskManager.firstTasks(
+                InMemoryTaskManager.prioritizedTasksInRange(prioritizedTasks, cursor, false, to), limit);
+    }
+
+    //Получение списка всех задач:
+    @Override
+    public List<Task> getTaskList() {
+        return new ArrayList<>(taskStorage.values());
+    }
+
+    @Override
+    public List<Epic> getEpicList() {//копии, как у getEpicById: эпики меняются на месте под блокировкой своего id
+        List<Epic> epics = new ArrayList<>(epicStorage.size());
+        for (Epic epic : epicStorage.values()) {
+            epics.add(snapshotOf(epic));
+        }
+        return epics;
+    }
+
+    @Override
+    public List<Subtask> getSubtaskList() {
+        return new ArrayList<>(subStorage.values());
+    }
+
+    //Представления только для чтения поверх конкурентных коллекций: обход не блокирует запись
+    //и видит часть изменений, сделанных во время обхода:
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        return Collections.unmodifiableCollection(prioritizedTasks);
+    }
+
+    @Override
+    public Collection<Task> getTaskView() {
+        return Collections.unmodifiableCollection(taskStorage.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicView() {
+        return new EpicSnapshotView<>(epicStorage.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtaskView() {
+        return Collections.unmodifiableCollection(subStorage.values());
+    }
+
+    //Получение по идентификатору. Задачи и подзадачи, как и эпики, отдаются копиями: правка полученного
+    //объекта на месте не меняет сохранённый, чьё время уже учтено в prioritizedTasks и окне времени эпика,
+    //а ConcurrentSkipListSet не найдёт задачу по изменённому времени начала.
+    @Override
+    public Task getTaskById(long id) {
+        Task task = taskStorage.get(id);
+        if (task != null) {
+            addToHistory(task);
+            return new Task(task.getId(), task.getHeader(), task.getStatus(), task.getDescription(),
+                    task.getStartTime(), task.getDurationInMinutes());
+        }
+        return null;
+    }
+
+    @Override
+    public Epic getEpicById(long id) {
+        Epic epic = epicStorage.get(id);
+        if (epic != null) {
+            addToHistory(epic);
+            return snapshotOf(epic);
+        }
+        return null;
+    }
+
+    @Override
+    public Subtask getSubtaskById(long id) {
+        Subtask subtask = subStorage.get(id);
+        if (subtask != null) {
+            addToHistory(subtask);
+            return new Subtask(subtask.getId(), subtask.getHeader(), subtask.getStatus(), subtask.getDescription(),
+                    subtask.getStartTime(), subtask.getDurationInMinutes(), subtask.getEpicId());
+        }
+        return null;
+    }
+
+    //Создание задач. Объект передаётся в качестве параметра:
+    @Override
+    public Task createTask(Task task) {
+        if (task != null) {
+            storeNewTask(task);
+            version.incrementAndGet();
+        } else {
+            System.out.println("В метод создания задачи был передан null. Задача не создана.");
+        }
+        return task;
+    }
+
+    @Override
+    public Epic createEpic(Epic epic) {
+        if (epic != null) {
+            storeNewEpic(epic);
+            version.incrementAndGet();
+        } else {
+            System.out.println("В метод создания эпика был передан null. Эпик не создан.");
+        }
+        return epic;
+    }
+
+    @Override
+    public Subtask createSubtask(Subtask subtask) {
+        if (subtask != null) {
+            storeNewSubtask(subtask);
+            version.incrementAndGet();
+        } else {
+            System.out.println("В метод создания подзадачи был передан null. Подзадача не создана.");
+        }
+        return subtask;
+    }
+
+    //Создание без смены версии: её меняет вызывающий метод - один раз на задачу или на весь пакет
+    private void storeNewTask(Task task) {
+        lockSchedule(task);
+        try {
+            InMemoryTaskManager.checkTaskTimeCrossing(prioritizedTasks, task);
+            task.setId(id.incrementAndGet());
+            taskStorage.put(task.getId(), task);
+            prioritizedTasks.add(task);
+        } finally {
+            unlockSchedule(task);
+        }
+    }
+
+    private void storeNewEpic(Epic epic) {
+        epic.setId(id.incrementAndGet());
+        epicTimeWindows.put(epic.getId(), new EpicTimeWindow());
+        epicStorage.put(epic.getId(), epic);
+    }
+
+    private void storeNewSubtask(Subtask subtask) {
+        lockSchedule(subtask);
+        try {
+            InMemoryTaskManager.checkTaskTimeCrossing(prioritizedTasks, subtask);
+            ReentrantLock epicLock = lockFor(subtask.getEpicId());
+            epicLock.lock();
+            try {
+                Epic epic = epicStorage.get(subtask.getEpicId());
+                if (epic == null) {
+                    throw new IllegalArgumentException("Эпика с ID '" + subtask.getEpicId() + "' не существует.");
+                }
+                subtask.setId(id.incrementAndGet());
+                subStorage.put(subtask.getId(), subtask);
+                epic.addIdSubtaskIdList(subtask.getId());
+                changeEpicRollups(epic, null, subtask);
+                prioritizedTasks.add(subtask);
+            } finally {
+                epicLock.unlock();
+            }
+        } finally {
+            unlockSchedule(subtask);
+        }
+    }
+
+    //Обновление. Новая версия объекта с верным идентификатором передаётся в виде параметра:
+    @Override
+    public void updateTask(Task task) {
+        if (task != null) {
+            lockSchedule(task);
+            ReentrantLock taskLock = lockFor(task.getId());
+            taskLock.lock();
+            try {
+                if (!taskStorage.containsKey(task.getId())) {
+                    throw new IllegalArgumentException("ID '" + task.getId() + "' нет в списке задач. " +
+                            "Обновление невозможно.");
+                }
+                InMemoryTaskManager.checkTaskTimeCrossing(prioritizedTasks, task);
+                prioritizedTasks.remove(taskStorage.put(task.getId(), task));
+                prioritizedTasks.add(task);
+            } finally {
+                taskLock.unlock();
+                unlockSchedule(task);
+            }
+            version.incrementAndGet();
+            System.out.println("Задача с ID '" + task.getId() + "' обновлена.");
+        } else {
+            System.out.println("В метод обновления задачи был передан null. Задача не обновлена.");
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        if (epic != null) {
+            ReentrantLock epicLock = lockFor(epic.getId());
+            epicLock.lock();
+            try {
+                Epic existingEpic = epicStorage.get(epic.getId());
+                if (existingEpic == null) {
+                    throw new IllegalArgumentException("ID '" + epic.getId() + "' нет в списке эпиков. " +
+                            "Обновление невозможно.");
+                }
+                if (!existingEpic.getSubtaskIdSet().isEmpty()) {
+                    epic.setSubtaskIdSet(existingEpic.getSubtaskIdSet());
+                    epic.copySubtaskStatusCounters(existingEpic);
+                    changeEpicRollups(epic, null, null);
+                }
+                epicStorage.put(epic.getId(), epic);
+            } finally {
+                epicLock.unlock();
+            }
+            version.incrementAndGet();
+            System.out.println("Эпик с ID '" + epic.getId() + "' обновлен.");
+        } else {
+            System.out.println("В метод обновления эпика был передан null. Эпик не обновлен.");
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        if (subtask != null) {
+            lockSchedule(subtask);
+            try {
+                while (true) {//повтор, если подзадачу перенёс в другой эпик updateAll, пока ждали блокировку
+                    Subtask oldSubtask = subStorage.get(subtask.getId());
+                    if (oldSubtask == null) {
+                        throw new IllegalArgumentException("ID '" + subtask.getId() + "' нет в списке подзадач. " +
+                                "Обновление невозможно.");
+                    }
+                    ReentrantLock epicLock = lockFor(oldSubtask.getEpicId());
+                    epicLock.lock();
+                    try {
+                        if (subStorage.get(subtask.getId()) != oldSubtask) {
+                            continue;
+                        }
+                        InMemoryTaskManager.checkSameEpic(oldSubtask, subtask);
+                        InMemoryTaskManager.checkTaskTimeCrossing(prioritizedTasks, subtask);
+                        Epic epic = epicStorage.get(subtask.getEpicId());
+                        prioritizedTasks.remove(oldSubtask);
+                        subStorage.put(subtask.getId(), subtask);
+                        prioritizedTasks.add(subtask);
+                        if (oldSubtask == subtask) {//изменён сам сохранённый экземпляр: учтённые значения потеряны
+                            recountEpicRollups(epic);
+                        } else {
+                            changeEpicRollups(epic, oldSubtask, subtask);
+                        }
+                        break;
+                    } finally {
+                        epicLock.unlock();
+                    }
+                }
+            } finally {
+                unlockSchedule(subtask);
+            }
+            version.incrementAndGet();
+            System.out.println("Подзадача с ID '" + subtask.getId() + "' обновлена.");
+        } else {
+            System.out.println("В метод обновления подзадачи был передан null. Подзадача не обновлена.");
+        }
+    }
+
+    //Удаление всех задач:
+    @Override
+    public void deleteTasks() {
+        for (Long taskId : taskStorage.keySet()) {
+            ReentrantLock taskLock = lockFor(taskId);
+            taskLock.lock();
+            try {
+                removeTask(taskId);
+            } finally {
+                taskLock.unlock();
+            }
+        }
+        version.incrementAndGet();
+        System.out.println("Все задачи удалены.");
+    }
+
+    @Override
+    public void deleteEpics() {
+        for (Long epicId : epicStorage.keySet()) {
+            ReentrantLock epicLock = lockFor(epicId);
+            epicLock.lock();
+            try {
+                removeEpic(epicId);
+            } finally {
+                epicLock.unlock();
+            }
+        }
+        version.incrementAndGet();
+        System.out.println("Все эпики с подзадачами удалены.");
+    }
+
+    @Override
+    public void deleteSubtasks() {
+        for (Epic epic : epicStorage.values()) {
+            ReentrantLock epicLock = lockFor(epic.getId());
+            epicLock.lock();
+            try {
+                if (epicStorage.get(epic.getId()) != epic) {//эпик удалён или заменён, пока ждали блокировку
+                    continue;
+                }
+                for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+                    prioritizedTasks.remove(subStorage.remove(subtaskId));
+                    removeFromHistory(subtaskId);
+                }
+                epic.getSubtaskIdSet().clear();
+                epic.resetSubtaskStatusCounters();
+                epicTimeWindows.put(epic.getId(), new EpicTimeWindow());
+                changeEpicRollups(epic, null, null);
+            } finally {
+                epicLock.unlock();
+            }
+        }
+        version.incrementAndGet();
+        System.out.println("Все подзадачи удалены.");
+    }
+
+    //Удаление по идентификатору:
+    @Override
+    public void deleteTaskById(long id) {
+        ReentrantLock taskLock = lockFor(id);
+        taskLock.lock();
+        try {
+            if (!removeTask(id)) {
+                throw new IllegalArgumentException("Задача с ID '" + id + "' отсутствует, либо уже была удалена.");
+            }
+        } finally {
+            taskLock.unlock();
+        }
+        version.incrementAndGet();
+        System.out.println("Задача с ID '" + id + "' удалена.");
+    }
+
+    @Override
+    public void deleteEpicById(long id) {
+        ReentrantLock epicLock = lockFor(id);
+        epicLock.lock();
+        try {
+            if (!removeEpic(id)) {
+                throw new IllegalArgumentException("Эпик с ID '" + id + "' отсутствует, либо уже был удален.");
+            }
+        } finally {
+            epicLock.unlock();
+        }
+        version.incrementAndGet();
+        System.out.println("Эпик с ID '" + id + "' удален вместе с его подзадачами.");
+    }
+
+    @Override
+    public void deleteSubtaskById(long id) {
+        while (true) {//повтор, если подзадачу перенесли в другой эпик, пока ждали блокировку
+            Subtask subtask = subStorage.get(id);
+            if (subtask == null) {
+                throw new IllegalArgumentException("Подзадача с ID '" + id + "' отсутствует, либо уже была удалена.");
+            }
+            ReentrantLock epicLock = lockFor(subtask.getEpicId());
+            epicLock.lock();
+            try {
+                if (subStorage.get(id) != subtask) {
+                    continue;
+                }
+                Epic epic = epicStorage.get(subtask.getEpicId());//удаление id сабтаска из списка его эпика
+                epic.getSubtaskIdSet().remove(id);
+                changeEpicRollups(epic, subtask, null);
+                prioritizedTasks.remove(subStorage.remove(id));
+                removeFromHistory(id);
+                break;
+            } finally {
+                epicLock.unlock();
+            }
+        }
+        version.incrementAndGet();
+        System.out.println("Подзадача с ID '" + id + "' удалена.");
+    }
+
+    //Пакетные операции выполняются под всеми блокировками сразу: пакет проверяется и применяется целиком,
+    //пока остальные изменения ждут. Роллапы эпиков здесь инкрементальные, поэтому меняются на каждую подзадачу:
+    @Override
+    public List<Task> createAll(Collection<? extends Task> tasks) {
+        return createAll(new ArrayList<>(tasks), Collections.emptyMap());
+    }
+
+    @Override
+    public List<Task> createAll(List<? extends Task> tasks, Map<Integer, Integer> epicRefs) {
+        List<Task> batch = new ArrayList<>(tasks);
+        lockEverything();
+        try {
+            InMemoryTaskManager.checkBatchCreation(batch, epicRefs, prioritizedTasks, epicStorage::containsKey);
+            for (int i = 0; i < batch.size(); i++) {
+                Task task = InMemoryTaskManager.resolveEpicRef(batch, i, epicRefs);
+                switch (task.getTaskType()) {
+                    case EPIC:
+                        storeNewEpic((Epic) task);
+                        break;
+                    case SUBTASK:
+                        storeNewSubtask((Subtask) task);
+                        break;
+                    default:
+                        storeNewTask(task);
+                }
+            }
+        } finally {
+            unlockEverything();
+        }
+        version.incrementAndGet();
+        System.out.println("Создано задач в пакете: " + batch.size() + ".");
+        return batch;
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Task> tasks) {
+        List<Task> batch = new ArrayList<>(tasks);
+        lockEverything();
+        try {
+            InMemoryTaskManager.checkBatchUpdate(batch, prioritizedTasks, this::isStored, epicStorage::containsKey);
+            //сначала из расписания убираются все старые версии: новая версия может занять время другой задачи пакета
+            for (Task task : batch) {
+                if (task.getTaskType() == TaskType.TASK) {
+                    prioritizedTasks.remove(taskStorage.get(task.getId()));
+                } else if (task.getTaskType() == TaskType.SUBTASK) {
+                    prioritizedTasks.remove(subStorage.get(task.getId()));
+                }
+            }
+            for (Task task : batch) {
+                switch (task.getTaskType()) {
+                    case EPIC:
+                        Epic epic = (Epic) task;
+                        Epic existingEpic = epicStorage.get(epic.getId());
+                        //подзадачи, статус и время эпика не берутся из пакета, а пересчитываются
+                        epic.setSubtaskIdSet(existingEpic.getSubtaskIdSet());
+                        epic.copySubtaskStatusCounters(existingEpic);
+                        changeEpicRollups(epic, null, null);
+                        epicStorage.put(epic.getId(), epic);
+                        break;
+                    case SUBTASK:
+                        Subtask subtask = (Subtask) task;
+                        Subtask oldSubtask = subStorage.put(subtask.getId(), subtask);
+                        prioritizedTasks.add(subtask);
+                        Epic oldEpic = epicStorage.get(oldSubtask.getEpicId());
+                        Epic newEpic = epicStorage.get(subtask.getEpicId());
+                        if (oldEpic != newEpic) {//подзадача перенесена в другой эпик
+                            oldEpic.getSubtaskIdSet().remove(subtask.getId());
+                            changeEpicRollups(oldEpic, oldSubtask, null);
+                            newEpic.addIdSubtaskIdList(subtask.getId());
+                            changeEpicRollups(newEpic, null, subtask);
+                        } else {
+                            changeEpicRollups(newEpic, oldSubtask, subtask);
+                        }
+                        break;
+                    default:
+                        taskStorage.put(task.getId(), task);
+                        prioritizedTasks.add(task);
+                }
+            }
+        } finally {
+            unlockEverything();
+        }
+        version.incrementAndGet();
+        System.out.println("Обновлено задач в пакете: " + batch.size() + ".");
+    }
+
+    @Override
+    public void deleteByIds(TaskType taskType, long[] ids) {
+        int deleted;
+        lockEverything();
+        try {
+            LongOrderedSet batch = InMemoryTaskManager.checkBatchDeletion(taskType, ids, this::isStored);
+            for (long idFor : batch.toArray()) {
+                switch (taskType) {
+                    case EPIC:
+                        removeEpic(idFor);
+                        break;
+                    case SUBTASK:
+                        Subtask subtask = subStorage.remove(idFor);
+                        prioritizedTasks.remove(subtask);
+                        Epic epic = epicStorage.get(subtask.getEpicId());
+                        epic.getSubtaskIdSet().remove(idFor);
+                        changeEpicRollups(epic, subtask, null);
+                        removeFromHistory(idFor);
+                        break;
+                    default:
+                        removeTask(idFor);
+                }
+            }
+            deleted = batch.size();
+        } finally {
+            unlockEverything();
+        }
+        version.incrementAndGet();
+        System.out.println("Удалено задач типа " + taskType + " в пакете: " + deleted + ".");
+    }
+
+    private boolean isStored(TaskType taskType, long id) {
+        switch (taskType) {
+            case EPIC:
+                return epicStorage.containsKey(id);
+            case SUBTASK:
+                return subStorage.containsKey(id);
+            default:
+                return taskStorage.containsKey(id);
+        }
+    }
+
+    //Получение списка всех подзадач определённого эпика:
+    @Override
+    public List<Subtask> getSubsByEpicId(long id) {
+        List<Subtask> subsByEpicId = new ArrayList<>();
+        ReentrantLock epicLock = lockFor(id);
+        epicLock.lock();
+        try {
+            Epic epic = epicStorage.get(id);
+            if (epic != null) {
+                for (long idFor : epic.getSubtaskIdSet().toArray()) {
+                    subsByEpicId.add(subStorage.get(idFor));
+                }
+            } else {
+                System.out.println("ID '" + id + "' нет в списке эпиков. Невозможно получить список его подзадач.");
+            }
+        } finally {
+            epicLock.unlock();
+        }
+        return subsByEpicId;
+    }
+
+    //Получение истории просмотров:
+    @Override
+    public List<Task> getHistory() {
+        List<Task> history;
+        synchronized (historyManager) {
+            history = historyManager.getHistory();
+        }
+        history.replaceAll(task -> task instanceof Epic ? snapshotOf((Epic) task) : task);
+        return history;
+    }
+
+    //Живое представление истории небезопасно обходить без блокировки, поэтому отдаётся снимок.
+    //Он копируется только после изменения истории, повторные чтения получают тот же список;
+    //эпики в нём копируются при обходе:
+    @Override
+    public Collection<Task> getHistoryView() {
+        List<Task> snapshot = historySnapshot;
+        if (snapshot == null) {
+            synchronized (historyManager) {
+                snapshot = historySnapshot;
+                if (snapshot == null) {
+                    snapshot = Collections.unmodifiableList(historyManager.getHistory());
+                    historySnapshot = snapshot;
+                }
+            }
+        }
+        return new EpicSnapshotView<>(snapshot);
+    }
+
+    //Эпики меняются на месте под блокировкой своего id, поэтому наружу отдаются их копии, снятые под той же
+    //блокировкой: копию можно обходить и сериализовать без блокировок, не видя наполовину изменённый эпик.
+    private Epic snapshotOf(Epic epic) {
+        ReentrantLock epicLock = lockFor(epic.getId());
+        epicLock.lock();
+        try {
+            Epic snapshot = new Epic(epic.getId(), epic.getHeader(), epic.getStatus(), epic.getDescription(),
+                    epic.getStartTime(), epic.getEndTime(), epic.getDurationInMinutes());
+            for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+                snapshot.addIdSubtaskIdList(subtaskId);
+            }
+            snapshot.copySubtaskStatusCounters(epic);
+            return snapshot;
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        return version.get() + historyViews.get();//оба слагаемых только растут
+    }
+
+    private boolean removeTask(long id) {//вызывается под блокировкой id задачи
+        Task task = taskStorage.remove(id);
+        if (task == null) {
+            return false;
+        }
+        prioritizedTasks.remove(task);
+        removeFromHistory(id);
+        return true;
+    }
+
+    private boolean removeEpic(long id) {//вызывается под блокировкой id эпика
+        Epic epic = epicStorage.remove(id);
+        if (epic == null) {
+            return false;
+        }
+        for (long idFor : epic.getSubtaskIdSet().toArray()) {//удаление сабтасков привязанных к эпику
+            prioritizedTasks.remove(subStorage.remove(idFor));
+            removeFromHistory(idFor);
+        }
+        epicTimeWindows.remove(id);
+        removeFromHistory(id);
+        return true;
+    }
+
+    //Пересчёт счётчиков статусов, статуса и времени эпика на одну подзадачу, под блокировкой id эпика:
+    private void changeEpicRollups(Epic epic, Subtask removedSubtask, Subtask addedSubtask) {
+        EpicTimeWindow timeWindow = epicTimeWindows.get(epic.getId());
+        if (removedSubtask != null) {
+            epic.countSubtaskStatus(removedSubtask.getStatus(), -1);
+            timeWindow.remove(removedSubtask);
+        }
+        if (addedSubtask != null) {
+            epic.countSubtaskStatus(addedSubtask.getStatus(), 1);
+            timeWindow.add(addedSubtask);
+        }
+        epic.setStatus(InMemoryTaskManager.calculateEpicStatus(epic));
+        timeWindow.applyTo(epic);
+    }
+
+    //Полный пересчёт счётчиков статусов и окна времени эпика по его подзадачам, под блокировкой id эпика:
+    private void recountEpicRollups(Epic epic) {
+        EpicTimeWindow timeWindow = new EpicTimeWindow();
+        epic.resetSubtaskStatusCounters();
+        for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+            Subtask subtask = subStorage.get(subtaskId);
+            epic.countSubtaskStatus(subtask.getStatus(), 1);
+            timeWindow.add(subtask);
+        }
+        epicTimeWindows.put(epic.getId(), timeWindow);
+        changeEpicRollups(epic, null, null);
+    }
+
+    private void addToHistory(Task task) {
+        synchronized (historyManager) {
+            historyManager.add(task);
+            historySnapshot = null;
+        }
+        historyViews.incrementAndGet();
+    }
+
+    private void removeFromHistory(long id) {
+        synchronized (historyManager) {
+            historyManager.remove(id);
+            historySnapshot = null;
+        }
+    }
+
+    private ReentrantLock lockFor(long id) {
+        return idLocks[Long.hashCode(id) & (LOCK_STRIPES - 1)];
+    }
+
+    private ReentrantLock[] lockBoth(long firstId, long secondId) {
+        int firstStripe = Long.hashCode(firstId) & (LOCK_STRIPES - 1);
+        int secondStripe = Long.hashCode(secondId) & (LOCK_STRIPES - 1);
+        if (firstStripe == secondStripe) {
+            idLocks[firstStripe].lock();
+            return new ReentrantLock[]{idLocks[firstStripe]};
+        }
+        ReentrantLock lowerLock = idLocks[Math.min(firstStripe, secondStripe)];
+        ReentrantLock upperLock = idLocks[Math.max(firstStripe, secondStripe)];
+        lowerLock.lock();
+        upperLock.lock();
+        return new ReentrantLock[]{upperLock, lowerLock};
+    }
+
+    private static void unlockAll(ReentrantLock[] locks) {
+        for (ReentrantLock lock : locks) {
+            lock.unlock();
+        }
+    }
+
+    //все блокировки в том же порядке, что и у одиночных операций: сначала расписание, затем полосы по возрастанию
+    private void lockEverything() {
+        scheduleLock.lock();
+        for (ReentrantLock idLock : idLocks) {
+            idLock.lock();
+        }
+    }
+
+    private void unlockEverything() {
+        for (int i = idLocks.length - 1; i >= 0; i--) {
+            idLocks[i].unlock();
+        }
+        scheduleLock.unlock();
+    }
+
+    //блокировка расписания нужна только задачам со временем, задачи без времени не пересекаются
+    private void lockSchedule(Task task) {
+        if (task.getStartTime() != null) {
+            scheduleLock.lock();
+        }
+    }
+
+    private void unlockSchedule(Task task) {
+        if (task.getStartTime() != null) {
+            scheduleLock.unlock();
+        }
+    }
+
+    //Представление только для чтения: при обходе вместо эпиков отдаются их копии
+    private final class EpicSnapshotView<T extends Task> extends AbstractCollection<T> {
+        private final Collection<T> tasks;
+
+        private EpicSnapshotView(Collection<T> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            Iterator<T> iterator = tasks.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")//копия эпика того же класса, что и сам эпик
+                public T next() {
+                    T task = iterator.next();
+                    return task instanceof Epic ? (T) snapshotOf((Epic) task) : task;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+    }
+}
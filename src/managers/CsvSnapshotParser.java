@@ -0,0 +1,376 @@
+package managers;
+
+import enums.CurrentStatus;
+import enums.TaskType;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//Разбор CSV-снимка FileBackedTasksManager прямо из байтов: поля находятся по запятым (в UTF-8 это всегда
+//однобайтовый символ), числа, перечисления, время и продолжительность читаются без выделения подстрок,
+//строки создаются только для заголовка и описания. Нестандартную запись времени или продолжительности
+//разбирают LocalDateTime.parse и Duration.parse.
+//Файл читается потоком, или, если разрешено и файл большой, целиком и разбирается кусками в ForkJoinPool.
+final class CsvSnapshotParser {
+    static final int PARALLEL_THRESHOLD = 4 << 20;//байт; меньшие файлы быстрее разобрать в одном потоке
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int FIELD_COUNT = 9;//id,type,name,status,description,start time,end time,duration,epic
+
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final CurrentStatus[] STATUSES = CurrentStatus.values();
+    private static final byte[][] TASK_TYPE_NAMES = names(TASK_TYPES);
+    private static final byte[][] STATUS_NAMES = names(STATUSES);
+    private static final byte[] HEADER_PREFIX = "id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private CsvSnapshotParser() {
+    }
+
+    static ParsedSnapshot parse(File file, boolean parallelParsing) throws IOException {
+        long length = file.length();
+        if (parallelParsing && length >= PARALLEL_THRESHOLD && length < Integer.MAX_VALUE - 8) {
+            return parseInParallel(Files.readAllBytes(file.toPath()));
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return parseStream(in);
+        }
+    }
+
+    static Task parseTask(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parseTask(bytes, 0, bytes.length);
+    }
+
+    static ParsedSnapshot parseStream(InputStream in) throws IOException {
+        LineHandler handler = new LineHandler();
+        byte[] buffer = new byte[1 << 16];
+        int start = 0;
+        int limit = 0;
+        int scan = 0;
+        while (true) {
+            int lineEnd = indexOf(buffer, (byte) '\n', scan, limit);
+            if (lineEnd >= 0) {
+                handler.handle(buffer, start, lineEnd);
+                start = lineEnd + 1;
+                scan = start;
+                continue;
+            }
+            scan = limit;
+            if (start > 0) {//недочитанная строка переносится в начало буфера
+                System.arraycopy(buffer, start, buffer, 0, limit - start);
+                limit -= start;
+                scan -= start;
+                start = 0;
+            } else if (limit == buffer.length) {//строка длиннее буфера
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                if (limit > start) {
+                    handler.handle(buffer, start, limit);
+                }
+                return handler.result();
+            }
+            limit += read;
+        }
+    }
+
+    private static ParsedSnapshot parseInParallel(byte[] bytes) {
+        int tasksStart = 0;
+        if (startsWith(bytes, 0, bytes.length, HEADER_PREFIX)) {
+            tasksStart = lineEnd(bytes, 0) + 1;
+        }
+        int tasksEnd = tasksStart;//начало пустой строки после задач или конец файла
+        while (tasksEnd < bytes.length && !isBlank(bytes, tasksEnd, lineEnd(bytes, tasksEnd))) {
+            tasksEnd = lineEnd(bytes, tasksEnd) + 1;
+        }
+        tasksEnd = Math.min(tasksEnd, bytes.length);
+
+        List<Integer> chunkStarts = new ArrayList<>();
+        for (int chunkStart = tasksStart; chunkStart < tasksEnd; ) {
+            chunkStarts.add(chunkStart);
+            chunkStart = chunkStart + CHUNK_SIZE >= tasksEnd ? tasksEnd
+                    : lineEnd(bytes, chunkStart + CHUNK_SIZE) + 1;//кусок заканчивается на границе строки
+        }
+        chunkStarts.add(tasksEnd);
+        //каждый кусок пишет только свой элемент, set не меняет структуру списка
+        List<List<Task>> chunks = new ArrayList<>(Collections.nCopies(chunkStarts.size() - 1, null));
+        ForkJoinPool.commonPool().invoke(new ParseChunks(bytes, chunkStarts, chunks, 0, chunks.size()));
+
+        LineHandler handler = new LineHandler();
+        for (List<Task> chunk : chunks) {
+            handler.tasks.addAll(chunk);
+        }
+        handler.inHistory = true;
+        for (int lineStart = tasksEnd; lineStart < bytes.length; ) {
+            int lineEnd = lineEnd(bytes, lineStart);
+            handler.handle(bytes, lineStart, Math.min(lineEnd, bytes.length));
+            lineStart = lineEnd + 1;
+        }
+        return handler.result();
+    }
+
+    //разбирает куски задач [from, to) - делит диапазон пополам, пока не останется один кусок
+    private static class ParseChunks extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+        private final List<Integer> chunkStarts;
+        private final List<List<Task>> chunks;
+        private final int from;
+        private final int to;
+
+        ParseChunks(byte[] bytes, List<Integer> chunkStarts, List<List<Task>> chunks, int from, int to) {
+            this.bytes = bytes;
+            this.chunkStarts = chunkStarts;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseChunks(bytes, chunkStarts, chunks, from, middle),
+                        new ParseChunks(bytes, chunkStarts, chunks, middle, to));
+                return;
+            }
+            List<Task> tasks = new ArrayList<>();
+            int end = chunkStarts.get(to);
+            for (int lineStart = chunkStarts.get(from); lineStart < end; ) {
+                int lineEnd = Math.min(lineEnd(bytes, lineStart), end);
+                int contentEnd = trimCarriageReturn(bytes, lineStart, lineEnd);
+                if (contentEnd > lineStart) {
+                    tasks.add(parseTask(bytes, lineStart, contentEnd));
+                }
+                lineStart = lineEnd + 1;
+            }
+            chunks.set(from, tasks);
+        }
+    }
+
+    //строки снимка по порядку: заголовок, задачи, пустая строка, история
+    private static class LineHandler {
+        private final List<Task> tasks = new ArrayList<>();
+        private long[] history = new long[0];
+        private boolean inHistory;
+
+        void handle(byte[] bytes, int start, int end) {
+            end = trimCarriageReturn(bytes, start, end);
+            if (!inHistory && isBlank(bytes, start, end)) {
+                inHistory = true;
+            } else if (inHistory) {
+                if (!isBlank(bytes, start, end)) {
+                    history = parseHistory(bytes, start, end);
+                }
+            } else if (!startsWith(bytes, start, end, HEADER_PREFIX)) {
+                tasks.add(parseTask(bytes, start, end));
+            }
+        }
+
+        ParsedSnapshot result() {
+            return new ParsedSnapshot(tasks, history);
+        }
+    }
+
+    private static Task parseTask(byte[] bytes, int start, int end) {
+        int[] fieldStarts = new int[FIELD_COUNT + 1];
+        int field = 0;
+        fieldStarts[0] = start;
+        for (int i = start; i < end && field < FIELD_COUNT - 1; i++) {
+            if (bytes[i] == ',') {
+                fieldStarts[++field] = i + 1;
+            }
+        }
+        if (field < FIELD_COUNT - 2) {//поле epic может отсутствовать вместе с последней запятой
+            throw new IllegalArgumentException("Неверное число полей в строке: " + text(bytes, start, end));
+        }
+        if (field == FIELD_COUNT - 2) {
+            fieldStarts[++field] = end + 1;
+        }
+        fieldStarts[FIELD_COUNT] = end + 1;
+
+        long id = parseLong(bytes, fieldStarts[0], fieldStarts[1] - 1);
+        TaskType taskType = TASK_TYPES[indexOfName(TASK_TYPE_NAMES, bytes, fieldStarts[1], fieldStarts[2] - 1)];
+        String header = text(bytes, fieldStarts[2], fieldStarts[3] - 1);
+        CurrentStatus status = STATUSES[indexOfName(STATUS_NAMES, bytes, fieldStarts[3],
+                fieldStarts[4] - 1)];
+        String description = text(bytes, fieldStarts[4], fieldStarts[5] - 1);
+        LocalDateTime startTime = parseTime(bytes, fieldStarts[5], fieldStarts[6] - 1);
+        Duration durationInMinutes = parseDuration(bytes, fieldStarts[7], fieldStarts[8] - 1);
+        if (taskType == TaskType.SUBTASK) {
+            long epicId = parseLong(bytes, fieldStarts[8], fieldStarts[9] - 1);
+            return new Subtask(id, header, status, description, startTime, durationInMinutes, epicId);
+        }
+        if (taskType == TaskType.EPIC) {
+            LocalDateTime endTime = startTime == null ? null : parseTime(bytes, fieldStarts[6], fieldStarts[7] - 1);
+            return new Epic(id, header, status, description, startTime, endTime, durationInMinutes);
+        }
+        return new Task(id, header, status, description, startTime, durationInMinutes);
+    }
+
+    private static long[] parseHistory(byte[] bytes, int start, int end) {
+        long[] history = new long[16];
+        int size = 0;
+        int idStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || bytes[i] == ',') {
+                if (size == history.length) {
+                    history = Arrays.copyOf(history, size * 2);
+                }
+                history[size++] = parseLong(bytes, idStart, i);
+                idStart = i + 1;
+            }
+        }
+        return Arrays.copyOf(history, size);
+    }
+
+    private static long parseLong(byte[] bytes, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Пустое число на месте " + start);
+        }
+        boolean negative = bytes[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end || end - i > 18) {
+            return Long.parseLong(text(bytes, start, end));//пустое поле или возможное переполнение
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Неверное число: " + text(bytes, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    //yyyy-MM-ddTHH:mm[:ss[.n...]], как пишет LocalDateTime.toString; "null" - время не задано
+    private static LocalDateTime parseTime(byte[] bytes, int start, int end) {
+        if (matches(bytes, start, end, NULL)) {
+            return null;
+        }
+        int length = end - start;
+        if (length < 16 || bytes[start + 4] != '-' || bytes[start + 7] != '-' || bytes[start + 10] != 'T'
+                || bytes[start + 13] != ':' || (length > 16 && (length < 19 || bytes[start + 16] != ':'))
+                || (length > 19 && (length < 21 || length > 29 || bytes[start + 19] != '.'))) {
+            return LocalDateTime.parse(text(bytes, start, end));
+        }
+        int nanos = 0;
+        if (length > 19) {
+            nanos = (int) parseLong(bytes, start + 20, end);
+            for (int i = length - 20; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        return LocalDateTime.of((int) parseLong(bytes, start, start + 4), (int) parseLong(bytes, start + 5, start + 7),
+                (int) parseLong(bytes, start + 8, start + 10), (int) parseLong(bytes, start + 11, start + 13),
+                (int) parseLong(bytes, start + 14, start + 16),
+                length > 16 ? (int) parseLong(bytes, start + 17, start + 19) : 0, nanos);
+    }
+
+    //PT[nH][nM][nS] с целыми n, как пишет Duration.toString для продолжительности в минутах
+    private static Duration parseDuration(byte[] bytes, int start, int end) {
+        if (end - start < 4 || bytes[start] != 'P' || bytes[start + 1] != 'T') {
+            return Duration.parse(text(bytes, start, end));
+        }
+        long seconds = 0;
+        int numberStart = start + 2;
+        for (int i = numberStart; i < end; i++) {
+            byte symbol = bytes[i];
+            if (symbol >= '0' && symbol <= '9' && i - numberStart < 15) {
+                continue;
+            }
+            int unit = symbol == 'H' ? 3600 : symbol == 'M' ? 60 : symbol == 'S' ? 1 : 0;
+            if (unit == 0 || i == numberStart) {
+                return Duration.parse(text(bytes, start, end));//дробные секунды, знак, дни
+            }
+            seconds += parseLong(bytes, numberStart, i) * unit;
+            numberStart = i + 1;
+        }
+        if (numberStart != end) {
+            return Duration.parse(text(bytes, start, end));
+        }
+        return Duration.ofSeconds(seconds);
+    }
+
+    private static int indexOfName(byte[][] names, byte[] bytes, int start, int end) {
+        for (int i = 0; i < names.length; i++) {
+            if (matches(bytes, start, end, names[i])) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное значение: " + text(bytes, start, end));
+    }
+
+    private static byte[][] names(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    private static boolean matches(byte[] bytes, int start, int end, byte[] expected) {
+        return end - start == expected.length && startsWith(bytes, start, end, expected);
+    }
+
+    private static boolean startsWith(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t' && bytes[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int trimCarriageReturn(byte[] bytes, int start, int end) {
+        return end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private static int lineEnd(byte[] bytes, int from) {//индекс '\n' или длина массива
+        int lineEnd = indexOf(bytes, (byte) '\n', from, bytes.length);
+        return lineEnd < 0 ? bytes.length : lineEnd;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,45 @@
+package managers;
+
+import tasks.Epic;
+import tasks.Subtask;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+//Временное окно эпика: сумма продолжительностей его подзадач со временем и упорядоченные по времени
+//мультимножества их начал и окончаний. Добавление и удаление одной подзадачи стоит O(log k).
+class EpicTimeWindow {
+    private final NavigableMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final NavigableMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+    private Duration duration = Duration.ZERO;
+
+    void add(Subtask subtask) {
+        if (subtask.getStartTime() == null) {
+            return;
+        }
+        startTimes.merge(subtask.getStartTime(), 1, Integer::sum);
+        endTimes.merge(subtask.getEndTime(), 1, Integer::sum);
+        duration = duration.plus(subtask.getDurationInMinutes());
+    }
+
+    void remove(Subtask subtask) {
+        if (subtask.getStartTime() == null) {
+            return;
+        }
+        decrement(startTimes, subtask.getStartTime());
+        decrement(endTimes, subtask.getEndTime());
+        duration = duration.minus(subtask.getDurationInMinutes());
+    }
+
+    void applyTo(Epic epic) {//переносит окно в поля эпика
+        epic.setDurationInMinutes(duration);
+        epic.setStartTime(startTimes.isEmpty() ? null : startTimes.firstKey());
+        epic.setEndTime(endTimes.isEmpty() ? null : endTimes.lastKey());
+    }
+
+    private static void decrement(NavigableMap<LocalDateTime, Integer> times, LocalDateTime time) {
+        times.computeIfPresent(time, (key, count) -> count == 1 ? null : count - 1);
+    }
+}
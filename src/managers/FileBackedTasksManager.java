@@ -1,163 +1,531 @@
 package managers;
 
 import enums.CurrentStatus;
+import enums.PersistenceMode;
+import enums.SnapshotFormat;
 import enums.TaskType;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
 import exceptions.ManagerSaveException;
+import utils.LongHashMap;
+import utils.LongOrderedSet;
 
 import java.io.*;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.time.Duration;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+//В режиме JOURNAL каждое изменение дописывается строкой в журнал рядом с файлом (<файл>.journal):
+//  +<строка задачи в формате CSV> - задача создана или обновлена;
+//  -<тип>,<id> - задача удалена, -<тип> - удалены все задачи этого типа;
+//  v<id> - просмотр задачи.
+//Раз в checkpointInterval записей состояние целиком сохраняется в файл, а журнал удаляется.
+//В режиме SNAPSHOT в журнал пишутся только просмотры, а изменения задач по-прежнему переписывают файл.
+//Снимок пишется в формате SnapshotFormat: CSV (по умолчанию) или двоичном BinarySnapshotCodec,
+//и может сжиматься потоком gzip (setSnapshotCompression); журнал не сжимается.
+//В режиме MAPPED файл - хранилище MappedTaskStore: изменение или просмотр задачи переписывает только её ячейку,
+//а save() переписывает хранилище целиком. Загрузка снимка CSV или двоичного в этом режиме переводит файл в хранилище.
+public class FileBackedTasksManager extends InMemoryTaskManager implements AutoCloseable {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 10_000;
 
-public class FileBackedTasksManager extends InMemoryTaskManager {
     private File file;
+    private final PersistenceMode persistenceMode;
+    private final int checkpointInterval;
+    private Writer journalWriter;
+    private int journalRecords;//записей в журнале после последнего снимка
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private int snapshotCompression = Deflater.NO_COMPRESSION;//уровень Deflater, 0 - снимок не сжимается
+    private boolean journalContinuesSnapshot;//файл и журнал на диске вместе дают текущее состояние
+    private boolean journalTailTorn;//при загрузке последняя запись журнала оборвана - дописывать к ней нельзя
+    private MappedTaskStore mappedStore;//хранилище режима MAPPED, null - ещё не записано этим менеджером
+    private ScheduledExecutorService commitExecutor;//фоновая запись при групповой фиксации, null - запись сразу
+    private Thread shutdownHook;
+    private int maxPendingOperations;
+    private int pendingOperations;//изменений, ещё не записанных на диск
 
     public FileBackedTasksManager(File file) {
+        this(file, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTasksManager(File file, PersistenceMode persistenceMode) {
+        this(file, persistenceMode, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public FileBackedTasksManager(File file, PersistenceMode persistenceMode, int checkpointInterval) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Интервал снимков должен быть больше нуля: " + checkpointInterval);
+        }
         this.file = file;
+        this.persistenceMode = persistenceMode;
+        this.checkpointInterval = checkpointInterval;
     }
 
     //восстанавливает данные менеджера из файла при запуске программы:
     public static FileBackedTasksManager loadFromFile(File file) {
-        FileBackedTasksManager managerFromFile = new FileBackedTasksManager(file);
-        try (BufferedReader backupFileReader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
-            boolean isTask = true;
-            long idCorrector = 0;
-            Map<Long, Task> tasksForHistoryRestore = new HashMap<>();
-
-            while (backupFileReader.ready()) {
-                String lineFromFile = backupFileReader.readLine();
-                if (lineFromFile.startsWith("id")) {
-                    continue;
+        return loadFromFile(file, PersistenceMode.SNAPSHOT);
+    }
+
+    //восстанавливает снимок из файла и дописанный после него журнал, если он есть:
+    public static FileBackedTasksManager loadFromFile(File file, PersistenceMode persistenceMode) {
+        return loadFromFile(file, persistenceMode, true);
+    }
+
+    //parallelParsing - большой CSV-снимок разбирается кусками в нескольких потоках
+    public static FileBackedTasksManager loadFromFile(File file, PersistenceMode persistenceMode,
+                                                      boolean parallelParsing) {
+        return loadFromFile(file, persistenceMode, parallelParsing, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    //checkpointInterval - как в конструкторе; восстановленные записи журнала входят в интервал
+    public static FileBackedTasksManager loadFromFile(File file, PersistenceMode persistenceMode,
+                                                      int checkpointInterval) {
+        return loadFromFile(file, persistenceMode, true, checkpointInterval);
+    }
+
+    public static FileBackedTasksManager loadFromFile(File file, PersistenceMode persistenceMode,
+                                                      boolean parallelParsing, int checkpointInterval) {
+        FileBackedTasksManager managerFromFile = new FileBackedTasksManager(file, persistenceMode,
+                checkpointInterval);
+        File journalFile = journalFile(file);
+        long idCorrector = 0;
+        if (file.exists() || !journalFile.exists()) {
+            idCorrector = managerFromFile.loadSnapshot(parallelParsing);
+        }
+        if (journalFile.exists()) {
+            idCorrector = Math.max(idCorrector, managerFromFile.replayJournal(journalFile));
+        }
+        for (Epic epic : managerFromFile.epicStorage.values()) {
+            managerFromFile.recalculateEpic(epic);
+        }
+        managerFromFile.id = idCorrector;
+        //после оборванной записи журнал переносится в снимок: иначе новая запись склеится с обрывком
+        if (persistenceMode == PersistenceMode.SNAPSHOT && journalFile.exists() || managerFromFile.journalTailTorn
+                || persistenceMode == PersistenceMode.MAPPED && (managerFromFile.mappedStore == null
+                || journalFile.exists())) {
+            managerFromFile.save();//изменения из журнала переносятся в снимок, снимок - в хранилище MAPPED
+        }
+        managerFromFile.journalContinuesSnapshot = true;//новые записи продолжают восстановленный журнал
+        return managerFromFile;
+    }
+
+    private long loadSnapshot(boolean parallelParsing) { //возвращает наибольший id из снимка
+        try {
+            byte[] magic = readMagic(file);
+            if (MappedTaskStore.isMappedStore(magic)) {
+                MappedTaskStore store = MappedTaskStore.open(file);
+                if (persistenceMode == PersistenceMode.MAPPED) {
+                    mappedStore = store;//дальше изменения пишутся в открытое хранилище
+                    return restoreSnapshot(store.read());
                 }
-                if (lineFromFile.isBlank()) {
-                    isTask = false;
-                    continue;
+                try {
+                    return restoreSnapshot(store.read());
+                } finally {
+                    store.close();//файл перепишет снимок, он не должен оставаться отображённым
                 }
-                if (isTask) {
-                    Task task = managerFromFile.fromString(lineFromFile);
-                    if (task.getId() > idCorrector) {
-                        idCorrector = task.getId();
-                    }
-                    tasksForHistoryRestore.put(task.getId(), task);
-                    if (task.getTaskType() == TaskType.TASK) {
-                        managerFromFile.taskStorage.put(task.getId(), task);
-                    } else if (task.getTaskType() == TaskType.EPIC) {
-                        Epic epic = (Epic) task;
-                        managerFromFile.epicStorage.put(epic.getId(), epic);
-                    } else {
-                        Subtask subtask = (Subtask) task;
-                        managerFromFile.subStorage.put(subtask.getId(), subtask);
-                        Epic epic = managerFromFile.epicStorage.get(subtask.getEpicId());
-                        epic.addIdSubtaskIdList(subtask.getId());
-                    }
-                } else {
-                    for (Long taskId : historyFromString(lineFromFile)) {
-                        managerFromFile.historyManager.add(tasksForHistoryRestore.get(taskId));
+            }
+            if (SnapshotCompression.isCompressed(magic)) {
+                snapshotCompression = SnapshotCompression.DEFAULT_LEVEL;//и сохраняет сжатые снимки
+                try (PushbackInputStream snapshotStream =
+                             SnapshotCompression.decompress(new FileInputStream(file))) {
+                    byte[] innerMagic = snapshotStream.readNBytes(BinarySnapshotCodec.MAGIC.length);
+                    snapshotStream.unread(innerMagic);
+                    if (BinarySnapshotCodec.isBinarySnapshot(innerMagic)) {
+                        snapshotFormat = SnapshotFormat.BINARY;
+                        return restoreSnapshot(BinarySnapshotCodec.read(snapshotStream));
                     }
+                    return restoreSnapshot(CsvSnapshotParser.parseStream(snapshotStream));
                 }
             }
-            managerFromFile.id = idCorrector;
+            if (BinarySnapshotCodec.isBinarySnapshot(magic)) {
+                snapshotFormat = SnapshotFormat.BINARY;//восстановленный менеджер сохраняет снимки в том же формате
+                try (InputStream snapshotStream = new FileInputStream(file)) {
+                    return restoreSnapshot(BinarySnapshotCodec.read(snapshotStream));
+                }
+            }
+            return restoreSnapshot(CsvSnapshotParser.parse(file, parallelParsing));
         } catch (IOException exception) {
             throw new ManagerSaveException("Произошла ошибка во время восстановления!", exception);
         }
-        return managerFromFile;
+    }
+
+    //хранилища, очередь по времени и списки подзадач эпиков строятся за один проход по задачам снимка;
+    //возвращает наибольший id из снимка
+    private long restoreSnapshot(ParsedSnapshot snapshot) {
+        int taskCount = 0;
+        int epicCount = 0;
+        for (Task task : snapshot.tasks) {
+            if (task.getTaskType() == TaskType.TASK) {
+                taskCount++;
+            } else if (task.getTaskType() == TaskType.EPIC) {
+                epicCount++;
+            }
+        }
+        taskStorage = new LongHashMap<>(taskCount);
+        epicStorage = new LongHashMap<>(epicCount);
+        subStorage = new LongHashMap<>(snapshot.tasks.size() - taskCount - epicCount);
+        //хранилища хранят задачи в порядке добавления - как у менеджера, создававшего их, в порядке id;
+        //в снимке подзадачи сгруппированы по эпикам, остальное обычно уже упорядочено
+        Task[] idOrder = snapshot.tasks.toArray(new Task[0]);
+        Arrays.sort(idOrder, Comparator.comparingLong(Task::getId));
+        for (Task task : idOrder) {
+            if (task.getTaskType() == TaskType.TASK) {
+                taskStorage.put(task.getId(), task);
+            } else if (task.getTaskType() == TaskType.EPIC) {
+                epicStorage.put(task.getId(), (Epic) task);
+            } else {
+                subStorage.put(task.getId(), (Subtask) task);
+            }
+        }
+        Task[] timeOrder = new Task[snapshot.tasks.size() - epicCount];
+        int timeOrderSize = 0;
+        long idCorrector = 0;
+        for (Task task : snapshot.tasks) {
+            if (task.getId() > idCorrector) {
+                idCorrector = task.getId();
+            }
+            if (task.getTaskType() == TaskType.TASK) {
+                timeOrder[timeOrderSize++] = task;
+            } else if (task.getTaskType() == TaskType.SUBTASK) {
+                Subtask subtask = (Subtask) task;
+                timeOrder[timeOrderSize++] = subtask;
+                epicStorage.get(subtask.getEpicId()).addIdSubtaskIdList(subtask.getId());
+            }
+        }
+        prioritizedTasks.addAll(SortedTasks.of(timeOrder, timeOrderSize));
+        for (long taskId : snapshot.history) {
+            historyManager.add(findStored(taskId));
+        }
+        return idCorrector;
+    }
+
+    private static byte[] readMagic(File file) throws IOException { //первые байты файла, по ним выбирается формат
+        try (InputStream snapshotStream = new FileInputStream(file)) {
+            return snapshotStream.readNBytes(BinarySnapshotCodec.MAGIC.length);
+        }
+    }
+
+    private Task findStored(long id) { //id уникальны для всех типов задач
+        Task task = taskStorage.get(id);
+        if (task == null) {
+            task = epicStorage.get(id);
+        }
+        if (task == null) {
+            task = subStorage.get(id);
+        }
+        return task;
+    }
+
+    //применяет записи журнала, возвращает наибольший id из них. Применённые записи засчитываются
+    //в journalRecords: иначе после каждого перезапуска отсчёт до контрольной точки начинался бы с нуля,
+    //а журнал рос бы без предела
+    private long replayJournal(File journalFile) {
+        long idCorrector = 0;
+        journalRecords = 0;
+        try (BufferedReader journalReader = new BufferedReader(new FileReader(journalFile, StandardCharsets.UTF_8))) {
+            String record = journalReader.readLine();
+            while (record != null) {
+                String nextRecord = journalReader.readLine();
+                try {
+                    idCorrector = Math.max(idCorrector, applyJournalRecord(record));
+                    journalRecords++;
+                } catch (RuntimeException exception) {
+                    if (nextRecord != null) {
+                        throw new ManagerSaveException("Журнал повреждён, запись: " + record, exception);
+                    }
+                    //последняя запись могла быть записана не полностью при аварийном завершении - она пропускается
+                    journalTailTorn = true;
+                }
+                record = nextRecord;
+            }
+            journalTailTorn |= !endsWithLineBreak(journalFile);
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время восстановления журнала!", exception);
+        }
+        prioritizedTasks.clear();
+        prioritizedTasks.addAll(taskStorage.values());
+        prioritizedTasks.addAll(subStorage.values());
+        return idCorrector;
+    }
+
+    private static boolean endsWithLineBreak(File journalFile) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(journalFile, "r")) {
+            if (journal.length() == 0) {
+                return true;
+            }
+            journal.seek(journal.length() - 1);
+            return journal.read() == '\n';
+        }
+    }
+
+    //применяет запись к хранилищам; очередь по времени и эпики пересчитываются после всего журнала
+    private long applyJournalRecord(String record) {
+        if (record.startsWith("+")) {
+            Task task = fromString(record.substring(1));
+            if (task.getTaskType() == TaskType.TASK) {
+                taskStorage.put(task.getId(), task);
+            } else if (task.getTaskType() == TaskType.EPIC) {
+                Epic oldEpic = epicStorage.get(task.getId());
+                if (oldEpic != null) {
+                    ((Epic) task).setSubtaskIdSet(oldEpic.getSubtaskIdSet());
+                }
+                epicStorage.put(task.getId(), (Epic) task);
+            } else {
+                Subtask subtask = (Subtask) task;
+                Subtask oldSubtask = subStorage.put(subtask.getId(), subtask);
+                if (oldSubtask != null && oldSubtask.getEpicId() != subtask.getEpicId()) {
+                    epicStorage.get(oldSubtask.getEpicId()).getSubtaskIdSet().remove(subtask.getId());
+                }
+                epicStorage.get(subtask.getEpicId()).addIdSubtaskIdList(subtask.getId());
+            }
+            return task.getId();
+        }
+        if (record.startsWith("v")) {
+            long id = Long.parseLong(record.substring(1));
+            historyManager.add(Objects.requireNonNull(findStored(id), "Просмотр отсутствующей задачи " + id));
+            return id;
+        }
+        if (!record.startsWith("-")) {
+            throw new IllegalArgumentException("Неизвестная запись журнала: " + record);
+        }
+        String[] recordFields = record.substring(1).split(",");
+        TaskType taskType = TaskType.valueOf(recordFields[0]);
+        if (recordFields.length == 1) {
+            replayDeleteAll(taskType);
+            return 0;
+        }
+        long id = Long.parseLong(recordFields[1]);
+        replayDelete(taskType, id);
+        return id;
+    }
+
+    private void replayDelete(TaskType taskType, long id) {
+        if (taskType == TaskType.TASK) {
+            taskStorage.remove(id);
+        } else if (taskType == TaskType.EPIC) {
+            Epic epic = epicStorage.remove(id);
+            if (epic != null) {
+                for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+                    subStorage.remove(subtaskId);
+                    historyManager.remove(subtaskId);
+                }
+            }
+        } else {
+            Subtask subtask = subStorage.remove(id);
+            if (subtask != null) {
+                epicStorage.get(subtask.getEpicId()).getSubtaskIdSet().remove(id);
+            }
+        }
+        historyManager.remove(id);
+    }
+
+    private void replayDeleteAll(TaskType taskType) {
+        if (taskType == TaskType.TASK) {
+            for (long id : taskStorage.keys()) {
+                historyManager.remove(id);
+            }
+            taskStorage.clear();
+            return;
+        }
+        for (long id : subStorage.keys()) {
+            historyManager.remove(id);
+        }
+        subStorage.clear();
+        for (Epic epic : epicStorage.values()) {
+            epic.getSubtaskIdSet().clear();
+        }
+        if (taskType == TaskType.EPIC) {
+            for (long id : epicStorage.keys()) {
+                historyManager.remove(id);
+            }
+            epicStorage.clear();
+            epicTimeWindows.clear();
+        }
     }
 
     //Получение по идентификатору:
-    public Task getTaskById(long id) {
+    public synchronized Task getTaskById(long id) {
         Task task = super.getTaskById(id);
-        save();
+        saveView(task);
         return task;
     }
-    public Epic getEpicById(long id) {
+    public synchronized Epic getEpicById(long id) {
         Epic epic = super.getEpicById(id);
-        save();
+        saveView(epic);
         return epic;
     }
-    public Subtask getSubtaskById(long id) {
+    public synchronized Subtask getSubtaskById(long id) {
         Subtask subtask = super.getSubtaskById(id);
-        save();
+        saveView(subtask);
         return subtask;
     }
 
     //Создание задач. Объект передаётся в качестве параметра:
-    public Task createTask(Task task) {
+    public synchronized Task createTask(Task task) {
         super.createTask(task);
-        save();
+        saveUpsert(task, new long[0]);
         return task;
     }
-    public Epic createEpic(Epic epic) {
+    public synchronized Epic createEpic(Epic epic) {
         super.createEpic(epic);
-        save();
+        saveUpsert(epic, new long[0]);
         return epic;
     }
-    public Subtask createSubtask(Subtask subtask) {
+    public synchronized Subtask createSubtask(Subtask subtask) {
         super.createSubtask(subtask);
-        save();
+        saveUpsert(subtask, epicIdsOf(subtask == null ? List.of() : List.of(subtask)));
         return subtask;
     }
 
     //Обновление. Новая версия объекта с верным идентификатором передаётся в виде параметра:
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        saveUpsert(task, new long[0]);
     }
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        saveUpsert(epic, new long[0]);
     }
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
+        long[] changedEpicIds = epicIdsOf(subtask == null ? List.of() : List.of(subtask));
         super.updateSubtask(subtask);
-        save();
+        saveUpsert(subtask, changedEpicIds);
     }
 
     //Удаление всех задач:
-    public void deleteTasks() {
+    public synchronized void deleteTasks() {
         super.deleteTasks();
-        save();
+        saveDeletion(TaskType.TASK);
     }
-    public void deleteEpics() {
+    public synchronized void deleteEpics() {
         super.deleteEpics();
-        save();
+        saveDeletion(TaskType.EPIC);
     }
-    public void deleteSubtasks() {
+    public synchronized void deleteSubtasks() {
         super.deleteSubtasks();
-        save();
+        saveDeletion(TaskType.SUBTASK);
     }
 
     //Удаление по идентификатору:
-    public void deleteTaskById(long id) {
+    public synchronized void deleteTaskById(long id) {
         super.deleteTaskById(id);
-        save();
+        saveDeletions(TaskType.TASK, new long[]{id}, new long[0], new long[0]);
     }
-    public void deleteEpicById(long id) {
+    public synchronized void deleteEpicById(long id) {
+        long[] subtaskIds = subtaskIdsOf(new long[]{id});
         super.deleteEpicById(id);
-        save();
+        saveDeletions(TaskType.EPIC, new long[]{id}, subtaskIds, new long[0]);
     }
-    public void deleteSubtaskById(long id) {
+    public synchronized void deleteSubtaskById(long id) {
+        long[] changedEpicIds = epicIdsOfSubtasks(new long[]{id});
         super.deleteSubtaskById(id);
-        save();
+        saveDeletions(TaskType.SUBTASK, new long[]{id}, new long[0], changedEpicIds);
+    }
+
+    //Пакетные операции - одно сохранение (или одна дозапись в журнал) на весь пакет:
+    public synchronized List<Task> createAll(List<? extends Task> tasks, Map<Integer, Integer> epicRefs) {
+        List<Task> createdTasks = super.createAll(tasks, epicRefs);
+        saveUpserts(createdTasks, epicIdsOf(createdTasks));
+        return createdTasks;
+    }
+    public synchronized void updateAll(Collection<? extends Task> tasks) {
+        long[] changedEpicIds = epicIdsOf(tasks);
+        super.updateAll(tasks);
+        saveUpserts(tasks, changedEpicIds);
+    }
+    public synchronized void deleteByIds(TaskType taskType, long[] ids) {
+        long[] subtaskIds = taskType == TaskType.EPIC ? subtaskIdsOf(ids) : new long[0];
+        long[] changedEpicIds = taskType == TaskType.SUBTASK ? epicIdsOfSubtasks(ids) : new long[0];
+        super.deleteByIds(taskType, ids);
+        saveDeletions(taskType, ids, subtaskIds, changedEpicIds);
     }
 
-    public void save() { //сохраняет текущее состояние менеджера в указанный файл
+    public synchronized void save() { //сохраняет текущее состояние менеджера в указанный файл
+        if (isMapped()) {
+            try {
+                MappedTaskStore previousStore = mappedStore;
+                mappedStore = null;//при ошибке следующее изменение перепишет хранилище целиком
+                mappedStore = MappedTaskStore.rewrite(file, previousStore, orderedTasks(),
+                        historyManager.getHistoryView());
+            } catch (IOException exception) {
+                throw new ManagerSaveException("Произошла ошибка во время сохранения!", exception);
+            }
+            deleteJournal();
+            journalContinuesSnapshot = true;
+            return;
+        }
+        if (!isJournaled()) {
+            writeSnapshot(file);
+            deleteJournal();//просмотры из журнала истории уже вошли в снимок
+            journalContinuesSnapshot = true;
+            return;
+        }
+        //снимок пишется во временный файл и подменяет прежний целиком, только после этого удаляется журнал
+        File snapshotFile = new File(file.getPath() + ".tmp");
+        writeSnapshot(snapshotFile);
+        try {
+            Files.move(snapshotFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время сохранения!", exception);
+        }
+        deleteJournal();
+        journalContinuesSnapshot = true;
+    }
+
+    private void writeSnapshot(File target) {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            writeBinarySnapshot(target);
+        } else {
+            writeCsvSnapshot(target);
+        }
+    }
+
+    //задачи, затем эпики и подзадачи каждого эпика в его порядке - без сортировки по id
+    private List<Task> orderedTasks() {
+        List<Task> orderedTasks = new ArrayList<>(taskStorage.size() + epicStorage.size() + subStorage.size());
+        orderedTasks.addAll(taskStorage.values());
+        orderedTasks.addAll(epicStorage.values());
+        for (Epic epic : epicStorage.values()) {
+            for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+                orderedTasks.add(subStorage.get(subtaskId));
+            }
+        }
+        return orderedTasks;
+    }
+
+    private void writeBinarySnapshot(File target) {
+        List<Task> orderedTasks = orderedTasks();
+        try (OutputStream snapshotStream = openSnapshotStream(target)) {
+            BinarySnapshotCodec.write(snapshotStream, orderedTasks.size(), orderedTasks,
+                    historyManager.getHistoryView());
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время сохранения!", exception);
+        }
+    }
+
+    private void writeCsvSnapshot(File target) {
         Map<Long, Task> sortedTasks = new TreeMap<>();
-        for (Long taskId : taskStorage.keySet()) {
-            sortedTasks.put(taskId, taskStorage.get(taskId));
+        for (Task task : taskStorage.values()) {
+            sortedTasks.put(task.getId(), task);
         }
-        for (Long epicId : epicStorage.keySet()) {
-            sortedTasks.put(epicId, epicStorage.get(epicId));
+        for (Epic epic : epicStorage.values()) {
+            sortedTasks.put(epic.getId(), epic);
         }
-        for (Long subtaskId : subStorage.keySet()) {
-            sortedTasks.put(subtaskId, subStorage.get(subtaskId));
+        for (Subtask subtask : subStorage.values()) {
+            sortedTasks.put(subtask.getId(), subtask);
         }
 
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(openSnapshotStream(target),
+                StandardCharsets.UTF_8))) {
             bufferedWriter.write("id,type,name,status,description,start time,end time,duration,epic\n");
             for (Map.Entry<Long, Task> sortedTasksEntry : sortedTasks.entrySet()) {
                 if (sortedTasksEntry.getValue() != null) {
@@ -173,6 +541,372 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         }
     }
 
+    private OutputStream openSnapshotStream(File target) throws IOException {
+        OutputStream snapshotStream = new FileOutputStream(target);
+        if (snapshotCompression == Deflater.NO_COMPRESSION) {
+            return snapshotStream;
+        }
+        return SnapshotCompression.compress(snapshotStream, snapshotCompression);
+    }
+
+    //Групповая фиксация: изменения копятся в памяти и уходят на диск одним save() (или одним сбросом журнала)
+    //раз в intervalMillis или после maxPendingOperations изменений, а также при flush() и при завершении JVM.
+    public synchronized void startGroupCommit(long intervalMillis, int maxPendingOperations) {
+        if (intervalMillis <= 0 || maxPendingOperations <= 0) {
+            throw new IllegalArgumentException("Интервал и число изменений должны быть больше нуля: "
+                    + intervalMillis + ", " + maxPendingOperations);
+        }
+        if (commitExecutor != null) {
+            throw new IllegalStateException("Групповая фиксация уже включена.");
+        }
+        this.maxPendingOperations = maxPendingOperations;
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "group-commit");
+            thread.setDaemon(true);//не держит JVM, несохранённое записывает shutdown hook
+            return thread;
+        });
+        commitExecutor.scheduleWithFixedDelay(this::backgroundFlush, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        shutdownHook = new Thread(this::flush, "group-commit-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    //выключает групповую фиксацию и записывает накопленные изменения, дальше каждое изменение пишется сразу
+    public void stopGroupCommit() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (commitExecutor == null) {
+                return;
+            }
+            executor = commitExecutor;
+            commitExecutor = null;
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            shutdownHook = null;
+        }
+        executor.shutdown();//монитор отпущен, чтобы фоновая запись могла завершиться
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    //Выключает групповую фиксацию - вместе с её shutdown hook, который иначе держит менеджер до конца JVM, -
+    //записывает накопленные изменения, закрывает журнал и освобождает отображения режима MAPPED. Менеджер
+    //остаётся рабочим: журнал откроется заново при следующей записи, хранилище MAPPED будет записано заново,
+    //а каждое изменение будет записываться сразу.
+    @Override
+    public void close() {
+        stopGroupCommit();
+        flush();//HttpTaskManager дожидается здесь ответов на запросы режима ASYNC
+        synchronized (this) {
+            if (journalWriter != null) {
+                try {
+                    journalWriter.close();
+                } catch (IOException exception) {
+                    throw new ManagerSaveException("Произошла ошибка во время закрытия журнала!", exception);
+                } finally {
+                    journalWriter = null;
+                }
+            }
+            if (mappedStore != null) {
+                mappedStore.force();
+                mappedStore.close();
+                mappedStore = null;
+            }
+        }
+    }
+
+    //записывает на диск все накопленные изменения; после возврата они переживут завершение процесса
+    public synchronized void flush() {
+        if (pendingOperations == 0) {
+            return;
+        }
+        commitPending();
+        pendingOperations = 0;
+    }
+
+    //Записывает изменения, накопленные групповой фиксацией. HttpTaskManager переопределяет его,
+    //чтобы отправить на KV-сервер накопленные изменения:
+    protected void commitPending() {
+        if (isMapped()) {
+            if (mappedStore != null) {
+                mappedStore.force();
+            }
+        } else if (!isJournaled()) {
+            save();
+        } else if (journalWriter != null) {
+            try {
+                journalWriter.flush();
+            } catch (IOException exception) {
+                throw new ManagerSaveException("Произошла ошибка во время записи в журнал!", exception);
+            }
+        }
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+        } catch (ManagerSaveException exception) {
+            System.out.println("Фоновое сохранение не удалось, повтор при следующей фиксации: "
+                    + exception.getMessage());
+        }
+    }
+
+    private void saveSnapshot() {
+        if (commitExecutor == null) {
+            save();
+        } else {
+            deferCommit();
+        }
+    }
+
+    protected boolean isGroupCommitStarted() {
+        return commitExecutor != null;
+    }
+
+    //откладывает запись до ближайшей фиксации; вызывается только при включённой групповой фиксации
+    protected void deferCommit() {
+        pendingOperations++;
+        if (pendingOperations == maxPendingOperations) {
+            commitExecutor.execute(this::backgroundFlush);
+        }
+    }
+
+    //формат следующих снимков; журнал всегда пишется строками CSV
+    public synchronized void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = Objects.requireNonNull(snapshotFormat);
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    //уровень сжатия следующих снимков (Deflater): 0 - без сжатия, 1 - быстрее всего, 9 - сильнее всего;
+    //в режиме MAPPED не действует
+    public synchronized void setSnapshotCompression(int level) {
+        SnapshotCompression.checkLevel(level);
+        this.snapshotCompression = level;
+    }
+
+    public int getSnapshotCompression() {
+        return snapshotCompression;
+    }
+
+    //переписывает снимок source в формате targetFormat в файл target; формат source определяется по заголовку
+    public static void convertSnapshot(File source, File target, SnapshotFormat targetFormat) {
+        FileBackedTasksManager converter = new FileBackedTasksManager(source);
+        converter.loadSnapshot(true);
+        for (Epic epic : converter.epicStorage.values()) {
+            converter.recalculateEpic(epic);
+        }
+        converter.snapshotFormat = targetFormat;
+        converter.writeSnapshot(target);
+    }
+
+    private boolean isJournaled() {
+        return persistenceMode == PersistenceMode.JOURNAL;
+    }
+
+    private boolean isMapped() {
+        return persistenceMode == PersistenceMode.MAPPED;
+    }
+
+    //эпики, у которых меняются подзадачи при сохранении tasks: прежний (до изменения) и новый эпик каждой подзадачи
+    private long[] epicIdsOf(Collection<? extends Task> tasks) {
+        LongOrderedSet epicIds = new LongOrderedSet();
+        for (Task task : tasks) {
+            if (task != null && task.getTaskType() == TaskType.SUBTASK) {
+                Subtask storedSubtask = subStorage.get(task.getId());
+                if (storedSubtask != null) {
+                    epicIds.add(storedSubtask.getEpicId());
+                }
+                epicIds.add(((Subtask) task).getEpicId());
+            }
+        }
+        return epicIds.toArray();
+    }
+
+    private long[] epicIdsOfSubtasks(long[] subtaskIds) { //эпики, у которых удалятся подзадачи subtaskIds
+        LongOrderedSet epicIds = new LongOrderedSet();
+        for (long subtaskId : subtaskIds) {
+            Subtask subtask = subStorage.get(subtaskId);
+            if (subtask != null) {
+                epicIds.add(subtask.getEpicId());
+            }
+        }
+        return epicIds.toArray();
+    }
+
+    private long[] subtaskIdsOf(long[] epicIds) { //подзадачи, которые удалятся вместе с эпиками
+        List<long[]> subtaskIds = new ArrayList<>(epicIds.length);
+        int count = 0;
+        for (long epicId : epicIds) {
+            Epic epic = epicStorage.get(epicId);
+            if (epic != null) {
+                subtaskIds.add(epic.getSubtaskIdSet().toArray());
+                count += subtaskIds.get(subtaskIds.size() - 1).length;
+            }
+        }
+        long[] result = new long[count];
+        int position = 0;
+        for (long[] epicSubtaskIds : subtaskIds) {
+            System.arraycopy(epicSubtaskIds, 0, result, position, epicSubtaskIds.length);
+            position += epicSubtaskIds.length;
+        }
+        return result;
+    }
+
+    //применяет изменение к хранилищу MAPPED; первое изменение нового менеджера записывает хранилище целиком,
+    //как и переполненная мусором куча
+    private void writeToStore(StoreChange change) {
+        if (mappedStore == null) {
+            save();
+            return;
+        }
+        try {
+            change.applyTo(mappedStore);
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время записи в хранилище!", exception);
+        }
+        if (mappedStore.needsCompaction()) {
+            save();
+        } else if (commitExecutor != null) {
+            deferCommit();//ячейки уже в отображённой памяти, на диск их сбросит force() при фиксации
+        }
+    }
+
+    private void saveUpsert(Task task, long[] changedEpicIds) {
+        saveUpserts(task == null ? List.of() : List.of(task), changedEpicIds);
+    }
+
+    //Сохраняет созданные или обновлённые задачи. Этот и следующие save-методы вызываются после изменения
+    //в памяти; HttpTaskManager переопределяет их, чтобы отправлять на KV-сервер только изменённые задачи.
+    //changedEpicIds - эпики, у которых изменились подзадачи. Файл хранит подзадачи, а статус, время и список
+    //подзадач эпика пересчитываются при загрузке, поэтому здесь эпики не переписываются:
+    protected void saveUpserts(Collection<? extends Task> tasks, long[] changedEpicIds) {
+        if (isMapped()) {
+            if (!tasks.isEmpty()) {
+                writeToStore(store -> {
+                    for (Task task : tasks) {
+                        store.put(task);
+                    }
+                });
+            }
+        } else if (!isJournaled()) {
+            saveSnapshot();
+        } else if (!tasks.isEmpty()) {
+            List<String> records = new ArrayList<>(tasks.size());
+            for (Task task : tasks) {
+                records.add("+" + toString(task));
+            }
+            appendToJournal(records);
+        }
+    }
+
+    private void saveView(Task task) {
+        if (task == null) {
+            return;//история не изменилась
+        }
+        if (isMapped()) {
+            writeToStore(store -> store.markViewed(task.getId()));
+        } else if (isJournaled()) {
+            appendToJournal(List.of("v" + task.getId()));
+        } else if (commitExecutor != null) {
+            deferCommit();//история уйдёт на диск вместе с ближайшим сохранением
+        } else {
+            saveHistory(task);
+        }
+    }
+
+    //Сохраняет только изменение истории после просмотра задачи, не переписывая задачи.
+    //В режиме SNAPSHOT просмотр дописывается в журнал, как в режиме JOURNAL; журнал удаляется при следующем save().
+    protected void saveHistory(Task viewedTask) {
+        appendToJournal(List.of("v" + viewedTask.getId()));
+    }
+
+    //сохраняет удаление всех задач типа taskType (с эпиками удаляются и все подзадачи)
+    protected void saveDeletion(TaskType taskType) {
+        if (isMapped()) {
+            writeToStore(store -> {
+                if (taskType == TaskType.EPIC) {
+                    store.removeAll(TaskType.SUBTASK);//подзадачи удаляются вместе с эпиками
+                }
+                store.removeAll(taskType);
+            });
+        } else if (!isJournaled()) {
+            saveSnapshot();
+        } else {
+            appendToJournal(List.of("-" + taskType));
+        }
+    }
+
+    //сохраняет удаление задач ids типа taskType; removedSubtaskIds - подзадачи, удалённые вместе с эпиками,
+    //changedEpicIds - эпики удалённых подзадач (как в saveUpserts, в файле не переписываются)
+    protected void saveDeletions(TaskType taskType, long[] ids, long[] removedSubtaskIds, long[] changedEpicIds) {
+        if (isMapped()) {
+            writeToStore(store -> {
+                for (long id : ids) {
+                    store.remove(id);
+                }
+                for (long subtaskId : removedSubtaskIds) {
+                    store.remove(subtaskId);
+                }
+            });
+        } else if (!isJournaled()) {
+            saveSnapshot();
+        } else {
+            List<String> records = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                records.add("-" + taskType + "," + id);//подзадачи эпика удаляет сама запись эпика
+            }
+            appendToJournal(records);
+        }
+    }
+
+    //дописывает записи в журнал; изменения уже применены в памяти, поэтому вместо записи можно сделать снимок
+    private void appendToJournal(List<String> records) {
+        if (!journalContinuesSnapshot || journalRecords + records.size() >= checkpointInterval) {
+            save();//первая запись нового менеджера или пора делать снимок
+            return;
+        }
+        try {
+            if (journalWriter == null) {
+                journalWriter = new BufferedWriter(new FileWriter(journalFile(file), StandardCharsets.UTF_8, true));
+            }
+            for (String record : records) {
+                journalWriter.write(record);
+                journalWriter.write('\n');
+            }
+            journalRecords += records.size();
+            if (commitExecutor == null) {
+                journalWriter.flush();
+            } else {
+                deferCommit();
+            }
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время записи в журнал!", exception);
+        }
+    }
+
+    private void deleteJournal() {
+        try {
+            if (journalWriter != null) {
+                journalWriter.close();
+                journalWriter = null;
+            }
+            Files.deleteIfExists(journalFile(file).toPath());
+            journalRecords = 0;
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время удаления журнала!", exception);
+        }
+    }
+
+    private static File journalFile(File file) {
+        return new File(file.getPath() + ".journal");
+    }
+
     private String toString(Task task) { //создаёт строку из задачи
         String taskStartTime;
         String taskEndTime;
@@ -204,39 +938,7 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     }
 
     private Task fromString(String value) { //создаёт задачу из строки
-        String[] taskFields = value.split(",");
-        long id = Long.parseLong(taskFields[0]);
-        TaskType taskType = TaskType.valueOf(taskFields[1]);
-        String header = taskFields[2];
-        CurrentStatus status = CurrentStatus.valueOf(taskFields[3]);
-        String description = taskFields[4];
-        LocalDateTime startTime;
-        LocalDateTime endTime;
-        if (taskFields[5].equals("null")) {
-            startTime = null;
-            endTime = null;
-        } else {
-            startTime = LocalDateTime.parse(taskFields[5]);
-            endTime = LocalDateTime.parse(taskFields[6]);
-        }
-        Duration durationInMinutes = Duration.parse(taskFields[7]);
-        if (taskType == TaskType.SUBTASK) {
-            long epicId = Long.parseLong(taskFields[8]);
-            return new Subtask(id, header, status, description, startTime, durationInMinutes, epicId);
-        }
-        if (taskType == TaskType.EPIC) {
-            return new Epic(id, header, status, description, startTime, endTime, durationInMinutes);
-        }
-        return new Task(id, header, status, description, startTime, durationInMinutes);
-    }
-
-    private static List<Long> historyFromString(String value) { //восстановление истории просмотров из строки
-        String[] historyTaskIds = value.split(",");
-        List<Long> restoredHistory = new ArrayList<>();
-        for (String taskId : historyTaskIds) {
-            restoredHistory.add(Long.parseLong(taskId));
-        }
-        return restoredHistory;
+        return CsvSnapshotParser.parseTask(value);
     }
 
     public static void main(String[] args) {
@@ -298,4 +1000,108 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         System.out.println(restoredFileBackedTasksManager.getHistory());
         System.out.println("________________________________");
     }
+
+    private interface StoreChange {
+        void applyTo(MappedTaskStore store) throws IOException;
+    }
+
+    //задачи, уже упорядоченные по START_TIME_ORDER: TreeSet.addAll строит из SortedSet дерево за O(n)
+    //вместо n вставок по O(log n)
+    private static class SortedTasks extends AbstractSet<Task> implements SortedSet<Task> {
+        private final Task[] tasks;
+        private final int from;//задачи множества - tasks[from, to)
+        private final int to;
+
+        private SortedTasks(Task[] tasks, int from, int to) {
+            this.tasks = tasks;
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        //сортирует первые size задач и убирает задачи с тем же временем начала: из них, как при add в TreeSet,
+        //остаётся первая по порядку снимка
+        static SortedTasks of(Task[] tasks, int size) {
+            Arrays.parallelSort(tasks, 0, size, START_TIME_ORDER);//сортировка устойчивая
+            int uniqueSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (uniqueSize == 0 || START_TIME_ORDER.compare(tasks[uniqueSize - 1], tasks[i]) != 0) {
+                    tasks[uniqueSize++] = tasks[i];
+                }
+            }
+            return new SortedTasks(tasks, 0, uniqueSize);
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return Arrays.asList(tasks).subList(from, to).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Task)) {
+                return false;
+            }
+            int index = indexOf((Task) o);
+            return index < to && START_TIME_ORDER.compare(tasks[index], (Task) o) == 0;
+        }
+
+        @Override
+        public Comparator<? super Task> comparator() {
+            return START_TIME_ORDER;
+        }
+
+        @Override
+        public Task first() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return tasks[from];
+        }
+
+        @Override
+        public Task last() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return tasks[to - 1];
+        }
+
+        @Override
+        public SortedSet<Task> subSet(Task fromElement, Task toElement) {
+            if (START_TIME_ORDER.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("Начало диапазона больше его конца");
+            }
+            return new SortedTasks(tasks, indexOf(fromElement), indexOf(toElement));
+        }
+
+        @Override
+        public SortedSet<Task> headSet(Task toElement) {
+            return new SortedTasks(tasks, from, indexOf(toElement));
+        }
+
+        @Override
+        public SortedSet<Task> tailSet(Task fromElement) {
+            return new SortedTasks(tasks, indexOf(fromElement), to);
+        }
+
+        //индекс первой задачи в [from, to), не меньшей task по START_TIME_ORDER; to, если такой нет
+        private int indexOf(Task task) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (START_TIME_ORDER.compare(tasks[middle], task) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package managers;
 
 import tasks.Task;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface HistoryManager {
@@ -9,4 +10,5 @@ public interface HistoryManager {
     void add(Task task); //помечает задачи как просмотренные
     void remove(long id); //удаление задачи из истории просмотра
     List<Task> getHistory(); //возвращает список просмотренных задач
+    Collection<Task> getHistoryView(); //живое представление истории только для чтения, без копирования
 }
@@ -2,93 +2,490 @@ package managers;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import enums.Durability;
+import enums.TaskType;
+import exceptions.ManagerSaveException;
 import network.KVTaskClient;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
+import utils.LongOrderedSet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
 
+//Каждая задача хранится на KV-сервере под своим ключом <тип>:<id> (task:1, epic:2, subtask:3), история -
+//под ключом history списком id и типов. Изменение отправляет только изменённые задачи: обновление - один PUT
+//задачи, удаление - DELETE её ключа и PUT истории. Изменение подзадачи переотправляет и её эпик (прежний и новый
+//при переносе): статус, время и список подзадач эпика на сервере остаются актуальными. При загрузке они всё равно
+//пересчитываются по подзадачам.
+//Прежний формат - хранилища целиком под ключами tasks, epics и subtasks - читается и переводится в новый.
+//Сохранение и загрузка многих задач идут пакетами по BATCH_SIZE ключей на запрос (/mset и /mget KV-сервера).
+//Запросы одного изменения отправляются параллельно; при Durability.ASYNC изменение не ждёт ответов сервера,
+//их дожидается и проверяет flush(). При групповой фиксации (startGroupCommit) изменения не отправляются сразу:
+//копятся изменённые ключи, и фиксация отправляет их последние значения вместе с историей.
 public class HttpTaskManager extends FileBackedTasksManager {
+    private static final Map<TaskType, String> KEY_PREFIXES = Map.of(TaskType.TASK, "task:", TaskType.EPIC, "epic:",
+            TaskType.SUBTASK, "subtask:");
+    private static final List<String> LEGACY_KEYS = List.of("tasks", "epics", "subtasks");
     private final KVTaskClient kvTaskClient;
+    private static final Type TASK_LIST_TYPE = new TypeToken<List<Task>>(){}.getType();
+    private static final Type EPIC_LIST_TYPE = new TypeToken<List<Epic>>(){}.getType();
+    private static final Type SUBTASK_LIST_TYPE = new TypeToken<List<Subtask>>(){}.getType();
+    private static final Type HISTORY_TYPE = new TypeToken<List<HistoryEntry>>(){}.getType();
+    private static final int UNACKNOWLEDGED_CHECK_THRESHOLD = 1024;
+    private static final int BATCH_SIZE = 1000;
     private final Gson gson;
+    private boolean kvContinuesMemory;//на KV-сервере то же состояние, что в памяти: можно отправлять изменения
+    private Durability durability = Durability.ACKNOWLEDGED;
+    private final List<CompletableFuture<?>> unacknowledged = new ArrayList<>();//запросы в режиме ASYNC
+    private RuntimeException asyncFailure;//первая ошибка запроса в режиме ASYNC, её бросит flush()
+    //ключ -> задача для PUT или null для DELETE (ключ или "префикс*"), в порядке изменений; копится
+    //при групповой фиксации, значения сериализуются при её выполнении
+    private final Map<String, Task> pendingChanges = new LinkedHashMap<>();
 
     public HttpTaskManager(String urlOfKVServer) {
+        this(urlOfKVServer, KVTaskClient.DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    public HttpTaskManager(String urlOfKVServer, int maxInFlightRequests) {
         super(null);
-        this.kvTaskClient = new KVTaskClient(urlOfKVServer);
+        this.kvTaskClient = new KVTaskClient(urlOfKVServer, maxInFlightRequests);
         this.gson = Managers.getGson();
     }
 
     @Override
-    public void save() {
-        if (taskStorage.isEmpty()) {
-            kvTaskClient.put("tasks", gson.toJson(new ArrayList<>()));
+    public synchronized void save() {
+        //ключи прежнего состояния удаляются целиком, затем каждая задача отправляется под своим ключом;
+        //удаление по префиксу клиент выполнит раньше следующих за ним PUT
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        for (String keyPrefix : KEY_PREFIXES.values()) {
+            requests.add(kvTaskClient.deleteAsync(keyPrefix + "*"));
         }
-        kvTaskClient.put("tasks", gson.toJson(taskStorage));
+        putTasks(taskStorage.values(), requests);
+        putTasks(epicStorage.values(), requests);
+        putTasks(subStorage.values(), requests);
+        requests.add(putHistory());
+        for (String legacyKey : LEGACY_KEYS) {
+            requests.add(kvTaskClient.deleteAsync(legacyKey));
+        }
+        pendingChanges.clear();//отправлено всё состояние
+        kvContinuesMemory = true;
+        complete(requests);
+    }
 
-        if (epicStorage.isEmpty()) {
-            kvTaskClient.put("epics", gson.toJson(new ArrayList<>()));
+    @Override
+    protected void saveUpserts(Collection<? extends Task> tasks, long[] changedEpicIds) {
+        List<Task> changedTasks = new ArrayList<>(tasks);
+        changedTasks.addAll(storedEpics(changedEpicIds));
+        if (isGroupCommitStarted()) {
+            for (Task task : changedTasks) {
+                deferPut(task);
+            }
+            deferCommit();
+            return;
+        }
+        if (!kvContinuesMemory) {
+            save();//первое изменение нового менеджера: на сервере могут быть задачи другого состояния
+            return;
         }
-        kvTaskClient.put("epics", gson.toJson(epicStorage));
+        if (changedTasks.size() == 1) {
+            complete(List.of(putTask(changedTasks.get(0))));//одна задача - обычный PUT без обёртки в пакет
+            return;
+        }
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        putTasks(changedTasks, requests);
+        complete(requests);
+    }
 
-        if (subStorage.isEmpty()) {
-            kvTaskClient.put("subtasks", gson.toJson(new ArrayList<>()));
+    @Override
+    protected void saveDeletion(TaskType taskType) {
+        if (isGroupCommitStarted()) {
+            if (taskType == TaskType.EPIC) {
+                deferDelete(KEY_PREFIXES.get(TaskType.SUBTASK) + "*");
+            }
+            deferDelete(KEY_PREFIXES.get(taskType) + "*");
+            if (taskType == TaskType.SUBTASK) {
+                epicStorage.values().forEach(this::deferPut);
+            }
+            deferCommit();
+            return;
+        }
+        if (!kvContinuesMemory) {
+            save();
+            return;
+        }
+        List<CompletableFuture<?>> requests = new ArrayList<>(3);
+        if (taskType == TaskType.EPIC) {
+            requests.add(kvTaskClient.deleteAsync(KEY_PREFIXES.get(TaskType.SUBTASK) + "*"));//вместе с эпиками
         }
-        kvTaskClient.put("subtasks", gson.toJson(subStorage));
+        requests.add(kvTaskClient.deleteAsync(KEY_PREFIXES.get(taskType) + "*"));
+        if (taskType == TaskType.SUBTASK) {
+            putTasks(epicStorage.values(), requests);//все эпики остались без подзадач
+        }
+        requests.add(putHistory());
+        complete(requests);
+    }
 
-        if (historyManager.getHistory().isEmpty()) {
-            kvTaskClient.put("history", gson.toJson(new ArrayList<>()));
+    @Override
+    protected void saveDeletions(TaskType taskType, long[] ids, long[] removedSubtaskIds, long[] changedEpicIds) {
+        if (isGroupCommitStarted()) {
+            for (long id : ids) {
+                deferDelete(KEY_PREFIXES.get(taskType) + id);
+            }
+            for (long subtaskId : removedSubtaskIds) {
+                deferDelete(KEY_PREFIXES.get(TaskType.SUBTASK) + subtaskId);
+            }
+            storedEpics(changedEpicIds).forEach(this::deferPut);
+            deferCommit();
+            return;
+        }
+        if (!kvContinuesMemory) {
+            save();
+            return;
+        }
+        List<CompletableFuture<?>> requests = new ArrayList<>(ids.length + removedSubtaskIds.length + 2);
+        for (long id : ids) {
+            requests.add(kvTaskClient.deleteAsync(KEY_PREFIXES.get(taskType) + id));
         }
-        kvTaskClient.put("history", gson.toJson(historyManager.getHistory()));
+        for (long subtaskId : removedSubtaskIds) {
+            requests.add(kvTaskClient.deleteAsync(KEY_PREFIXES.get(TaskType.SUBTASK) + subtaskId));
+        }
+        putTasks(storedEpics(changedEpicIds), requests);
+        requests.add(putHistory());
+        complete(requests);
     }
 
-    public void loadFromKVServer() {
-        long idCorrector = 0;
-        String jsonResponse = kvTaskClient.load("tasks");
-        if (!jsonResponse.equals("[]")) {
-            taskStorage = gson.fromJson(jsonResponse, new TypeToken<HashMap<Long, Task>>(){}.getType());
-            for (Map.Entry<Long, Task> taskEntry : taskStorage.entrySet()) {
-                prioritizedTasks.add(taskEntry.getValue());
-                if (taskEntry.getValue().getId() > idCorrector) {
-                    idCorrector = taskEntry.getValue().getId();
-                }
+    @Override
+    protected void saveHistory(Task viewedTask) {
+        complete(List.of(putHistory()));//просмотр меняет только историю - остальные ключи не переписываются
+    }
+
+    //Отправляет изменения, накопленные групповой фиксацией: сначала DELETE, затем PUT пакетами и история -
+    //просмотры при групповой фиксации не отмечаются, поэтому история отправляется при каждой фиксации.
+    //Если отправка не удалась, следующая фиксация отправит состояние целиком:
+    @Override
+    protected void commitPending() {
+        if (!kvContinuesMemory) {
+            save();
+            return;
+        }
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        List<Task> changedTasks = new ArrayList<>();
+        for (Map.Entry<String, Task> change : pendingChanges.entrySet()) {
+            if (change.getValue() == null) {
+                requests.add(kvTaskClient.deleteAsync(change.getKey()));
+            } else {
+                changedTasks.add(change.getValue());
             }
         }
-        jsonResponse = kvTaskClient.load("epics");
-        if (!jsonResponse.equals("[]")) {
-            epicStorage = gson.fromJson(jsonResponse, new TypeToken<HashMap<Long, Epic>>(){}.getType());
-            for (Map.Entry<Long, Epic> epicEntry : epicStorage.entrySet()) {
-                if (epicEntry.getValue().getId() > idCorrector) {
-                    idCorrector = epicEntry.getValue().getId();
-                }
+        pendingChanges.clear();
+        try {
+            putTasks(changedTasks, requests);
+            requests.add(putHistory());
+            complete(requests);
+        } catch (RuntimeException exception) {
+            kvContinuesMemory = false;
+            throw new ManagerSaveException("KV-сервер не принял накопленные изменения!", exception);
+        }
+    }
+
+    private void deferPut(Task task) {
+        String key = keyOf(task);
+        pendingChanges.remove(key);//перемещается в конец: порядок изменений сохраняется
+        pendingChanges.put(key, task);
+    }
+
+    //key - ключ или "префикс*"; DELETE по префиксу заменяет накопленные изменения ключей с этим префиксом
+    private void deferDelete(String key) {
+        if (key.endsWith("*")) {
+            String prefix = key.substring(0, key.length() - 1);
+            pendingChanges.keySet().removeIf(pendingKey -> pendingKey.startsWith(prefix));
+        }
+        pendingChanges.remove(key);
+        pendingChanges.put(key, null);
+    }
+
+    //уровень подтверждения следующих изменений; при переходе на ACKNOWLEDGED дожидается ответов на прежние
+    public synchronized void setDurability(Durability durability) {
+        this.durability = Objects.requireNonNull(durability);
+        if (durability == Durability.ACKNOWLEDGED) {
+            flush();
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    //дожидается ответов KV-сервера на все отправленные запросы; ошибка хотя бы одного из них бросается здесь
+    @Override
+    public synchronized void flush() {
+        super.flush();
+        try {
+            CompletableFuture.allOf(unacknowledged.toArray(new CompletableFuture<?>[0]))
+                    .handle((result, error) -> null)
+                    .join();
+            collectAcknowledged();
+        } finally {
+            unacknowledged.clear();
+        }
+        if (asyncFailure != null) {
+            RuntimeException failure = asyncFailure;
+            asyncFailure = null;
+            kvContinuesMemory = false;//состояние сервера неизвестно: следующее изменение отправит его целиком
+            throw new ManagerSaveException("KV-сервер не подтвердил часть изменений!", failure);
+        }
+    }
+
+    //в режиме ACKNOWLEDGED ждёт ответов на запросы изменения, в режиме ASYNC оставляет их для flush()
+    private void complete(List<CompletableFuture<?>> requests) {
+        if (durability == Durability.ACKNOWLEDGED) {
+            for (CompletableFuture<?> request : requests) {
+                KVTaskClient.await(request);
             }
+            return;
+        }
+        unacknowledged.addAll(requests);
+        if (unacknowledged.size() >= UNACKNOWLEDGED_CHECK_THRESHOLD) {
+            collectAcknowledged();//список не растёт: завершившиеся запросы убираются, их ошибки запоминаются
         }
-        jsonResponse = kvTaskClient.load("subtasks");
-        if (!jsonResponse.equals("[]")) {
-            subStorage = gson.fromJson(jsonResponse, new TypeToken<HashMap<Long, Subtask>>(){}.getType());
-            for (Map.Entry<Long, Subtask> subtaskEntry : subStorage.entrySet()) {
-                prioritizedTasks.add(subtaskEntry.getValue());
-                if (subtaskEntry.getValue().getId() > idCorrector) {
-                    idCorrector = subtaskEntry.getValue().getId();
+    }
+
+    private void collectAcknowledged() {
+        Iterator<CompletableFuture<?>> iterator = unacknowledged.iterator();
+        while (iterator.hasNext()) {
+            CompletableFuture<?> request = iterator.next();
+            if (!request.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            if (request.isCompletedExceptionally() && asyncFailure == null) {
+                try {
+                    KVTaskClient.await(request);
+                } catch (RuntimeException exception) {
+                    asyncFailure = exception;
                 }
             }
         }
-        jsonResponse = kvTaskClient.load("history");
-        if (!jsonResponse.equals("[]")) {
-            List<Task> tasks = gson.fromJson(jsonResponse, new TypeToken<ArrayList<Task>>(){}.getType());
-            for (Task task : tasks) {
-                switch (task.getTaskType()) {
-                    case EPIC:
-                        historyManager.add(epicStorage.get(task.getId()));
-                        break;
-                    case SUBTASK:
-                        historyManager.add(subStorage.get(task.getId()));
-                        break;
-                    default:
-                        historyManager.add(taskStorage.get(task.getId()));
+    }
+
+    private CompletableFuture<Void> putTask(Task task) {
+        return putJson(keyOf(task), task, task.getClass());
+    }
+
+    private void putTasks(Collection<? extends Task> tasks, List<CompletableFuture<?>> requests) {
+        Map<String, String> batch = new HashMap<>();
+        for (Task task : tasks) {
+            batch.put(keyOf(task), toValue(task, task.getClass()));
+            if (batch.size() == BATCH_SIZE) {
+                requests.add(kvTaskClient.putAllAsync(batch));
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            requests.add(kvTaskClient.putAllAsync(batch));
+        }
+    }
+
+    private List<Epic> storedEpics(long[] epicIds) {
+        List<Epic> epics = new ArrayList<>(epicIds.length);
+        for (long epicId : epicIds) {
+            Epic epic = epicStorage.get(epicId);
+            if (epic != null) {
+                epics.add(epic);
+            }
+        }
+        return epics;
+    }
+
+    private static String keyOf(Task task) {
+        return KEY_PREFIXES.get(task.getTaskType()) + task.getId();
+    }
+
+    private CompletableFuture<Void> putHistory() {
+        //для восстановления истории из задачи нужны только id и тип
+        List<HistoryEntry> history = new ArrayList<>(historyManager.getHistoryView().size());
+        for (Task task : historyManager.getHistoryView()) {
+            history.add(new HistoryEntry(task.getTaskType(), task.getId()));
+        }
+        return putJson("history", history, HISTORY_TYPE);
+    }
+
+    private CompletableFuture<Void> putJson(String key, Object value, Type type) {
+        return kvTaskClient.putAsync(key, toValue(value, type));
+    }
+
+    //при включённом сжатии JSON пишется сразу в gzip, а сжатые байты - в Base64: KV-сервер хранит строки
+    private String toValue(Object value, Type type) {
+        if (getSnapshotCompression() == Deflater.NO_COMPRESSION) {
+            return gson.toJson(value, type);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(SnapshotCompression.compress(Base64.getEncoder().wrap(body),
+                getSnapshotCompression()), StandardCharsets.UTF_8)) {
+            gson.toJson(value, type, writer);
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время сжатия снимка!", exception);
+        }
+        return body.toString(StandardCharsets.US_ASCII);
+    }
+
+    private JsonReader loadJson(String key) {
+        return toJsonReader(kvTaskClient.load(key));
+    }
+
+    //значение ключа для разбора потоком; сжатое значение распаковывается по мере чтения
+    private JsonReader toJsonReader(String value) {
+        if (!SnapshotCompression.isCompressed(value)) {
+            return new JsonReader(new StringReader(value));
+        }
+        if (getSnapshotCompression() == Deflater.NO_COMPRESSION) {
+            setSnapshotCompression(SnapshotCompression.DEFAULT_LEVEL);//сохраняет так же сжатым
+        }
+        InputStream compressed = Base64.getDecoder().wrap(new ByteArrayInputStream(
+                value.getBytes(StandardCharsets.US_ASCII)));
+        try {
+            return new JsonReader(new InputStreamReader(SnapshotCompression.decompress(compressed),
+                    StandardCharsets.UTF_8));
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время распаковки снимка!", exception);
+        }
+    }
+
+    public synchronized void loadFromKVServer() {
+        Map<TaskType, List<String>> keys = new EnumMap<>(TaskType.class);
+        for (TaskType taskType : TaskType.values()) {
+            keys.put(taskType, new ArrayList<>());
+        }
+        boolean isLegacy = false;
+        boolean hasHistory = false;
+        for (String key : kvTaskClient.keys("")) {
+            for (Map.Entry<TaskType, String> keyPrefix : KEY_PREFIXES.entrySet()) {
+                if (key.startsWith(keyPrefix.getValue())) {
+                    keys.get(keyPrefix.getKey()).add(key);
                 }
             }
+            isLegacy |= key.equals("tasks");
+            hasHistory |= key.equals("history");
+        }
+        isLegacy &= keys.values().stream().allMatch(List::isEmpty);
+        List<Task> tasks;
+        List<Epic> epics;
+        List<Subtask> subtasks;
+        if (isLegacy) {
+            tasks = fromStorageJson(loadJson("tasks"), TASK_LIST_TYPE, new TypeToken<HashMap<Long, Task>>(){}.getType());
+            epics = fromStorageJson(loadJson("epics"), EPIC_LIST_TYPE, new TypeToken<HashMap<Long, Epic>>(){}.getType());
+            subtasks = fromStorageJson(loadJson("subtasks"), SUBTASK_LIST_TYPE,
+                    new TypeToken<HashMap<Long, Subtask>>(){}.getType());
+        } else {
+            tasks = loadTasks(keys.get(TaskType.TASK), Task.class);
+            epics = loadTasks(keys.get(TaskType.EPIC), Epic.class);
+            subtasks = loadTasks(keys.get(TaskType.SUBTASK), Subtask.class);
+            for (Epic epic : epics) {
+                epic.setSubtaskIdSet(new LongOrderedSet());//список эпика мог устареть - собирается из подзадач
+            }
+        }
+        //хранилища хранят задачи в порядке добавления - как у менеджера, создававшего их, в порядке id
+        tasks.sort(Comparator.comparingLong(Task::getId));
+        epics.sort(Comparator.comparingLong(Epic::getId));
+        subtasks.sort(Comparator.comparingLong(Subtask::getId));
+        long idCorrector = 0;
+        for (Task task : tasks) {
+            taskStorage.put(task.getId(), task);
+            prioritizedTasks.add(task);
+            if (task.getId() > idCorrector) {
+                idCorrector = task.getId();
+            }
+        }
+        for (Epic epic : epics) {
+            epicStorage.put(epic.getId(), epic);
+            if (epic.getId() > idCorrector) {
+                idCorrector = epic.getId();
+            }
+        }
+        for (Subtask subtask : subtasks) {
+            subStorage.put(subtask.getId(), subtask);
+            prioritizedTasks.add(subtask);
+            epicStorage.get(subtask.getEpicId()).addIdSubtaskIdList(subtask.getId());//в прежнем формате id уже есть
+            if (subtask.getId() > idCorrector) {
+                idCorrector = subtask.getId();
+            }
+        }
+        for (Epic epic : epicStorage.values()) {
+            recalculateEpic(epic);
+        }
+        List<Task> history = hasHistory
+                ? gson.fromJson(loadJson("history"), new TypeToken<ArrayList<Task>>(){}.getType()) : List.of();
+        for (Task task : history) {
+            switch (task.getTaskType()) {
+                case EPIC:
+                    historyManager.add(epicStorage.get(task.getId()));
+                    break;
+                case SUBTASK:
+                    historyManager.add(subStorage.get(task.getId()));
+                    break;
+                default:
+                    historyManager.add(taskStorage.get(task.getId()));
+            }
         }
         id = idCorrector;
+        version++;
+        if (isLegacy) {
+            save();//перевод в формат с ключом на каждую задачу
+        }
+        kvContinuesMemory = true;
+    }
+
+    //все пакеты запрашиваются сразу, клиент держит в полёте не больше своего окна запросов
+    private <T extends Task> List<T> loadTasks(List<String> keys, Class<T> taskClass) {
+        List<CompletableFuture<Map<String, String>>> batches = new ArrayList<>(keys.size() / BATCH_SIZE + 1);
+        for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+            batches.add(kvTaskClient.loadAllAsync(keys.subList(from, Math.min(from + BATCH_SIZE, keys.size()))));
+        }
+        List<T> tasks = new ArrayList<>(keys.size());
+        for (CompletableFuture<Map<String, String>> batch : batches) {
+            for (String value : KVTaskClient.await(batch).values()) {
+                tasks.add(gson.fromJson(toJsonReader(value), taskClass));
+            }
+        }
+        return tasks;
+    }
+
+    //читает хранилище как JSON-массив; JSON-объект вида {id: задача} - прежний формат, сохранённый до перехода на массив
+    private <T extends Task> List<T> fromStorageJson(JsonReader json, Type listType, Type legacyMapType) {
+        try {
+            if (json.peek() == JsonToken.BEGIN_OBJECT) {
+                Map<Long, T> storage = gson.fromJson(json, legacyMapType);
+                return new ArrayList<>(storage.values());
+            }
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Произошла ошибка во время чтения снимка!", exception);
+        }
+        return gson.fromJson(json, listType);
+    }
+
+    //элемент истории на KV-сервере; читается как Task, у которого заполнены только тип и id
+    private static class HistoryEntry {
+        private final TaskType taskType;
+        private final long id;
+
+        HistoryEntry(TaskType taskType, long id) {
+            this.taskType = taskType;
+            this.id = id;
+        }
     }
 }
@@ -1,6 +1,7 @@
 package managers;
 
 import tasks.Task;
+import utils.LongHashMap;
 
 import java.util.*;
 
@@ -26,6 +27,11 @@ public class InMemoryHistoryManager implements HistoryManager {
         return history.getTasks();
     }
 
+    @Override
+    public Collection<Task> getHistoryView() {
+        return history.view;
+    }
+
     private class CustomLinkedList {
         private class Node {
             Task task;
@@ -39,9 +45,11 @@ public class InMemoryHistoryManager implements HistoryManager {
             }
         }
 
-        private Map<Long, Node> nodes = new HashMap<>();
+        private LongHashMap<Node> nodes = new LongHashMap<>();
         private Node first;
         private Node last;
+        private int modCount;//число изменений списка, для обнаружения изменений во время обхода представления
+        private final HistoryView view = new HistoryView();
 
         public void linkLast(Task task) { //добавляет задачу в конец списка
             if (nodes.containsKey(task.getId())){
@@ -56,6 +64,7 @@ public class InMemoryHistoryManager implements HistoryManager {
                 l.next = newNode;
             }
             nodes.put(task.getId(), newNode);
+            modCount++;
         }
 
         public List<Task> getTasks() { //собирает все задачи из мапы нод в ArrayList
@@ -95,6 +104,40 @@ public class InMemoryHistoryManager implements HistoryManager {
             }
 
             node.task = null;
+            modCount++;
+        }
+
+        private class HistoryView extends AbstractCollection<Task> { //обход нод от первой к последней без копирования
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private final int expectedModCount = modCount;
+                    private Node next = first;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (modCount != expectedModCount) {
+                            throw new ConcurrentModificationException();
+                        }
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = next.task;
+                        next = next.next;
+                        return task;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return nodes.size();
+            }
         }
     }
 }
@@ -4,37 +4,50 @@ import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
 import enums.CurrentStatus;
+import enums.TaskType;
+import utils.LongHashMap;
+import utils.LongOrderedSet;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.LongPredicate;
 
 public class InMemoryTaskManager implements TaskManager {
+    //порядок задач по времени начала, задачи без времени - в конце по возрастанию id:
+    static final Comparator<Task> START_TIME_ORDER = (task1, task2) -> {
+        if (task1.getStartTime() == null) {
+            if (task2.getStartTime() == null) {
+                return (int) (task1.getId() - task2.getId());
+            }
+            return 1;
+        }
+        if (task2.getStartTime() == null) {
+            return -1;
+        }
+        return task1.getStartTime().compareTo(task2.getStartTime());
+    };
+
     protected long id;//тип long для большего диапазона возможных id
-    protected Map<Long, Task> taskStorage;
-    protected Map<Long, Epic> epicStorage;
-    protected Map<Long, Subtask> subStorage;
+    protected LongHashMap<Task> taskStorage;
+    protected LongHashMap<Epic> epicStorage;
+    protected LongHashMap<Subtask> subStorage;
+    protected LongHashMap<EpicTimeWindow> epicTimeWindows;
     protected HistoryManager historyManager;
-    protected Set<Task> prioritizedTasks;
+    protected NavigableSet<Task> prioritizedTasks;
+    protected boolean epicRollupCheck;//сверка инкрементальных счётчиков и времени эпиков с полным пересчётом
+    protected long version;//номер изменения задач, см. getVersion
+    protected long historyViews;//число получений задач по id, см. getHistoryVersion
 
     public InMemoryTaskManager() {
         this.id = 0;
-        this.taskStorage = new HashMap<>();
-        this.epicStorage = new HashMap<>();
-        this.subStorage = new HashMap<>();
+        this.taskStorage = new LongHashMap<>();
+        this.epicStorage = new LongHashMap<>();
+        this.subStorage = new LongHashMap<>();
+        this.epicTimeWindows = new LongHashMap<>();
         this.historyManager = Managers.getDefaultHistory();
-        this.prioritizedTasks = new TreeSet<>((task1, task2) -> {
-            if (task1.getStartTime() == null) {
-                if (task2.getStartTime() == null) {
-                    return (int) (task1.getId() - task2.getId());
-                }
-                return 1;
-            }
-            if (task2.getStartTime() == null) {
-                return -1;
-            }
-            return task1.getStartTime().compareTo(task2.getStartTime());
-        });
+        this.prioritizedTasks = new TreeSet<>(START_TIME_ORDER);
     }
 
     //Получение списка задач, отсортированных по времени начала:
@@ -43,6 +56,38 @@ public class InMemoryTaskManager implements TaskManager {
         return new ArrayList<>(prioritizedTasks);
     }
 
+    //Получение задач, начинающихся в интервале времени:
+    @Override
+    public Collection<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return Collections.unmodifiableCollection(prioritizedTasksInRange(prioritizedTasks, from, true, to));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksAfter(LocalDateTime cursor, LocalDateTime to, int limit) {
+        return firstTasks(prioritizedTasksInRange(prioritizedTasks, cursor, false, to), limit);
+    }
+
+    //Представления только для чтения поверх хранилищ, без копирования:
+    @Override
+    public Collection<Task> getPrioritizedTasksView() {
+        return Collections.unmodifiableCollection(prioritizedTasks);
+    }
+
+    @Override
+    public Collection<Task> getTaskView() {
+        return Collections.unmodifiableCollection(taskStorage.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicView() {
+        return Collections.unmodifiableCollection(epicStorage.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtaskView() {
+        return Collections.unmodifiableCollection(subStorage.values());
+    }
+
     //Получение списка всех задач:
     @Override
     public List<Task> getTaskList() {
@@ -65,6 +110,7 @@ public class InMemoryTaskManager implements TaskManager {
         Task task = taskStorage.get(id);
         if (task != null) {
             historyManager.add(task);
+            historyViews++;
         }
         return task;
     }
@@ -74,6 +120,7 @@ public class InMemoryTaskManager implements TaskManager {
         Epic epic = epicStorage.get(id);
         if (epic != null) {
             historyManager.add(epic);
+            historyViews++;
         }
         return epic;
     }
@@ -83,6 +130,7 @@ public class InMemoryTaskManager implements TaskManager {
         Subtask subtask = subStorage.get(id);
         if (subtask != null) {
             historyManager.add(subtask);
+            historyViews++;
         }
         return subtask;
     }
@@ -91,10 +139,11 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Task createTask(Task task) {
         if (task != null) {
-            checkTaskTimeCrossing(task);
+            checkTaskTimeCrossing(prioritizedTasks, task);
             task.setId(generateId());
             taskStorage.put(task.getId(), task);
             prioritizedTasks.add(task);
+            version++;
         } else {
             System.out.println("В метод создания задачи был передан null. Задача не создана.");
         }
@@ -106,6 +155,8 @@ public class InMemoryTaskManager implements TaskManager {
         if (epic != null) {
             epic.setId(generateId());
             epicStorage.put(epic.getId(), epic);
+            epicTimeWindows.put(epic.getId(), new EpicTimeWindow());
+            version++;
         } else {
             System.out.println("В метод создания эпика был передан null. Эпик не создан.");
         }
@@ -115,7 +166,7 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Subtask createSubtask(Subtask subtask) {
         if (subtask != null) {
-            checkTaskTimeCrossing(subtask);
+            checkTaskTimeCrossing(prioritizedTasks, subtask);
             if (!epicStorage.containsKey(subtask.getEpicId())) {
                 throw new IllegalArgumentException("Эпика с ID '" + subtask.getEpicId() + "' не существует.");
             }
@@ -124,11 +175,12 @@ public class InMemoryTaskManager implements TaskManager {
             subStorage.put(subtask.getId(), subtask);
             //при создании сабтаска, добавляю его id в список эпика
             epic.addIdSubtaskIdList(subtask.getId());
-            setEpicStatus(epic);
+            changeEpicStatusCounters(epic, null, subtask.getStatus());
             if (subtask.getStartTime() != null) {
-                setEpicTime(epic);
+                changeEpicTime(epic, null, subtask);
             }
             prioritizedTasks.add(subtask);
+            version++;
         } else {
             System.out.println("В метод создания подзадачи был передан null. Подзадача не создана.");
         }
@@ -143,10 +195,11 @@ public class InMemoryTaskManager implements TaskManager {
                 throw new IllegalArgumentException("ID '" + task.getId() + "' нет в списке задач. " +
                         "Обновление невозможно.");
             }
-            checkTaskTimeCrossing(task);
+            checkTaskTimeCrossing(prioritizedTasks, task);
             prioritizedTasks.remove(taskStorage.get(task.getId()));
             taskStorage.put(task.getId(), task);
             prioritizedTasks.add(task);
+            version++;
             System.out.println("Задача с ID '" + task.getId() + "' обновлена.");
         } else {
             System.out.println("В метод обновления задачи был передан null. Задача не обновлена.");
@@ -160,13 +213,15 @@ public class InMemoryTaskManager implements TaskManager {
                 throw new IllegalArgumentException("ID '" + epic.getId() + "' нет в списке эпиков. " +
                         "Обновление невозможно.");
             }
-            List<Long> existingSubtasks = epicStorage.get(epic.getId()).getSubtaskIds();
+            LongOrderedSet existingSubtasks = epicStorage.get(epic.getId()).getSubtaskIdSet();
             if (!existingSubtasks.isEmpty()) {
-                epic.setSubtaskIds(existingSubtasks);
+                epic.setSubtaskIdSet(existingSubtasks);//прежняя версия эпика заменяется, множество не копируется
+                epic.copySubtaskStatusCounters(epicStorage.get(epic.getId()));
                 setEpicStatus(epic);
-                setEpicTime(epic);
+                changeEpicTime(epic, null, null);
             }
             epicStorage.put(epic.getId(), epic);
+            version++;
             System.out.println("Эпик с ID '" + epic.getId() + "' обновлен.");
         } else {
             System.out.println("В метод обновления эпика был передан null. Эпик не обновлен.");
@@ -180,65 +235,92 @@ public class InMemoryTaskManager implements TaskManager {
                 throw new IllegalArgumentException("ID '" + subtask.getId() + "' нет в списке подзадач. " +
                         "Обновление невозможно.");
             }
-            checkTaskTimeCrossing(subtask);
-            prioritizedTasks.remove(subStorage.get(subtask.getId()));
+            Subtask oldSubtask = subStorage.get(subtask.getId());
+            checkSameEpic(oldSubtask, subtask);
+            checkTaskTimeCrossing(prioritizedTasks, subtask);
+            Epic epic = epicStorage.get(subtask.getEpicId());
+            removePrioritized(prioritizedTasks, oldSubtask);
             subStorage.put(subtask.getId(), subtask);
             prioritizedTasks.add(subtask);
-            setEpicStatus(epicStorage.get(subtask.getEpicId()));
-            setEpicTime(epicStorage.get(subtask.getEpicId()));
+            if (oldSubtask == subtask) {//изменён сам сохранённый экземпляр: учтённые статус и время уже потеряны
+                recalculateEpic(epic);
+            } else {
+                changeEpicStatusCounters(epic, oldSubtask.getStatus(), subtask.getStatus());
+                changeEpicTime(epic, oldSubtask, subtask);
+            }
+            version++;
             System.out.println("Подзадача с ID '" + subtask.getId() + "' обновлена.");
         } else {
             System.out.println("В метод обновления подзадачи был передан null. Подзадача не обновлена.");
         }
     }
 
+    //сохранённую задачу могли изменить на месте - тогда по прежнему времени начала её в наборе уже не найти
+    static void removePrioritized(NavigableSet<Task> prioritizedTasks, Task storedTask) {
+        if (!prioritizedTasks.remove(storedTask)) {
+            prioritizedTasks.removeIf(task -> task == storedTask);
+        }
+    }
+
+    //обновление меняет подзадачу в её эпике: счётчики статусов и время эпика сдвигаются на разницу двух версий
+    static void checkSameEpic(Subtask oldSubtask, Subtask subtask) {
+        if (oldSubtask.getEpicId() != subtask.getEpicId()) {
+            throw new IllegalArgumentException("Подзадача с ID '" + subtask.getId() + "' относится к эпику с ID '"
+                    + oldSubtask.getEpicId() + "'. Перенос в другой эпик не поддерживается.");
+        }
+    }
+
     //Удаление всех задач:
     @Override
     public void deleteTasks() {
         if (!taskStorage.isEmpty()) {
-            for (Map.Entry<Long, Task> taskEntry : taskStorage.entrySet()) {
-                historyManager.remove(taskEntry.getKey());
-                prioritizedTasks.remove(taskEntry.getValue());
+            for (Task storedTask : taskStorage.values()) {
+                historyManager.remove(storedTask.getId());
+                prioritizedTasks.remove(storedTask);
             }
         }
         taskStorage.clear();
+        version++;
         System.out.println("Все задачи удалены.");
     }
 
     @Override
     public void deleteEpics() {
         if (!subStorage.isEmpty()) {
-            for (Map.Entry<Long, Subtask> subEntry : subStorage.entrySet()) {
-                historyManager.remove(subEntry.getKey());
-                prioritizedTasks.remove(subEntry.getValue());
+            for (Subtask storedSubtask : subStorage.values()) {
+                historyManager.remove(storedSubtask.getId());
+                prioritizedTasks.remove(storedSubtask);
             }
         }
         if (!epicStorage.isEmpty()) {
-            for (Long epicId : epicStorage.keySet()) {
-                historyManager.remove(epicId);
+            for (Epic storedEpic : epicStorage.values()) {
+                historyManager.remove(storedEpic.getId());
             }
         }
         subStorage.clear();
         epicStorage.clear();
+        epicTimeWindows.clear();
+        version++;
         System.out.println("Все эпики с подзадачами удалены.");
     }
 
     @Override
     public void deleteSubtasks() {
         if (!subStorage.isEmpty()) {
-            for (Map.Entry<Long, Subtask> subEntry : subStorage.entrySet()) {
-                historyManager.remove(subEntry.getKey());
-                prioritizedTasks.remove(subEntry.getValue());
+            for (Subtask storedSubtask : subStorage.values()) {
+                historyManager.remove(storedSubtask.getId());
+                prioritizedTasks.remove(storedSubtask);
             }
         }
         for (Epic epic : epicStorage.values()) {
-            List<Long> subList = epic.getSubtaskIds();
-            subList.clear();
-            epic.setSubtaskIds(subList);
+            epic.getSubtaskIdSet().clear();
+            epic.resetSubtaskStatusCounters();
             setEpicStatus(epic);
-            setEpicTime(epic);
+            epicTimeWindows.put(epic.getId(), new EpicTimeWindow());
+            changeEpicTime(epic, null, null);
         }
         subStorage.clear();
+        version++;
         System.out.println("Все подзадачи удалены.");
     }
 
@@ -251,6 +333,7 @@ public class InMemoryTaskManager implements TaskManager {
         prioritizedTasks.remove(taskStorage.remove(id));
         System.out.println("Задача с ID '" + id + "' удалена.");
         historyManager.remove(id);
+        version++;
     }
 
     @Override
@@ -258,13 +341,15 @@ public class InMemoryTaskManager implements TaskManager {
         if (!epicStorage.containsKey(id)) {
             throw new IllegalArgumentException("Эпик с ID '" + id + "' отсутствует, либо уже был удален.");
         }
-        for (Long idFor : epicStorage.get(id).getSubtaskIds()) {//удаление сабтасков привязанных к эпику
+        for (long idFor : epicStorage.get(id).getSubtaskIdSet().toArray()) {//удаление сабтасков привязанных к эпику
             prioritizedTasks.remove(subStorage.remove(idFor));
             historyManager.remove(idFor);
         }
         epicStorage.remove(id);
+        epicTimeWindows.remove(id);
         System.out.println("Эпик с ID '" + id + "' удален вместе с его подзадачами.");
         historyManager.remove(id);
+        version++;
     }
 
     @Override
@@ -272,13 +357,15 @@ public class InMemoryTaskManager implements TaskManager {
         if (!subStorage.containsKey(id)) {
             throw new IllegalArgumentException("Подзадача с ID '" + id + "' отсутствует, либо уже была удалена.");
         }
-        Epic epic = epicStorage.get(subStorage.get(id).getEpicId());//удаление id сабтаска из списка его эпика
-        epic.getSubtaskIds().remove(id);
-        setEpicStatus(epic);
-        setEpicTime(epic);
+        Subtask subtask = subStorage.get(id);
+        Epic epic = epicStorage.get(subtask.getEpicId());//удаление id сабтаска из списка его эпика
+        epic.getSubtaskIdSet().remove(id);
+        changeEpicStatusCounters(epic, subtask.getStatus(), null);
+        changeEpicTime(epic, subtask, null);
         prioritizedTasks.remove(subStorage.remove(id));
         System.out.println("Подзадача с ID '" + id + "' удалена.");
         historyManager.remove(id);
+        version++;
     }
 
     //Получение списка всех подзадач определённого эпика:
@@ -287,7 +374,7 @@ public class InMemoryTaskManager implements TaskManager {
         List<Subtask> subsByEpicId = new ArrayList<>();
         Epic epic = epicStorage.get(id);
         if (epic != null) {
-            for (Long idFor : epic.getSubtaskIds()) {
+            for (long idFor : epic.getSubtaskIdSet().toArray()) {
                 subsByEpicId.add(subStorage.get(idFor));
             }
         } else {
@@ -296,44 +383,265 @@ public class InMemoryTaskManager implements TaskManager {
         return subsByEpicId;
     }
 
+    //Пакетное создание, обновление и удаление. Счётчики и окна времени эпиков меняются на каждую подзадачу,
+    //а статус и время каждого затронутого эпика пересчитываются один раз в конце пакета:
+    @Override
+    public List<Task> createAll(Collection<? extends Task> tasks) {
+        return createAll(new ArrayList<>(tasks), Collections.emptyMap());
+    }
+
+    @Override
+    public List<Task> createAll(List<? extends Task> tasks, Map<Integer, Integer> epicRefs) {
+        List<Task> batch = new ArrayList<>(tasks);
+        checkBatchCreation(batch, epicRefs, prioritizedTasks, epicStorage::containsKey);
+        LongOrderedSet changedEpics = new LongOrderedSet();
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = resolveEpicRef(batch, i, epicRefs);
+            task.setId(generateId());
+            switch (task.getTaskType()) {
+                case EPIC:
+                    epicStorage.put(task.getId(), (Epic) task);
+                    epicTimeWindows.put(task.getId(), new EpicTimeWindow());
+                    break;
+                case SUBTASK:
+                    Subtask subtask = (Subtask) task;
+                    Epic epic = epicStorage.get(subtask.getEpicId());
+                    subStorage.put(subtask.getId(), subtask);
+                    prioritizedTasks.add(subtask);
+                    epic.addIdSubtaskIdList(subtask.getId());
+                    countSubtaskInEpic(epic, null, subtask);
+                    changedEpics.add(epic.getId());
+                    break;
+                default:
+                    taskStorage.put(task.getId(), task);
+                    prioritizedTasks.add(task);
+            }
+        }
+        finishEpicRollups(changedEpics);
+        version++;
+        System.out.println("Создано задач в пакете: " + batch.size() + ".");
+        return batch;
+    }
+
+    @Override
+    public void updateAll(Collection<? extends Task> tasks) {
+        List<Task> batch = new ArrayList<>(tasks);
+        checkBatchUpdate(batch, prioritizedTasks, this::isStored, epicStorage::containsKey);
+        //сначала из расписания убираются все старые версии: новая версия может занять время другой задачи пакета
+        for (Task task : batch) {
+            if (task.getTaskType() == TaskType.TASK) {
+                prioritizedTasks.remove(taskStorage.get(task.getId()));
+            } else if (task.getTaskType() == TaskType.SUBTASK) {
+                prioritizedTasks.remove(subStorage.get(task.getId()));
+            }
+        }
+        LongOrderedSet changedEpics = new LongOrderedSet();
+        for (Task task : batch) {
+            switch (task.getTaskType()) {
+                case EPIC:
+                    Epic epic = (Epic) task;
+                    Epic existingEpic = epicStorage.get(epic.getId());
+                    //подзадачи, статус и время эпика не берутся из пакета, а пересчитываются в конце
+                    epic.setSubtaskIdSet(existingEpic.getSubtaskIdSet());
+                    epic.copySubtaskStatusCounters(existingEpic);
+                    changedEpics.add(epic.getId());
+                    epicStorage.put(epic.getId(), epic);
+                    break;
+                case SUBTASK:
+                    Subtask subtask = (Subtask) task;
+                    Subtask oldSubtask = subStorage.put(subtask.getId(), subtask);
+                    prioritizedTasks.add(subtask);
+                    Epic oldEpic = epicStorage.get(oldSubtask.getEpicId());
+                    Epic newEpic = epicStorage.get(subtask.getEpicId());
+                    if (oldEpic != newEpic) {//подзадача перенесена в другой эпик
+                        oldEpic.getSubtaskIdSet().remove(subtask.getId());
+                        newEpic.addIdSubtaskIdList(subtask.getId());
+                    }
+                    countSubtaskInEpic(oldEpic, oldSubtask, null);
+                    countSubtaskInEpic(newEpic, null, subtask);
+                    changedEpics.add(oldEpic.getId());
+                    changedEpics.add(newEpic.getId());
+                    break;
+                default:
+                    taskStorage.put(task.getId(), task);
+                    prioritizedTasks.add(task);
+            }
+        }
+        finishEpicRollups(changedEpics);
+        version++;
+        System.out.println("Обновлено задач в пакете: " + batch.size() + ".");
+    }
+
+    @Override
+    public void deleteByIds(TaskType taskType, long[] ids) {
+        LongOrderedSet batch = checkBatchDeletion(taskType, ids, this::isStored);
+        LongOrderedSet changedEpics = new LongOrderedSet();
+        for (long idFor : batch.toArray()) {
+            switch (taskType) {
+                case EPIC:
+                    for (long subtaskId : epicStorage.get(idFor).getSubtaskIdSet().toArray()) {
+                        prioritizedTasks.remove(subStorage.remove(subtaskId));
+                        historyManager.remove(subtaskId);
+                    }
+                    epicStorage.remove(idFor);
+                    epicTimeWindows.remove(idFor);
+                    break;
+                case SUBTASK:
+                    Subtask subtask = subStorage.remove(idFor);
+                    prioritizedTasks.remove(subtask);
+                    Epic epic = epicStorage.get(subtask.getEpicId());
+                    epic.getSubtaskIdSet().remove(idFor);
+                    countSubtaskInEpic(epic, subtask, null);
+                    changedEpics.add(epic.getId());
+                    break;
+                default:
+                    prioritizedTasks.remove(taskStorage.remove(idFor));
+            }
+            historyManager.remove(idFor);
+        }
+        finishEpicRollups(changedEpics);//пуст для пакета эпиков или задач
+        version++;
+        System.out.println("Удалено задач типа " + taskType + " в пакете: " + batch.size() + ".");
+    }
+
+    private boolean isStored(TaskType taskType, long id) {
+        switch (taskType) {
+            case EPIC:
+                return epicStorage.containsKey(id);
+            case SUBTASK:
+                return subStorage.containsKey(id);
+            default:
+                return taskStorage.containsKey(id);
+        }
+    }
+
     //Получение истории просмотров:
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public Collection<Task> getHistoryView() {
+        return Collections.unmodifiableCollection(historyManager.getHistoryView());
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public long getHistoryVersion() {
+        return version + historyViews;//оба слагаемых только растут
+    }
+
     private long generateId() {
         return ++id;
     }
 
-    //Управление статусами эпиков:
+    public void setEpicRollupCheck(boolean epicRollupCheck) {
+        this.epicRollupCheck = epicRollupCheck;
+    }
+
+    //Управление статусами эпиков. Счётчики меняются на разницу одной подзадачи, статус выбирается за O(1):
+    private void changeEpicStatusCounters(Epic epic, CurrentStatus removedStatus, CurrentStatus addedStatus) {
+        if (removedStatus != null) {
+            epic.countSubtaskStatus(removedStatus, -1);
+        }
+        if (addedStatus != null) {
+            epic.countSubtaskStatus(addedStatus, 1);
+        }
+        setEpicStatus(epic);
+    }
+
     private void setEpicStatus(Epic epic) {
-        long newTasks = 0;
-        long doneTasks = 0;
+        epic.setStatus(calculateEpicStatus(epic));
+        if (epicRollupCheck) {
+            checkEpicStatusCounters(epic);
+        }
+    }
+
+    static CurrentStatus calculateEpicStatus(Epic epic) {
+        int subtaskCount = epic.getSubtaskIdSet().size();
+        //если у эпика нет подзадач или все они имеют статус NEW, то статус должен быть NEW
+        if (subtaskCount == 0 || epic.getSubtaskCount(CurrentStatus.NEW) == subtaskCount) {
+            return CurrentStatus.NEW;
+        //если все подзадачи имеют статус DONE, то и эпик считается завершённым — со статусом DONE
+        } else if (epic.getSubtaskCount(CurrentStatus.DONE) == subtaskCount) {
+            return CurrentStatus.DONE;
+        //во всех остальных случаях статус должен быть IN_PROGRESS
+        } else {
+            return CurrentStatus.IN_PROGRESS;
+        }
+    }
+
+    //Подсчёт подзадачи в счётчиках и окне времени эпика без пересчёта его статуса и времени (для пакетов):
+    private void countSubtaskInEpic(Epic epic, Subtask removedSubtask, Subtask addedSubtask) {
+        EpicTimeWindow timeWindow = epicTimeWindows.get(epic.getId());
+        if (removedSubtask != null) {
+            epic.countSubtaskStatus(removedSubtask.getStatus(), -1);
+            timeWindow.remove(removedSubtask);
+        }
+        if (addedSubtask != null) {
+            epic.countSubtaskStatus(addedSubtask.getStatus(), 1);
+            timeWindow.add(addedSubtask);
+        }
+    }
+
+    private void finishEpicRollups(LongOrderedSet epicIds) {
+        for (long epicId : epicIds.toArray()) {
+            Epic epic = epicStorage.get(epicId);
+            if (epic != null) {
+                setEpicStatus(epic);
+                changeEpicTime(epic, null, null);
+            }
+        }
+    }
+
+    //Полный пересчёт счётчиков, статуса и времени эпика по его подзадачам (при восстановлении менеджера):
+    protected void recalculateEpic(Epic epic) {
+        EpicTimeWindow timeWindow = new EpicTimeWindow();
+        epic.resetSubtaskStatusCounters();
+        for (long subtaskId : epic.getSubtaskIdSet().toArray()) {
+            Subtask subtask = subStorage.get(subtaskId);
+            epic.countSubtaskStatus(subtask.getStatus(), 1);
+            timeWindow.add(subtask);
+        }
+        epicTimeWindows.put(epic.getId(), timeWindow);
+        setEpicStatus(epic);
+        changeEpicTime(epic, null, null);
+    }
+
+    private void checkEpicStatusCounters(Epic epic) {
+        Map<CurrentStatus, Integer> recountedStatuses = new EnumMap<>(CurrentStatus.class);
         for (Long subtaskId : epic.getSubtaskIds()) {
-            Subtask sub = subStorage.get(subtaskId);
-            switch (sub.getStatus()) {
-                case NEW:
-                    newTasks++;
-                    break;
-                case DONE:
-                    doneTasks++;
-            }
-            //если у эпика нет подзадач или все они имеют статус NEW, то статус должен быть NEW
-            if (epic.getSubtaskIds().isEmpty() || newTasks == epic.getSubtaskIds().size()) {
-                epic.setStatus(CurrentStatus.NEW);
-            //если все подзадачи имеют статус DONE, то и эпик считается завершённым — со статусом DONE
-            } else if (doneTasks == epic.getSubtaskIds().size()) {
-                epic.setStatus(CurrentStatus.DONE);
-            //во всех остальных случаях статус должен быть IN_PROGRESS
-            } else {
-                epic.setStatus(CurrentStatus.IN_PROGRESS);
+            recountedStatuses.merge(subStorage.get(subtaskId).getStatus(), 1, Integer::sum);
+        }
+        for (CurrentStatus status : CurrentStatus.values()) {
+            if (epic.getSubtaskCount(status) != recountedStatuses.getOrDefault(status, 0)) {
+                throw new IllegalStateException("Счётчик статуса " + status + " эпика с ID '" + epic.getId()
+                        + "' не совпадает с полным пересчётом его подзадач.");
             }
         }
     }
 
-    //Управление временем эпиков:
-    private void setEpicTime(Epic epic) {
+    //Управление временем эпиков. Окно эпика меняется на одну подзадачу за O(log k):
+    private void changeEpicTime(Epic epic, Subtask removedSubtask, Subtask addedSubtask) {
+        EpicTimeWindow timeWindow = epicTimeWindows.get(epic.getId());
+        if (removedSubtask != null) {
+            timeWindow.remove(removedSubtask);
+        }
+        if (addedSubtask != null) {
+            timeWindow.add(addedSubtask);
+        }
+        timeWindow.applyTo(epic);
+        if (epicRollupCheck) {
+            checkEpicTime(epic);
+        }
+    }
+
+    private void checkEpicTime(Epic epic) {
         LocalDateTime earliestTime = null;
         LocalDateTime latestTime = null;
         Duration epicDuration = Duration.ofMinutes(0);
@@ -352,43 +660,197 @@ public class InMemoryTaskManager implements TaskManager {
             }
             epicDuration = epicDuration.plus(sub.getDurationInMinutes());
         }
-        epic.setDurationInMinutes(epicDuration);
-        epic.setStartTime(earliestTime);
-        epic.setEndTime(latestTime);
+        if (!epicDuration.equals(epic.getDurationInMinutes()) || !Objects.equals(earliestTime, epic.getStartTime())
+                || !Objects.equals(latestTime, epic.getEndTime())) {
+            throw new IllegalStateException("Время эпика с ID '" + epic.getId()
+                    + "' не совпадает с полным пересчётом его подзадач.");
+        }
     }
 
-    //Проверка пересечения задач по времени:
-    private void checkTaskTimeCrossing(Task newTask) {
+    //Проверка пересечения задач по времени. Задачи в prioritizedTasks между собой не пересекаются, поэтому
+    //достаточно проверить ближайшую задачу, начавшуюся не позже новой, и задачи, начинающиеся внутри её интервала:
+    static void checkTaskTimeCrossing(NavigableSet<Task> prioritizedTasks, Task newTask) {
+        checkTaskTimeCrossing(prioritizedTasks, newTask, existingId -> existingId == newTask.getId());
+    }
+
+    //replaced - id задач, старые версии которых заменяются и не учитываются. Задачи раньше ближайшей
+    //заканчиваются до её начала, поэтому их не нужно проверять, даже если сама ближайшая заменяется:
+    static void checkTaskTimeCrossing(NavigableSet<Task> prioritizedTasks, Task newTask, LongPredicate replaced) {
         if (newTask.getStartTime() == null) {
             return;
         }
-        boolean isTimeCrossing = false;
-        for (Task existingTask : prioritizedTasks) {
-            if (existingTask.getStartTime() == null || existingTask.getId() == newTask.getId()) {
+        Task startProbe = timeProbe(newTask.getStartTime());
+        Task earlierTask = prioritizedTasks.floor(startProbe);
+        if (earlierTask != null && !replaced.test(earlierTask.getId()) && isTimeCrossing(newTask, earlierTask)) {
+            throw timeCrossingException(earlierTask);
+        }
+        for (Task laterTask : prioritizedTasks.subSet(startProbe, false, timeProbe(newTask.getEndTime()), true)) {
+            if (!replaced.test(laterTask.getId())) {
+                throw timeCrossingException(laterTask);
+            }
+        }
+    }
+
+    //Проверка пакета на создание: эпики подзадач существуют или созданы раньше в пакете,
+    //задачи не пересекаются по времени ни с существующими, ни между собой:
+    static void checkBatchCreation(List<Task> batch, Map<Integer, Integer> epicRefs,
+                                   NavigableSet<Task> prioritizedTasks, LongPredicate epicExists) {
+        for (Map.Entry<Integer, Integer> epicRef : epicRefs.entrySet()) {
+            int position = epicRef.getKey();
+            if (position < 0 || position >= batch.size() || batch.get(position) == null
+                    || batch.get(position).getTaskType() != TaskType.SUBTASK) {
+                throw new IllegalArgumentException("Ссылка на эпик пакета задана для позиции " + position
+                        + ", где нет подзадачи.");
+            }
+            int epicPosition = epicRef.getValue();
+            if (epicPosition < 0 || epicPosition >= position || batch.get(epicPosition) == null
+                    || batch.get(epicPosition).getTaskType() != TaskType.EPIC) {
+                throw new IllegalArgumentException("Подзадача на позиции " + position + " пакета ссылается на "
+                        + "позицию " + epicPosition + ", где нет эпика, созданного раньше неё.");
+            }
+        }
+        NavigableSet<Task> batchSchedule = new TreeSet<>(START_TIME_ORDER);
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = checkBatchTask(batch, i);
+            if (task.getTaskType() == TaskType.EPIC) {
                 continue;
             }
-            if ((newTask.getStartTime().isAfter(existingTask.getStartTime())
-                    || newTask.getStartTime().equals(existingTask.getStartTime()))
-                    && (newTask.getStartTime().isBefore(existingTask.getEndTime())
-                    || newTask.getStartTime().equals(existingTask.getEndTime()))) {
-                isTimeCrossing = true;
-            } else if ((newTask.getEndTime().isAfter(existingTask.getStartTime())
-                    || newTask.getEndTime().equals(existingTask.getStartTime()))
-                    && (newTask.getEndTime().isBefore(existingTask.getEndTime())
-                    || newTask.getEndTime().equals(existingTask.getEndTime()))) {
-                isTimeCrossing = true;
-            } else if ((existingTask.getStartTime().isAfter(newTask.getStartTime())
-                    || existingTask.getStartTime().equals(newTask.getStartTime()))
-                    && (existingTask.getEndTime().isBefore(newTask.getEndTime())
-                    || existingTask.getEndTime().equals(newTask.getEndTime()))) {
-                isTimeCrossing = true;
-            }
-            if (isTimeCrossing) {
-                throw new IllegalStateException(String.format("Время создаваемой задачи пересекается с задачей '%s' " +
-                        "типа %s. Время её начала - %s. Время её окончания - %s. Выберите другое время для новой " +
-                        "задачи.", existingTask.getHeader(), existingTask.getTaskType().toString(),
-                        existingTask.getStartTime().toString(), existingTask.getEndTime().toString()));
+            if (task.getTaskType() == TaskType.SUBTASK && !epicRefs.containsKey(i)) {
+                long epicId = ((Subtask) task).getEpicId();
+                if (!epicExists.test(epicId)) {
+                    throw new IllegalArgumentException("Эпика с ID '" + epicId + "' не существует.");
+                }
+            }
+            checkTaskTimeCrossing(prioritizedTasks, task, existingId -> false);
+            checkTaskTimeCrossing(batchSchedule, task, existingId -> false);
+            if (task.getStartTime() != null) {
+                batchSchedule.add(task);
+            }
+        }
+    }
+
+    //Проверка пакета на обновление: задачи существуют и не повторяются, а новые версии не пересекаются
+    //по времени между собой и с задачами вне пакета:
+    static void checkBatchUpdate(List<Task> batch, NavigableSet<Task> prioritizedTasks,
+                                 BiPredicate<TaskType, Long> isStored, LongPredicate epicExists) {
+        LongOrderedSet batchIds = new LongOrderedSet();
+        NavigableSet<Task> batchSchedule = new TreeSet<>(START_TIME_ORDER);
+        for (int i = 0; i < batch.size(); i++) {
+            Task task = checkBatchTask(batch, i);
+            if (!isStored.test(task.getTaskType(), task.getId())) {
+                throw new IllegalArgumentException("ID '" + task.getId() + "' нет в списке "
+                        + storageName(task.getTaskType()) + ". Обновление невозможно.");
+            }
+            if (!batchIds.add(task.getId())) {
+                throw new IllegalArgumentException("ID '" + task.getId() + "' повторяется в пакете.");
+            }
+            if (task.getTaskType() == TaskType.SUBTASK && !epicExists.test(((Subtask) task).getEpicId())) {
+                throw new IllegalArgumentException("Эпика с ID '" + ((Subtask) task).getEpicId()
+                        + "' не существует.");
+            }
+        }
+        for (Task task : batch) {
+            if (task.getTaskType() != TaskType.EPIC) {
+                checkTaskTimeCrossing(prioritizedTasks, task, batchIds::contains);
+                checkTaskTimeCrossing(batchSchedule, task, existingId -> false);
+                if (task.getStartTime() != null) {
+                    batchSchedule.add(task);
+                }
             }
         }
     }
+
+    //Проверка пакета на удаление: все id существуют. Возвращает id без повторов в порядке пакета:
+    static LongOrderedSet checkBatchDeletion(TaskType taskType, long[] ids, BiPredicate<TaskType, Long> isStored) {
+        if (taskType == null || ids == null) {
+            throw new IllegalArgumentException("Тип задач или список ID для удаления не указан.");
+        }
+        LongOrderedSet batch = new LongOrderedSet();
+        for (long idFor : ids) {
+            if (!isStored.test(taskType, idFor)) {
+                throw new IllegalArgumentException("ID '" + idFor + "' нет в списке " + storageName(taskType)
+                        + ". Удаление невозможно.");
+            }
+            batch.add(idFor);
+        }
+        return batch;
+    }
+
+    //Подзадача со ссылкой на эпик пакета заменяется в пакете копией с ID этого эпика (он уже создан):
+    static Task resolveEpicRef(List<Task> batch, int position, Map<Integer, Integer> epicRefs) {
+        Integer epicPosition = epicRefs.get(position);
+        if (epicPosition == null) {
+            return batch.get(position);
+        }
+        Subtask subtask = (Subtask) batch.get(position);
+        Subtask resolvedSubtask = new Subtask(subtask.getId(), subtask.getHeader(), subtask.getStatus(),
+                subtask.getDescription(), subtask.getStartTime(), subtask.getDurationInMinutes(),
+                batch.get(epicPosition).getId());
+        batch.set(position, resolvedSubtask);
+        return resolvedSubtask;
+    }
+
+    private static Task checkBatchTask(List<Task> batch, int position) {
+        Task task = batch.get(position);
+        if (task == null || task.getTaskType() == null) {
+            throw new IllegalArgumentException("Задача на позиции " + position + " пакета не указана или "
+                    + "не имеет типа.");
+        }
+        return task;
+    }
+
+    private static String storageName(TaskType taskType) {
+        switch (taskType) {
+            case EPIC:
+                return "эпиков";
+            case SUBTASK:
+                return "подзадач";
+            default:
+                return "задач";
+        }
+    }
+
+    private static boolean isTimeCrossing(Task newTask, Task existingTask) {
+        return !newTask.getStartTime().isAfter(existingTask.getEndTime())
+                && !newTask.getEndTime().isBefore(existingTask.getStartTime());
+    }
+
+    private static IllegalStateException timeCrossingException(Task existingTask) {
+        return new IllegalStateException(String.format("Время создаваемой задачи пересекается с задачей '%s' " +
+                "типа %s. Время её начала - %s. Время её окончания - %s. Выберите другое время для новой " +
+                "задачи.", existingTask.getHeader(), existingTask.getTaskType().toString(),
+                existingTask.getStartTime().toString(), existingTask.getEndTime().toString()));
+    }
+
+    //Задачи из prioritizedTasks, начинающиеся в интервале от from до to (не включая to). Задачи без времени
+    //стоят в конце набора и в интервал не попадают:
+    static NavigableSet<Task> prioritizedTasksInRange(NavigableSet<Task> prioritizedTasks, LocalDateTime from,
+                                                      boolean fromInclusive, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Границы интервала времени не указаны.");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Начало интервала времени " + from + " позже его окончания " + to + ".");
+        }
+        return prioritizedTasks.subSet(timeProbe(from), fromInclusive, timeProbe(to), false);
+    }
+
+    static List<Task> firstTasks(Collection<Task> tasks, int limit) {//копирует только возвращаемые задачи
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть больше нуля, а передан - " + limit);
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, 64));
+        for (Task task : tasks) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(task);
+        }
+        return page;
+    }
+
+    //задача-заглушка для поиска по времени начала в prioritizedTasks:
+    private static Task timeProbe(LocalDateTime startTime) {
+        return new Task(0, null, null, null, startTime, Duration.ZERO);
+    }
 }
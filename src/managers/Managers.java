@@ -2,6 +2,13 @@ package managers;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import utils.LongOrderedSet;
+
+import java.io.IOException;
 
 public class Managers {
 
@@ -16,6 +23,30 @@ public class Managers {
     public static Gson getGson() {
         GsonBuilder gsonBuilder = new GsonBuilder();
         gsonBuilder.serializeNulls();
+        gsonBuilder.registerTypeAdapter(LongOrderedSet.class, new LongOrderedSetAdapter().nullSafe());
         return gsonBuilder.create();
     }
+
+    //id подзадач эпика передаются в JSON обычным массивом чисел, как и при хранении в ArrayList:
+    private static class LongOrderedSetAdapter extends TypeAdapter<LongOrderedSet> {
+        @Override
+        public void write(JsonWriter out, LongOrderedSet set) throws IOException {
+            out.beginArray();
+            for (long value : set.toArray()) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+
+        @Override
+        public LongOrderedSet read(JsonReader in) throws IOException {
+            LongOrderedSet set = new LongOrderedSet();
+            in.beginArray();
+            while (in.peek() != JsonToken.END_ARRAY) {
+                set.add(in.nextLong());
+            }
+            in.endArray();
+            return set;
+        }
+    }
 }
@@ -0,0 +1,531 @@
+package managers;
+
+import enums.CurrentStatus;
+import enums.TaskType;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+import utils.LongHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//Хранилище задач в отображённых в память файлах (FileChannel.map).
+//Файл записей: заголовок HEADER_SIZE байт ("JKMR", версия, поколение кучи, число ячеек, счётчик
+//последовательности, конец кучи, байт мусора в куче), затем ячейки по RECORD_SIZE байт:
+//  тип (0 - свободная ячейка, иначе ordinal + 1), статус, флаги (1 - есть время начала, 2 - есть время окончания
+//  эпика), длина заголовка, id, id эпика, время начала, время окончания, продолжительность (секунды и наносекунды),
+//  длина описания, смещения заголовка и описания в куче, номер последнего просмотра и номер привязки подзадачи.
+//Текст заголовков и описаний лежит в отдельной куче <файл>.heap.<поколение>, строки только дописываются.
+//Изменение задачи переписывает одну её ячейку (и дописывает в кучу изменившийся текст), просмотр - одно поле
+//ячейки. История восстанавливается по номерам просмотров, порядок подзадач эпика - по номерам привязки.
+//Когда мусора в куче становится больше живого текста, менеджер переписывает хранилище целиком (rewrite).
+//Записи в отображённую память переживают аварийное завершение процесса, но не отключение питания -
+//для этого нужен force().
+//Отображения освобождаются явно (close, смена отображения при росте): Windows не даёт заменить или удалить
+//отображённый файл, а MappedByteBuffer сам освобождается только сборщиком мусора.
+final class MappedTaskStore {
+    static final byte[] MAGIC = {'J', 'K', 'M', 'R'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 96;
+
+    private static final int MIN_SLOTS = 1024;
+    private static final long MIN_HEAP_SIZE = 1 << 16;
+    private static final long COMPACTION_THRESHOLD = 1 << 20;
+    private static final TaskType[] TASK_TYPES = TaskType.values();
+    private static final CurrentStatus[] STATUSES = CurrentStatus.values();
+    private static final int HAS_START_TIME = 1;
+    private static final int HAS_END_TIME = 2;
+    private static final int NULL_LENGTH = -1;
+    private static final Method INVOKE_CLEANER;//sun.misc.Unsafe.invokeCleaner, null - освобождает сборщик мусора
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            System.out.println("Отображения хранилища задач будут освобождаться сборщиком мусора: " + exception);
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    //поля заголовка файла записей
+    private static final int GENERATION = 8;
+    private static final int SLOT_COUNT = 16;
+    private static final int SEQUENCE = 24;
+    private static final int HEAP_END = 32;
+    private static final int HEAP_GARBAGE = 40;
+
+    //поля ячейки
+    private static final int TYPE = 0;
+    private static final int STATUS = 1;
+    private static final int FLAGS = 2;
+    private static final int HEADER_LENGTH = 4;
+    private static final int ID = 8;
+    private static final int EPIC_ID = 16;
+    private static final int START_SECONDS = 24;
+    private static final int END_SECONDS = 32;
+    private static final int DURATION_SECONDS = 40;
+    private static final int START_NANOS = 48;
+    private static final int END_NANOS = 52;
+    private static final int DURATION_NANOS = 56;
+    private static final int DESCRIPTION_LENGTH = 60;
+    private static final int HEADER_OFFSET = 64;
+    private static final int DESCRIPTION_OFFSET = 72;
+    private static final int VIEW_SEQUENCE = 80;
+    private static final int LINK_SEQUENCE = 88;
+
+    private final File file;
+    private final long generation;
+    private File recordsFile;//файл, отображённый в records: до подмены в rewrite - временный
+    private MappedByteBuffer records;
+    private MappedByteBuffer heap;
+    private int slotCount;//занятых и освобождённых ячеек, новые ячейки берутся после них
+    private long sequence;
+    private long heapEnd;
+    private long heapGarbage;
+    private final LongHashMap<Integer> slots = new LongHashMap<>();//id -> номер ячейки
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    private MappedTaskStore(File file, long generation) {
+        this.file = file;
+        this.generation = generation;
+    }
+
+    static boolean isMappedStore(byte[] head) {
+        return head.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(head, MAGIC.length), MAGIC);
+    }
+
+    //открывает хранилище, записанное rewrite, и строит индекс id -> ячейка
+    static MappedTaskStore open(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            channel.read(header, 0);
+        }
+        if (!isMappedStore(bytesAt(header, 0, MAGIC.length))) {
+            throw new IOException("Файл не является хранилищем задач: " + file);
+        }
+        if (header.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Неподдерживаемая версия хранилища задач: " + header.getInt(MAGIC.length));
+        }
+        MappedTaskStore store = new MappedTaskStore(file, header.getLong(GENERATION));
+        store.recordsFile = file;
+        store.slotCount = header.getInt(SLOT_COUNT);
+        store.sequence = header.getLong(SEQUENCE);
+        store.heapEnd = header.getLong(HEAP_END);
+        store.heapGarbage = header.getLong(HEAP_GARBAGE);
+        store.records = map(file, recordsSize(Math.max(store.slotCount, MIN_SLOTS)), FileChannel.MapMode.READ_WRITE);
+        if (store.heapEnd > 0 && !store.heapFile().exists()) {
+            throw new IOException("Не найдена куча хранилища задач: " + store.heapFile());
+        }
+        store.heap = map(store.heapFile(), Math.max(store.heapEnd, MIN_HEAP_SIZE), FileChannel.MapMode.READ_WRITE);
+        for (int slot = 0; slot < store.slotCount; slot++) {
+            if (store.records.get(position(slot) + TYPE) == 0) {
+                store.pushFreeSlot(slot);
+            } else {
+                store.slots.put(store.records.getLong(position(slot) + ID), slot);
+            }
+        }
+        deleteOtherHeaps(file, store.generation);//остатки прерванного rewrite
+        return store;
+    }
+
+    //записывает задачи и историю в новое хранилище: куча нового поколения и файл записей во временном файле,
+    //который атомарно подменяет прежний; до подмены на диске остаётся целым прежнее хранилище.
+    //Задачи передаются в порядке восстановления: подзадачи каждого эпика - в порядке его списка.
+    //previous - открытое хранилище этого файла или null; оно закрывается в любом случае, до подмены файла.
+    static MappedTaskStore rewrite(File file, MappedTaskStore previous, List<Task> tasks, Iterable<Task> history)
+            throws IOException {
+        MappedTaskStore store = null;
+        try {
+            long generation = previousGeneration(file) + 1;
+            store = new MappedTaskStore(file, generation);
+            store.recordsFile = new File(file.getPath() + ".tmp");
+            Files.deleteIfExists(store.recordsFile.toPath());
+            Files.deleteIfExists(store.heapFile().toPath());
+            store.records = map(store.recordsFile, recordsSize(Math.max(tasks.size(), MIN_SLOTS)),
+                    FileChannel.MapMode.READ_WRITE);
+            store.heap = map(store.heapFile(), MIN_HEAP_SIZE, FileChannel.MapMode.READ_WRITE);
+            store.records.duplicate().put(MAGIC);
+            store.records.putInt(MAGIC.length, VERSION);
+            store.records.putLong(GENERATION, generation);
+            for (Task task : tasks) {
+                store.put(task);
+            }
+            for (Task task : history) {
+                store.markViewed(task.getId());
+            }
+            store.force();
+            //ни временный, ни прежний файл записей и прежняя куча не должны оставаться отображёнными
+            long recordsCapacity = store.records.capacity();
+            unmap(store.records);
+            store.records = null;
+            if (previous != null) {
+                previous.close();
+            }
+            Files.move(store.recordsFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            store.recordsFile = file;
+            store.records = map(file, recordsCapacity, FileChannel.MapMode.READ_WRITE);
+            deleteOtherHeaps(file, generation);
+            return store;
+        } catch (IOException | RuntimeException exception) {
+            if (store != null) {
+                store.close();
+            }
+            throw exception;
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+        }
+    }
+
+    //освобождает отображения; после close хранилище не используется
+    void close() {
+        if (records != null) {
+            unmap(records);
+            records = null;
+        }
+        if (heap != null) {
+            unmap(heap);
+            heap = null;
+        }
+    }
+
+    //задачи в порядке восстановления (задачи, эпики, подзадачи по номерам привязки) и история по номерам просмотров
+    ParsedSnapshot read() {
+        List<Task> tasks = new ArrayList<>(slots.size());
+        List<Task> subtasks = new ArrayList<>();
+        List<Task> viewed = new ArrayList<>();
+        LongHashMap<Long> viewSequences = new LongHashMap<>();
+        LongHashMap<Long> linkSequences = new LongHashMap<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = position(slot);
+            if (records.get(position + TYPE) == 0) {
+                continue;
+            }
+            Task task = readTask(position);
+            if (task.getTaskType() == TaskType.SUBTASK) {
+                subtasks.add(task);
+                linkSequences.put(task.getId(), records.getLong(position + LINK_SEQUENCE));
+            } else {
+                tasks.add(task);
+            }
+            long viewSequence = records.getLong(position + VIEW_SEQUENCE);
+            if (viewSequence != 0) {
+                viewed.add(task);
+                viewSequences.put(task.getId(), viewSequence);
+            }
+        }
+        subtasks.sort(Comparator.comparingLong(task -> linkSequences.get(task.getId())));
+        tasks.addAll(subtasks);//подзадачи - после своих эпиков
+        viewed.sort(Comparator.comparingLong(task -> viewSequences.get(task.getId())));
+        long[] history = new long[viewed.size()];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = viewed.get(i).getId();
+        }
+        return new ParsedSnapshot(tasks, history);
+    }
+
+    //создаёт или переписывает ячейку задачи; номер просмотра сохраняется, подзадача, сменившая эпик,
+    //получает новый номер привязки и встаёт в конец списка нового эпика
+    void put(Task task) throws IOException {
+        Integer storedSlot = slots.get(task.getId());
+        int slot = storedSlot != null ? storedSlot : allocateSlot();
+        int position = position(slot);
+        boolean isNew = storedSlot == null;
+        writeHeapString(position + HEADER_LENGTH, position + HEADER_OFFSET, task.getHeader(), isNew);
+        writeHeapString(position + DESCRIPTION_LENGTH, position + DESCRIPTION_OFFSET, task.getDescription(), isNew);
+        LocalDateTime endTime = task.getTaskType() == TaskType.EPIC ? task.getEndTime() : null;
+        records.put(position + STATUS, (byte) task.getStatus().ordinal());
+        records.put(position + FLAGS, (byte) ((task.getStartTime() != null ? HAS_START_TIME : 0)
+                | (endTime != null ? HAS_END_TIME : 0)));
+        records.putLong(position + ID, task.getId());
+        writeTime(position + START_SECONDS, position + START_NANOS, task.getStartTime());
+        writeTime(position + END_SECONDS, position + END_NANOS, endTime);
+        records.putLong(position + DURATION_SECONDS, task.getDurationInMinutes().getSeconds());
+        records.putInt(position + DURATION_NANOS, task.getDurationInMinutes().getNano());
+        if (task.getTaskType() == TaskType.SUBTASK) {
+            long epicId = ((Subtask) task).getEpicId();
+            if (isNew || records.getLong(position + EPIC_ID) != epicId) {
+                records.putLong(position + LINK_SEQUENCE, nextSequence());
+            }
+            records.putLong(position + EPIC_ID, epicId);
+        } else {
+            records.putLong(position + EPIC_ID, 0);
+            records.putLong(position + LINK_SEQUENCE, 0);
+        }
+        if (isNew) {
+            records.putLong(position + VIEW_SEQUENCE, 0);
+            records.put(position + TYPE, (byte) (task.getTaskType().ordinal() + 1));//тип - последним: до него
+            slots.put(task.getId(), slot);                                        //ячейка считается свободной
+        }
+        writeHeader();
+    }
+
+    void markViewed(long id) {
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            records.putLong(position(slot) + VIEW_SEQUENCE, nextSequence());
+            writeHeader();
+        }
+    }
+
+    void remove(long id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            freeSlot(slot);
+            writeHeader();
+        }
+    }
+
+    void removeAll(TaskType taskType) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = position(slot);
+            if (records.get(position + TYPE) == taskType.ordinal() + 1) {
+                slots.remove(records.getLong(position + ID));
+                freeSlot(slot);
+            }
+        }
+        writeHeader();
+    }
+
+    boolean needsCompaction() {//мусора в куче больше, чем живого текста
+        return heapGarbage > COMPACTION_THRESHOLD && heapGarbage * 2 > heapEnd;
+    }
+
+    void force() {//сбрасывает отображённые страницы на диск
+        heap.force();
+        records.force();
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    private Task readTask(int position) {
+        TaskType taskType = TASK_TYPES[records.get(position + TYPE) - 1];
+        long id = records.getLong(position + ID);
+        String header = readHeapString(position + HEADER_LENGTH, position + HEADER_OFFSET);
+        CurrentStatus status = STATUSES[records.get(position + STATUS)];
+        String description = readHeapString(position + DESCRIPTION_LENGTH, position + DESCRIPTION_OFFSET);
+        int flags = records.get(position + FLAGS);
+        LocalDateTime startTime = (flags & HAS_START_TIME) != 0
+                ? readTime(position + START_SECONDS, position + START_NANOS) : null;
+        LocalDateTime endTime = (flags & HAS_END_TIME) != 0
+                ? readTime(position + END_SECONDS, position + END_NANOS) : null;
+        Duration durationInMinutes = Duration.ofSeconds(records.getLong(position + DURATION_SECONDS),
+                records.getInt(position + DURATION_NANOS));
+        if (taskType == TaskType.SUBTASK) {
+            return new Subtask(id, header, status, description, startTime, durationInMinutes,
+                    records.getLong(position + EPIC_ID));
+        }
+        if (taskType == TaskType.EPIC) {
+            return new Epic(id, header, status, description, startTime, endTime, durationInMinutes);
+        }
+        return new Task(id, header, status, description, startTime, durationInMinutes);
+    }
+
+    private void writeTime(int secondsPosition, int nanosPosition, LocalDateTime time) {
+        records.putLong(secondsPosition, time == null ? 0 : time.toEpochSecond(ZoneOffset.UTC));
+        records.putInt(nanosPosition, time == null ? 0 : time.getNano());
+    }
+
+    private LocalDateTime readTime(int secondsPosition, int nanosPosition) {
+        return LocalDateTime.ofEpochSecond(records.getLong(secondsPosition), records.getInt(nanosPosition),
+                ZoneOffset.UTC);
+    }
+
+    //неизменившаяся строка остаётся на месте, новая дописывается в кучу, прежняя становится мусором
+    private void writeHeapString(int lengthPosition, int offsetPosition, String value, boolean isNew)
+            throws IOException {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        int oldLength = isNew ? NULL_LENGTH : records.getInt(lengthPosition);
+        if (!isNew && heapStringEquals(oldLength, records.getLong(offsetPosition), bytes)) {
+            return;
+        }
+        if (oldLength > 0) {
+            heapGarbage += oldLength;
+        }
+        long offset = heapEnd;
+        if (bytes != null && bytes.length > 0) {
+            ensureHeapCapacity(heapEnd + bytes.length);
+            heap.duplicate().position((int) offset).put(bytes);
+            heapEnd += bytes.length;
+            //конец кучи сохраняется раньше смещения: ячейка не должна указывать за сохранённый HEAP_END,
+            //иначе после сбоя текст ячейки перепишет следующая строка
+            records.putLong(HEAP_END, heapEnd);
+        }
+        records.putLong(offsetPosition, offset);
+        records.putInt(lengthPosition, bytes == null ? NULL_LENGTH : bytes.length);
+    }
+
+    private boolean heapStringEquals(int length, long offset, byte[] bytes) {
+        if (bytes == null || length == NULL_LENGTH) {
+            return bytes == null && length == NULL_LENGTH;
+        }
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (heap.get((int) offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readHeapString(int lengthPosition, int offsetPosition) {
+        int length = records.getInt(lengthPosition);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        return new String(bytesAt(heap, (int) records.getLong(offsetPosition), length), StandardCharsets.UTF_8);
+    }
+
+    private int allocateSlot() throws IOException {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (recordsSize(slotCount + 1) > records.capacity()) {
+            records = remap(records, recordsFile, recordsSize(slotCount * 2L));
+        }
+        return slotCount++;
+    }
+
+    private void freeSlot(int slot) {
+        int position = position(slot);
+        records.put(position + TYPE, (byte) 0);
+        heapGarbage += Math.max(records.getInt(position + HEADER_LENGTH), 0)
+                + Math.max(records.getInt(position + DESCRIPTION_LENGTH), 0);
+        pushFreeSlot(slot);
+    }
+
+    private void pushFreeSlot(int slot) {
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private void ensureHeapCapacity(long size) throws IOException {
+        if (size <= heap.capacity()) {
+            return;
+        }
+        long capacity = heap.capacity();
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        heap = remap(heap, heapFile(), capacity);
+    }
+
+    private long nextSequence() {
+        return ++sequence;
+    }
+
+    private void writeHeader() {
+        records.putInt(SLOT_COUNT, slotCount);
+        records.putLong(SEQUENCE, sequence);
+        records.putLong(HEAP_END, heapEnd);
+        records.putLong(HEAP_GARBAGE, heapGarbage);
+    }
+
+    private File heapFile() {
+        return new File(file.getPath() + ".heap." + generation);
+    }
+
+    private static int position(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static long recordsSize(long slots) {
+        return HEADER_SIZE + slots * RECORD_SIZE;
+    }
+
+    //отображение растёт удвоением; ByteBuffer адресуется int, поэтому файл ограничен 2 ГБ
+    private static MappedByteBuffer remap(MappedByteBuffer mapped, File target, long size) throws IOException {
+        mapped.force();
+        MappedByteBuffer grown = map(target, size, FileChannel.MapMode.READ_WRITE);
+        unmap(mapped);
+        return grown;
+    }
+
+    //буфер после этого недействителен: обращение к нему может уронить JVM, поэтому ссылки на него не остаются
+    private static void unmap(MappedByteBuffer mapped) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, mapped);
+        } catch (ReflectiveOperationException exception) {
+            System.out.println("Отображение хранилища задач освободит сборщик мусора: " + exception);
+        }
+    }
+
+    private static MappedByteBuffer map(File target, long size, FileChannel.MapMode mode) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Хранилище задач превышает 2 ГБ: " + target);
+        }
+        //отображение остаётся действительным после закрытия канала
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(target,
+                mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            return randomAccessFile.getChannel().map(mode, 0, size);
+        }
+    }
+
+    private static byte[] bytesAt(ByteBuffer buffer, int index, int length) {
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(index).get(bytes);
+        return bytes;
+    }
+
+    private static long previousGeneration(File file) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            channel.read(header, 0);
+        }
+        return isMappedStore(bytesAt(header, 0, MAGIC.length)) ? header.getLong(GENERATION) : 0;
+    }
+
+    private static void deleteOtherHeaps(File file, long generation) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".heap.";
+        File[] heaps = directory.listFiles((dir, name) -> name.startsWith(prefix)
+                && !name.equals(prefix + generation));
+        if (heaps == null) {
+            return;
+        }
+        for (File oldHeap : heaps) {
+            Files.deleteIfExists(oldHeap.toPath());
+        }
+    }
+}
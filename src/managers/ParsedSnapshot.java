@@ -0,0 +1,17 @@
+package managers;
+
+import tasks.Task;
+
+import java.util.List;
+
+//Прочитанный снимок до восстановления менеджера: задачи в порядке файла (эпик раньше своих подзадач)
+//и id задач истории в порядке просмотра.
+class ParsedSnapshot {
+    final List<Task> tasks;
+    final long[] history;
+
+    ParsedSnapshot(List<Task> tasks, long[] history) {
+        this.tasks = tasks;
+        this.history = history;
+    }
+}
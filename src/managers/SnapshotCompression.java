@@ -0,0 +1,51 @@
+package managers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Сжатие снимков в формате gzip потоком: данные сжимаются по мере записи и распаковываются по мере чтения,
+//так что несжатый снимок целиком в памяти не собирается.
+//Сжатый снимок узнаётся по первым байтам gzip, на KV-сервере - по началу их записи в Base64.
+final class SnapshotCompression {
+    static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;//уровень для снимков, восстановленных из сжатых
+    static final String BASE64_PREFIX = "H4sI";//1f 8b 08 - заголовок gzip с методом deflate в Base64
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SnapshotCompression() {
+    }
+
+    static void checkLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Уровень сжатия должен быть от 0 до 9 или -1: " + level);
+        }
+    }
+
+    static boolean isCompressed(byte[] head) {
+        return head.length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B;
+    }
+
+    static boolean isCompressed(String value) {
+        return value.startsWith(BASE64_PREFIX);
+    }
+
+    //level - уровень Deflater; поток закрывается вместе с out
+    static OutputStream compress(OutputStream out, int level) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    //распакованный поток, в котором можно заглянуть в первые байты снимка и вернуть их (unread)
+    static PushbackInputStream decompress(InputStream in) throws IOException {
+        return new PushbackInputStream(new GZIPInputStream(in, BUFFER_SIZE), BinarySnapshotCodec.MAGIC.length);
+    }
+}
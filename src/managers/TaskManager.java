@@ -1,14 +1,25 @@
 package managers;
 
+import enums.TaskType;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface TaskManager {
     List<Task> getPrioritizedTasks();
 
+    //Задачи, начинающиеся в интервале [from, to), в порядке времени начала. Живое представление без копирования:
+    Collection<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    //Страница из не более чем limit задач, начинающихся строго после cursor и раньше to. Курсор следующей
+    //страницы - время начала последней задачи: задачи со временем не пересекаются, поэтому оно уникально:
+    List<Task> getPrioritizedTasksAfter(LocalDateTime cursor, LocalDateTime to, int limit);
+
     //Получение списка всех задач:
     List<Task> getTaskList();
     List<Epic> getEpicList();
@@ -39,9 +50,34 @@ public interface TaskManager {
     void deleteEpicById(long id);
     void deleteSubtaskById(long id);
 
+    //Пакетные операции. Пакет проверяется целиком до изменений: при ошибке не меняется ничего.
+    //createAll возвращает созданные задачи с присвоенными id. epicRefs - позиция подзадачи в пакете -> позиция
+    //эпика, созданного раньше в том же пакете; epicId такой подзадачи не учитывается, создаётся её копия
+    //с ID этого эпика:
+    List<Task> createAll(Collection<? extends Task> tasks);
+    List<Task> createAll(List<? extends Task> tasks, Map<Integer, Integer> epicRefs);
+    void updateAll(Collection<? extends Task> tasks);
+    void deleteByIds(TaskType taskType, long[] ids);
+
     //Получение списка всех подзадач определённого эпика:
     List<Subtask> getSubsByEpicId(long id);
 
     //Получение истории просмотров:
     List<Task> getHistory();
+
+    //Представления только для чтения без копирования: отражают последующие изменения менеджера,
+    //не добавляют задачи в историю и не должны изменяться во время обхода из другого потока:
+    Collection<Task> getPrioritizedTasksView();
+    Collection<Task> getTaskView();
+    Collection<Epic> getEpicView();
+    Collection<Subtask> getSubtaskView();
+    Collection<Task> getHistoryView();
+
+    //Номер изменения задач: растёт после каждого создания, обновления или удаления, но не после получения
+    //задачи по id. Одинаковый номер - одинаковые списки задач; по нему HttpTaskServer выдаёт ETag списков:
+    long getVersion();
+
+    //Номер изменения истории: растёт вместе с getVersion (история показывает задачи в текущем виде)
+    //и после каждого получения задачи по id. По нему HttpTaskServer выдаёт ETag истории:
+    long getHistoryVersion();
 }
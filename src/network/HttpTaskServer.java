@@ -1,57 +1,141 @@
 package network;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import enums.ExecutorMode;
 import enums.TaskType;
+import managers.ConcurrentTaskManager;
 import managers.Managers;
 import managers.TaskManager;
 import tasks.Epic;
 import tasks.Subtask;
 import tasks.Task;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+//Запросы обрабатывает исполнитель executorMode. Без DISPATCHER обработчики работают параллельно: ConcurrentTaskManager
+//к этому готов, остальные менеджеры закрываются блокировкой чтения-записи - списки читаются параллельно,
+//изменения и получение по id (оно меняет историю) идут по одному.
 public class HttpTaskServer {
     public static final int PORT = 8080;
+    //списки отдаются из представлений менеджера без копирования, тип коллекции задаётся явно для Gson
+    private static final Type TASK_COLLECTION_TYPE = new TypeToken<Collection<Task>>(){}.getType();
+    private static final Type EPIC_COLLECTION_TYPE = new TypeToken<Collection<Epic>>(){}.getType();
+    private static final Type SUBTASK_COLLECTION_TYPE = new TypeToken<Collection<Subtask>>(){}.getType();
+    //списки пишутся в ответ потоком; ответ списка, не превысивший этот размер, ещё и кэшируется до изменения
+    private static final int MAX_CACHED_BODY_SIZE = 8 << 20;
+    private static final int WRITER_BUFFER_SIZE = 1 << 16;
     private HttpServer server;
     private Gson gson;
     private TaskManager httpTaskManager;
-    private final String pathOfTask;
-    private final String pathOfEpic;
-    private final String pathOfSubtask;
-    private final String pathOfTaskWithId;
-    private final String pathOfEpicWithId;
-    private final String pathOfSubtaskWithId;
-    private final String pathOfHistory;
-    private final String pathOfPrioritizedTasks;
-    private final String pathOfEpicSubtasksWithId;
+    private final TaskRouter router;
+    private final ExecutorService executor;
+    private final ReadWriteLock managerLock;//null, если менеджер не нужно защищать от параллельных запросов
+    //ETag списка - номер изменения менеджера с префиксом запуска: после перезапуска номера начинаются заново
+    private final String eTagPrefix;
 
     public HttpTaskServer() throws IOException {
         this(Managers.getDefault());
     }
 
     public HttpTaskServer(TaskManager httpTaskManager) throws IOException {
+        this(httpTaskManager, ExecutorMode.DISPATCHER);
+    }
+
+    public HttpTaskServer(TaskManager httpTaskManager, ExecutorMode executorMode) throws IOException {
+        this(httpTaskManager, executorMode, ServerExecutors.DEFAULT_POOL_SIZE);
+    }
+
+    //poolSize учитывается только в режиме BOUNDED_POOL
+    public HttpTaskServer(TaskManager httpTaskManager, ExecutorMode executorMode, int poolSize) throws IOException {
         this.httpTaskManager = httpTaskManager;
         this.gson = Managers.getGson();
+        this.executor = ServerExecutors.create(executorMode, poolSize, "http-task-server");
+        this.managerLock = executorMode == ExecutorMode.DISPATCHER || httpTaskManager instanceof ConcurrentTaskManager
+                ? null : new ReentrantReadWriteLock();
+        this.eTagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+        this.router = createRouter();
         this.server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.setExecutor(executor);
         server.createContext("/tasks", this::handleTasks);
-        this.pathOfTask = "^/tasks/task/$";
-        this.pathOfEpic = "^/tasks/epic/$";
-        this.pathOfSubtask = "^/tasks/subtask/$";
-        this.pathOfTaskWithId = "^/tasks/task/\\?id=\\d+$";
-        this.pathOfEpicWithId = "^/tasks/epic/\\?id=\\d+$";
-        this.pathOfSubtaskWithId = "^/tasks/subtask/\\?id=\\d+$";
-        this.pathOfHistory = "^/tasks/history/$";
-        this.pathOfPrioritizedTasks = "^/tasks/$";
-        this.pathOfEpicSubtasksWithId = "^/tasks/subtask/epic/\\?id=\\d+$";
+    }
+
+    //маршруты для всех типов задач: GET списка и по id, POST, DELETE всех и по id.
+    //У каждого списка свой кэш последнего ответа
+    private TaskRouter createRouter() {
+        TaskRouter router = new TaskRouter();
+        addTaskListRoute(router, "/tasks/", httpTaskManager::getVersion, httpTaskManager::getPrioritizedTasksView,
+                TASK_COLLECTION_TYPE);
+        router.add("GET", "/tasks/", TaskRouter.Query.PARAMETERS, true, (httpExchange, match) ->
+                handleGetPrioritizedTasksInRange(httpExchange, match.getParameters()));
+        addTaskListRoute(router, "/tasks/history/", httpTaskManager::getHistoryVersion, httpTaskManager::getHistoryView,
+                TASK_COLLECTION_TYPE);
+        addTaskListRoute(router, "/tasks/task/", httpTaskManager::getVersion, httpTaskManager::getTaskView,
+                TASK_COLLECTION_TYPE);
+        addTaskListRoute(router, "/tasks/epic/", httpTaskManager::getVersion, httpTaskManager::getEpicView,
+                EPIC_COLLECTION_TYPE);
+        addTaskListRoute(router, "/tasks/subtask/", httpTaskManager::getVersion, httpTaskManager::getSubtaskView,
+                SUBTASK_COLLECTION_TYPE);
+        router.add("GET", "/tasks/subtask/epic/", TaskRouter.Query.ID, true, (httpExchange, match) ->
+                handleGetSubsByEpicId(httpExchange, match.getId(), match.getIdText()));
+        router.add("POST", "/tasks/batch", TaskRouter.Query.NONE, false, (httpExchange, match) ->
+                handlePostBatch(httpExchange));
+        router.add("POST", "/tasks/batch/", TaskRouter.Query.NONE, false, (httpExchange, match) ->
+                handlePostBatch(httpExchange));
+        for (TaskType taskType : TaskType.values()) {
+            String path = "/tasks/" + taskType.name().toLowerCase() + "/";
+            //получение по id добавляет задачу в историю, поэтому не только читает менеджер
+            router.add("GET", path, TaskRouter.Query.ID, false, (httpExchange, match) ->
+                    handleGetAnyTypeOfTaskById(httpExchange, taskType, match.getId(), match.getIdText()));
+            router.add("POST", path, TaskRouter.Query.NONE, false, (httpExchange, match) ->
+                    handlePostCreateOrUpdateAnyTypeOfTask(httpExchange, taskType));
+            router.add("DELETE", path, TaskRouter.Query.NONE, false, (httpExchange, match) ->
+                    handleDeleteAnyTypeOfTasks(httpExchange, taskType));
+            router.add("DELETE", path, TaskRouter.Query.ID, false, (httpExchange, match) ->
+                    handleDeleteAnyTypeOfTaskById(httpExchange, taskType, match.getId(), match.getIdText()));
+        }
+        return router;
+    }
+
+    //versions - номер изменения, от которого зависит список: getVersion для задач, getHistoryVersion для истории
+    private void addTaskListRoute(TaskRouter router, String path, LongSupplier versions,
+                                  Supplier<Collection<? extends Task>> tasks, Type collectionType) {
+        AtomicReference<CachedResponse> cache = new AtomicReference<>();
+        router.add("GET", path, TaskRouter.Query.NONE, true, (httpExchange, match) ->
+                handleGetTaskList(httpExchange, cache, versions, tasks, collectionType));
     }
 
     public void start() {
@@ -62,79 +146,46 @@ public class HttpTaskServer {
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
         System.out.println("Остановили HttpTaskServer на порту " + PORT);
     }
 
     private void handleTasks(HttpExchange httpExchange) {
+        String path = httpExchange.getRequestURI().toString();
+        String requestMethod = httpExchange.getRequestMethod();
+        TaskRouter.Match match = router.route(requestMethod, path);
+        if (managerLock == null || match == null) {
+            routeTasks(httpExchange, path, requestMethod, match);
+            return;
+        }
+        Lock lock = match.isReadOnly() ? managerLock.readLock() : managerLock.writeLock();
+        lock.lock();
         try {
-            String path = httpExchange.getRequestURI().toString();
-            String requestMethod = httpExchange.getRequestMethod();
-            String response;
-            switch (requestMethod) {
-                case "GET":
-                    if (Pattern.matches(pathOfTask, path)
-                            || Pattern.matches(pathOfEpic, path)
-                            || Pattern.matches(pathOfSubtask, path)
-                            || Pattern.matches(pathOfHistory, path)
-                            || Pattern.matches(pathOfPrioritizedTasks, path)) {
-
-                        handleGetAnyTypeOfTaskListOrListOfHistory(httpExchange, path);
-
-                    } else if (Pattern.matches(pathOfTaskWithId, path)
-                            || Pattern.matches(pathOfEpicWithId, path)
-                            || Pattern.matches(pathOfSubtaskWithId, path)) {
-
-                        handleGetAnyTypeOfTaskById(httpExchange, path);
-
-                    } else if (Pattern.matches(pathOfEpicSubtasksWithId, path)) {
-
-                        handleGetSubsByEpicId(httpExchange, path);
-
-                    } else {
-                        response = "Путь " + path + " не соответствует ожидаемому.";
-                        System.out.println(response);
-                        sendResponse(httpExchange, response, 405);
-                    }
-                    break;
-
-                case "POST":
-                    if (Pattern.matches(pathOfTask, path)
-                            || Pattern.matches(pathOfEpic, path)
-                            || Pattern.matches(pathOfSubtask, path)) {
-
-                        handlePostCreateOrUpdateAnyTypeOfTask(httpExchange, path);
-
-                    } else {
-                        response = "Путь " + path + " не соответствует ожидаемому.";
-                        System.out.println(response);
-                        sendResponse(httpExchange, response, 405);
-                    }
-                    break;
-
-                case "DELETE":
-                    if (Pattern.matches(pathOfTask, path)
-                            || Pattern.matches(pathOfEpic, path)
-                            || Pattern.matches(pathOfSubtask, path)) {
-
-                        handleDeleteAnyTypeOfTasks(httpExchange, path);
-
-                    } else if (Pattern.matches(pathOfTaskWithId, path)
-                            || Pattern.matches(pathOfEpicWithId, path)
-                            || Pattern.matches(pathOfSubtaskWithId, path)) {
-
-                        handleDeleteAnyTypeOfTaskById(httpExchange, path);
+            routeTasks(httpExchange, path, requestMethod, match);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-                    } else {
+    private void routeTasks(HttpExchange httpExchange, String path, String requestMethod, TaskRouter.Match match) {
+        try {
+            if (match != null) {
+                match.handle(httpExchange);
+            } else {
+                String response;
+                switch (requestMethod) {
+                    case "GET":
+                    case "POST":
+                    case "DELETE":
                         response = "Путь " + path + " не соответствует ожидаемому.";
-                        System.out.println(response);
-                        sendResponse(httpExchange, response, 405);
-                    }
-                    break;
-
-                default:
-                    response = "Ожидается GET, POST или DELETE запрос, а поступил - " + requestMethod;
-                    System.out.println(response);
-                    sendResponse(httpExchange, response, 405);
+                        break;
+                    default:
+                        response = "Ожидается GET, POST или DELETE запрос, а поступил - " + requestMethod;
+                }
+                System.out.println(response);
+                sendResponse(httpExchange, response, 405);
             }
         } catch (Exception exception) {
             exception.printStackTrace();
@@ -143,14 +194,6 @@ public class HttpTaskServer {
         }
     }
 
-    private long parsePathId(String path) {
-        try {
-            return Long.parseLong(path);
-        } catch (NumberFormatException exception) {
-            return -1L;
-        }
-    }
-
     private String readRequest(HttpExchange httpExchange) throws IOException {
         return new String(httpExchange.getRequestBody().readAllBytes(), UTF_8);
     }
@@ -159,48 +202,149 @@ public class HttpTaskServer {
         if (responseString.isBlank()) {
             httpExchange.sendResponseHeaders(responseCode, 0);
         } else {
-            byte[] response = responseString.getBytes(UTF_8);
-            httpExchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
-            httpExchange.sendResponseHeaders(responseCode, response.length);
-            try (OutputStream os = httpExchange.getResponseBody()){
-                os.write(response);
+            sendResponse(httpExchange, responseString.getBytes(UTF_8), responseCode);
+        }
+    }
+
+    private void sendResponse(HttpExchange httpExchange, byte[] response, int responseCode) throws IOException {
+        httpExchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        httpExchange.sendResponseHeaders(responseCode, response.length);
+        try (OutputStream os = httpExchange.getResponseBody()){
+            os.write(response);
+        }
+    }
+
+    //Обработка получения списка всех задач. ETag - номер изменения списка: если он совпал с If-None-Match,
+    //отвечаем 304 без тела. Иначе отдаём последний сериализованный ответ этого списка, пока номер не изменился.
+    //Номер растёт после изменения, поэтому ответ, собранный во время изменения, получит старый номер
+    //и будет заменён при следующем запросе:
+    private void handleGetTaskList(HttpExchange httpExchange, AtomicReference<CachedResponse> cache, LongSupplier versions,
+                                   Supplier<Collection<? extends Task>> tasks, Type collectionType) throws IOException {
+        long version = versions.getAsLong();
+        String eTag = "\"" + eTagPrefix + version + "\"";
+        httpExchange.getResponseHeaders().add("ETag", eTag);
+        httpExchange.getResponseHeaders().add("Cache-Control", "no-cache");
+        if (matchesIfNoneMatch(httpExchange, eTag)) {
+            httpExchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        CachedResponse cached = cache.get();
+        if (cached != null && cached.version == version) {
+            sendResponse(httpExchange, cached.body, 200);
+            return;
+        }
+        byte[] body = sendJson(httpExchange, tasks.get(), collectionType, MAX_CACHED_BODY_SIZE);
+        if (body != null) {
+            cache.set(new CachedResponse(version, body));
+        }
+    }
+
+    private void sendJson(HttpExchange httpExchange, Object src, Type type) throws IOException {
+        sendJson(httpExchange, src, type, 0);
+    }
+
+    //Ответ 200 с JSON, который пишется прямо в тело ответа порциями (chunked), без строки и массива байт
+    //всего ответа. Если тело уложилось в copyLimit байт, возвращается его копия, иначе null:
+    private byte[] sendJson(HttpExchange httpExchange, Object src, Type type, int copyLimit) throws IOException {
+        httpExchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        httpExchange.sendResponseHeaders(200, 0);
+        BoundedCopyOutputStream body = new BoundedCopyOutputStream(httpExchange.getResponseBody(), copyLimit);
+        try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(body, UTF_8),
+                WRITER_BUFFER_SIZE))) {
+            gson.toJson(src, type, writer);
+        }
+        return body.copy();
+    }
+
+    //If-None-Match: список ETag через запятую или *, слабые W/"..." сравниваются как обычные
+    private boolean matchesIfNoneMatch(HttpExchange httpExchange, String eTag) {
+        List<String> headers = httpExchange.getRequestHeaders().get("If-None-Match");
+        if (headers == null) {
+            return false;
+        }
+        for (String header : headers) {
+            for (String candidate : header.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(eTag)) {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
-    //Обработка получения списка всех задач:
-    private void handleGetAnyTypeOfTaskListOrListOfHistory(HttpExchange httpExchange, String path) throws IOException {
-        String response = "";
-        String[] pathParts = path.split("/");
-        if (pathParts.length <= 2) {
-            response = gson.toJson(httpTaskManager.getPrioritizedTasks());
-        } else {
-            String requestType = pathParts[2];
-            switch (requestType) {
-                case "task":
-                    response = gson.toJson(httpTaskManager.getTaskList());
-                    break;
-                case "epic":
-                    response = gson.toJson(httpTaskManager.getEpicList());
-                    break;
-                case "subtask":
-                    response = gson.toJson(httpTaskManager.getSubtaskList());
-                    break;
-                case "history":
-                    response = gson.toJson(httpTaskManager.getHistory());
+    //Обработка получения задач по интервалу времени начала: /tasks/?from=...&to=...&limit=...
+    //Без from и to интервал не ограничен с соответствующей стороны. С параметром after вместо from отдаётся
+    //страница задач, начинающихся строго после after. Если страница заполнена до limit, в заголовке
+    //X-Next-Cursor передаётся значение after для следующей страницы:
+    private void handleGetPrioritizedTasksInRange(HttpExchange httpExchange, Map<String, String> parameters)
+            throws IOException {
+        LocalDateTime from = LocalDateTime.MIN;
+        LocalDateTime after = null;
+        LocalDateTime to = LocalDateTime.MAX;
+        int limit = Integer.MAX_VALUE;
+        List<Task> page;
+        try {
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                String name = parameter.getKey();
+                String value = URLDecoder.decode(parameter.getValue(), UTF_8);
+                switch (name) {
+                    case "from":
+                        from = LocalDateTime.parse(value);
+                        break;
+                    case "after":
+                        after = LocalDateTime.parse(value);
+                        break;
+                    case "to":
+                        to = LocalDateTime.parse(value);
+                        break;
+                    case "limit":
+                        limit = Integer.parseInt(value);
+                        break;
+                    default:
+                        sendResponse(httpExchange, "Неизвестный параметр запроса " + name, 400);
+                        return;
+                }
             }
+            if (after != null) {
+                page = httpTaskManager.getPrioritizedTasksAfter(after, to, limit);
+            } else if (limit == Integer.MAX_VALUE) {
+                Collection<Task> range = httpTaskManager.getPrioritizedTasks(from, to);
+                sendJson(httpExchange, range, TASK_COLLECTION_TYPE);
+                return;
+            } else if (limit <= 0) {
+                sendResponse(httpExchange, "Размер страницы должен быть больше нуля, а передан - " + limit, 400);
+                return;
+            } else {
+                page = new ArrayList<>();
+                for (Task task : httpTaskManager.getPrioritizedTasks(from, to)) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    page.add(task);
+                }
+            }
+        } catch (DateTimeParseException | NumberFormatException exception) {
+            sendResponse(httpExchange, "Некорректное значение параметра: " + exception.getMessage(), 400);
+            return;
+        } catch (IllegalArgumentException exception) {
+            sendResponse(httpExchange, exception.getMessage(), 400);
+            return;
         }
-        sendResponse(httpExchange, response, 200);
+        if (page.size() == limit) {
+            httpExchange.getResponseHeaders().add("X-Next-Cursor", page.get(page.size() - 1).getStartTime().toString());
+        }
+        sendJson(httpExchange, page, TASK_COLLECTION_TYPE);
     }
 
     //Обработка получения по идентификатору:
-    private void handleGetAnyTypeOfTaskById(HttpExchange httpExchange, String path) throws IOException {
+    private void handleGetAnyTypeOfTaskById(HttpExchange httpExchange, TaskType requestType, long id, String pathId)
+            throws IOException {
         String response;
         Task anyTask = null;
-        String taskType = path.split("/")[2];
-        TaskType requestType = TaskType.valueOf(taskType.toUpperCase());
-        String pathId = path.replaceFirst("/tasks/" + taskType + "/\\?id=", "");
-        long id = parsePathId(pathId);
         if (id != -1) {
             switch (requestType) {
                 case TASK:
@@ -228,10 +372,8 @@ public class HttpTaskServer {
     }
 
     //Обработка получения списка всех подзадач определённого эпика:
-    private void handleGetSubsByEpicId(HttpExchange httpExchange, String path) throws IOException {
+    private void handleGetSubsByEpicId(HttpExchange httpExchange, long id, String pathId) throws IOException {
         String response;
-        String pathId = path.replaceFirst("/tasks/subtask/epic/\\?id=", "");
-        long id = parsePathId(pathId);
         if (id != -1) {
             List<Subtask> subsByEpicId = httpTaskManager.getSubsByEpicId(id);
             if (subsByEpicId.isEmpty()) {
@@ -239,8 +381,7 @@ public class HttpTaskServer {
                 System.out.println(response);
                 sendResponse(httpExchange, response, 404);
             } else {
-                response = gson.toJson(subsByEpicId);
-                sendResponse(httpExchange, response, 200);
+                sendJson(httpExchange, subsByEpicId, SUBTASK_COLLECTION_TYPE);
             }
         } else {
             response = "Получен некорректный ID " + pathId;
@@ -250,9 +391,9 @@ public class HttpTaskServer {
     }
 
     //Обработка создания и обновления задач:
-    private void handlePostCreateOrUpdateAnyTypeOfTask(HttpExchange httpExchange, String path) throws IOException {
+    private void handlePostCreateOrUpdateAnyTypeOfTask(HttpExchange httpExchange, TaskType requestType)
+            throws IOException {
         String jsonRequest = readRequest(httpExchange);
-        TaskType requestType = TaskType.valueOf(path.split("/")[2].toUpperCase());
         try {
             switch (requestType) {
                 case TASK:
@@ -337,9 +478,121 @@ public class HttpTaskServer {
         }
     }
 
+    //Обработка пакета: {"create": [...], "update": [...], "delete": {"task": [id, ...], "epic": [...], "subtask": [...]}}.
+    //Подзадача в "create" может вместо epicId указать "epicRef": <позиция эпика в "create">, созданного раньше неё.
+    //Весь JSON разбирается и проверяется до изменений. Части выполняются по порядку - создание, обновление,
+    //удаление - и каждая применяется целиком или не применяется. В ответе - созданные задачи с присвоенными id:
+    private void handlePostBatch(HttpExchange httpExchange) throws IOException {
+        String jsonRequest = readRequest(httpExchange);
+        List<Task> createdTasks = new ArrayList<>();
+        try {
+            JsonObject batch = JsonParser.parseString(jsonRequest).getAsJsonObject();
+            Map<Integer, Integer> epicRefs = new HashMap<>();
+            List<Task> tasksToCreate = parseBatchTasks(batch.get("create"), epicRefs);
+            List<Task> tasksToUpdate = parseBatchTasks(batch.get("update"), null);
+            Map<TaskType, long[]> idsToDelete = new EnumMap<>(TaskType.class);
+            if (batch.has("delete")) {
+                for (Map.Entry<String, JsonElement> deleteEntry : batch.getAsJsonObject("delete").entrySet()) {
+                    TaskType deleteType = parseTaskType(deleteEntry.getKey());
+                    if (deleteType == null) {
+                        sendResponse(httpExchange, "Передан некорректный тип задачи " + deleteEntry.getKey(), 400);
+                        return;
+                    }
+                    idsToDelete.put(deleteType, gson.fromJson(deleteEntry.getValue(), long[].class));
+                }
+            }
+            for (Task task : tasksToCreate) {
+                String fieldsError = checkTaskFields(task);
+                if (fieldsError != null) {
+                    sendResponse(httpExchange, fieldsError, 400);
+                    return;
+                }
+            }
+            for (Task task : tasksToUpdate) {
+                String fieldsError = checkTaskFields(task);
+                if (fieldsError != null) {
+                    sendResponse(httpExchange, fieldsError, 400);
+                    return;
+                }
+            }
+
+            if (!tasksToCreate.isEmpty()) {
+                createdTasks = httpTaskManager.createAll(tasksToCreate, epicRefs);
+            }
+            if (!tasksToUpdate.isEmpty()) {
+                httpTaskManager.updateAll(tasksToUpdate);
+            }
+            for (Map.Entry<TaskType, long[]> deleteEntry : idsToDelete.entrySet()) {
+                httpTaskManager.deleteByIds(deleteEntry.getKey(), deleteEntry.getValue());
+            }
+        } catch (JsonParseException exception) {
+            sendResponse(httpExchange, "Получен некорректный JSON", 400);
+            return;
+        } catch (IllegalArgumentException | IllegalStateException exception) {
+            sendResponse(httpExchange, exception.getMessage(), 400);
+            return;
+        }
+        sendJson(httpExchange, createdTasks, TASK_COLLECTION_TYPE);
+    }
+
+    //задачи пакета разбираются по полю taskType каждого элемента:
+    //epicRefs - куда сложить ссылки "epicRef" подзадач (позиция подзадачи -> позиция эпика); null, если они запрещены
+    private List<Task> parseBatchTasks(JsonElement tasksJson, Map<Integer, Integer> epicRefs) {
+        List<Task> tasks = new ArrayList<>();
+        if (tasksJson == null || tasksJson.isJsonNull()) {
+            return tasks;
+        }
+        for (JsonElement taskJson : tasksJson.getAsJsonArray()) {
+            JsonElement taskTypeJson = taskJson.getAsJsonObject().get("taskType");
+            TaskType taskType = taskTypeJson == null || taskTypeJson.isJsonNull() ? null
+                    : parseTaskType(taskTypeJson.getAsString());
+            if (taskType == null) {
+                throw new IllegalArgumentException("Передан JSON c некорректным типом задачи");
+            }
+            JsonElement epicRefJson = taskJson.getAsJsonObject().get("epicRef");
+            if (epicRefJson != null && !epicRefJson.isJsonNull()) {
+                if (epicRefs == null || taskType != TaskType.SUBTASK) {
+                    throw new IllegalArgumentException("Поле epicRef допустимо только у подзадач в \"create\"");
+                }
+                epicRefs.put(tasks.size(), epicRefJson.getAsInt());
+            }
+            switch (taskType) {
+                case EPIC:
+                    tasks.add(gson.fromJson(taskJson, Epic.class));
+                    break;
+                case SUBTASK:
+                    tasks.add(gson.fromJson(taskJson, Subtask.class));
+                    break;
+                default:
+                    tasks.add(gson.fromJson(taskJson, Task.class));
+            }
+        }
+        return tasks;
+    }
+
+    private TaskType parseTaskType(String taskType) {
+        for (TaskType type : TaskType.values()) {
+            if (type.name().equalsIgnoreCase(taskType)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    //те же проверки полей, что и при создании одной задачи; null - если ошибок нет
+    private String checkTaskFields(Task task) {
+        if (task.getTaskType() == null || task.getHeader() == null || task.getDescription() == null
+                || task.getStatus() == null || task.getDurationInMinutes() == null
+                || (task.getTaskType() == TaskType.EPIC && ((Epic) task).getSubtaskIds() == null)) {
+            return "Значение null может быть только в поле startTime и endTime";
+        } else if (task.getHeader().isBlank()) {
+            return "Заголовок не может быть пустыми";
+        }
+        return null;
+    }
+
     //Обработка удаления всех задач:
-    private void handleDeleteAnyTypeOfTasks(HttpExchange httpExchange, String path) throws IOException {
-        TaskType requestType = TaskType.valueOf(path.split("/")[2].toUpperCase());
+    private void handleDeleteAnyTypeOfTasks(HttpExchange httpExchange, TaskType requestType) throws IOException {
         switch (requestType) {
             case TASK:
                 httpTaskManager.deleteTasks();
@@ -354,11 +607,8 @@ public class HttpTaskServer {
     }
 
     //Обработка удаления по идентификатору:
-    private void handleDeleteAnyTypeOfTaskById(HttpExchange httpExchange, String path) throws IOException {
-        String taskType = path.split("/")[2];
-        TaskType requestType = TaskType.valueOf(taskType.toUpperCase());
-        String pathId = path.replaceFirst("/tasks/" + taskType + "/\\?id=", "");
-        long id = parsePathId(pathId);
+    private void handleDeleteAnyTypeOfTaskById(HttpExchange httpExchange, TaskType requestType, long id,
+                                               String pathId) throws IOException {
         if (id != -1) {
             try {
                 switch (requestType) {
@@ -381,4 +631,53 @@ public class HttpTaskServer {
             httpExchange.sendResponseHeaders(405, 0);
         }
     }
+
+    private static final class CachedResponse {
+        private final long version;
+        private final byte[] body;
+
+        private CachedResponse(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    //Передаёт запись дальше и копирует первые limit байт; копия сбрасывается, как только запись выходит за limit
+    private static final class BoundedCopyOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy;
+
+        private BoundedCopyOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+            this.copy = limit > 0 ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy(b, off, len);
+        }
+
+        private void copy(byte[] b, int off, int len) {
+            if (copy == null) {
+                return;
+            }
+            if (copy.size() + len > limit) {
+                copy = null;
+            } else {
+                copy.write(b, off, len);
+            }
+        }
+
+        private byte[] copy() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
 }
@@ -2,90 +2,283 @@ package network;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import enums.ExecutorMode;
+import storage.InMemoryKVStorage;
+import storage.KVStorage;
 
+//Запросы обрабатываются параллельно исполнителем executorMode, хранилище KVStorage потокобезопасно: запросы к разным
+//ключам не ждут друг друга. Пакеты /mset и /mget разбираются и пишутся потоком, не собираясь в памяти строкой.
+//По умолчанию значения хранятся только в памяти; с LogStructuredKVStorage они переживают перезапуск сервера.
 public class KVServer {
     public static final int PORT = 8078;
     private final String apiToken;
     private final HttpServer server;
-    private final Map<String, String> data = new HashMap<>();
+    private final ExecutorService executor;
+    private final KVStorage data;
+    private final Gson gson = new Gson();
+    private static final Type STRING_MAP_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+    private static final int BUFFER_SIZE = 1 << 16;
 
     public KVServer() throws IOException {
+        this(ExecutorMode.BOUNDED_POOL);
+    }
+
+    public KVServer(ExecutorMode executorMode) throws IOException {
+        this(executorMode, ServerExecutors.DEFAULT_POOL_SIZE);
+    }
+
+    //poolSize учитывается только в режиме BOUNDED_POOL
+    public KVServer(ExecutorMode executorMode, int poolSize) throws IOException {
+        this(executorMode, poolSize, new InMemoryKVStorage());
+    }
+
+    public KVServer(KVStorage storage) throws IOException {
+        this(ExecutorMode.BOUNDED_POOL, ServerExecutors.DEFAULT_POOL_SIZE, storage);
+    }
+
+    //storage закрывается вместе с сервером в stop()
+    public KVServer(ExecutorMode executorMode, int poolSize, KVStorage storage) throws IOException {
         apiToken = generateApiToken();
+        data = storage;
+        executor = ServerExecutors.create(executorMode, poolSize, "kv-server");
         server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.setExecutor(executor);
         server.createContext("/register", this::register);
-        server.createContext("/save", this::save);
-        server.createContext("/load", this::load);
+        server.createContext("/save", withStorageErrors(this::save));
+        server.createContext("/load", withStorageErrors(this::load));
+        server.createContext("/delete", withStorageErrors(this::delete));
+        server.createContext("/keys", withStorageErrors(this::keys));
+        server.createContext("/mset", withStorageErrors(this::mset));
+        server.createContext("/mget", withStorageErrors(this::mget));
+    }
+
+    //ошибка ввода-вывода хранилища - ответ 500, а не оборванное соединение; обмен закрывается здесь,
+    //после ответа на ошибку, поэтому обработчики его не закрывают
+    private static HttpHandler withStorageErrors(HttpHandler handler) {
+        return h -> {
+            try {
+                handler.handle(h);
+            } catch (UncheckedIOException exception) {
+                System.out.println("Ошибка хранилища: " + exception.getMessage());
+                if (h.getResponseCode() == -1) {
+                    h.sendResponseHeaders(500, -1);
+                }
+            } finally {
+                h.close();
+            }
+        };
     }
 
     private void load(HttpExchange h) throws IOException {
-        try {
-            System.out.println("\n/load");
-            if (!hasAuth(h)) {
-                System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
-                h.sendResponseHeaders(403, 0);
+        System.out.println("\n/load");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("GET".equals(h.getRequestMethod())) {
+            String key = h.getRequestURI().getPath().substring("/load/".length());
+            if (key.isEmpty()) {
+                System.out.println("Key для загрузки пустой. key указывается в пути: /load/{key}");
+                h.sendResponseHeaders(400, 0);
                 return;
             }
-            if ("GET".equals(h.getRequestMethod())) {
-                String key = h.getRequestURI().getPath().substring("/load/".length());
-                if (key.isEmpty()) {
-                    System.out.println("Key для загрузки пустой. key указывается в пути: /load/{key}");
-                    h.sendResponseHeaders(400, 0);
-                    return;
-                }
-                if (!data.containsKey(key)) {
-                    System.out.println("Запрашиваемый key отсутствует в хранилище. Проверьте, пожалуйста, " +
-                            "key и повторите попытку.");
-                    h.sendResponseHeaders(400, 0);
-                    return;
-                }
-                sendText(h, data.get(key));
-                System.out.println("Значение для ключа " + key + " успешно получено!");
-            } else {
-                System.out.println("/load ждёт GET-запрос, а получил: " + h.getRequestMethod());
-                h.sendResponseHeaders(405, 0);
+            String value = data.get(key);//одно обращение: ключ могут удалить параллельно
+            if (value == null) {
+                System.out.println("Запрашиваемый key отсутствует в хранилище. Проверьте, пожалуйста, " +
+                        "key и повторите попытку.");
+                h.sendResponseHeaders(400, 0);
+                return;
             }
-        } finally {
-            h.close();
+            sendText(h, value);
+            System.out.println("Значение для ключа " + key + " успешно получено!");
+        } else {
+            System.out.println("/load ждёт GET-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
         }
     }
 
     private void save(HttpExchange h) throws IOException {
-        try {
-            System.out.println("\n/save");
-            if (!hasAuth(h)) {
-                System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
-                h.sendResponseHeaders(403, 0);
+        System.out.println("\n/save");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("POST".equals(h.getRequestMethod())) {
+            String key = h.getRequestURI().getPath().substring("/save/".length());
+            if (key.isEmpty()) {
+                System.out.println("Key для сохранения пустой. key указывается в пути: /save/{key}");
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            String value = readText(h);
+            if (value.isEmpty()) {
+                System.out.println("Value для сохранения пустой. value указывается в теле запроса");
+                h.sendResponseHeaders(400, 0);
                 return;
             }
-            if ("POST".equals(h.getRequestMethod())) {
-                String key = h.getRequestURI().getPath().substring("/save/".length());
-                if (key.isEmpty()) {
-                    System.out.println("Key для сохранения пустой. key указывается в пути: /save/{key}");
+            data.put(key, value);
+            System.out.println("Значение для ключа " + key + " успешно обновлено!");
+            h.sendResponseHeaders(200, 0);
+        } else {
+            System.out.println("/save ждёт POST-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
+        }
+    }
+
+    //DELETE /delete/{key} удаляет ключ, /delete/{префикс}* - все ключи с этим префиксом; отсутствие ключа не ошибка
+    private void delete(HttpExchange h) throws IOException {
+        System.out.println("\n/delete");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("DELETE".equals(h.getRequestMethod())) {
+            String key = h.getRequestURI().getPath().substring("/delete/".length());
+            if (key.isEmpty()) {
+                System.out.println("Key для удаления пустой. key указывается в пути: /delete/{key}");
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            if (key.endsWith("*")) {
+                String prefix = key.substring(0, key.length() - 1);
+                data.removeByPrefix(prefix);
+            } else {
+                data.remove(key);
+            }
+            System.out.println("Значение для ключа " + key + " удалено!");
+            h.sendResponseHeaders(200, 0);
+        } else {
+            System.out.println("/delete ждёт DELETE-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
+        }
+    }
+
+    //GET /keys/{префикс} возвращает JSON-массив ключей с этим префиксом, /keys/ - все ключи
+    private void keys(HttpExchange h) throws IOException {
+        System.out.println("\n/keys");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("GET".equals(h.getRequestMethod())) {
+            String path = h.getRequestURI().getPath();
+            String prefix = path.length() > "/keys/".length() ? path.substring("/keys/".length()) : "";
+            sendText(h, gson.toJson(data.keys(prefix)));
+        } else {
+            System.out.println("/keys ждёт GET-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
+        }
+    }
+
+    //POST /mset с телом {"ключ": "значение", ...} сохраняет все пары одним запросом
+    private void mset(HttpExchange h) throws IOException {
+        System.out.println("\n/mset");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("POST".equals(h.getRequestMethod())) {
+            Map<String, String> values = parseBody(h, STRING_MAP_TYPE);
+            if (values == null || values.isEmpty()) {
+                System.out.println("Пары для сохранения не переданы. Они указываются в теле запроса JSON-объектом");
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            for (Map.Entry<String, String> value : values.entrySet()) {
+                if (value.getKey().isEmpty() || value.getValue() == null || value.getValue().isEmpty()) {
+                    System.out.println("Key или value для сохранения пустой: " + value.getKey());
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                String value = readText(h);
-                if (value.isEmpty()) {
-                    System.out.println("Value для сохранения пустой. value указывается в теле запроса");
+            }
+            data.putAll(values);
+            System.out.println("Значения для " + values.size() + " ключей успешно обновлены!");
+            h.sendResponseHeaders(200, 0);
+        } else {
+            System.out.println("/mset ждёт POST-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
+        }
+    }
+
+    //POST /mget с телом ["ключ", ...] возвращает JSON-объект {"ключ": "значение"}; отсутствующих ключей в нём нет.
+    //Значения читаются до отправки заголовков: ошибка хранилища успевает стать ответом 500, а не оборванным 200
+    private void mget(HttpExchange h) throws IOException {
+        System.out.println("\n/mget");
+        if (!hasAuth(h)) {
+            System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+            h.sendResponseHeaders(403, 0);
+            return;
+        }
+        if ("POST".equals(h.getRequestMethod())) {
+            String[] keys = parseBody(h, String[].class);
+            if (keys == null) {
+                System.out.println("Ключи для загрузки не переданы. Они указываются в теле запроса JSON-массивом");
+                h.sendResponseHeaders(400, 0);
+                return;
+            }
+            for (String key : keys) {
+                if (key == null || key.isEmpty()) {
+                    System.out.println("Ключ для загрузки пустой");
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                data.put(key, value);
-                System.out.println("Значение для ключа " + key + " успешно обновлено!");
-                h.sendResponseHeaders(200, 0);
-            } else {
-                System.out.println("/save ждёт POST-запрос, а получил: " + h.getRequestMethod());
-                h.sendResponseHeaders(405, 0);
             }
-        } finally {
-            h.close();
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String key : keys) {
+                String value = data.get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            h.getResponseHeaders().add("Content-Type", "application/json");
+            h.sendResponseHeaders(200, 0);//длина заранее неизвестна: ответ пишется по частям
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(h.getResponseBody(),
+                    UTF_8), BUFFER_SIZE))) {
+                writer.beginObject();
+                for (Map.Entry<String, String> value : values.entrySet()) {
+                    writer.name(value.getKey()).value(value.getValue());
+                }
+                writer.endObject();
+            }
+            System.out.println("Значения для " + values.size() + " ключей успешно получены!");
+        } else {
+            System.out.println("/mget ждёт POST-запрос, а получил: " + h.getRequestMethod());
+            h.sendResponseHeaders(405, 0);
+        }
+    }
+
+    //тело разбирается по мере чтения из сокета, без промежуточной строки
+    private <T> T parseBody(HttpExchange h, Type type) {
+        try {
+            return gson.fromJson(new BufferedReader(new InputStreamReader(h.getRequestBody(), UTF_8), BUFFER_SIZE),
+                    type);
+        } catch (JsonParseException exception) {
+            return null;
         }
     }
 
@@ -112,6 +305,15 @@ public class KVServer {
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);//хранилище закрывается после начатых запросов
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        data.close();
         System.out.println("Остановили KVServer на порту " + PORT);
     }
 
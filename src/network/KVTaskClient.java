@@ -1,56 +1,245 @@
 package network;
 
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 
+//Запросы отправляются асинхронно (методы *Async): независимые ключи уходят на сервер параллельно, но не больше
+//maxInFlightRequests одновременно - следующий вызов ждёт, пока освободится место в окне.
+//Запросы к одному ключу выполняются в порядке вызова; удаление по префиксу и список ключей ждут все запросы,
+//отправленные до них, а запросы после них ждут их самих. Пакетные putAll и loadAll (/mset и /mget) упорядочены
+//со всеми своими ключами. Синхронные методы - те же запросы с ожиданием ответа.
 public class KVTaskClient {
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+    private static final Gson GSON = new Gson();
+    private static final Type STRING_MAP_TYPE = new TypeToken<LinkedHashMap<String, String>>(){}.getType();
     private final String urlOfKVServer;
     private final String apiToken;
     private final HttpClient httpClient;
+    private final Semaphore inFlightRequests;
+    private final Map<String, CompletableFuture<?>> lastRequestByKey = new HashMap<>();//последний запрос к ключу
+    private CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);//последний запрос ко всем ключам
 
     public KVTaskClient(String urlOfKVServer) {
+        this(urlOfKVServer, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    public KVTaskClient(String urlOfKVServer, int maxInFlightRequests) {
+        if (maxInFlightRequests <= 0) {
+            throw new IllegalArgumentException("Число одновременных запросов должно быть больше нуля: "
+                    + maxInFlightRequests);
+        }
         this.urlOfKVServer = urlOfKVServer;
         this.httpClient = HttpClient.newHttpClient();
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
         this.apiToken = register(urlOfKVServer);
     }
 
     public void put(String key, String json) {
-        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(json);
+        await(putAsync(key, json));
+    }
+
+    public void put(String key, byte[] value) {//значение уже в байтах, например сжатый снимок в Base64
+        await(putAsync(key, value));
+    }
+
+    public String load(String key) {
+        return await(loadAsync(key));
+    }
+
+    //удаляет ключ; key с '*' на конце удаляет все ключи с этим префиксом
+    public void delete(String key) {
+        await(deleteAsync(key));
+    }
+
+    public void putAll(Map<String, String> values) {
+        await(putAllAsync(values));
+    }
+
+    public Map<String, String> loadAll(Collection<String> keys) {
+        return await(loadAllAsync(keys));
+    }
+
+    public List<String> keys(String prefix) { //ключи, которые начинаются с prefix
+        return await(keysAsync(prefix));
+    }
+
+    public CompletableFuture<Void> putAsync(String key, String json) {
+        return putAsync(key, HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    public CompletableFuture<Void> putAsync(String key, byte[] value) {
+        return putAsync(key, HttpRequest.BodyPublishers.ofByteArray(value));
+    }
+
+    private CompletableFuture<Void> putAsync(String key, HttpRequest.BodyPublisher body) {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(urlOfKVServer + "save/" + key + "?API_TOKEN=" + apiToken))
                 .POST(body)
                 .build();
-        try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                throw new IllegalStateException("При ответе на POST запрос сервер вернул ошибку с кодом: "
-                        + response.statusCode());
-            }
-        } catch (IOException | InterruptedException e) {
-            throw new IllegalStateException("Во время выполнения POST запроса к KVServer возникла ошибка.\n" +
-                    "Проверьте, пожалуйста, адрес и повторите попытку.");
-        }
+        return send(List.of(key), request, "POST", responseBody -> null);
     }
 
-    public String load(String key) {
+    public CompletableFuture<String> loadAsync(String key) {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(urlOfKVServer + "load/" + key + "?API_TOKEN=" + apiToken))
                 .GET()
                 .build();
+        return send(List.of(key), request, "GET", responseBody -> responseBody);
+    }
+
+    public CompletableFuture<Void> deleteAsync(String key) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(urlOfKVServer + "delete/" + key + "?API_TOKEN=" + apiToken))
+                .DELETE()
+                .build();
+        return send(key.endsWith("*") ? null : List.of(key), request, "DELETE", responseBody -> null);
+    }
+
+    //сохраняет все пары одним запросом
+    public CompletableFuture<Void> putAllAsync(Map<String, String> values) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(urlOfKVServer + "mset?API_TOKEN=" + apiToken))
+                .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(values)))
+                .build();
+        return send(List.copyOf(values.keySet()), request, "POST", responseBody -> null);
+    }
+
+    //значения ключей одним запросом; отсутствующих на сервере ключей в ответе нет
+    public CompletableFuture<Map<String, String>> loadAllAsync(Collection<String> keys) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(urlOfKVServer + "mget?API_TOKEN=" + apiToken))
+                .POST(HttpRequest.BodyPublishers.ofString(GSON.toJson(keys)))
+                .build();
+        return send(List.copyOf(keys), request, "POST", responseBody -> GSON.fromJson(responseBody, STRING_MAP_TYPE));
+    }
+
+    public CompletableFuture<List<String>> keysAsync(String prefix) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(urlOfKVServer + "keys/" + prefix + "?API_TOKEN=" + apiToken))
+                .GET()
+                .build();
+        return send(null, request, "GET", responseBody -> Arrays.asList(GSON.fromJson(responseBody, String[].class)));
+    }
+
+    //ждёт ответа на все отправленные запросы; ошибки отдельных запросов возвращают их CompletableFuture
+    public void awaitAll() {
+        CompletableFuture<?> all;
+        synchronized (this) {
+            all = afterAll();
+        }
+        all.join();
+    }
+
+    //keys == null - запрос ко всем ключам: выполняется после всех отправленных и до всех следующих
+    private <T> CompletableFuture<T> send(Collection<String> keys, HttpRequest request, String method,
+                                          Function<String, T> responseMapper) {
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                throw new IllegalStateException("При ответе на GET запрос сервер вернул ошибку с кодом: "
-                        + response.statusCode());
+            inFlightRequests.acquire();//окно заполнено - ждём ответа на один из запросов
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание отправки " + method + " запроса к KVServer прервано.");
+        }
+        CompletableFuture<T> response;
+        synchronized (this) {
+            CompletableFuture<?> previous = keys == null ? afterAll() : after(keys);
+            response = previous
+                    .handle((result, error) -> null)//ошибка предыдущего запроса достаётся его вызывающему
+                    .thenCompose(ignored -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                    .handle((httpResponse, error) -> toResult(httpResponse, error, method, responseMapper));
+            if (keys == null) {
+                barrier = response;
+                lastRequestByKey.clear();//все они завершатся раньше barrier
+            } else {
+                for (String key : keys) {
+                    lastRequestByKey.put(key, response);
+                }
             }
-            return response.body();
-        } catch (IOException | InterruptedException e) {
-            throw new IllegalStateException("Во время выполнения GET запроса к KVServer возникла ошибка.\n" +
+        }
+        response.whenComplete((result, error) -> {
+            inFlightRequests.release();
+            if (keys != null) {
+                synchronized (this) {
+                    for (String key : keys) {
+                        lastRequestByKey.remove(key, response);
+                    }
+                }
+            }
+        });
+        return response;
+    }
+
+    //запрос к ключу без запросов в полёте ждёт только barrier: запросы до barrier уже учтены в нём
+    private CompletableFuture<?> after(Collection<String> keys) {
+        if (keys.size() == 1) {
+            return lastRequestByKey.getOrDefault(keys.iterator().next(), barrier);
+        }
+        Set<CompletableFuture<?>> requests = Collections.newSetFromMap(new IdentityHashMap<>());
+        requests.add(barrier);
+        for (String key : keys) {
+            CompletableFuture<?> request = lastRequestByKey.get(key);
+            if (request != null) {
+                requests.add(request);//пакетный запрос встречается у многих ключей, но ждётся один раз
+            }
+        }
+        return allOf(requests);
+    }
+
+    private CompletableFuture<?> afterAll() {
+        Set<CompletableFuture<?>> requests = Collections.newSetFromMap(new IdentityHashMap<>());
+        requests.addAll(lastRequestByKey.values());
+        requests.add(barrier);
+        return allOf(requests);
+    }
+
+    private static CompletableFuture<?> allOf(Set<CompletableFuture<?>> requests) {
+        return CompletableFuture.allOf(requests.stream()
+                .map(request -> request.handle((result, error) -> null))
+                .toArray(CompletableFuture<?>[]::new));
+    }
+
+    private static <T> T toResult(HttpResponse<String> response, Throwable error, String method,
+                                  Function<String, T> responseMapper) {
+        if (error != null) {
+            throw new IllegalStateException("Во время выполнения " + method + " запроса к KVServer возникла ошибка.\n" +
                     "Проверьте, пожалуйста, адрес и повторите попытку.");
         }
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("При ответе на " + method + " запрос сервер вернул ошибку с кодом: "
+                    + response.statusCode());
+        }
+        return responseMapper.apply(response.body());
+    }
+
+    //ответ асинхронного запроса; ошибка запроса бросается как есть, без обёртки CompletionException
+    public static <T> T await(CompletableFuture<T> request) {
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private String register(String urlOfKVServer) {
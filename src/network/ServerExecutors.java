@@ -0,0 +1,65 @@
+package network;
+
+import enums.ExecutorMode;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Исполнители обработчиков HttpServer. Проект собирается под Java 11, поэтому исполнитель виртуальных потоков
+//берётся через reflection и доступен только при запуске на Java 21 и новее.
+final class ServerExecutors {
+    //обработчики блокируются на вводе-выводе, поэтому потоков больше, чем ядер
+    static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private ServerExecutors() {
+    }
+
+    //null для DISPATCHER: HttpServer без исполнителя обрабатывает запросы в потоке-диспетчере.
+    //VIRTUAL_THREADS до Java 21 - IllegalStateException: режим задан явно, и подменять его пулом нельзя
+    static ExecutorService create(ExecutorMode executorMode, int poolSize, String threadName) {
+        switch (executorMode) {
+            case DISPATCHER:
+                return null;
+            case BOUNDED_POOL:
+                if (poolSize <= 0) {
+                    throw new IllegalArgumentException("Размер пула должен быть больше нуля: " + poolSize);
+                }
+                return Executors.newFixedThreadPool(poolSize, daemonThreads(threadName));
+            default:
+                return newVirtualThreadPerTaskExecutor();
+        }
+    }
+
+    static boolean isVirtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException exception) {
+            throw new IllegalStateException("Режим " + ExecutorMode.VIRTUAL_THREADS + " недоступен в Java "
+                    + Runtime.version().feature() + ": виртуальные потоки есть в Java 21 и новее, выберите "
+                    + ExecutorMode.BOUNDED_POOL + ".");
+        } catch (IllegalAccessException | InvocationTargetException exception) {
+            throw new IllegalStateException("Не удалось создать исполнитель виртуальных потоков.", exception);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String threadName) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);//как и поток-диспетчер, не держит JVM после stop()
+            return thread;
+        };
+    }
+}
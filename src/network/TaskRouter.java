@@ -0,0 +1,208 @@
+package network;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Маршрутизатор запросов без регулярных выражений: пути маршрутов заранее разложены в дерево по сегментам,
+//и URI запроса проходится один раз - по сегментам пути, затем по строке запроса. Строка запроса разбирается
+//по виду маршрута: без неё, ?id=<число> или параметры name=value через &.
+public final class TaskRouter {
+    public enum Query {
+        NONE,
+        ID,//id=<цифры>
+        PARAMETERS//name=value, имена из букв, цифр и '_'
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpExchange httpExchange, Match match) throws IOException;
+    }
+
+    private final Node root = new Node();
+
+    //path начинается с '/'; завершающий '/' значим: "/tasks/task/" и "/tasks/task" - разные маршруты.
+    //readOnly - обработчик не меняет менеджер, такие запросы HttpTaskServer выполняет параллельно
+    public void add(String method, String path, Query query, boolean readOnly, Handler handler) {
+        if (!path.startsWith("/") || path.indexOf('?') >= 0) {
+            throw new IllegalArgumentException("Путь маршрута должен начинаться с '/' и не содержать '?': " + path);
+        }
+        Node node = root;
+        int segmentStart = 1;
+        while (true) {
+            int segmentEnd = path.indexOf('/', segmentStart);
+            String segment = path.substring(segmentStart, segmentEnd < 0 ? path.length() : segmentEnd);
+            node = node.children.computeIfAbsent(segment, key -> new Node());
+            if (segmentEnd < 0) {
+                break;
+            }
+            segmentStart = segmentEnd + 1;
+        }
+        Route previous = node.routes.computeIfAbsent(query, key -> new HashMap<>())
+                .putIfAbsent(method, new Route(readOnly, handler));
+        if (previous != null) {
+            throw new IllegalArgumentException("Маршрут " + method + " " + path + " " + query + " уже задан");
+        }
+    }
+
+    //uri - путь со строкой запроса, как в HttpExchange.getRequestURI(); null, если маршрута нет
+    public Match route(String method, String uri) {
+        int queryStart = uri.indexOf('?');
+        int pathEnd = queryStart < 0 ? uri.length() : queryStart;
+        if (pathEnd == 0 || uri.charAt(0) != '/') {
+            return null;
+        }
+        Node node = root;
+        int segmentStart = 1;
+        while (node != null) {
+            int segmentEnd = uri.indexOf('/', segmentStart);
+            if (segmentEnd < 0 || segmentEnd > pathEnd) {
+                node = node.children.get(uri.substring(segmentStart, pathEnd));
+                break;
+            }
+            node = node.children.get(uri.substring(segmentStart, segmentEnd));
+            segmentStart = segmentEnd + 1;
+        }
+        if (node == null) {
+            return null;
+        }
+
+        if (queryStart < 0) {
+            Route route = node.find(Query.NONE, method);
+            return route == null ? null : new Match(route, null, -1L, Collections.emptyMap());
+        }
+        Route idRoute = node.find(Query.ID, method);
+        if (idRoute != null && isId(uri, queryStart + 1)) {
+            String idText = uri.substring(queryStart + 4);
+            return new Match(idRoute, idText, parseId(idText), Collections.emptyMap());
+        }
+        Route parametersRoute = node.find(Query.PARAMETERS, method);
+        if (parametersRoute != null) {
+            Map<String, String> parameters = parseParameters(uri, queryStart + 1);
+            if (parameters != null) {
+                return new Match(parametersRoute, null, -1L, parameters);
+            }
+        }
+        return null;
+    }
+
+    //строка запроса вида id=<цифры> от from до конца uri
+    private static boolean isId(String uri, int from) {
+        if (!uri.startsWith("id=", from) || from + 3 == uri.length()) {
+            return false;
+        }
+        for (int i = from + 3; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //-1, если число не помещается в long
+    private static long parseId(String idText) {
+        try {
+            return Long.parseLong(idText);
+        } catch (NumberFormatException exception) {
+            return -1L;
+        }
+    }
+
+    //значения не декодируются; null, если строка запроса не из пар name=value через &
+    private static Map<String, String> parseParameters(String uri, int from) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        int parameterStart = from;
+        while (true) {
+            int parameterEnd = uri.indexOf('&', parameterStart);
+            if (parameterEnd < 0) {
+                parameterEnd = uri.length();
+            }
+            int nameEnd = uri.indexOf('=', parameterStart);
+            if (nameEnd < 0 || nameEnd > parameterEnd || !isWord(uri, parameterStart, nameEnd)) {
+                return null;
+            }
+            parameters.put(uri.substring(parameterStart, nameEnd), uri.substring(nameEnd + 1, parameterEnd));
+            if (parameterEnd == uri.length()) {
+                return parameters;
+            }
+            parameterStart = parameterEnd + 1;
+        }
+    }
+
+    private static boolean isWord(String uri, int from, int to) {
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = uri.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //найденный маршрут с разобранной строкой запроса
+    public static final class Match {
+        private final Route route;
+        private final String idText;
+        private final long id;
+        private final Map<String, String> parameters;
+
+        private Match(Route route, String idText, long id, Map<String, String> parameters) {
+            this.route = route;
+            this.idText = idText;
+            this.id = id;
+            this.parameters = parameters;
+        }
+
+        public boolean isReadOnly() {
+            return route.readOnly;
+        }
+
+        //id из ?id=; -1, если маршрут без id или число не помещается в long
+        public long getId() {
+            return id;
+        }
+
+        //id в том виде, в каком он передан
+        public String getIdText() {
+            return idText;
+        }
+
+        //параметры в порядке передачи, при повторе имени - последнее значение
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public void handle(HttpExchange httpExchange) throws IOException {
+            route.handler.handle(httpExchange, this);
+        }
+    }
+
+    private static final class Route {
+        private final boolean readOnly;
+        private final Handler handler;
+
+        private Route(boolean readOnly, Handler handler) {
+            this.readOnly = readOnly;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final Map<Query, Map<String, Route>> routes = new EnumMap<>(Query.class);
+
+        private Route find(Query query, String method) {
+            Map<String, Route> routesByMethod = routes.get(query);
+            return routesByMethod == null ? null : routesByMethod.get(method);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Значения только в памяти: после перезапуска KVServer хранилище пустое
+public class InMemoryKVStorage implements KVStorage {
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String key) {
+        return data.get(key);
+    }
+
+    @Override
+    public void put(String key, String value) {
+        data.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<String, String> values) {
+        data.putAll(values);
+    }
+
+    @Override
+    public void remove(String key) {
+        data.remove(key);
+    }
+
+    @Override
+    public void removeByPrefix(String prefix) {
+        data.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    @Override
+    public List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public void close() {
+    }
+}
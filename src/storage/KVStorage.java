@@ -0,0 +1,24 @@
+package storage;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Map;
+
+//Хранилище значений KVServer. Методы вызываются из нескольких потоков обработчиков одновременно.
+public interface KVStorage extends Closeable {
+
+    String get(String key);//null, если ключа нет
+
+    void put(String key, String value);
+
+    void putAll(Map<String, String> values);
+
+    void remove(String key);
+
+    void removeByPrefix(String prefix);
+
+    List<String> keys(String prefix);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,723 @@
+package storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+//Хранилище в стиле Bitcask: значения дописываются в конец текущего сегмента <id>.log, в памяти - каталог ключей
+//с позицией последнего значения каждого ключа. Удаление дописывает запись-надгробие.
+//Запись сегмента: CRC32 (4) | номер записи (8) | длина ключа (4) | длина значения (4, -1 - надгробие) | ключ | значение.
+//Номер записи растёт с каждой записью: при восстановлении побеждает запись с большим номером, порядок файлов не важен.
+//Заполненный сегмент закрывается, рядом с ним пишется файл подсказок <id>.hint - позиции записей без значений,
+//по которым каталог восстанавливается без чтения сегментов. Сегмент без подсказок читается целиком с проверкой CRC,
+//повреждённый хвост отрезается.
+//Уплотнение в фоне переписывает живые значения закрытых сегментов в новые сегменты и удаляет прежние.
+//Копии сохраняют номера записей, так что недоудалённые после сбоя сегменты ничего не портят, кроме одного:
+//без надгробия из удалённого сегмента ожил бы ключ со старым значением. Поэтому список удаляемых сегментов
+//сначала записывается в compaction.manifest, и после сбоя удаление завершается до чтения каталога.
+public class LogStructuredKVStorage implements KVStorage {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final int HEADER_SIZE = 20;
+    private static final int TOMBSTONE = -1;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String HINT_SUFFIX = ".hint";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String MANIFEST = "compaction.manifest";
+    private static final long COMPACTION_MIN_GARBAGE = 16L << 20;
+    private static final long COMPACTION_CHECK_SECONDS = 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean syncEachWrite;
+    private final Map<String, Location> keydir = new ConcurrentHashMap<>();
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();//чтение против удаления уплотнённых
+    private final Object writeLock = new Object();
+    private final Object compactionLock = new Object();
+    private final ScheduledExecutorService compactor;
+    private Segment active;
+    private DataOutputStream activeHints;
+    private long nextSegmentId;
+    private long sequence;
+    private boolean closed;
+
+    public LogStructuredKVStorage(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    //syncEachWrite - fsync после каждой записи; без него записанное переживает завершение процесса, но не сбой ОС
+    public LogStructuredKVStorage(Path directory, long segmentSize, boolean syncEachWrite) {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Размер сегмента слишком мал: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEachWrite = syncEachWrite;
+        try {
+            Files.createDirectories(directory);
+            recover();
+            openActiveSegment();
+        } catch (IOException exception) {
+            closeSegments();
+            throw new UncheckedIOException("Не удалось открыть хранилище " + directory, exception);
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kv-storage-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::backgroundCompaction, COMPACTION_CHECK_SECONDS,
+                COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public String get(String key) {
+        segmentLock.readLock().lock();//сегмент найденного значения не удалят, пока оно читается
+        try {
+            Location location = keydir.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+            segments.get(location.segmentId).read(value, location.valueOffset());
+            return new String(value.array(), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Не удалось прочитать значение ключа " + key, exception);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, String value) {
+        putAll(Map.of(key, value));
+    }
+
+    //все пары пишутся одной записью в файл
+    @Override
+    public void putAll(Map<String, String> values) {
+        List<byte[]> keys = new ArrayList<>(values.size());
+        List<byte[]> encodedValues = new ArrayList<>(values.size());
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            keys.add(value.getKey().getBytes(StandardCharsets.UTF_8));
+            encodedValues.add(value.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        synchronized (writeLock) {
+            append(new ArrayList<>(values.keySet()), keys, encodedValues);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        synchronized (writeLock) {
+            if (keydir.containsKey(key)) {
+                appendTombstones(List.of(key));
+            }
+        }
+    }
+
+    @Override
+    public void removeByPrefix(String prefix) {
+        synchronized (writeLock) {
+            List<String> removed = keys(prefix);
+            if (!removed.isEmpty()) {
+                appendTombstones(removed);
+            }
+        }
+    }
+
+    @Override
+    public List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : keydir.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    //записывает на диск всё дописанное в текущий сегмент
+    public void sync() {
+        synchronized (writeLock) {
+            checkOpen();
+            try {
+                active.channel.force(false);
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Не удалось сбросить сегмент на диск", exception);
+            }
+        }
+    }
+
+    //доля байтов сегментов, занятых перезаписанными значениями и надгробиями
+    public double garbageRatio() {
+        synchronized (writeLock) {
+            long size = 0;
+            long garbage = 0;
+            for (Segment segment : segments.values()) {
+                size += segment.size;
+                garbage += segment.garbage;
+            }
+            return size == 0 ? 0 : (double) garbage / size;
+        }
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    //переписывает живые значения всех закрытых сегментов в новые сегменты; текущий сегмент перед этим закрывается
+    public void compact() {
+        synchronized (compactionLock) {
+            List<Segment> inputs = new ArrayList<>();
+            synchronized (writeLock) {
+                checkOpen();
+                try {
+                    rollActiveSegment();
+                } catch (IOException exception) {
+                    throw new UncheckedIOException("Не удалось закрыть текущий сегмент", exception);
+                }
+                for (Segment segment : segments.values()) {
+                    if (segment != active) {
+                        inputs.add(segment);
+                    }
+                }
+            }
+            if (!inputs.isEmpty()) {
+                try {
+                    merge(inputs);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException("Не удалось уплотнить хранилище", exception);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (compactionLock) {
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    finishActiveSegment();//подсказки текущего сегмента ускорят следующий запуск
+                } catch (IOException exception) {
+                    throw new UncheckedIOException("Не удалось закрыть хранилище " + directory, exception);
+                } finally {
+                    closeSegments();
+                }
+            }
+        }
+    }
+
+    private void append(List<String> keys, List<byte[]> encodedKeys, List<byte[]> values) {
+        checkOpen();
+        int size = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            size += HEADER_SIZE + encodedKeys.get(i).length + (values == null ? 0 : values.get(i).length);
+        }
+        try {
+            if (active.size > 0 && active.size + size > segmentSize) {
+                rollActiveSegment();
+            }
+            ByteBuffer records = ByteBuffer.allocate(size);
+            long[] sequences = new long[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                sequences[i] = ++sequence;
+                writeRecord(records, sequences[i], encodedKeys.get(i), values == null ? null : values.get(i));
+            }
+            records.flip();
+            long offset = active.size;
+            active.write(records, offset);
+            if (syncEachWrite) {
+                active.channel.force(false);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                int keyLength = encodedKeys.get(i).length;
+                int valueLength = values == null ? TOMBSTONE : values.get(i).length;
+                writeHint(activeHints, sequences[i], offset, keyLength, valueLength, encodedKeys.get(i));
+                Location location = new Location(active.id, offset, keyLength, valueLength, sequences[i]);
+                Location previous = values == null ? keydir.remove(keys.get(i)) : keydir.put(keys.get(i), location);
+                if (previous != null) {
+                    segments.get(previous.segmentId).garbage += previous.recordSize();
+                }
+                if (values == null) {
+                    active.garbage += location.recordSize();//надгробие нужно только до уплотнения
+                }
+                offset += location.recordSize();
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Не удалось дописать сегмент " + active.path, exception);
+        }
+    }
+
+    private void appendTombstones(List<String> keys) {
+        List<byte[]> encodedKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            encodedKeys.add(key.getBytes(StandardCharsets.UTF_8));
+        }
+        append(keys, encodedKeys, null);
+    }
+
+    private static void writeRecord(ByteBuffer records, long sequence, byte[] key, byte[] value) {
+        int start = records.position();
+        records.position(start + 4);
+        records.putLong(sequence);
+        records.putInt(key.length);
+        records.putInt(value == null ? TOMBSTONE : value.length);
+        records.put(key);
+        if (value != null) {
+            records.put(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(records.array(), start + 4, records.position() - start - 4);
+        records.putInt(start, (int) crc.getValue());
+    }
+
+    private static void writeHint(DataOutputStream hints, long sequence, long offset, int keyLength, int valueLength,
+                                  byte[] key) throws IOException {
+        hints.writeLong(sequence);
+        hints.writeLong(offset);
+        hints.writeInt(keyLength);
+        hints.writeInt(valueLength);
+        hints.write(key);
+    }
+
+    private void rollActiveSegment() throws IOException {
+        if (active.size == 0) {
+            return;
+        }
+        finishActiveSegment();
+        openActiveSegment();
+    }
+
+    //сегмент и подсказки на диск, затем подсказки под постоянное имя: подсказки не ссылаются на несохранённые записи
+    private void finishActiveSegment() throws IOException {
+        active.channel.force(false);
+        activeHints.close();
+        Path temporaryHints = hintPath(active.id, TEMPORARY_SUFFIX);
+        if (active.size == 0) {
+            Files.deleteIfExists(temporaryHints);//пустой сегмент удалится при следующем запуске
+            return;
+        }
+        forceFile(temporaryHints);
+        Files.move(temporaryHints, hintPath(active.id, ""), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void openActiveSegment() throws IOException {
+        if (active != null && active.size == 0) {
+            segments.remove(active.id);
+            active.channel.close();
+            Files.deleteIfExists(active.path);
+        }
+        long id = nextSegmentId++;
+        active = new Segment(id, segmentPath(id), 0, true);
+        segments.put(id, active);
+        activeHints = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(hintPath(id,
+                TEMPORARY_SUFFIX)), BUFFER_SIZE));
+    }
+
+    private void merge(List<Segment> inputs) throws IOException {
+        Map<Long, Segment> inputById = new HashMap<>();
+        for (Segment input : inputs) {
+            inputById.put(input.id, input);
+        }
+        List<Segment> outputs = new ArrayList<>();
+        List<Location[]> moves = new ArrayList<>();//пары: прежнее место значения, новое
+        List<String> movedKeys = new ArrayList<>();
+        Segment output = null;
+        DataOutputStream outputHints = null;
+        try {
+            for (Map.Entry<String, Location> entry : keydir.entrySet()) {
+                Location location = entry.getValue();
+                Segment input = inputById.get(location.segmentId);
+                if (input == null) {
+                    continue;
+                }
+                if (output == null || output.size + location.recordSize() > segmentSize && output.size > 0) {
+                    if (output != null) {
+                        finishOutput(output, outputHints);
+                    }
+                    synchronized (writeLock) {
+                        long id = nextSegmentId++;
+                        output = new Segment(id, segmentPath(id), 0, true);
+                    }
+                    outputs.add(output);
+                    outputHints = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                            hintPath(output.id, TEMPORARY_SUFFIX)), BUFFER_SIZE));
+                }
+                ByteBuffer record = ByteBuffer.allocate(location.recordSize());
+                input.read(record, location.recordOffset);//запись копируется как есть, с номером и CRC
+                record.flip();
+                long offset = output.size;
+                output.write(record, offset);
+                writeHint(outputHints, location.sequence, offset, location.keyLength, location.valueLength,
+                        entry.getKey().getBytes(StandardCharsets.UTF_8));
+                moves.add(new Location[]{location, new Location(output.id, offset, location.keyLength,
+                        location.valueLength, location.sequence)});
+                movedKeys.add(entry.getKey());
+            }
+            if (output != null) {
+                finishOutput(output, outputHints);
+            }
+        } catch (IOException | RuntimeException exception) {
+            if (outputHints != null) {
+                outputHints.close();
+            }
+            for (Segment failed : outputs) {
+                failed.channel.close();
+                Files.deleteIfExists(failed.path);
+                Files.deleteIfExists(hintPath(failed.id, TEMPORARY_SUFFIX));
+                Files.deleteIfExists(hintPath(failed.id, ""));
+            }
+            throw exception;
+        }
+
+        List<String> manifest = new ArrayList<>();
+        for (Segment input : inputs) {
+            manifest.add(input.path.getFileName().toString());
+            manifest.add(hintPath(input.id, "").getFileName().toString());
+        }
+        Path temporaryManifest = directory.resolve(MANIFEST + TEMPORARY_SUFFIX);
+        Files.write(temporaryManifest, manifest, StandardCharsets.UTF_8);
+        forceFile(temporaryManifest);
+        Files.move(temporaryManifest, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        segmentLock.writeLock().lock();
+        try {
+            synchronized (writeLock) {
+                for (Segment merged : outputs) {
+                    segments.put(merged.id, merged);
+                }
+                for (int i = 0; i < moves.size(); i++) {
+                    Location[] move = moves.get(i);
+                    if (!keydir.replace(movedKeys.get(i), move[0], move[1])) {
+                        segments.get(move[1].segmentId).garbage += move[1].recordSize();//ключ изменён во время копии
+                    }
+                }
+                for (Segment input : inputs) {
+                    segments.remove(input.id);
+                    input.channel.close();
+                }
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        applyManifest();
+    }
+
+    private void finishOutput(Segment output, DataOutputStream outputHints) throws IOException {
+        output.channel.force(false);
+        outputHints.close();
+        Path temporaryHints = hintPath(output.id, TEMPORARY_SUFFIX);
+        forceFile(temporaryHints);
+        Files.move(temporaryHints, hintPath(output.id, ""), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //удаляет сегменты уплотнения из манифеста; повторное выполнение безопасно
+    private void applyManifest() throws IOException {
+        Path manifestPath = directory.resolve(MANIFEST);
+        if (!Files.exists(manifestPath)) {
+            return;
+        }
+        for (String file : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+            Files.deleteIfExists(directory.resolve(file));
+        }
+        Files.delete(manifestPath);
+    }
+
+    private void recover() throws IOException {
+        applyManifest();
+        TreeMap<Long, Path> segmentPaths = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(file);//незавершённые подсказки или манифест
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segmentPaths.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())),
+                            file);
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> segmentPath : segmentPaths.entrySet()) {
+            long id = segmentPath.getKey();
+            nextSegmentId = id + 1;
+            Path hints = hintPath(id, "");
+            if (Files.size(segmentPath.getValue()) == 0) {
+                Files.delete(segmentPath.getValue());
+                Files.deleteIfExists(hints);
+                continue;
+            }
+            List<HintEntry> entries = Files.exists(hints) ? readHints(hints) : scanSegment(segmentPath.getValue());
+            if (!Files.exists(hints)) {
+                writeHints(id, entries);
+            }
+            Segment segment = new Segment(id, segmentPath.getValue(), Files.size(segmentPath.getValue()), false);
+            segments.put(id, segment);
+            for (HintEntry entry : entries) {
+                Location location = new Location(id, entry.offset, entry.keyLength, entry.valueLength,
+                        entry.sequence);
+                sequence = Math.max(sequence, entry.sequence);
+                Location previous = keydir.get(entry.key);
+                if (previous != null && previous.sequence > entry.sequence) {
+                    segment.garbage += location.recordSize();
+                    continue;
+                }
+                keydir.put(entry.key, location);
+                if (previous != null) {
+                    segments.get(previous.segmentId).garbage += previous.recordSize();
+                }
+            }
+        }
+        keydir.values().removeIf(location -> {
+            if (location.valueLength == TOMBSTONE) {
+                segments.get(location.segmentId).garbage += location.recordSize();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private List<HintEntry> readHints(Path hints) throws IOException {
+        List<HintEntry> entries = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(hints),
+                BUFFER_SIZE))) {
+            while (true) {
+                long entrySequence;
+                try {
+                    entrySequence = input.readLong();
+                } catch (EOFException exception) {
+                    return entries;
+                }
+                long offset = input.readLong();
+                int keyLength = input.readInt();
+                int valueLength = input.readInt();
+                byte[] key = input.readNBytes(keyLength);
+                entries.add(new HintEntry(new String(key, StandardCharsets.UTF_8), entrySequence, offset, keyLength,
+                        valueLength));
+            }
+        }
+    }
+
+    //читает сегмент без подсказок; первая неполная или повреждённая запись и всё после неё отрезаются
+    private List<HintEntry> scanSegment(Path segmentPath) throws IOException {
+        List<HintEntry> entries = new ArrayList<>();
+        long offset = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath),
+                BUFFER_SIZE))) {
+            byte[] header = new byte[HEADER_SIZE];
+            while (true) {
+                if (input.readNBytes(header, 0, HEADER_SIZE) < HEADER_SIZE) {
+                    break;
+                }
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                int storedCrc = headerBuffer.getInt();
+                long entrySequence = headerBuffer.getLong();
+                int keyLength = headerBuffer.getInt();
+                int valueLength = headerBuffer.getInt();
+                if (keyLength < 0 || valueLength < TOMBSTONE) {
+                    break;
+                }
+                byte[] body = input.readNBytes(keyLength + Math.max(valueLength, 0));
+                if (body.length < keyLength + Math.max(valueLength, 0)) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(header, 4, HEADER_SIZE - 4);
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+                entries.add(new HintEntry(new String(body, 0, keyLength, StandardCharsets.UTF_8), entrySequence,
+                        offset, keyLength, valueLength));
+                offset += HEADER_SIZE + body.length;
+            }
+        }
+        if (offset < Files.size(segmentPath)) {
+            System.out.println("Сегмент " + segmentPath + " повреждён после " + offset + " байт, хвост отрезан.");
+            try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+                channel.force(false);
+            }
+        }
+        return entries;
+    }
+
+    private void writeHints(long id, List<HintEntry> entries) throws IOException {
+        Path temporaryHints = hintPath(id, TEMPORARY_SUFFIX);
+        try (DataOutputStream hints = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryHints), BUFFER_SIZE))) {
+            for (HintEntry entry : entries) {
+                writeHint(hints, entry.sequence, entry.offset, entry.keyLength, entry.valueLength,
+                        entry.key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        forceFile(temporaryHints);
+        Files.move(temporaryHints, hintPath(id, ""), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void backgroundCompaction() {
+        try {
+            long size = 0;
+            long garbage = 0;
+            synchronized (writeLock) {
+                if (closed) {
+                    return;
+                }
+                for (Segment segment : segments.values()) {
+                    size += segment.size;
+                    garbage += segment.garbage;
+                }
+            }
+            if (garbage >= COMPACTION_MIN_GARBAGE && garbage * 2 > size) {
+                compact();
+            }
+        } catch (RuntimeException exception) {
+            System.out.println("Фоновое уплотнение хранилища не удалось: " + exception.getMessage());
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Хранилище " + directory + " закрыто.");
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException exception) {
+                System.out.println("Не удалось закрыть сегмент " + segment.path + ": " + exception.getMessage());
+            }
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(id + SEGMENT_SUFFIX);
+    }
+
+    private Path hintPath(long id, String suffix) {
+        return directory.resolve(id + HINT_SUFFIX + suffix);
+    }
+
+    private static void forceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size;//под writeLock
+        private long garbage;//байты перезаписанных значений и надгробий, под writeLock
+
+        Segment(long id, Path path, long size, boolean create) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.channel = create
+                    ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        void write(ByteBuffer records, long position) throws IOException {
+            while (records.hasRemaining()) {
+                position += channel.write(records, position);
+            }
+            size = position;
+        }
+
+        void read(ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                int read = channel.read(target, position);
+                if (read < 0) {
+                    throw new EOFException("Сегмент " + path + " короче записанной в каталоге позиции.");
+                }
+                position += read;
+            }
+        }
+    }
+
+    //место последнего значения ключа; сравнивается по ссылке, чтобы уплотнение не затёрло более новое значение
+    private static final class Location {
+        private final long segmentId;
+        private final long recordOffset;
+        private final int keyLength;
+        private final int valueLength;
+        private final long sequence;
+
+        Location(long segmentId, long recordOffset, int keyLength, int valueLength, long sequence) {
+            this.segmentId = segmentId;
+            this.recordOffset = recordOffset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.sequence = sequence;
+        }
+
+        long valueOffset() {
+            return recordOffset + HEADER_SIZE + keyLength;
+        }
+
+        int recordSize() {
+            return HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+        }
+    }
+
+    private static final class HintEntry {
+        private final String key;
+        private final long sequence;
+        private final long offset;
+        private final int keyLength;
+        private final int valueLength;
+
+        HintEntry(String key, long sequence, long offset, int keyLength, int valueLength) {
+            this.key = key;
+            this.sequence = sequence;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+    }
+}
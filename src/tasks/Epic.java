@@ -5,33 +5,46 @@ import enums.CurrentStatus;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import utils.LongOrderedSet;
+
 import java.util.List;
-import java.util.ArrayList;
 import java.util.Objects;
 
 public class Epic extends Task {
-    private List<Long> subtaskIds;//Каждый эпик знает, какие подзадачи в него входят
+    private LongOrderedSet subtaskIds;//Каждый эпик знает, какие подзадачи в него входят, в порядке добавления
     private LocalDateTime endTime;
+    //счётчики статусов подзадач эпика, поддерживаются менеджером и не сериализуются:
+    private transient int newSubtaskCount;
+    private transient int inProgressSubtaskCount;
+    private transient int doneSubtaskCount;
 
     public Epic(String header, String description) {
         super(header, description, CurrentStatus.NEW, null, 0);
         this.taskType = TaskType.EPIC;
-        this.subtaskIds = new ArrayList<>();
+        this.subtaskIds = new LongOrderedSet();
     }
 
     public Epic(long id, String header, CurrentStatus status, String description, LocalDateTime startTime,
                 LocalDateTime endTime, Duration durationInMinutes) {
         super(id, header, status, description, startTime, durationInMinutes);
         this.taskType = TaskType.EPIC;
-        this.subtaskIds = new ArrayList<>();
+        this.subtaskIds = new LongOrderedSet();
         this.endTime = endTime;
     }
 
-    public List<Long> getSubtaskIds() {
-        return subtaskIds;
+    public List<Long> getSubtaskIds() {//список только для чтения, изменяется вместе с эпиком
+        return subtaskIds == null ? null : subtaskIds.asList();
     }
 
     public void setSubtaskIds(List<Long> subtaskIds) {
+        this.subtaskIds = new LongOrderedSet(subtaskIds);
+    }
+
+    public LongOrderedSet getSubtaskIdSet() {//множество id подзадач для менеджеров: добавление и удаление за O(1)
+        return subtaskIds;
+    }
+
+    public void setSubtaskIdSet(LongOrderedSet subtaskIds) {
         this.subtaskIds = subtaskIds;
     }
 
@@ -39,6 +52,42 @@ public class Epic extends Task {
         this.subtaskIds.add(id);
     }
 
+    public int getSubtaskCount(CurrentStatus status) {
+        switch (status) {
+            case NEW:
+                return newSubtaskCount;
+            case IN_PROGRESS:
+                return inProgressSubtaskCount;
+            default:
+                return doneSubtaskCount;
+        }
+    }
+
+    public void countSubtaskStatus(CurrentStatus status, int delta) {//изменение счётчика статуса на delta
+        switch (status) {
+            case NEW:
+                newSubtaskCount += delta;
+                break;
+            case IN_PROGRESS:
+                inProgressSubtaskCount += delta;
+                break;
+            case DONE:
+                doneSubtaskCount += delta;
+        }
+    }
+
+    public void copySubtaskStatusCounters(Epic epic) {
+        this.newSubtaskCount = epic.newSubtaskCount;
+        this.inProgressSubtaskCount = epic.inProgressSubtaskCount;
+        this.doneSubtaskCount = epic.doneSubtaskCount;
+    }
+
+    public void resetSubtaskStatusCounters() {
+        this.newSubtaskCount = 0;
+        this.inProgressSubtaskCount = 0;
+        this.doneSubtaskCount = 0;
+    }
+
     public void setEndTime(LocalDateTime endTime) {
         this.endTime = endTime;
     }
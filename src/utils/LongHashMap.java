@@ -0,0 +1,263 @@
+package utils;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+//Хеш-таблица с ключами long: без упаковки ключей в Long и без объекта-узла на запись.
+//Записи лежат в массивах в порядке добавления, позиция записи находится по хеш-индексу с открытой адресацией,
+//как в LongOrderedSet. Удалённая запись - значение null, поэтому null в качестве значения не допускается;
+//массивы уплотняются, когда удалённых записей становится больше, чем живых.
+//Удаление из индекса сдвигает следующие ячейки цепочки назад, так что "надгробий" в индексе не остаётся.
+public class LongHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.7f;
+    static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;//2^64 / φ
+
+    private long[] keys;//ключи в порядке добавления, включая удалённые
+    private Object[] values;//null - запись удалена
+    private int end;//число занятых позиций keys и values
+    private int size;
+    private int[] index;//позиция записи + 1, 0 - пустая ячейка
+    private int shift;//64 - log2(размера индекса)
+    private int resizeThreshold;
+    private int modCount;
+    private final Values valuesView = new Values();
+
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new long[Math.max(expectedSize, MIN_CAPACITY)];
+        values = new Object[keys.length];
+        allocateIndex(capacity);
+    }
+
+    public V get(long key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : valueAt(index[slot] - 1);
+    }
+
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    public V put(long key, V value) {//возвращает предыдущее значение или null
+        if (value == null) {
+            throw new NullPointerException("LongHashMap не хранит значения null.");
+        }
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            int position = index[slot] - 1;
+            V previous = valueAt(position);
+            values[position] = value;
+            return previous;
+        }
+        if (end == keys.length) {
+            if (end - size >= size) {
+                compact();
+            } else {
+                keys = Arrays.copyOf(keys, end * 2);
+                values = Arrays.copyOf(values, end * 2);
+            }
+        }
+        keys[end] = key;
+        values[end] = value;
+        end++;
+        size++;
+        modCount++;
+        if (size > resizeThreshold) {
+            rebuildIndex(index.length * 2);
+        } else {
+            insertIntoIndex(key, end);
+        }
+        return null;
+    }
+
+    public V remove(long key) {//возвращает удалённое значение или null
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        int position = index[slot] - 1;
+        V removed = valueAt(position);
+        shiftBack(slot);
+        values[position] = null;
+        size--;
+        modCount++;
+        if (position == end - 1) {//удалена последняя добавленная запись - дырка не нужна
+            end--;
+        } else if (end - size > size && end > MIN_CAPACITY) {
+            compact();
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0 && end == 0) {
+            return;
+        }
+        Arrays.fill(values, 0, end, null);
+        Arrays.fill(index, 0);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public long[] keys() {//копия ключей в порядке добавления
+        long[] result = new long[size];
+        int resultIndex = 0;
+        for (int position = 0; position < end; position++) {
+            if (values[position] != null) {
+                result[resultIndex++] = keys[position];
+            }
+        }
+        return result;
+    }
+
+    public Collection<V> values() {//живое представление значений в порядке добавления только для чтения
+        return valuesView;
+    }
+
+    private int findSlot(long key) {
+        int mask = index.length - 1;
+        int slot = slotOf(key);
+        while (index[slot] != 0) {
+            if (keys[index[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    //сдвиг ячеек цепочки на освободившуюся ячейку индекса, чтобы поиск не обрывался на пустом месте
+    private void shiftBack(int freedSlot) {
+        int mask = index.length - 1;
+        int slot = freedSlot;
+        while (true) {
+            index[freedSlot] = 0;
+            int homeSlot;
+            do {
+                slot = (slot + 1) & mask;
+                if (index[slot] == 0) {
+                    return;
+                }
+                homeSlot = slotOf(keys[index[slot] - 1]);
+            } while (freedSlot <= slot ? freedSlot < homeSlot && homeSlot <= slot
+                    : freedSlot < homeSlot || homeSlot <= slot);
+            index[freedSlot] = index[slot];
+            freedSlot = slot;
+        }
+    }
+
+    private void compact() {
+        int position = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null) {
+                keys[position] = keys[i];
+                values[position++] = values[i];
+            }
+        }
+        Arrays.fill(values, position, end, null);
+        end = position;
+        rebuildIndex(index.length);
+    }
+
+    private void rebuildIndex(int capacity) {
+        allocateIndex(capacity);
+        for (int position = 0; position < end; position++) {
+            if (values[position] != null) {
+                insertIntoIndex(keys[position], position + 1);
+            }
+        }
+    }
+
+    private void allocateIndex(int capacity) {
+        index = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void insertIntoIndex(long key, int positionPlusOne) {
+        int mask = index.length - 1;
+        int slot = slotOf(key);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = positionPlusOne;
+    }
+
+    //фибоначчиево хеширование: ячейка - старшие биты произведения ключа на 2^64/φ. Перемешиваются все 64 бита
+    //ключа, так что ключи с общими младшими битами (шаг, кратный размеру индекса) не сбиваются в одну цепочку
+    //линейного пробирования
+    private int slotOf(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int position) {
+        return (V) values[position];
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<>() {
+                private final int expectedModCount = modCount;
+                private int position = nextPosition(0);
+
+                @Override
+                public boolean hasNext() {
+                    return position < end;
+                }
+
+                @Override
+                public V next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (position >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    V value = valueAt(position);
+                    position = nextPosition(position + 1);
+                    return value;
+                }
+
+                private int nextPosition(int from) {
+                    while (from < end && values[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
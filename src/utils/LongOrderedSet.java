@@ -0,0 +1,288 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+//Множество long с порядком добавления и add/remove/contains за O(1).
+//Элементы лежат в массиве в порядке добавления, позиция элемента находится по хеш-индексу с открытой адресацией.
+//Удалённый элемент остаётся в массиве "дыркой", массив уплотняется, когда дырок становится больше, чем элементов.
+public class LongOrderedSet {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] elements;//элементы в порядке добавления, включая удалённые
+    private boolean[] removed;
+    private int end;//число занятых ячеек elements
+    private int size;
+    private int[] index;//позиция элемента в elements + 1, 0 - пустая ячейка
+    private int shift;//64 - log2(размера индекса)
+    private int modCount;
+    private final AsList listView = new AsList();
+
+    public LongOrderedSet() {
+        this.elements = new long[MIN_CAPACITY];
+        this.removed = new boolean[MIN_CAPACITY];
+        allocateIndex(MIN_CAPACITY * 2);
+    }
+
+    public LongOrderedSet(List<Long> values) {
+        this();
+        for (Long value : values) {
+            add(value);
+        }
+    }
+
+    public boolean add(long value) {//false, если значение уже есть
+        if (findSlot(value) >= 0) {
+            return false;
+        }
+        if (end == elements.length) {
+            if (end - size >= size) {
+                compact();
+            } else {
+                elements = Arrays.copyOf(elements, end * 2);
+                removed = Arrays.copyOf(removed, end * 2);
+            }
+        }
+        elements[end] = value;
+        end++;
+        size++;
+        modCount++;
+        if (size * 2 > index.length) {
+            rebuildIndex(index.length * 2);
+        } else {
+            insertIntoIndex(value, end);
+        }
+        return true;
+    }
+
+    public boolean remove(long value) {//false, если значения не было
+        int slot = findSlot(value);
+        if (slot < 0) {
+            return false;
+        }
+        int position = index[slot] - 1;
+        shiftBack(slot);
+        size--;
+        modCount++;
+        if (position == end - 1) {//удалён последний добавленный - дырка не нужна
+            end--;
+        } else {
+            removed[position] = true;
+            if (end - size > size && end > MIN_CAPACITY) {
+                compact();
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return findSlot(value) >= 0;
+    }
+
+    public long get(int position) {//элемент по порядку добавления: O(1), если после уплотнения не было удалений
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + position + " вне множества размера " + size);
+        }
+        if (end == size) {
+            return elements[position];
+        }
+        for (int i = 0; i < end; i++) {
+            if (!removed[i] && position-- == 0) {
+                return elements[i];
+            }
+        }
+        throw new IllegalStateException("Размер множества не совпадает с числом элементов.");
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(removed, 0, end, false);
+        Arrays.fill(index, 0);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public long[] toArray() {//копия элементов в порядке добавления
+        long[] result = new long[size];
+        int resultIndex = 0;
+        for (int i = 0; i < end; i++) {
+            if (!removed[i]) {
+                result[resultIndex++] = elements[i];
+            }
+        }
+        return result;
+    }
+
+    public List<Long> asList() {//живое представление в виде списка только для чтения
+        return listView;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return listView.equals(((LongOrderedSet) o).listView);
+    }
+
+    @Override
+    public int hashCode() {
+        return listView.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return listView.toString();
+    }
+
+    private void compact() {
+        int position = 0;
+        for (int i = 0; i < end; i++) {
+            if (!removed[i]) {
+                elements[position++] = elements[i];
+            }
+        }
+        Arrays.fill(removed, 0, end, false);
+        end = position;
+        rebuildIndex(index.length);
+    }
+
+    private void rebuildIndex(int capacity) {
+        allocateIndex(capacity);
+        for (int position = 0; position < end; position++) {
+            if (!removed[position]) {
+                insertIntoIndex(elements[position], position + 1);
+            }
+        }
+    }
+
+    private void allocateIndex(int capacity) {
+        index = new int[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void insertIntoIndex(long value, int positionPlusOne) {
+        int mask = index.length - 1;
+        int slot = slotOf(value);
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = positionPlusOne;
+    }
+
+    private int findSlot(long value) {
+        int mask = index.length - 1;
+        int slot = slotOf(value);
+        while (index[slot] != 0) {
+            if (elements[index[slot] - 1] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    //сдвиг записей цепочки на освободившуюся ячейку индекса, как в LongHashMap
+    private void shiftBack(int freedSlot) {
+        int mask = index.length - 1;
+        int slot = freedSlot;
+        while (true) {
+            index[freedSlot] = 0;
+            int homeSlot;
+            do {
+                slot = (slot + 1) & mask;
+                if (index[slot] == 0) {
+                    return;
+                }
+                homeSlot = slotOf(elements[index[slot] - 1]);
+            } while (freedSlot <= slot ? freedSlot < homeSlot && homeSlot <= slot
+                    : freedSlot < homeSlot || homeSlot <= slot);
+            index[freedSlot] = index[slot];
+            freedSlot = slot;
+        }
+    }
+
+    //фибоначчиево хеширование, как в LongHashMap
+    private int slotOf(long value) {
+        return (int) ((value * LongHashMap.GOLDEN_RATIO) >>> shift);
+    }
+
+    private class AsList extends AbstractList<Long> {
+        @Override
+        public Long get(int position) {
+            return LongOrderedSet.this.get(position);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Long && LongOrderedSet.this.contains((Long) o);
+        }
+
+        @Override
+        public boolean equals(Object o) {//сравнение обходом итераторов: get с дырками в массиве стоит O(n)
+            if (o == this) return true;
+            if (!(o instanceof List)) return false;
+            Iterator<?> otherIterator = ((List<?>) o).iterator();
+            for (Long value : this) {
+                if (!otherIterator.hasNext() || !value.equals(otherIterator.next())) {
+                    return false;
+                }
+            }
+            return !otherIterator.hasNext();
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+
+        @Override
+        public Iterator<Long> iterator() {//обход по массиву, без поиска позиции через get
+            return new Iterator<>() {
+                private final int expectedModCount = modCount;
+                private int position = nextPosition(0);
+
+                @Override
+                public boolean hasNext() {
+                    return position < end;
+                }
+
+                @Override
+                public Long next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (position >= end) {
+                        throw new NoSuchElementException();
+                    }
+                    long value = elements[position];
+                    position = nextPosition(position + 1);
+                    return value;
+                }
+
+                private int nextPosition(int from) {
+                    while (from < end && removed[from]) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+    }
+}
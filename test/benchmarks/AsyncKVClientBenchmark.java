@@ -0,0 +1,82 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import enums.Durability;
+import managers.HttpTaskManager;
+import network.KVServer;
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+//Время работы HttpTaskManager с KV-сервером при разном окне одновременных запросов клиента.
+//Окно 1 - прежняя отправка запросов по одному с ожиданием ответа на каждый. Изменения - обновления задач
+//с ожиданием подтверждения каждого (ACKNOWLEDGED) и без него (ASYNC, с одним flush() в конце).
+public class AsyncKVClientBenchmark {
+    private static final int SIZE = 10_000;
+    private static final int[] WINDOWS = {1, 8, 64};
+    private static final int OPERATIONS = 2_000;
+    private static final String URL = "http://localhost:" + KVServer.PORT + "/";
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            console.println("окно | save() " + SIZE + " задач, мс | loadFromKVServer(), мс | " + OPERATIONS
+                    + " изменений ACKNOWLEDGED, мс | ASYNC + flush(), мс");
+            for (int window : WINDOWS) {
+                KVServer kvServer = new KVServer();
+                kvServer.start();
+                try {
+                    measure(console, window);
+                } finally {
+                    kvServer.stop();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void measure(PrintStream console, int window) {
+        HttpTaskManager taskManager = new HttpTaskManager(URL, window);
+        taskManager.setDurability(Durability.ASYNC);//наполнение не измеряется
+        SnapshotFormatBenchmark.fill(taskManager, SIZE);
+        taskManager.setDurability(Durability.ACKNOWLEDGED);
+
+        long start = System.nanoTime();
+        taskManager.save();
+        long saveMillis = (System.nanoTime() - start) / 1_000_000;
+
+        HttpTaskManager restoredTaskManager = new HttpTaskManager(URL, window);
+        start = System.nanoTime();
+        restoredTaskManager.loadFromKVServer();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        update(taskManager);//прогрев: без него первые изменения идут до компиляции JIT
+        long acknowledgedMillis = update(taskManager);
+        taskManager.setDurability(Durability.ASYNC);
+        long asyncMillis = update(taskManager);
+        console.printf("%4d | %18d | %21d | %31d | %17d%n", window, saveMillis, loadMillis, acknowledgedMillis,
+                asyncMillis);
+    }
+
+    private static long update(HttpTaskManager taskManager) {
+        Random random = new Random(1);
+        List<Task> tasks = taskManager.getTaskList();
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            Task task = tasks.get(random.nextInt(tasks.size()));
+            taskManager.updateTask(new Task(task.getId(), "Задача " + i, CurrentStatus.DONE, task.getDescription(),
+                    task.getStartTime(), task.getDurationInMinutes() == null ? Duration.ZERO
+                    : task.getDurationInMinutes()));
+        }
+        taskManager.flush();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import managers.HttpTaskManager;
+import managers.Managers;
+import network.KVServer;
+import network.KVTaskClient;
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+//Сохранение и загрузка задач HttpTaskManager под ключами <тип>:<id>: запрос на каждый ключ (/save, /load)
+//против пакетов по BATCH_SIZE ключей (/mset, /mget). Запросы в обоих случаях асинхронные, окно клиента одно.
+public class BatchKVBenchmark {
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BATCH_SIZE = 1000;
+    private static final String URL = "http://localhost:" + KVServer.PORT + "/";
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//сервер пишет в консоль о каждом запросе
+        try {
+            console.println("N ключей | /save по ключу, мс | /mset, мс | /load по ключу, мс | /mget, мс");
+            for (int size : SIZES) {
+                KVServer kvServer = new KVServer();
+                kvServer.start();
+                try {
+                    measure(console, size);
+                } finally {
+                    kvServer.stop();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void measure(PrintStream console, int size) {
+        HttpTaskManager taskManager = new HttpTaskManager(URL);
+        SnapshotFormatBenchmark.fill(taskManager, Math.min(size, 10_000));
+        List<Task> tasks = taskManager.getTaskList();
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            values.put("bench:" + i, Managers.getGson().toJson(tasks.get(i % tasks.size())));
+        }
+        List<String> keys = new ArrayList<>(values.keySet());
+        KVTaskClient kvTaskClient = new KVTaskClient(URL);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> requests = new ArrayList<>(size);
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            requests.add(kvTaskClient.putAsync(value.getKey(), value.getValue()));
+        }
+        requests.forEach(CompletableFuture::join);
+        long saveMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        requests.clear();
+        Map<String, String> batch = new HashMap<>();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            batch.put(value.getKey(), value.getValue());
+            if (batch.size() == BATCH_SIZE) {
+                requests.add(kvTaskClient.putAllAsync(batch));
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            requests.add(kvTaskClient.putAllAsync(batch));
+        }
+        requests.forEach(CompletableFuture::join);
+        long msetMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        requests.clear();
+        for (String key : keys) {
+            requests.add(kvTaskClient.loadAsync(key));
+        }
+        requests.forEach(CompletableFuture::join);
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        requests.clear();
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            requests.add(kvTaskClient.loadAllAsync(keys.subList(from, Math.min(from + BATCH_SIZE, size))));
+        }
+        requests.forEach(CompletableFuture::join);
+        long mgetMillis = (System.nanoTime() - start) / 1_000_000;
+        console.printf("%8d | %18d | %9d | %18d | %9d%n", size, saveMillis, msetMillis, loadMillis, mgetMillis);
+    }
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import enums.SnapshotFormat;
+import managers.FileBackedTasksManager;
+import managers.HttpTaskManager;
+import network.KVServer;
+import network.KVTaskClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+//Сжатие снимков gzip: размер и время сохранения и загрузки при разных уровнях Deflater (0 - без сжатия)
+//для файла (CSV и двоичный формат) и для KV-сервера. Набор тот же, что в SnapshotFormatBenchmark.
+public class CompressionBenchmark {
+    private static final int[] LEVELS = {Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION,
+            Deflater.BEST_COMPRESSION};
+    private static final int FILE_SIZE = 1_000_000;
+    private static final int KV_SIZE = 10_000;//на KV-сервере каждая задача - отдельный запрос
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            benchmarkFile(console);
+            benchmarkKVServer(console);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void benchmarkFile(PrintStream console) throws IOException {
+        console.println("Файл, " + FILE_SIZE + " задач | формат | уровень | сохранение, мс | загрузка, мс | размер, байт");
+        Path directory = Files.createTempDirectory("compression-benchmark");
+        File file = directory.resolve("snapshot").toFile();
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(file);
+        SnapshotFormatBenchmark.fill(taskManager, FILE_SIZE);
+        for (SnapshotFormat snapshotFormat : SnapshotFormat.values()) {
+            taskManager.setSnapshotFormat(snapshotFormat);
+            for (int level : LEVELS) {
+                taskManager.setSnapshotCompression(level);
+                long saveNanos = Long.MAX_VALUE;
+                long loadNanos = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long startNanos = System.nanoTime();
+                    taskManager.save();
+                    saveNanos = Math.min(saveNanos, System.nanoTime() - startNanos);
+                    startNanos = System.nanoTime();
+                    FileBackedTasksManager.loadFromFile(file);
+                    loadNanos = Math.min(loadNanos, System.nanoTime() - startNanos);
+                }
+                console.printf("%24s | %6s | %7d | %14d | %12d | %12d%n", "", snapshotFormat, level,
+                        saveNanos / 1_000_000, loadNanos / 1_000_000, file.length());
+            }
+        }
+        for (File leftover : directory.toFile().listFiles()) {
+            Files.delete(leftover.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    private static void benchmarkKVServer(PrintStream console) throws IOException {
+        console.println("KV-сервер, " + KV_SIZE + " задач | уровень | сохранение, мс | загрузка, мс | передано, байт");
+        KVServer kvServer = new KVServer();
+        kvServer.start();
+        try {
+            HttpTaskManager taskManager = new HttpTaskManager("http://localhost:" + KVServer.PORT + "/");
+            SnapshotFormatBenchmark.fill(taskManager, KV_SIZE);
+            KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:" + KVServer.PORT + "/");
+            for (int level : LEVELS) {
+                taskManager.setSnapshotCompression(level);
+                long saveNanos = Long.MAX_VALUE;
+                long loadNanos = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long startNanos = System.nanoTime();
+                    taskManager.save();
+                    saveNanos = Math.min(saveNanos, System.nanoTime() - startNanos);
+                    startNanos = System.nanoTime();
+                    new HttpTaskManager("http://localhost:" + KVServer.PORT + "/").loadFromKVServer();
+                    loadNanos = Math.min(loadNanos, System.nanoTime() - startNanos);
+                }
+                long bytes = 0;
+                for (String key : kvTaskClient.keys("")) {
+                    bytes += kvTaskClient.load(key).length();//Base64 и JSON - однобайтовые символы
+                }
+                console.printf("%25s | %7d | %14d | %12d | %14d%n", "", level, saveNanos / 1_000_000,
+                        loadNanos / 1_000_000, bytes);
+            }
+        } finally {
+            kvServer.stop();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import managers.ConcurrentTaskManager;
+import managers.InMemoryTaskManager;
+import managers.TaskManager;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Пропускная способность смешанной нагрузки (чтение по id, создание задач и подзадач) при росте числа потоков:
+//ConcurrentTaskManager против InMemoryTaskManager под одной общей блокировкой.
+public class ConcurrentThroughputBenchmark {
+    private static final long MEASURE_MILLIS = 2_000;
+    private static final int PRELOADED_TASKS = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        System.out.println("Ядер: " + cores);
+        System.out.println("Потоков | общая блокировка, оп/с | ConcurrentTaskManager, оп/с");
+        for (int threads : threadCounts) {
+            long lockedOps = measure(new InMemoryTaskManager(), new ReentrantLock(), threads);
+            long concurrentOps = measure(new ConcurrentTaskManager(), null, threads);
+            System.out.printf("%7d | %22d | %27d%n", threads, lockedOps, concurrentOps);
+        }
+    }
+
+    private static long measure(TaskManager taskManager, ReentrantLock globalLock, int threads)
+            throws InterruptedException {
+        long maxTaskId = 0;
+        for (int i = 0; i < PRELOADED_TASKS; i++) {
+            maxTaskId = taskManager.createTask(new Task("header", "description", CurrentStatus.NEW, null, 0))
+                    .getId();
+        }
+        long[] epicIds = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            epicIds[i] = taskManager.createEpic(new Epic("epicHeader", "epicDescription")).getId();
+        }
+
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + MEASURE_MILLIS;
+        long taskIdBound = maxTaskId;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            long epicId = epicIds[i];
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                while (System.currentTimeMillis() < deadline) {
+                    for (int j = 0; j < 100; j++) {
+                        int action = random.nextInt(10);
+                        if (globalLock != null) {
+                            globalLock.lock();
+                        }
+                        try {
+                            if (action < 7) {
+                                taskManager.getTaskById(1 + random.nextLong(taskIdBound));
+                            } else if (action < 9) {
+                                taskManager.createSubtask(new Subtask(epicId, "subHeader", "subDescription",
+                                        CurrentStatus.IN_PROGRESS, null, 0));
+                            } else {
+                                taskManager.createTask(new Task("header", "description", CurrentStatus.NEW,
+                                        null, 0));
+                            }
+                        } finally {
+                            if (globalLock != null) {
+                                globalLock.unlock();
+                            }
+                        }
+                    }
+                    done += 100;
+                }
+                operations.addAndGet(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.get() * 1000 / MEASURE_MILLIS;
+    }
+}
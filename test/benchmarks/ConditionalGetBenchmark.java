@@ -0,0 +1,79 @@
+package benchmarks;
+
+import managers.ConcurrentTaskManager;
+import managers.TaskManager;
+import network.HttpTaskServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+//Опрос списка задач, как это делает интерфейс: ответ при каждом опросе после изменения (сериализация списка),
+//повтор без изменений (тело из кэша) и условный запрос с If-None-Match (304 без тела).
+public class ConditionalGetBenchmark {
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+    private static final int POLLS = 200;
+    private static final URI TASK_URI = URI.create("http://localhost:" + HttpTaskServer.PORT + "/tasks/task/");
+
+    public static void main(String[] args) throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//сервер пишет в консоль о каждом запросе
+        try {
+            console.println("задач  | после изменения, мс | без изменений, мс | 304, мс | тело, КБ");
+            for (int size : SIZES) {
+                measure(console, size);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void measure(PrintStream console, int size) throws Exception {
+        //ConcurrentTaskManager: менеджер меняется из потока бенчмарка, пока сервер отвечает в своём
+        TaskManager taskManager = new ConcurrentTaskManager();
+        SnapshotFormatBenchmark.fill(taskManager, size);
+        long viewedId = taskManager.getTaskList().get(0).getId();
+        HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager);
+        httpTaskServer.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder().uri(TASK_URI).GET().build();
+            for (int i = 0; i < POLLS; i++) {//прогрев
+                taskManager.getTaskById(viewedId);
+                client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < POLLS; i++) {
+                taskManager.getTaskById(viewedId);//просмотр меняет номер изменения менеджера
+                client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            }
+            double changedMillis = (System.nanoTime() - start) / 1e6 / POLLS;
+
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            start = System.nanoTime();
+            for (int i = 0; i < POLLS; i++) {
+                response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            }
+            double cachedMillis = (System.nanoTime() - start) / 1e6 / POLLS;
+
+            HttpRequest conditionalRequest = HttpRequest.newBuilder().uri(TASK_URI)
+                    .header("If-None-Match", response.headers().firstValue("ETag").orElseThrow()).GET().build();
+            start = System.nanoTime();
+            for (int i = 0; i < POLLS; i++) {
+                if (client.send(conditionalRequest, HttpResponse.BodyHandlers.ofByteArray()).statusCode() != 304) {
+                    throw new IllegalStateException("Ожидался ответ 304");
+                }
+            }
+            double notModifiedMillis = (System.nanoTime() - start) / 1e6 / POLLS;
+
+            console.printf("%-6d | %19.2f | %17.2f | %7.2f | %8d%n", size, changedMillis, cachedMillis,
+                    notModifiedMillis, response.body().length / 1024);
+        } finally {
+            httpTaskServer.stop();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import enums.PersistenceMode;
+import enums.TaskType;
+import managers.FileBackedTasksManager;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+//Холодная загрузка CSV-снимка: прежний разбор (readLine, split, LocalDateTime.parse - только создание задач,
+//без построения индексов) против loadFromFile с потоковым разбором и с разбором кусками в ForkJoinPool.
+public class CsvLoadBenchmark {
+    private static final int[] SIZES = {100_000, 1_000_000, 2_000_000};
+
+    public static void main(String[] args) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            console.println("Строк | split без индексов, мс | поток, мс | ForkJoin, мс | потоков ForkJoin: "
+                    + ForkJoinPool.getCommonPoolParallelism());
+            for (int size : SIZES) {
+                File file = File.createTempFile("csv-load-benchmark", ".csv");
+                writeSnapshot(file, size);
+                long legacyMillis = Long.MAX_VALUE;
+                long streamMillis = Long.MAX_VALUE;
+                long parallelMillis = Long.MAX_VALUE;
+                for (int round = 0; round < 3; round++) {
+                    long startNanos = System.nanoTime();
+                    legacyParse(file);
+                    legacyMillis = Math.min(legacyMillis, (System.nanoTime() - startNanos) / 1_000_000);
+                    startNanos = System.nanoTime();
+                    FileBackedTasksManager.loadFromFile(file, PersistenceMode.SNAPSHOT, false);
+                    streamMillis = Math.min(streamMillis, (System.nanoTime() - startNanos) / 1_000_000);
+                    startNanos = System.nanoTime();
+                    FileBackedTasksManager.loadFromFile(file, PersistenceMode.SNAPSHOT, true);
+                    parallelMillis = Math.min(parallelMillis, (System.nanoTime() - startNanos) / 1_000_000);
+                }
+                console.printf("%7d | %22d | %9d | %12d%n", size, legacyMillis, streamMillis, parallelMillis);
+                Files.delete(file.toPath());
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void writeSnapshot(File file, int size) throws IOException {
+        int epics = size / 20;
+        LocalDateTime startTime = LocalDateTime.of(2023, 1, 1, 0, 0);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8))) {
+            writer.write("id,type,name,status,description,start time,end time,duration,epic\n");
+            for (int id = 1; id <= epics; id++) {
+                writer.write(id + ",EPIC,Эпик " + id + ",NEW,Описание эпика " + id + ",null,null,PT0S,\n");
+            }
+            for (int id = epics + 1; id <= size; id++) {
+                String time = id % 2 == 0 ? "null,null"
+                        : startTime.plusMinutes(id * 30L) + "," + startTime.plusMinutes(id * 30L + 20);
+                if (id % 4 == 1) {
+                    writer.write(id + ",SUBTASK,Подзадача " + id + ",DONE,Описание подзадачи " + id + "," + time
+                            + ",PT20M," + (id % epics + 1) + "\n");
+                } else {
+                    writer.write(id + ",TASK,Задача " + id + ",IN_PROGRESS,Описание задачи " + id + "," + time
+                            + ",PT20M,\n");
+                }
+            }
+            writer.write("\n1,2,3\n");
+        }
+    }
+
+    //разбор, каким он был до потокового парсера
+    private static List<Task> legacyParse(File file) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            while (reader.ready()) {
+                String line = reader.readLine();
+                if (line.startsWith("id")) {
+                    continue;
+                }
+                if (line.isBlank()) {
+                    break;
+                }
+                String[] fields = line.split(",");
+                long id = Long.parseLong(fields[0]);
+                TaskType taskType = TaskType.valueOf(fields[1]);
+                CurrentStatus status = CurrentStatus.valueOf(fields[3]);
+                LocalDateTime taskStartTime = fields[5].equals("null") ? null : LocalDateTime.parse(fields[5]);
+                LocalDateTime taskEndTime = fields[5].equals("null") ? null : LocalDateTime.parse(fields[6]);
+                Duration duration = Duration.parse(fields[7]);
+                if (taskType == TaskType.SUBTASK) {
+                    tasks.add(new Subtask(id, fields[2], status, fields[4], taskStartTime, duration,
+                            Long.parseLong(fields[8])));
+                } else if (taskType == TaskType.EPIC) {
+                    tasks.add(new Epic(id, fields[2], status, fields[4], taskStartTime, taskEndTime, duration));
+                } else {
+                    tasks.add(new Task(id, fields[2], status, fields[4], taskStartTime, duration));
+                }
+            }
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import enums.CurrentStatus;
+import managers.HttpTaskManager;
+import managers.Managers;
+import network.KVServer;
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+//Байты, которые HttpTaskManager отправляет на KV-сервер за одну операцию (тела запросов, без заголовков HTTP).
+//"Целиком" - прежняя отправка всех хранилищ и истории при каждом изменении, считается по тем же данным;
+//"изменения" - отправка только изменённых задач под ключами <тип>:<id>.
+public class DeltaSyncBenchmark {
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int OPERATIONS = 200;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            console.println("N задач | целиком, байт/изменение | целиком, байт/просмотр | изменения: создание"
+                    + " | обновление | удаление | просмотр, байт/оп");
+            for (int size : SIZES) {
+                CountingKVServer kvServer = new CountingKVServer();
+                kvServer.start();
+                try {
+                    measure(console, kvServer, size);
+                } finally {
+                    kvServer.stop();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void measure(PrintStream console, CountingKVServer kvServer, int size) {
+        HttpTaskManager taskManager = new HttpTaskManager("http://localhost:" + KVServer.PORT + "/");
+        SnapshotFormatBenchmark.fill(taskManager, size);
+        for (int i = 0; i < 20; i++) {
+            taskManager.getTaskById(taskManager.getTaskList().get(i).getId());//история обычной длины
+        }
+        Gson gson = Managers.getGson();
+        long wholeBytes = utf8Length(gson.toJson(taskManager.getTaskList()))
+                + utf8Length(gson.toJson(taskManager.getEpicList()))
+                + utf8Length(gson.toJson(taskManager.getSubtaskList()))
+                + utf8Length(gson.toJson(taskManager.getHistory()));
+
+        Random random = new Random(1);
+        List<Task> tasks = taskManager.getTaskList();
+        kvServer.receivedBytes = 0;
+        long[] createdIds = new long[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            createdIds[i] = taskManager.createTask(new Task("Новая задача " + i, "Описание новой задачи " + i,
+                    CurrentStatus.NEW, null, 0)).getId();
+        }
+        long createBytes = kvServer.receivedBytes / OPERATIONS;
+        kvServer.receivedBytes = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            Task task = tasks.get(random.nextInt(tasks.size()));
+            taskManager.updateTask(new Task(task.getId(), "Задача " + i, CurrentStatus.DONE, task.getDescription(),
+                    task.getStartTime(), task.getDurationInMinutes() == null ? Duration.ZERO
+                    : task.getDurationInMinutes()));
+        }
+        long updateBytes = kvServer.receivedBytes / OPERATIONS;
+        kvServer.receivedBytes = 0;
+        for (long id : createdIds) {
+            taskManager.deleteTaskById(id);
+        }
+        long deleteBytes = kvServer.receivedBytes / OPERATIONS;
+        kvServer.receivedBytes = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            taskManager.getTaskById(tasks.get(random.nextInt(tasks.size())).getId());
+        }
+        long viewBytes = kvServer.receivedBytes / OPERATIONS;
+        long historyBytes = utf8Length(gson.toJson(taskManager.getHistory()));//прежний формат истории той же длины
+        console.printf("%7d | %23d | %22d | %20d | %10d | %8d | %17d%n", size, wholeBytes, historyBytes, createBytes,
+                updateBytes, deleteBytes, viewBytes);
+    }
+
+    private static long utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static class CountingKVServer extends KVServer {
+        private volatile long receivedBytes;
+
+        CountingKVServer() throws IOException {
+            super();
+        }
+
+        @Override
+        protected String readText(HttpExchange h) throws IOException {
+            String text = super.readText(h);
+            receivedBytes += utf8Length(text);
+            return text;
+        }
+    }
+}
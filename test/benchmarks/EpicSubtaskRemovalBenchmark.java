@@ -0,0 +1,81 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import managers.InMemoryTaskManager;
+import tasks.Epic;
+import tasks.Subtask;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Удаление всех подзадач эпика по одной в случайном порядке: поиск id в ArrayList (как было раньше)
+//против множества id эпика в менеджере.
+public class EpicSubtaskRemovalBenchmark {
+    private static final int[] SIZES = {10_000, 20_000, 50_000, 100_000};
+
+    public static void main(String[] args) {
+        runList(SIZES[0]);//прогрев
+        runManager(SIZES[0]);
+
+        System.out.println("N подзадач | ArrayList, мс | менеджер, мс");
+        for (int size : SIZES) {
+            System.out.printf("%10d | %13d | %12d%n", size, runList(size), runManager(size));
+        }
+    }
+
+    private static long runList(int size) {
+        List<Long> subtaskIds = new ArrayList<>();
+        for (long id = 1; id <= size; id++) {
+            subtaskIds.add(id);
+        }
+        long[] order = shuffledIds(1, size);
+        long startNanos = System.nanoTime();
+        for (long id : order) {
+            subtaskIds.remove(id);
+        }
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long runManager(int size) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            return removeThroughManager(size);
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static long removeThroughManager(int size) {
+        InMemoryTaskManager taskManager = new InMemoryTaskManager();
+        Epic epic = taskManager.createEpic(new Epic("header", "description"));
+        for (int i = 0; i < size; i++) {
+            taskManager.createSubtask(new Subtask(epic.getId(), "header", "description", CurrentStatus.NEW,
+                    null, 0));
+        }
+        long[] order = shuffledIds(epic.getId() + 1, size);
+        long startNanos = System.nanoTime();
+        for (long id : order) {
+            taskManager.deleteSubtaskById(id);
+        }
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long[] shuffledIds(long firstId, int size) {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = firstId + i;
+        }
+        Random random = new Random(1);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import enums.CurrentStatus;
+import enums.Durability;
+import enums.ExecutorMode;
+import managers.ConcurrentTaskManager;
+import managers.HttpTaskManager;
+import managers.Managers;
+import managers.TaskManager;
+import network.HttpTaskServer;
+import network.KVServer;
+import tasks.Task;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+//Задержка чтения HttpTaskServer под нагрузкой: READERS клиентов читают список эпиков, один клиент без пауз
+//обновляет задачи. KV-сервер отвечает на каждую запись с задержкой KV_DELAY_MILLIS - медленная сеть до хранилища.
+//Сравниваются исполнители сервера и менеджеры: HttpTaskManager с подтверждением записи (ACKNOWLEDGED),
+//без ожидания (ASYNC) и ConcurrentTaskManager в памяти.
+public class HttpTaskServerLatencyBenchmark {
+    private static final int READERS = 8;
+    private static final int TASKS = 1_000;
+    private static final long MEASURE_MILLIS = 3_000;
+    private static final long KV_DELAY_MILLIS = 5;
+    private static final String KV_URL = "http://localhost:" + KVServer.PORT + "/";
+    private static final URI TASK_URI = URI.create("http://localhost:" + HttpTaskServer.PORT + "/tasks/task/");
+    private static final URI EPIC_URI = URI.create("http://localhost:" + HttpTaskServer.PORT + "/tasks/epic/");
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//серверы пишут в консоль о каждом запросе
+        try {
+            console.println("ядер: " + Runtime.getRuntime().availableProcessors());
+            console.println("исполнитель      | менеджер                 | чтение p50, мс | p99, мс | чтений/с"
+                    + " | обновлений/с");
+            for (ExecutorMode executorMode : ExecutorMode.values()) {
+                measure(console, executorMode, "HttpTaskManager ACK", () -> new HttpTaskManager(KV_URL));
+                measure(console, executorMode, "HttpTaskManager ASYNC", () -> {
+                    HttpTaskManager taskManager = new HttpTaskManager(KV_URL);
+                    taskManager.setDurability(Durability.ASYNC);
+                    return taskManager;
+                });
+                measure(console, executorMode, "ConcurrentTaskManager", ConcurrentTaskManager::new);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void measure(PrintStream console, ExecutorMode executorMode, String managerName,
+                                Supplier<TaskManager> managerFactory) throws Exception {
+        SlowKVServer kvServer = new SlowKVServer();
+        kvServer.start();
+        HttpTaskServer httpTaskServer = null;
+        try {
+            TaskManager taskManager = managerFactory.get();
+            SnapshotFormatBenchmark.fill(taskManager, TASKS);
+            List<Task> tasks = taskManager.getTaskList();
+            try {
+                httpTaskServer = new HttpTaskServer(taskManager, executorMode);
+            } catch (IllegalStateException exception) {//VIRTUAL_THREADS до Java 21
+                console.printf("%-16s | %s%n", executorMode, exception.getMessage());
+                return;
+            }
+            httpTaskServer.start();
+
+            ConcurrentLinkedQueue<Long> readNanos = new ConcurrentLinkedQueue<>();
+            long[] updates = new long[1];
+            long deadline = System.currentTimeMillis() + MEASURE_MILLIS;
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                clients.add(new Thread(() -> read(deadline, readNanos)));
+            }
+            clients.add(new Thread(() -> updates[0] = update(deadline, tasks)));
+            clients.forEach(Thread::start);
+            for (Thread client : clients) {
+                client.join();
+            }
+
+            long[] latencies = readNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            console.printf("%-16s | %-24s | %14.1f | %7.1f | %8d | %12d%n", executorMode, managerName,
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), latencies.length * 1000 / MEASURE_MILLIS,
+                    updates[0] * 1000 / MEASURE_MILLIS);
+        } finally {
+            if (httpTaskServer != null) {
+                httpTaskServer.stop();
+            }
+            kvServer.stop();
+        }
+    }
+
+    private static void read(long deadline, ConcurrentLinkedQueue<Long> readNanos) {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(EPIC_URI).GET().build();
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                long start = System.nanoTime();
+                client.send(request, HttpResponse.BodyHandlers.ofString());
+                readNanos.add(System.nanoTime() - start);
+            }
+        } catch (IOException | InterruptedException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static long update(long deadline, List<Task> tasks) {
+        HttpClient client = HttpClient.newHttpClient();
+        Gson gson = Managers.getGson();
+        Random random = new Random(1);
+        long updates = 0;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Task task = tasks.get(random.nextInt(tasks.size()));
+                Task update = new Task(task.getId(), "Задача " + updates, CurrentStatus.DONE, task.getDescription(),
+                        task.getStartTime(), task.getDurationInMinutes() == null ? Duration.ZERO
+                        : task.getDurationInMinutes());
+                HttpRequest request = HttpRequest.newBuilder().uri(TASK_URI)
+                        .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(update))).build();
+                client.send(request, HttpResponse.BodyHandlers.ofString());
+                updates++;
+            }
+        } catch (IOException | InterruptedException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return updates;
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        return sortedNanos[(int) Math.min(sortedNanos.length - 1, sortedNanos.length * percentile)] / 1e6;
+    }
+
+    private static class SlowKVServer extends KVServer {
+        SlowKVServer() throws IOException {
+            super();
+        }
+
+        @Override
+        protected String readText(HttpExchange h) throws IOException {
+            try {
+                Thread.sleep(KV_DELAY_MILLIS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return super.readText(h);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import enums.PersistenceMode;
+import managers.FileBackedTasksManager;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Обновления случайных задач в FileBackedTasksManager: полная перезапись файла (SNAPSHOT) против журнала (JOURNAL)
+//и ячеек отображённого в память хранилища (MAPPED).
+//Каждый замер идёт не меньше MEASURE_MILLIS, так что в режиме журнала в него попадают и контрольные точки.
+public class JournalBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final long MEASURE_MILLIS = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            console.println("N задач | перезапись, оп/с | журнал, оп/с | хранилище, оп/с | загрузка снимка, мс"
+                    + " | загрузка с журналом, мс | загрузка хранилища, мс");
+            for (int size : SIZES) {
+                Path directory = Files.createTempDirectory("journal-benchmark");
+                File snapshotFile = directory.resolve("snapshot.csv").toFile();
+                File journaledFile = directory.resolve("journaled.csv").toFile();
+                File mappedFile = directory.resolve("mapped.dat").toFile();
+                double snapshotOps = measureUpdates(new FileBackedTasksManager(snapshotFile), size);
+                double journalOps = measureUpdates(new FileBackedTasksManager(journaledFile,
+                        PersistenceMode.JOURNAL), size);
+                double mappedOps = measureUpdates(new FileBackedTasksManager(mappedFile, PersistenceMode.MAPPED), size);
+                long snapshotLoadMillis = measureLoad(snapshotFile, PersistenceMode.SNAPSHOT);
+                long journalLoadMillis = measureLoad(journaledFile, PersistenceMode.JOURNAL);
+                long mappedLoadMillis = measureLoad(mappedFile, PersistenceMode.MAPPED);
+                console.printf("%7d | %17.1f | %12.1f | %15.1f | %19d | %23d | %22d%n", size, snapshotOps, journalOps,
+                        mappedOps, snapshotLoadMillis, journalLoadMillis, mappedLoadMillis);
+                for (File file : directory.toFile().listFiles()) {
+                    Files.delete(file.toPath());
+                }
+                Files.delete(directory);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static double measureUpdates(FileBackedTasksManager taskManager, int size) {
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(new Task("header", "description", CurrentStatus.NEW, null, 0));
+        }
+        List<Task> createdTasks = taskManager.createAll(tasks);
+        Random random = new Random(1);
+        long operations = 0;
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + MEASURE_MILLIS * 1_000_000;
+        while (System.nanoTime() < deadline || operations < 3) {
+            Task oldTask = createdTasks.get(random.nextInt(size));
+            taskManager.updateTask(new Task(oldTask.getId(), "header" + operations, CurrentStatus.IN_PROGRESS,
+                    "description", null, Duration.ZERO));
+            operations++;
+        }
+        return operations * 1e9 / (System.nanoTime() - startNanos);
+    }
+
+    private static long measureLoad(File file, PersistenceMode persistenceMode) {
+        long startNanos = System.nanoTime();
+        FileBackedTasksManager.loadFromFile(file, persistenceMode);
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import enums.ExecutorMode;
+import network.KVServer;
+import network.KVTaskClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//Пропускная способность KVServer под нагрузкой N клиентов KVTaskClient, каждый в своём потоке со своими ключами:
+//синхронные запросы, на каждые два /save - один /load. Сравниваются исполнители сервера.
+//Прирост от пула заметен при числе ядер больше одного: на одном ядре потоки сервера и клиентов делят его.
+public class KVServerLoadBenchmark {
+    private static final int[] CLIENTS = {1, 4, 16, 64};
+    private static final int REQUESTS = 12_000;//на все клиенты вместе
+    private static final String URL = "http://localhost:" + KVServer.PORT + "/";
+    private static final String VALUE = "{\"header\":\"Задача\",\"description\":\"Описание задачи\",\"id\":1,"
+            + "\"status\":\"NEW\",\"taskType\":\"TASK\",\"durationInMinutes\":60}";
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("sun.net.httpserver.nodelay", "true");//как при запуске Main
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//сервер пишет в консоль о каждом запросе
+        try {
+            console.println("ядер: " + Runtime.getRuntime().availableProcessors());
+            console.println("исполнитель сервера | клиентов | запросов/с");
+            for (ExecutorMode executorMode : ExecutorMode.values()) {
+                KVServer kvServer;
+                try {
+                    kvServer = new KVServer(executorMode);
+                } catch (IllegalStateException exception) {//VIRTUAL_THREADS до Java 21
+                    console.printf("%19s | %s%n", executorMode, exception.getMessage());
+                    continue;
+                }
+                kvServer.start();
+                try {
+                    run(1, REQUESTS / 4);//прогрев
+                    for (int clients : CLIENTS) {
+                        console.printf("%19s | %8d | %10d%n", executorMode, clients,
+                                run(clients, REQUESTS / clients));
+                    }
+                } finally {
+                    kvServer.stop();
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static long run(int clients, int requestsPerClient) throws Exception {
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        try {
+            List<KVTaskClient> kvTaskClients = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                kvTaskClients.add(new KVTaskClient(URL));
+            }
+            List<Future<?>> results = new ArrayList<>(clients);
+            long start = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                KVTaskClient kvTaskClient = kvTaskClients.get(i);
+                String keyPrefix = "client" + i + ":";
+                results.add(clientThreads.submit(() -> {
+                    for (int request = 0; request < requestsPerClient; request++) {
+                        String key = keyPrefix + request / 3;
+                        if (request % 3 == 2) {
+                            kvTaskClient.load(key);
+                        } else {
+                            kvTaskClient.put(key, VALUE);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            long nanos = System.nanoTime() - start;
+            return (long) clients * requestsPerClient * 1_000_000_000L / nanos;
+        } finally {
+            clientThreads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import storage.LogStructuredKVStorage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+//LogStructuredKVStorage на локальном диске: скорость записи по одному ключу, пакетами (как /mset) и с fsync
+//после каждой записи; время уплотнения после перезаписи всех значений; время запуска - восстановления каталога
+//ключей по подсказкам и по самим сегментам (подсказки удалены).
+public class LogStorageBenchmark {
+    private static final int KEYS = 500_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int SYNCED_WRITES = 2_000;
+    private static final Path DIRECTORY = Paths.get("resources", "log-storage-benchmark");
+
+    public static void main(String[] args) throws IOException {
+        deleteDirectory();
+        String value = "{\"header\":\"Задача\",\"description\":\"Описание задачи для проверки хранилища\","
+                + "\"status\":\"IN_PROGRESS\",\"taskType\":\"TASK\",\"startTime\":\"2023-02-18T10:00\","
+                + "\"durationInMinutes\":60}";
+        try {
+            LogStructuredKVStorage storage = new LogStructuredKVStorage(DIRECTORY);
+            long start = System.nanoTime();
+            for (int i = 0; i < KEYS; i++) {
+                storage.put("task:" + i, value);
+            }
+            report("put по одному", KEYS, start);
+
+            start = System.nanoTime();
+            Map<String, String> batch = new HashMap<>();
+            for (int i = 0; i < KEYS; i++) {
+                batch.put("task:" + i, value);
+                if (batch.size() == BATCH_SIZE) {
+                    storage.putAll(batch);
+                    batch.clear();
+                }
+            }
+            report("putAll по " + BATCH_SIZE, KEYS, start);
+
+            start = System.nanoTime();
+            storage.compact();//две копии каждого значения - половина сегментов мусор
+            System.out.printf("уплотнение %d ключей: %d мс%n", KEYS, (System.nanoTime() - start) / 1_000_000);
+            storage.close();
+
+            LogStructuredKVStorage synced = new LogStructuredKVStorage(DIRECTORY,
+                    LogStructuredKVStorage.DEFAULT_SEGMENT_SIZE, true);
+            start = System.nanoTime();
+            for (int i = 0; i < SYNCED_WRITES; i++) {
+                synced.put("task:" + i, value);
+            }
+            report("put с fsync", SYNCED_WRITES, start);
+            synced.close();
+
+            new LogStructuredKVStorage(DIRECTORY).close();//прогрев: первый запуск идёт до компиляции JIT
+            start = System.nanoTime();
+            LogStructuredKVStorage recovered = new LogStructuredKVStorage(DIRECTORY);
+            System.out.printf("запуск по подсказкам, %d ключей: %d мс%n", recovered.keys("").size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            recovered.close();
+
+            try (DirectoryStream<Path> hints = Files.newDirectoryStream(DIRECTORY, "*.hint")) {
+                for (Path hint : hints) {
+                    Files.delete(hint);
+                }
+            }
+            start = System.nanoTime();
+            recovered = new LogStructuredKVStorage(DIRECTORY);
+            System.out.printf("запуск по сегментам, %d ключей: %d мс%n", recovered.keys("").size(),
+                    (System.nanoTime() - start) / 1_000_000);
+            recovered.close();
+        } finally {
+            deleteDirectory();
+        }
+    }
+
+    private static void report(String name, int writes, long start) {
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%s: %d записей/с%n", name, (long) writes * 1_000_000_000L / nanos);
+    }
+
+    private static void deleteDirectory() throws IOException {
+        if (!Files.exists(DIRECTORY)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(DIRECTORY);
+    }
+}
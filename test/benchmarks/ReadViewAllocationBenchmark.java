@@ -0,0 +1,75 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import enums.CurrentStatus;
+import managers.InMemoryTaskManager;
+import managers.Managers;
+import managers.TaskManager;
+import tasks.Task;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+//Выделение памяти на один GET списка под постоянной нагрузкой: копия в ArrayList против представления.
+//Отдельно меряется сам геттер и геттер вместе с сериализацией в JSON, как в HttpTaskServer.
+public class ReadViewAllocationBenchmark {
+    private static final int[] SIZES = {100, 1_000, 10_000};
+    private static final int TASKS_PER_RUN = 1_000_000;//число GET на замер - столько, чтобы обойти миллион задач
+    private static final Type TASK_COLLECTION_TYPE = new TypeToken<Collection<Task>>(){}.getType();
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Gson gson = Managers.getGson();
+
+        System.out.println("N задач | копия, байт/GET | представление, байт/GET | копия+JSON, байт/GET | представление+JSON, байт/GET");
+        for (int size : SIZES) {
+            TaskManager taskManager = new InMemoryTaskManager();
+            for (int i = 0; i < size; i++) {
+                taskManager.createTask(new Task("header" + i, "description" + i, CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 1, 1, 0, 0).plusHours(i), 30));
+            }
+            Supplier<Collection<Task>> copy = taskManager::getTaskList;
+            Supplier<Collection<Task>> view = taskManager::getTaskView;
+
+            System.out.printf("%7d | %15d | %23d | %20d | %28d%n", size,
+                    bytesPerGet(threadBean, copy, null, size), bytesPerGet(threadBean, view, null, size),
+                    bytesPerGet(threadBean, copy, gson, size), bytesPerGet(threadBean, view, gson, size));
+        }
+    }
+
+    private static long bytesPerGet(com.sun.management.ThreadMXBean threadBean, Supplier<Collection<Task>> getter,
+                                    Gson gson, int size) {
+        int requests = TASKS_PER_RUN / size;
+        long sink = 0;
+        for (int i = 0; i < requests; i++) {//прогрев
+            sink += get(getter, gson);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < requests; i++) {
+            sink += get(getter, gson);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        if (sink == 42) {//не даёт JIT выбросить вызовы
+            System.out.println();
+        }
+        return allocated / requests;
+    }
+
+    private static int get(Supplier<Collection<Task>> getter, Gson gson) {
+        Collection<Task> tasks = getter.get();
+        if (gson == null) {
+            int visited = 0;
+            for (Task task : tasks) {
+                visited += task.getId() > 0 ? 1 : 0;
+            }
+            return visited;
+        }
+        return gson.toJson(tasks, TASK_COLLECTION_TYPE).length();
+    }
+}
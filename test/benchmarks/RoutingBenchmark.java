@@ -0,0 +1,126 @@
+package benchmarks;
+
+import enums.TaskType;
+import network.TaskRouter;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+//Только маршрутизация запроса HttpTaskServer, без сети и менеджера: прежняя цепочка Pattern.matches
+//по строкам-шаблонам против дерева TaskRouter с теми же маршрутами.
+public class RoutingBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int REQUESTS = 1_000_000;
+    private static final List<String[]> REQUESTS_MIX = List.of(
+            new String[]{"GET", "/tasks/"},
+            new String[]{"GET", "/tasks/epic/"},
+            new String[]{"GET", "/tasks/task/?id=123456"},
+            new String[]{"GET", "/tasks/subtask/epic/?id=42"},
+            new String[]{"GET", "/tasks/?from=2022-01-01T10:00&to=2022-12-31T10:00&limit=50"},
+            new String[]{"GET", "/tasks/history/"},
+            new String[]{"POST", "/tasks/subtask/"},
+            new String[]{"DELETE", "/tasks/task/?id=7"},
+            new String[]{"GET", "/tasks/unknown/"});
+
+    private static final String TASK = "^/tasks/task/$";
+    private static final String EPIC = "^/tasks/epic/$";
+    private static final String SUBTASK = "^/tasks/subtask/$";
+    private static final String TASK_WITH_ID = "^/tasks/task/\\?id=\\d+$";
+    private static final String EPIC_WITH_ID = "^/tasks/epic/\\?id=\\d+$";
+    private static final String SUBTASK_WITH_ID = "^/tasks/subtask/\\?id=\\d+$";
+    private static final String HISTORY = "^/tasks/history/$";
+    private static final String PRIORITIZED = "^/tasks/$";
+    private static final String EPIC_SUBTASKS_WITH_ID = "^/tasks/subtask/epic/\\?id=\\d+$";
+    private static final String BATCH = "^/tasks/batch/?$";
+    private static final String PRIORITIZED_IN_RANGE = "^/tasks/\\?\\w+=[^&]*(&\\w+=[^&]*)*$";
+
+    public static void main(String[] args) {
+        TaskRouter router = createRouter();
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            long regexChecksum = 0;
+            for (int i = 0; i < REQUESTS; i++) {
+                String[] request = REQUESTS_MIX.get(i % REQUESTS_MIX.size());
+                regexChecksum += routeWithRegex(request[0], request[1]);
+            }
+            long regexNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long trieChecksum = 0;
+            for (int i = 0; i < REQUESTS; i++) {
+                String[] request = REQUESTS_MIX.get(i % REQUESTS_MIX.size());
+                TaskRouter.Match match = router.route(request[0], request[1]);
+                trieChecksum += match == null ? 0 : match.isReadOnly() ? 1
+                        : match.getIdText() == null ? 2 : 2 + match.getId();
+            }
+            long trieNanos = System.nanoTime() - start;
+
+            System.out.printf("раунд %d: Pattern.matches %.0f нс/запрос, TaskRouter %.0f нс/запрос (%d/%d)%n",
+                    round, (double) regexNanos / REQUESTS, (double) trieNanos / REQUESTS,
+                    regexChecksum, trieChecksum);
+        }
+    }
+
+    //прежний порядок проверок handleTasks и isReadOnly, с разбором id через replaceFirst
+    private static long routeWithRegex(String method, String path) {
+        boolean byId = Pattern.matches(TASK_WITH_ID, path) || Pattern.matches(EPIC_WITH_ID, path)
+                || Pattern.matches(SUBTASK_WITH_ID, path);
+        boolean readOnly = "GET".equals(method) && !byId;
+        switch (method) {
+            case "GET":
+                if (Pattern.matches(TASK, path) || Pattern.matches(EPIC, path) || Pattern.matches(SUBTASK, path)
+                        || Pattern.matches(HISTORY, path) || Pattern.matches(PRIORITIZED, path)) {
+                    path.split("/");
+                    return readOnly ? 1 : 2;
+                } else if (byId) {
+                    String taskType = path.split("/")[2];
+                    return 2 + Long.parseLong(path.replaceFirst("/tasks/" + taskType + "/\\?id=", ""));
+                } else if (Pattern.matches(EPIC_SUBTASKS_WITH_ID, path)) {
+                    Long.parseLong(path.replaceFirst("/tasks/subtask/epic/\\?id=", ""));
+                    return 1;
+                } else if (Pattern.matches(PRIORITIZED_IN_RANGE, path)) {
+                    path.substring(path.indexOf('?') + 1).split("&");
+                    return 1;
+                }
+                return 0;
+            case "POST":
+                if (Pattern.matches(TASK, path) || Pattern.matches(EPIC, path) || Pattern.matches(SUBTASK, path)
+                        || Pattern.matches(BATCH, path)) {
+                    path.split("/");
+                    return 2;
+                }
+                return 0;
+            case "DELETE":
+                if (Pattern.matches(TASK, path) || Pattern.matches(EPIC, path) || Pattern.matches(SUBTASK, path)) {
+                    return 2;
+                } else if (byId) {
+                    String taskType = path.split("/")[2];
+                    return 2 + Long.parseLong(path.replaceFirst("/tasks/" + taskType + "/\\?id=", ""));
+                }
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    //те же маршруты, что у HttpTaskServer, с пустыми обработчиками
+    private static TaskRouter createRouter() {
+        TaskRouter.Handler handler = (httpExchange, match) -> {};
+        TaskRouter router = new TaskRouter();
+        router.add("GET", "/tasks/", TaskRouter.Query.NONE, true, handler);
+        router.add("GET", "/tasks/", TaskRouter.Query.PARAMETERS, true, handler);
+        router.add("GET", "/tasks/history/", TaskRouter.Query.NONE, true, handler);
+        router.add("GET", "/tasks/subtask/epic/", TaskRouter.Query.ID, true, handler);
+        router.add("POST", "/tasks/batch", TaskRouter.Query.NONE, false, handler);
+        router.add("POST", "/tasks/batch/", TaskRouter.Query.NONE, false, handler);
+        for (TaskType taskType : TaskType.values()) {
+            String path = "/tasks/" + taskType.name().toLowerCase() + "/";
+            router.add("GET", path, TaskRouter.Query.NONE, true, handler);
+            router.add("GET", path, TaskRouter.Query.ID, false, handler);
+            router.add("POST", path, TaskRouter.Query.NONE, false, handler);
+            router.add("DELETE", path, TaskRouter.Query.NONE, false, handler);
+            router.add("DELETE", path, TaskRouter.Query.ID, false, handler);
+        }
+        return router;
+    }
+}
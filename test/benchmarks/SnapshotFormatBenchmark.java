@@ -0,0 +1,83 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import enums.SnapshotFormat;
+import managers.FileBackedTasksManager;
+import managers.TaskManager;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//Сохранение и загрузка снимка FileBackedTasksManager в CSV и в двоичном формате: время и размер файла.
+//Набор: задачи со временем и без, эпики по 10 подзадач.
+public class SnapshotFormatBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о каждой операции
+        try {
+            console.println("N задач | формат | сохранение, мс | загрузка, мс | размер, байт/задачу");
+            for (int size : SIZES) {
+                Path directory = Files.createTempDirectory("snapshot-benchmark");
+                File file = directory.resolve("snapshot").toFile();
+                FileBackedTasksManager taskManager = new FileBackedTasksManager(file);
+                fill(taskManager, size);
+                for (SnapshotFormat snapshotFormat : SnapshotFormat.values()) {
+                    taskManager.setSnapshotFormat(snapshotFormat);
+                    long saveNanos = Long.MAX_VALUE;
+                    long loadNanos = Long.MAX_VALUE;
+                    for (int round = 0; round < ROUNDS; round++) {
+                        long startNanos = System.nanoTime();
+                        taskManager.save();
+                        saveNanos = Math.min(saveNanos, System.nanoTime() - startNanos);
+                        startNanos = System.nanoTime();
+                        FileBackedTasksManager.loadFromFile(file);
+                        loadNanos = Math.min(loadNanos, System.nanoTime() - startNanos);
+                    }
+                    console.printf("%7d | %6s | %14d | %12d | %19d%n", size, snapshotFormat,
+                            saveNanos / 1_000_000, loadNanos / 1_000_000, file.length() / size);
+                }
+                for (File leftover : directory.toFile().listFiles()) {
+                    Files.delete(leftover.toPath());
+                }
+                Files.delete(directory);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    static void fill(TaskManager taskManager, int size) {//также набор CompressionBenchmark
+        int epics = size / 20;
+        List<Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < epics; i++) {
+            tasks.add(new Epic("Эпик " + i, "Описание эпика " + i));
+        }
+        List<Task> createdEpics = taskManager.createAll(tasks);
+        tasks.clear();
+        LocalDateTime startTime = LocalDateTime.of(2023, 1, 1, 0, 0);
+        for (int i = 0; i < size - epics; i++) {
+            LocalDateTime taskStartTime = i % 2 == 0 ? startTime.plusMinutes(i * 30L) : null;
+            if (i % 2 == 0 && i / 2 < epics * 10) {
+                tasks.add(new Subtask(createdEpics.get(i / 2 % epics).getId(), "Подзадача " + i,
+                        "Описание подзадачи " + i, CurrentStatus.values()[i % 3], taskStartTime, 20));
+            } else {
+                tasks.add(new Task("Задача " + i, "Описание задачи " + i, CurrentStatus.values()[i % 3],
+                        taskStartTime, 20));
+            }
+        }
+        taskManager.createAll(tasks);
+    }
+}
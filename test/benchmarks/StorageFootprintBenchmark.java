@@ -0,0 +1,81 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import tasks.Task;
+import utils.LongHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Сравнение памяти под индекс id -> задача: HashMap<Long, Task> против LongHashMap<Task>.
+//Задачи создаются заранее и общие для обоих вариантов, поэтому разница - только накладные расходы индекса.
+public class StorageFootprintBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    public static void main(String[] args) {
+        System.out.println("N задач | HashMap, байт/задачу | LongHashMap, байт/задачу | HashMap get, нс | LongHashMap get, нс");
+        for (int size : SIZES) {
+            Task[] tasks = new Task[size];
+            for (int i = 0; i < size; i++) {
+                tasks[i] = new Task(i + 1L, "header", CurrentStatus.NEW, "description", null, null);
+            }
+
+            long before = usedHeap();
+            Map<Long, Task> hashMap = new HashMap<>();
+            for (Task task : tasks) {
+                hashMap.put(task.getId(), task);
+            }
+            long hashMapBytes = usedHeap() - before;
+
+            before = usedHeap();
+            LongHashMap<Task> longHashMap = new LongHashMap<>();
+            for (Task task : tasks) {
+                longHashMap.put(task.getId(), task);
+            }
+            long longHashMapBytes = usedHeap() - before;
+
+            long hashMapNanos = timeLookups(hashMap, size);
+            long longHashMapNanos = timeLookups(longHashMap, size);
+            System.out.printf("%7d | %20d | %24d | %15d | %19d%n", size, hashMapBytes / size,
+                    longHashMapBytes / size, hashMapNanos, longHashMapNanos);
+        }
+    }
+
+    private static long timeLookups(Map<Long, Task> map, int size) {
+        long checksum = 0;
+        long startNanos = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            for (long id = 1; id <= size; id++) {
+                checksum += map.get(id).getId();
+            }
+        }
+        return finish(startNanos, checksum, size);
+    }
+
+    private static long timeLookups(LongHashMap<Task> map, int size) {
+        long checksum = 0;
+        long startNanos = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            for (long id = 1; id <= size; id++) {
+                checksum += map.get(id).getId();
+            }
+        }
+        return finish(startNanos, checksum, size);
+    }
+
+    private static long finish(long startNanos, long checksum, int size) {
+        long nanosPerLookup = (System.nanoTime() - startNanos) / (5L * size);
+        if (checksum == 42) {//не даёт JIT выбросить цикл
+            System.out.println();
+        }
+        return nanosPerLookup;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
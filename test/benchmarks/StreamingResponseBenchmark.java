@@ -0,0 +1,75 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import managers.InMemoryTaskManager;
+import managers.Managers;
+import managers.TaskManager;
+import tasks.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+//Память и время на ответ со списком задач: прежний путь (строка JSON, затем массив байт, затем запись)
+//против JsonWriter, пишущего прямо в поток ответа. Поток ответа здесь - OutputStream.nullOutputStream,
+//сеть не участвует. Память - байты, выделенные потоком за один ответ.
+public class StreamingResponseBenchmark {
+    private static final int[] SIZES = {10_000, 100_000, 300_000};
+    private static final int ROUNDS = 5;
+    private static final Type TASK_COLLECTION_TYPE = new TypeToken<Collection<Task>>(){}.getType();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//менеджер пишет в консоль о пакетах
+        try {
+            Gson gson = Managers.getGson();
+            console.println("задач   | строка+байты: МБ, мс | поток: МБ, мс");
+            for (int size : SIZES) {
+                TaskManager taskManager = new InMemoryTaskManager();
+                SnapshotFormatBenchmark.fill(taskManager, size);
+                Collection<Task> tasks = taskManager.getPrioritizedTasksView();
+                double[] whole = new double[2];
+                double[] streamed = new double[2];
+                for (int round = 0; round < ROUNDS; round++) {//последний раунд - после прогрева
+                    whole = measure(() -> OutputStream.nullOutputStream()
+                            .write(gson.toJson(tasks, TASK_COLLECTION_TYPE).getBytes(UTF_8)));
+                    streamed = measure(() -> {
+                        try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(
+                                new OutputStreamWriter(OutputStream.nullOutputStream(), UTF_8), 1 << 16))) {
+                            gson.toJson(tasks, TASK_COLLECTION_TYPE, writer);
+                        }
+                    });
+                }
+                console.printf("%-7d | %10.1f, %7.1f | %6.1f, %6.1f%n", size, whole[0], whole[1],
+                        streamed[0], streamed[1]);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    //{выделено МБ, мс}
+    private static double[] measure(Response response) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        response.send();
+        long nanos = System.nanoTime() - start;
+        return new double[]{(THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / 1e6, nanos / 1e6};
+    }
+
+    private interface Response {
+        void send() throws IOException;
+    }
+}
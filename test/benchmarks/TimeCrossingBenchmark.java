@@ -0,0 +1,66 @@
+package benchmarks;
+
+import enums.CurrentStatus;
+import managers.InMemoryTaskManager;
+import tasks.Task;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+//Сравнение стоимости создания N задач со временем: полный перебор prioritizedTasks (как было раньше)
+//против поиска соседей в отсортированном по времени начала наборе.
+public class TimeCrossingBenchmark {
+    private static final int[] SIZES = {1_000, 2_500, 5_000, 10_000, 20_000};
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    public static void main(String[] args) {
+        runLinear(SIZES[0]);//прогрев
+        runIndexed(SIZES[0]);
+
+        System.out.println("N задач | полный перебор, мс | индекс, мс");
+        for (int size : SIZES) {
+            long linearMillis = runLinear(size);
+            long indexedMillis = runIndexed(size);
+            System.out.printf("%7d | %18d | %10d%n", size, linearMillis, indexedMillis);
+        }
+    }
+
+    private static long runIndexed(int size) {
+        InMemoryTaskManager taskManager = new InMemoryTaskManager();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            taskManager.createTask(newTask(i));
+        }
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static long runLinear(int size) {
+        NavigableSet<Task> prioritizedTasks = new TreeSet<>((task1, task2) ->
+                task1.getStartTime().compareTo(task2.getStartTime()));
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            Task task = newTask(i);
+            task.setId(i + 1);
+            checkByFullScan(prioritizedTasks, task);
+            prioritizedTasks.add(task);
+        }
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    //задачи по 30 минут с часовым шагом, вставляются в перемешанном порядке
+    private static Task newTask(int i) {
+        long slot = (i * 7919L) % 1_000_003;
+        return new Task("header" + i, "description" + i, CurrentStatus.NEW, START.plusHours(slot), 30);
+    }
+
+    private static void checkByFullScan(Collection<Task> prioritizedTasks, Task newTask) {
+        for (Task existingTask : prioritizedTasks) {
+            if (!newTask.getStartTime().isAfter(existingTask.getEndTime())
+                    && !newTask.getEndTime().isBefore(existingTask.getStartTime())) {
+                throw new IllegalStateException("Пересечение с задачей " + existingTask.getId());
+            }
+        }
+    }
+}
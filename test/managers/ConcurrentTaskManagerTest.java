@@ -0,0 +1,227 @@
+package managers;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import enums.CurrentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tasks.Epic;
+import tasks.Subtask;
+import tasks.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 500;
+
+    @BeforeEach
+    void beforeEach() {
+        taskManager = new ConcurrentTaskManager();
+
+        List<Epic> epicsBeforeAnyCreated = taskManager.getEpicList();
+        assertNotNull(epicsBeforeAnyCreated, "Задачи не возвращаются.");
+        assertEquals(0, epicsBeforeAnyCreated.size(), "Список эпиков не пуст.");
+
+        epic = new Epic("existingEpicHeader", "existingEpicDescription");
+        savedEpic = taskManager.createEpic(epic);
+        assertNotNull(savedEpic, "Задача не найдена.");
+        assertEquals(savedEpic, epic, "Задачи не совпадают.");
+
+        List<Task> tasksBeforeAnyCreated = taskManager.getTaskList();
+        assertNotNull(tasksBeforeAnyCreated, "Задачи не возвращаются.");
+        assertEquals(0, tasksBeforeAnyCreated.size(), "Список задач не пуст.");
+
+        task = new Task("existingTaskHeader", "existingTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 18, 10, 0), 60);
+        savedTask = taskManager.createTask(task);
+        assertNotNull(savedTask, "Задача не найдена.");
+        assertEquals(savedTask, task, "Задачи не совпадают.");
+
+        List<Subtask> subtasksBeforeAnyCreated = taskManager.getSubtaskList();
+        assertNotNull(subtasksBeforeAnyCreated, "Задачи не возвращаются.");
+        assertEquals(0, subtasksBeforeAnyCreated.size(), "Список подзадач не пуст.");
+
+        subtask = new Subtask(1, "existingSubHeader", "existingSubDescription",
+                CurrentStatus.NEW, null, 0);
+        savedSubtask = taskManager.createSubtask(subtask);
+        assertNotNull(savedSubtask, "Задача не найдена.");
+        assertEquals(savedSubtask, subtask, "Задачи не совпадают.");
+    }
+
+    @Test
+    void concurrentCreationOfOverlappingTasksShouldKeepScheduleWithoutCrossings() throws Exception {
+        taskManager.deleteTasks();
+        taskManager.deleteEpics();
+        AtomicInteger createdTasks = new AtomicInteger();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                //получасовые задачи в 40-минутной сетке на 300 слотов: потоки постоянно претендуют на одни слоты
+                int slot = ThreadLocalRandom.current().nextInt(300);
+                Task newTask = new Task("header", "description", CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 1, 1, 0, 0).plusMinutes(slot * 40L + i % 20), 30);
+                try {
+                    taskManager.createTask(newTask);
+                    createdTasks.incrementAndGet();
+                } catch (IllegalStateException exception) {
+                    //пересечение по времени - ожидаемый отказ
+                }
+            }
+        });
+
+        List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+        Set<Long> ids = new HashSet<>();
+        for (Task prioritizedTask : prioritizedTasks) {
+            ids.add(prioritizedTask.getId());
+        }
+
+        assertEquals(createdTasks.get(), taskManager.getTaskList().size(), "Неверное количество задач.");
+        assertEquals(createdTasks.get(), prioritizedTasks.size(), "Неверное количество задач.");
+        assertEquals(createdTasks.get(), ids.size(), "ID задач повторяются.");
+        for (int i = 1; i < prioritizedTasks.size(); i++) {
+            assertTrue(prioritizedTasks.get(i - 1).getEndTime().isBefore(prioritizedTasks.get(i).getStartTime()),
+                    "Задачи пересекаются по времени.");
+        }
+    }
+
+    @Test
+    void concurrentSubtaskChangesShouldKeepEpicRollupsConsistent() throws Exception {
+        List<Long> epicIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            epicIds.add(taskManager.createEpic(new Epic("epicHeader" + i, "epicDescription" + i)).getId());
+        }
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Subtask> ownSubtasks = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                long epicId = epicIds.get(random.nextInt(epicIds.size()));
+                CurrentStatus status = CurrentStatus.values()[random.nextInt(3)];
+                int action = random.nextInt(10);
+                if (action < 5 || ownSubtasks.isEmpty()) {
+                    ownSubtasks.add(taskManager.createSubtask(new Subtask(epicId, "subHeader", "subDescription",
+                            status, null, random.nextInt(120))));
+                } else if (action < 8) {
+                    Subtask oldSubtask = ownSubtasks.remove(random.nextInt(ownSubtasks.size()));
+                    Subtask newSubtask = new Subtask(oldSubtask.getId(), "subHeader", status, "subDescription",
+                            null, Duration.ofMinutes(random.nextInt(120)), epicId);
+                    taskManager.updateAll(List.of(newSubtask));
+                    ownSubtasks.add(newSubtask);
+                } else {
+                    taskManager.deleteSubtaskById(ownSubtasks.remove(random.nextInt(ownSubtasks.size())).getId());
+                }
+                taskManager.getEpicById(epicId);
+            }
+        });
+
+        int subtasksInEpics = 0;
+        for (long epicId : epicIds) {
+            Epic epicAfterChanges = taskManager.getEpicById(epicId);
+            List<Subtask> subtasksOfEpic = taskManager.getSubsByEpicId(epicId);
+            subtasksInEpics += subtasksOfEpic.size();
+            int newSubtasks = 0;
+            int doneSubtasks = 0;
+            for (Subtask subtaskOfEpic : subtasksOfEpic) {
+                assertNotNull(subtaskOfEpic, "В списке эпика есть удалённая подзадача.");
+                assertEquals(epicId, subtaskOfEpic.getEpicId(), "Подзадача в списке чужого эпика.");
+                if (subtaskOfEpic.getStatus() == CurrentStatus.NEW) {
+                    newSubtasks++;
+                } else if (subtaskOfEpic.getStatus() == CurrentStatus.DONE) {
+                    doneSubtasks++;
+                }
+            }
+            CurrentStatus expectedStatus;
+            if (newSubtasks == subtasksOfEpic.size()) {
+                expectedStatus = CurrentStatus.NEW;
+            } else if (doneSubtasks == subtasksOfEpic.size()) {
+                expectedStatus = CurrentStatus.DONE;
+            } else {
+                expectedStatus = CurrentStatus.IN_PROGRESS;
+            }
+            assertEquals(expectedStatus, epicAfterChanges.getStatus(), "Статусы не совпадают.");
+            assertEquals(newSubtasks, epicAfterChanges.getSubtaskCount(CurrentStatus.NEW),
+                    "Счётчик подзадач со статусом NEW не совпадает.");
+        }
+        assertEquals(taskManager.getSubtaskList().size() - 1, subtasksInEpics,
+                "Количество подзадач в эпиках и в хранилище не совпадает.");
+    }
+
+    @Test
+    void epicViewSerializedDuringSubtaskChangesShouldShowWholeEpics() throws Exception {
+        taskManager.deleteEpics();
+        Epic doneEpic = taskManager.createEpic(new Epic("doneEpicHeader", "doneEpicDescription"));
+        Gson gson = Managers.getGson();
+        AtomicInteger threadNumber = new AtomicInteger();
+        AtomicInteger createdSubtasks = new AtomicInteger();
+        long deadline = System.currentTimeMillis() + 3_000;
+
+        runConcurrently(() -> {
+            if (threadNumber.getAndIncrement() % 2 == 0) {//пишущие потоки добавляют и удаляют подзадачи DONE
+                for (int i = 0; System.currentTimeMillis() < deadline; i++) {
+                    Subtask doneSubtask = taskManager.createSubtask(new Subtask(doneEpic.getId(), "subHeader",
+                            "subDescription", CurrentStatus.DONE, null, 0));
+                    if (i % 2 == 1) {
+                        taskManager.deleteSubtaskById(doneSubtask.getId());
+                    } else {
+                        createdSubtasks.incrementAndGet();
+                    }
+                }
+                return;
+            }
+            //читающие сериализуют представление и список эпиков, пока идёт запись
+            for (int i = 0; System.currentTimeMillis() < deadline; i++) {
+                Object epicsToSerialize = i % 2 == 0 ? taskManager.getEpicView() : taskManager.getEpicList();
+                JsonArray epics = JsonParser.parseString(gson.toJson(epicsToSerialize)).getAsJsonArray();
+                JsonObject epicJson = epics.get(0).getAsJsonObject();
+                JsonArray subtaskIds = epicJson.getAsJsonArray("subtaskIds");
+                Set<Long> uniqueIds = new HashSet<>();
+                for (JsonElement subtaskId : subtaskIds) {
+                    assertTrue(subtaskId.getAsLong() > 0, "В списке подзадач эпика пустой id.");
+                    uniqueIds.add(subtaskId.getAsLong());
+                }
+                assertEquals(subtaskIds.size(), uniqueIds.size(), "В списке подзадач эпика повтор.");
+                assertEquals(subtaskIds.size() == 0 ? "NEW" : "DONE", epicJson.get("status").getAsString(),
+                        "Статус эпика не соответствует его подзадачам.");
+            }
+        });
+
+        assertEquals(createdSubtasks.get(), taskManager.getEpicById(doneEpic.getId())
+                .getSubtaskIds().size(), "Неверное количество подзадач эпика.");
+    }
+
+    private static void runConcurrently(Runnable work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+}
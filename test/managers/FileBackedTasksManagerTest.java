@@ -1,6 +1,10 @@
 package managers;
 
 import enums.CurrentStatus;
+import enums.PersistenceMode;
+import enums.SnapshotFormat;
+import enums.TaskType;
+import exceptions.ManagerSaveException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tasks.Epic;
@@ -11,18 +15,27 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class FileBackedTasksManagerTest extends TaskManagerTest<FileBackedTasksManager> {
     private final Path path = Paths.get("resources/FileBackedTasks.csv");
+    private final Path journaledPath = Paths.get("resources/JournaledTasks.csv");
+    private final Path journalPath = Paths.get("resources/JournaledTasks.csv.journal");
 
     @BeforeEach
     void beforeEach() {
         taskManager = new FileBackedTasksManager(path.toFile());
+        taskManager.setEpicRollupCheck(true);
 
         List<Epic> epicsBeforeAnyCreated = taskManager.getEpicList();
         assertNotNull(epicsBeforeAnyCreated, "Задачи не возвращаются.");
@@ -306,4 +319,460 @@ class FileBackedTasksManagerTest extends TaskManagerTest<FileBackedTasksManager>
             System.out.println("Директория resources/ пуста.");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void journalModeShouldAppendChangesToJournalAndRestoreSnapshotWithJournal() throws IOException {
+        Files.deleteIfExists(journaledPath);
+        Files.deleteIfExists(journalPath);
+        FileBackedTasksManager journaledManager = new FileBackedTasksManager(journaledPath.toFile(),
+                PersistenceMode.JOURNAL, 100);
+
+        Epic epic1 = journaledManager.createEpic(new Epic("newEpicHeader1", "newEpicDescription1"));
+        assertTrue(Files.exists(journaledPath), "Первое изменение не сохранено снимком.");
+        assertFalse(Files.exists(journalPath), "Журнал создан до первого снимка.");
+        String snapshot = Files.readString(journaledPath);
+
+        Epic epic2 = journaledManager.createEpic(new Epic("newEpicHeader2", "newEpicDescription2"));
+        Task task1 = journaledManager.createTask(new Task("newTaskHeader1", "newTaskDescription1",
+                CurrentStatus.NEW, LocalDateTime.of(2023, 2, 5, 1, 5), 25));
+        Task task2 = journaledManager.createTask(new Task("newTaskHeader2", "newTaskDescription2",
+                CurrentStatus.NEW, null, 0));
+        List<Task> subtasks = journaledManager.createAll(List.of(
+                new Subtask(epic1.getId(), "newSubHeader1", "newSubDescription1", CurrentStatus.DONE,
+                        LocalDateTime.of(2023, 2, 6, 12, 30), 350),
+                new Subtask(epic1.getId(), "newSubHeader2", "newSubDescription2", CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 1, 3, 9, 10), 150),
+                new Subtask(epic2.getId(), "newSubHeader3", "newSubDescription3", CurrentStatus.NEW,
+                        null, 0)));
+        journaledManager.getSubtaskById(subtasks.get(2).getId());
+        journaledManager.getTaskById(task1.getId());
+        journaledManager.getEpicById(epic2.getId());
+        journaledManager.getSubtaskById(subtasks.get(0).getId());
+        journaledManager.updateAll(List.of(new Subtask(subtasks.get(1).getId(), "updatedSubHeader",
+                CurrentStatus.IN_PROGRESS, "updatedSubDescription", LocalDateTime.of(2023, 1, 4, 9, 10),
+                Duration.ofMinutes(30), epic2.getId())));
+        journaledManager.updateEpic(new Epic(epic1.getId(), "updatedEpicHeader", CurrentStatus.NEW,
+                "updatedEpicDescription", null, null, Duration.ZERO));
+        journaledManager.deleteTaskById(task2.getId());
+        journaledManager.deleteByIds(TaskType.SUBTASK, new long[]{subtasks.get(2).getId()});
+
+        assertEquals(snapshot, Files.readString(journaledPath), "Снимок перезаписан до контрольной точки.");
+        assertEquals(14, Files.readAllLines(journalPath).size(), "Неверное количество записей в журнале.");
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(journaledPath.toFile(),
+                PersistenceMode.JOURNAL);
+
+        assertEquals(journaledManager.getTaskList(), restoredManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(journaledManager.getEpicList(), restoredManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(journaledManager.getSubtaskList(), restoredManager.getSubtaskList(),
+                "Подзадачи не совпадают.");
+        assertEquals(journaledManager.getPrioritizedTasks(), restoredManager.getPrioritizedTasks(),
+                "Порядок задач по времени не совпадает.");
+        assertEquals(journaledManager.getHistory(), restoredManager.getHistory(), "Неверный порядок просмотров.");
+        for (int i = 0; i < restoredManager.getEpicList().size(); i++) {
+            Epic journaledEpic = journaledManager.getEpicList().get(i);
+            Epic restoredEpic = restoredManager.getEpicList().get(i);
+            assertEquals(journaledEpic.getSubtaskIds(), restoredEpic.getSubtaskIds(), "Подзадачи эпика не совпадают.");
+            assertEquals(journaledEpic.getStatus(), restoredEpic.getStatus(), "Статусы не совпадают.");
+            assertEquals(journaledEpic.getStartTime(), restoredEpic.getStartTime(), "Начальное время не совпадает.");
+            assertEquals(journaledEpic.getEndTime(), restoredEpic.getEndTime(), "Конечное время не совпадает");
+        }
+
+        Task restoredNextTask = restoredManager.createTask(new Task("newTaskHeader3", "newTaskDescription3",
+                CurrentStatus.NEW, null, 0));
+        assertEquals(subtasks.get(2).getId() + 1, restoredNextTask.getId(), "ID удалённой задачи выдан повторно.");
+        assertEquals(15, Files.readAllLines(journalPath).size(), "Восстановленный менеджер не продолжил журнал.");
+    }
+
+    @Test
+    void journalModeShouldCheckpointAfterIntervalAndSkipTornLastRecord() throws IOException {
+        Files.deleteIfExists(journaledPath);
+        Files.deleteIfExists(journalPath);
+        FileBackedTasksManager journaledManager = new FileBackedTasksManager(journaledPath.toFile(),
+                PersistenceMode.JOURNAL, 3);
+
+        for (int i = 0; i < 3; i++) {
+            journaledManager.createTask(new Task("newTaskHeader" + i, "newTaskDescription" + i,
+                    CurrentStatus.NEW, null, 0));
+        }
+        assertEquals(2, Files.readAllLines(journalPath).size(), "Неверное количество записей в журнале.");
+
+        journaledManager.getTaskById(1);
+        assertFalse(Files.exists(journalPath), "Журнал не удалён после контрольной точки.");
+        assertTrue(Files.readString(journaledPath).endsWith("\n1"), "Снимок не содержит историю просмотров.");
+
+        journaledManager.deleteTaskById(2);
+        Files.writeString(journalPath, "+5,TASK,tornHeader,NE", StandardOpenOption.APPEND);
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(journaledPath.toFile());
+
+        assertEquals(journaledManager.getTaskList(), restoredManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(journaledManager.getHistory(), restoredManager.getHistory(), "Неверный порядок просмотров.");
+        assertFalse(Files.exists(journalPath), "Журнал не перенесён в снимок при загрузке без журнала.");
+
+        journaledManager = new FileBackedTasksManager(journaledPath.toFile(), PersistenceMode.JOURNAL, 3);
+        journaledManager.createTask(new Task("newTaskHeader", "newTaskDescription", CurrentStatus.NEW, null, 0));
+        journaledManager.deleteTaskById(1);
+        Files.writeString(journalPath, "?1\n-TASK,1\n", StandardOpenOption.APPEND);
+
+        assertThrows(ManagerSaveException.class,
+                () -> FileBackedTasksManager.loadFromFile(journaledPath.toFile(), PersistenceMode.JOURNAL),
+                "Повреждённая запись в середине журнала пропущена.");
+    }
+
+    @Test
+    void journalModeShouldCountReplayedRecordsTowardsCheckpointAfterReload() throws IOException {
+        Files.deleteIfExists(journaledPath);
+        Files.deleteIfExists(journalPath);
+        FileBackedTasksManager journaledManager = new FileBackedTasksManager(journaledPath.toFile(),
+                PersistenceMode.JOURNAL, 4);
+        for (int i = 0; i < 4; i++) {
+            journaledManager.createTask(new Task("newTaskHeader" + i, "newTaskDescription" + i,
+                    CurrentStatus.NEW, null, 0));
+        }
+        assertEquals(3, Files.readAllLines(journalPath).size(), "Неверное количество записей в журнале.");
+
+        FileBackedTasksManager reloadedManager = FileBackedTasksManager.loadFromFile(journaledPath.toFile(),
+                PersistenceMode.JOURNAL, 4);
+        reloadedManager.createTask(new Task("newTaskHeader4", "newTaskDescription4", CurrentStatus.NEW, null, 0));
+
+        assertFalse(Files.exists(journalPath), "Контрольная точка не сделана после перезагрузки.");
+        assertEquals(5, FileBackedTasksManager.loadFromFile(journaledPath.toFile()).getTaskList().size(),
+                "Неверное количество задач.");
+    }
+
+    @Test
+    void journalModeShouldNotAppendToTornLastRecordAfterLoad() throws IOException {
+        Files.deleteIfExists(journaledPath);
+        Files.deleteIfExists(journalPath);
+        FileBackedTasksManager journaledManager = new FileBackedTasksManager(journaledPath.toFile(),
+                PersistenceMode.JOURNAL);
+        journaledManager.createTask(new Task("newTaskHeader1", "newTaskDescription1", CurrentStatus.NEW, null, 0));
+        journaledManager.createTask(new Task("newTaskHeader2", "newTaskDescription2", CurrentStatus.NEW, null, 0));
+        Files.writeString(journalPath, "+3,TASK,tornHeader,NEW,tornDescription,null,nu",
+                StandardOpenOption.APPEND);
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(journaledPath.toFile(),
+                PersistenceMode.JOURNAL);
+        Task taskAfterTornRecord = restoredManager.createTask(new Task("newTaskHeader3", "newTaskDescription3",
+                CurrentStatus.NEW, null, 0));
+        assertEquals(3, taskAfterTornRecord.getId(), "Неверный ID задачи после оборванной записи.");
+
+        for (int i = 0; i < 2; i++) {
+            FileBackedTasksManager reloadedManager = FileBackedTasksManager.loadFromFile(journaledPath.toFile(),
+                    PersistenceMode.JOURNAL);
+            assertEquals(restoredManager.getTaskList(), reloadedManager.getTaskList(),
+                    "Подтверждённая задача потеряна при повторной загрузке.");
+            restoredManager = reloadedManager;
+            restoredManager.createTask(new Task("newTaskHeader" + (4 + i), "newTaskDescription" + (4 + i),
+                    CurrentStatus.NEW, null, 0));
+        }
+        assertEquals(5, restoredManager.getTaskList().size(), "Неверное количество задач.");
+        assertEquals(restoredManager.getTaskList(), FileBackedTasksManager.loadFromFile(journaledPath.toFile(),
+                PersistenceMode.JOURNAL).getTaskList(), "Задачи не совпадают.");
+    }
+
+    @Test
+    void getByIdShouldAppendViewToJournalWithoutRewritingSnapshot() throws IOException {
+        String snapshot = Files.readString(path);
+
+        taskManager.getTaskById(2);
+        taskManager.getEpicById(1);
+        taskManager.getTaskById(2);
+        taskManager.getTaskById(100);
+
+        assertEquals(snapshot, Files.readString(path), "Просмотр переписал файл.");
+        assertEquals(List.of("v2", "v1", "v2"), Files.readAllLines(Paths.get(path + ".journal")),
+                "Неверные записи просмотров.");
+
+        TaskManager restoredFileBackedTasksManager = FileBackedTasksManager.loadFromFile(path.toFile());
+
+        assertEquals(List.of(savedEpic, savedTask), restoredFileBackedTasksManager.getHistory(),
+                "Неверный порядок просмотров.");
+        assertFalse(Files.exists(Paths.get(path + ".journal")), "Журнал просмотров не перенесён в снимок.");
+
+        taskManager.deleteSubtaskById(3);
+
+        assertFalse(Files.exists(Paths.get(path + ".journal")), "Журнал просмотров не удалён сохранением.");
+    }
+
+    @Test
+    void mappedModeShouldRewriteOnlyChangedRecordAndRestoreState() throws IOException {
+        Path mappedPath = Paths.get("resources/MappedTasks.dat");
+        Files.copy(path, mappedPath, StandardCopyOption.REPLACE_EXISTING);
+        FileBackedTasksManager mappedManager = FileBackedTasksManager.loadFromFile(mappedPath.toFile(),
+                PersistenceMode.MAPPED);
+
+        assertArrayEquals(MappedTaskStore.MAGIC, Arrays.copyOf(Files.readAllBytes(mappedPath), 4),
+                "Снимок CSV не переведён в хранилище.");
+        assertTrue(Files.exists(Paths.get(mappedPath + ".heap.1")), "Куча хранилища не создана.");
+
+        byte[] recordsBefore = Files.readAllBytes(mappedPath);
+        byte[] heapBefore = Files.readAllBytes(Paths.get(mappedPath + ".heap.1"));
+        mappedManager.updateTask(new Task(2, "existingTaskHeader", CurrentStatus.DONE, "existingTaskDescription",
+                LocalDateTime.of(2023, 2, 18, 10, 0), Duration.ofMinutes(60)));
+        byte[] recordsAfter = Files.readAllBytes(mappedPath);
+
+        assertEquals(recordsBefore.length, recordsAfter.length, "Размер файла записей изменился.");
+        int firstChanged = -1;
+        int lastChanged = -1;
+        for (int i = MappedTaskStore.HEADER_SIZE; i < recordsAfter.length; i++) {
+            if (recordsBefore[i] != recordsAfter[i]) {
+                firstChanged = firstChanged < 0 ? i : firstChanged;
+                lastChanged = i;
+            }
+        }
+        assertTrue(firstChanged >= 0 && lastChanged - firstChanged < MappedTaskStore.RECORD_SIZE,
+                "Изменение затронуло не одну ячейку.");
+        assertArrayEquals(heapBefore, Files.readAllBytes(Paths.get(mappedPath + ".heap.1")),
+                "Неизменившийся текст дописан в кучу.");
+
+        mappedManager.getSubtaskById(3);
+        mappedManager.getTaskById(2);
+        Epic newEpic = mappedManager.createEpic(new Epic("newEpicHeader", null));
+        Subtask newSubtask = mappedManager.createSubtask(new Subtask(newEpic.getId(), "newSubHeader",
+                "Новое описание", CurrentStatus.IN_PROGRESS, LocalDateTime.of(2023, 3, 1, 9, 15, 30, 500), 45));
+        mappedManager.createSubtask(new Subtask(1, "secondSubHeader", "", CurrentStatus.DONE, null, 0));
+        mappedManager.createSubtask(new Subtask(newEpic.getId(), "thirdSubHeader", "", CurrentStatus.NEW, null, 0));
+        mappedManager.updateAll(List.of(new Subtask(3, "movedSubHeader", CurrentStatus.DONE,
+                "existingSubDescription", null, Duration.ZERO, newEpic.getId())));
+        mappedManager.getEpicById(newEpic.getId());
+        mappedManager.deleteSubtaskById(newSubtask.getId());
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(mappedPath.toFile(),
+                PersistenceMode.MAPPED);
+
+        assertEquals(mappedManager.getTaskList(), restoredManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(mappedManager.getEpicList(), restoredManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(mappedManager.getSubtaskList(), restoredManager.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(List.of(7L, 3L), restoredManager.getEpicList().get(1).getSubtaskIds(),
+                "Неверный порядок подзадач эпика.");
+        assertEquals(List.of(3L, 2L, 4L), restoredManager.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверный порядок просмотров.");
+        assertEquals(8, restoredManager.createTask(new Task("nextTask", "", CurrentStatus.NEW, null, 0)).getId(),
+                "Неверный id после восстановления.");
+
+        restoredManager.deleteEpics();
+        FileBackedTasksManager emptiedManager = FileBackedTasksManager.loadFromFile(mappedPath.toFile(),
+                PersistenceMode.MAPPED);
+
+        assertEquals(List.of(), emptiedManager.getEpicList(), "Эпики не удалены из хранилища.");
+        assertEquals(List.of(), emptiedManager.getSubtaskList(), "Подзадачи не удалены из хранилища.");
+        assertEquals(2, emptiedManager.getTaskList().size(), "Неверное количество задач.");
+    }
+
+    @Test
+    void mappedModeShouldReleaseReplacedFilesOnCompactionAndAllMappingsOnClose() throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps), "Отображения процесса видны только в Linux.");
+        Path mappedPath = Paths.get("resources/CompactedTasks.dat");
+        for (int generation = 1; generation <= 3; generation++) {
+            Files.deleteIfExists(Paths.get(mappedPath + ".heap." + generation));
+        }
+        Files.copy(path, mappedPath, StandardCopyOption.REPLACE_EXISTING);
+        FileBackedTasksManager mappedManager = FileBackedTasksManager.loadFromFile(mappedPath.toFile(),
+                PersistenceMode.MAPPED);
+        String longDescription = "d".repeat(400_000);
+        for (int i = 0; i < 6; i++) {//каждое обновление оставляет в куче мусор, пока хранилище не переписано
+            mappedManager.updateTask(new Task(2, "existingTaskHeader", CurrentStatus.NEW, longDescription + i,
+                    null, Duration.ZERO));
+        }
+
+        assertTrue(Files.exists(Paths.get(mappedPath + ".heap.2")), "Хранилище не переписано при сжатии.");
+        assertFalse(Files.exists(Paths.get(mappedPath + ".heap.1")), "Прежняя куча не удалена.");
+        assertFalse(Files.readString(maps).contains(mappedPath.getFileName() + ".heap.1"),
+                "Прежняя куча осталась отображённой.");
+
+        mappedManager.close();
+        assertFalse(Files.readString(maps).contains(mappedPath.getFileName().toString()),
+                "Хранилище осталось отображённым после close().");
+        mappedManager.createTask(new Task("newTaskHeader", "newTaskDescription", CurrentStatus.NEW, null, 0));
+        assertEquals(2, FileBackedTasksManager.loadFromFile(mappedPath.toFile(), PersistenceMode.MAPPED)
+                .getTaskList().size(), "После close() изменение не записано.");
+    }
+
+    @Test
+    void binarySnapshotShouldRestoreSameStateAndConvertToCsvAndBack() throws IOException {
+        Path csvPath = Paths.get("resources/ConvertedTasks.csv");
+        Path binaryPath = Paths.get("resources/ConvertedTasks.bin");
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        taskManager.createSubtask(new Subtask(1, "Заголовок подзадачи", "Описание подзадачи", CurrentStatus.DONE,
+                LocalDateTime.of(2023, 3, 1, 9, 15, 30, 500), 45));
+        taskManager.createTask(new Task("oldTaskHeader", "oldTaskDescription", CurrentStatus.IN_PROGRESS,
+                LocalDateTime.of(1960, 1, 1, 0, 0), 30));
+        taskManager.getSubtaskById(4);
+        taskManager.getTaskById(2);
+        taskManager.updateTask(new Task(2, "updatedTaskHeader", CurrentStatus.DONE, "updatedTaskDescription",
+                LocalDateTime.of(2023, 2, 18, 10, 0), Duration.ofMinutes(90)));
+
+        byte[] binarySnapshot = Files.readAllBytes(path);
+        assertEquals("JKBS", new String(binarySnapshot, 0, 4), "Снимок записан не в двоичном формате.");
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(path.toFile());
+
+        assertEquals(SnapshotFormat.BINARY, restoredManager.getSnapshotFormat(), "Формат снимка не определён.");
+        assertEquals(taskManager.getTaskList(), restoredManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredManager.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(taskManager.getPrioritizedTasks(), restoredManager.getPrioritizedTasks(),
+                "Порядок задач по времени не совпадает.");
+        assertEquals(List.of(taskManager.getSubtaskById(4), taskManager.getTaskById(2)), restoredManager.getHistory(),
+                "Неверный порядок просмотров.");
+        assertEquals(taskManager.getEpicList().get(0).getSubtaskIds(),
+                restoredManager.getEpicList().get(0).getSubtaskIds(),
+                "Подзадачи эпика не совпадают.");
+
+        FileBackedTasksManager.convertSnapshot(path.toFile(), csvPath.toFile(), SnapshotFormat.CSV);
+        FileBackedTasksManager managerFromCsv = FileBackedTasksManager.loadFromFile(csvPath.toFile());
+
+        assertEquals(SnapshotFormat.CSV, managerFromCsv.getSnapshotFormat(), "Формат снимка не определён.");
+        assertEquals(restoredManager.getTaskList(), managerFromCsv.getTaskList(), "Задачи не совпадают.");
+        assertEquals(restoredManager.getSubtaskList(), managerFromCsv.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(restoredManager.getHistory(), managerFromCsv.getHistory(), "Неверный порядок просмотров.");
+
+        FileBackedTasksManager.convertSnapshot(csvPath.toFile(), binaryPath.toFile(), SnapshotFormat.BINARY);
+
+        assertArrayEquals(binarySnapshot, Files.readAllBytes(binaryPath), "Снимок изменился после конвертации.");
+        Files.delete(csvPath);
+        Files.delete(binaryPath);
+    }
+
+    @Test
+    void compressedSnapshotShouldRestoreSameStateInCsvAndBinaryFormats() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> taskManager.setSnapshotCompression(10),
+                "Принят неверный уровень сжатия.");
+        taskManager.setSnapshotCompression(Deflater.BEST_COMPRESSION);
+        taskManager.getSubtaskById(3);
+        taskManager.createTask(new Task("Заголовок задачи", "Описание задачи", CurrentStatus.DONE,
+                LocalDateTime.of(2023, 3, 1, 9, 15, 30, 500), 45));
+
+        byte[] compressedSnapshot = Files.readAllBytes(path);
+        assertTrue((compressedSnapshot[0] & 0xFF) == 0x1F && (compressedSnapshot[1] & 0xFF) == 0x8B,
+                "Снимок не сжат.");
+
+        FileBackedTasksManager restoredManager = FileBackedTasksManager.loadFromFile(path.toFile());
+
+        assertEquals(SnapshotFormat.CSV, restoredManager.getSnapshotFormat(), "Формат снимка не определён.");
+        assertEquals(SnapshotCompression.DEFAULT_LEVEL, restoredManager.getSnapshotCompression(),
+                "Сжатие снимка не определено.");
+        assertEquals(taskManager.getTaskList(), restoredManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredManager.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(List.of(savedSubtask), restoredManager.getHistory(), "Неверная история просмотров.");
+
+        restoredManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        restoredManager.save();
+        FileBackedTasksManager managerFromBinary = FileBackedTasksManager.loadFromFile(path.toFile());
+
+        assertEquals(SnapshotFormat.BINARY, managerFromBinary.getSnapshotFormat(), "Формат снимка не определён.");
+        assertEquals(restoredManager.getTaskList(), managerFromBinary.getTaskList(), "Задачи не совпадают.");
+        assertEquals(restoredManager.getSubtaskList(), managerFromBinary.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(restoredManager.getHistory(), managerFromBinary.getHistory(), "Неверная история просмотров.");
+    }
+
+    @Test
+    void loadFromFileShouldParseLargeCsvInParallelSameAsStreaming() throws IOException {
+        StringBuilder csv = new StringBuilder("id,type,name,status,description,start time,end time,duration,epic\r\n");
+        int epics = 1_000;
+        for (int id = 1; id <= epics; id++) {
+            csv.append(id).append(",EPIC,Эпик ").append(id).append(",NEW,описание,null,null,PT0S,\r\n");
+        }
+        for (int id = epics + 1; id <= 50_000; id++) {
+            LocalDateTime startTime = LocalDateTime.of(2023, 1, 1, 0, 0, id % 60).plusMinutes(id * 10L);
+            String time = id % 3 == 0 ? "null,null" : startTime + "," + startTime.plusMinutes(5);
+            String duration = id % 3 == 0 ? "PT0S" : id % 7 == 0 ? "PT5M0.5S" : "PT5M";
+            if (id % 2 == 0) {
+                csv.append(id).append(",SUBTASK,Подзадача ").append(id).append(",DONE,описание,").append(time)
+                        .append(',').append(duration).append(',').append(id % epics + 1).append("\r\n");
+            } else {
+                csv.append(id).append(",TASK,Задача ").append(id).append(",IN_PROGRESS,описание,").append(time)
+                        .append(',').append(duration).append(",\r\n");
+            }
+        }
+        csv.append("\r\n3,1002,49999,4");
+        Files.writeString(path, csv);
+        assertTrue(Files.size(path) >= CsvSnapshotParser.PARALLEL_THRESHOLD, "Файл меньше порога разбора по частям.");
+
+        FileBackedTasksManager streamedManager = FileBackedTasksManager.loadFromFile(path.toFile(),
+                PersistenceMode.SNAPSHOT, false);
+        FileBackedTasksManager parallelManager = FileBackedTasksManager.loadFromFile(path.toFile(),
+                PersistenceMode.SNAPSHOT, true);
+
+        assertEquals(24_500, streamedManager.getSubtaskList().size(), "Неверное количество подзадач.");
+        assertEquals(24_500, streamedManager.getTaskList().size(), "Неверное количество задач.");
+        assertEquals(streamedManager.getTaskList(), parallelManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(streamedManager.getEpicList(), parallelManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(streamedManager.getSubtaskList(), parallelManager.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(streamedManager.getPrioritizedTasks(), parallelManager.getPrioritizedTasks(),
+                "Порядок задач по времени не совпадает.");
+        assertEquals(List.of(3L, 1002L, 49999L, 4L), parallelManager.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверный порядок просмотров.");
+        assertEquals(streamedManager.getHistory(), parallelManager.getHistory(), "Неверный порядок просмотров.");
+        assertEquals(LocalDateTime.of(2023, 1, 7, 23, 20, 44), streamedManager.getSubtaskById(1004).getStartTime(),
+                "Время начала не совпадает.");
+        assertEquals(Duration.ofMillis(300_500), streamedManager.getTaskById(1001).getDurationInMinutes(),
+                "Продолжительность не совпадает.");
+        Task nextTask = parallelManager.createTask(new Task("newTaskHeader", "newTaskDescription",
+                CurrentStatus.NEW, null, 0));
+        assertEquals(50_001, nextTask.getId(), "Неверный id новой задачи.");
+    }
+
+    @Test
+    void groupCommitShouldWriteChangesAfterOperationLimitIntervalOrFlush() throws Exception {
+        Files.deleteIfExists(path);
+        taskManager = new FileBackedTasksManager(path.toFile());
+        taskManager.startGroupCommit(60_000, 3);
+
+        taskManager.createTask(new Task("newTaskHeader1", "newTaskDescription1", CurrentStatus.NEW, null, 0));
+        taskManager.createTask(new Task("newTaskHeader2", "newTaskDescription2", CurrentStatus.NEW, null, 0));
+        assertFalse(Files.exists(path), "Изменения записаны до накопления пакета.");
+
+        taskManager.getTaskById(1);
+        assertTrue(waitForFile(), "Пакет изменений не записан фоновым потоком.");
+        taskManager.stopGroupCommit();
+        assertEquals(2, FileBackedTasksManager.loadFromFile(path.toFile()).getTaskList().size(),
+                "Неверное количество задач.");
+
+        Files.deleteIfExists(path);
+        taskManager.startGroupCommit(20, 1_000);
+        taskManager.deleteTaskById(2);
+        assertTrue(waitForFile(), "Изменения не записаны по интервалу.");
+        taskManager.stopGroupCommit();
+
+        Files.deleteIfExists(path);
+        taskManager.startGroupCommit(60_000, 1_000);
+        taskManager.deleteTaskById(1);
+        assertFalse(Files.exists(path), "Изменения записаны до накопления пакета.");
+        taskManager.flush();
+        assertTrue(Files.exists(path), "flush() не записал изменения.");
+        taskManager.stopGroupCommit();
+        assertEquals(0, FileBackedTasksManager.loadFromFile(path.toFile()).getTaskList().size(),
+                "Неверное количество задач.");
+    }
+
+    @Test
+    void closeShouldWritePendingChangesAndLetManagerWriteImmediatelyAfterwards() throws Exception {
+        Files.deleteIfExists(path);
+        taskManager = new FileBackedTasksManager(path.toFile());
+        taskManager.startGroupCommit(60_000, 1_000);
+        taskManager.createTask(new Task("newTaskHeader1", "newTaskDescription1", CurrentStatus.NEW, null, 0));
+        assertFalse(Files.exists(path), "Изменения записаны до фиксации.");
+
+        taskManager.close();
+        assertEquals(1, FileBackedTasksManager.loadFromFile(path.toFile()).getTaskList().size(),
+                "close() не записал накопленные изменения.");
+        taskManager.startGroupCommit(60_000, 1_000);//после close() фиксацию можно включить снова
+        taskManager.close();
+
+        taskManager.createTask(new Task("newTaskHeader2", "newTaskDescription2", CurrentStatus.NEW, null, 0));
+        assertEquals(2, FileBackedTasksManager.loadFromFile(path.toFile()).getTaskList().size(),
+                "После close() изменение не записано сразу.");
+    }
+
+    private boolean waitForFile() throws InterruptedException {
+        for (int i = 0; i < 500 && !Files.exists(path); i++) {
+            Thread.sleep(10);
+        }
+        return Files.exists(path);
+    }
+}
@@ -1,17 +1,33 @@
 package managers;
 
+import com.google.gson.Gson;
 import enums.CurrentStatus;
+import enums.Durability;
+import exceptions.ManagerSaveException;
 import network.KVServer;
+import network.KVTaskClient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import tasks.Epic;
 import tasks.Subtask;
+import storage.InMemoryKVStorage;
 import tasks.Task;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -29,6 +45,7 @@ class HttpTaskManagerTest extends TaskManagerTest<HttpTaskManager> {
         }
 
         taskManager = new HttpTaskManager("http://localhost:8078/");
+        taskManager.setEpicRollupCheck(true);
 
         List<Epic> epicsBeforeAnyCreated = taskManager.getEpicList();
         assertNotNull(epicsBeforeAnyCreated, "Задачи не возвращаются.");
@@ -328,4 +345,259 @@ class HttpTaskManagerTest extends TaskManagerTest<HttpTaskManager> {
         assertEquals(0, restoredHttpTaskManagerWithEmptyHistory.getHistory().size(),
                 "Неверное количество просмотров в истории.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void getByIdShouldPutOnlyHistoryToKVServer() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        kvTaskClient.put("task:2", "\"unchanged\"");
+        kvTaskClient.put("epic:1", "\"unchanged\"");
+        kvTaskClient.put("subtask:3", "\"unchanged\"");
+
+        taskManager.getTaskById(2);
+        taskManager.getSubtaskById(3);
+
+        assertEquals("\"unchanged\"", kvTaskClient.load("task:2"), "Просмотр переписал задачи.");
+        assertEquals("\"unchanged\"", kvTaskClient.load("epic:1"), "Просмотр переписал эпики.");
+        assertEquals("\"unchanged\"", kvTaskClient.load("subtask:3"), "Просмотр переписал подзадачи.");
+
+        taskManager.save();
+        taskManager.deleteTaskById(2);
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+
+        assertEquals(List.of(savedSubtask), restoredHttpTaskManager.getHistory(), "Неверная история просмотров.");
+    }
+
+    @Test
+    void changesShouldTouchOnlyKeysOfChangedTasks() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        String epicJson = kvTaskClient.load("epic:1");
+        kvTaskClient.put("epic:1", "\"unchanged\"");
+        kvTaskClient.put("subtask:3", "\"unchanged\"");
+
+        Task updatedTask = new Task(2, "updatedTaskHeader", CurrentStatus.DONE, "updatedTaskDescription",
+                LocalDateTime.of(2023, 2, 18, 10, 0), Duration.ofMinutes(90));
+        taskManager.updateTask(updatedTask);
+
+        assertEquals("\"unchanged\"", kvTaskClient.load("epic:1"), "Обновление задачи переписало эпик.");
+        assertEquals("\"unchanged\"", kvTaskClient.load("subtask:3"), "Обновление задачи переписало подзадачу.");
+        assertEquals(updatedTask, Managers.getGson().fromJson(kvTaskClient.load("task:2"), Task.class),
+                "Задача не обновлена на сервере.");
+
+        kvTaskClient.put("epic:1", epicJson);
+        taskManager.deleteSubtaskById(3);
+        Subtask newSubtask = taskManager.createSubtask(new Subtask(1, "newSubHeader", "newSubDescription",
+                CurrentStatus.DONE, null, 0));
+        taskManager.getSubtaskById(newSubtask.getId());
+
+        assertEquals(List.of("epic:1", "subtask:4", "task:2"), kvTaskClient.keys("").stream()
+                .filter(key -> key.contains(":")).sorted().collect(Collectors.toList()), "Неверные ключи задач.");
+
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+
+        assertEquals(taskManager.getTaskList(), restoredHttpTaskManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredHttpTaskManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredHttpTaskManager.getSubtaskList(),
+                "Подзадачи не совпадают.");
+        assertEquals(List.of(4L), restoredHttpTaskManager.getEpicList().get(0).getSubtaskIds(),
+                "Подзадачи эпика не совпадают.");
+        assertEquals(List.of(newSubtask), restoredHttpTaskManager.getHistory(), "Неверная история просмотров.");
+    }
+
+    @Test
+    void subtaskChangesShouldPutTheirEpicToKVServer() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        Gson gson = Managers.getGson();
+
+        taskManager.updateSubtask(new Subtask(3, "updatedSubHeader", CurrentStatus.DONE, "updatedSubDescription",
+                LocalDateTime.of(2023, 2, 19, 10, 0), Duration.ofMinutes(30), 1));
+        Epic storedEpic = gson.fromJson(kvTaskClient.load("epic:1"), Epic.class);
+        assertEquals(CurrentStatus.DONE, storedEpic.getStatus(), "Статус эпика на сервере не обновлён.");
+        assertEquals(LocalDateTime.of(2023, 2, 19, 10, 0), storedEpic.getStartTime(),
+                "Время эпика на сервере не обновлено.");
+
+        taskManager.createAll(List.of(new Subtask(1, "batchSubHeader", "batchSubDescription", CurrentStatus.NEW,
+                null, 0)));
+        storedEpic = gson.fromJson(kvTaskClient.load("epic:1"), Epic.class);
+        assertEquals(CurrentStatus.IN_PROGRESS, storedEpic.getStatus(), "Статус эпика на сервере не обновлён.");
+        assertEquals(List.of(3L, 4L), storedEpic.getSubtaskIds(), "Подзадачи эпика на сервере не обновлены.");
+
+        taskManager.deleteSubtaskById(3);
+        storedEpic = gson.fromJson(kvTaskClient.load("epic:1"), Epic.class);
+        assertEquals(CurrentStatus.NEW, storedEpic.getStatus(), "Статус эпика на сервере не обновлён.");
+        assertEquals(List.of(4L), storedEpic.getSubtaskIds(), "Подзадачи эпика на сервере не обновлены.");
+
+        taskManager.updateSubtask(new Subtask(4, "updatedSubHeader", CurrentStatus.DONE, "updatedSubDescription",
+                null, Duration.ZERO, 1));
+        taskManager.deleteSubtasks();
+        storedEpic = gson.fromJson(kvTaskClient.load("epic:1"), Epic.class);
+        assertEquals(CurrentStatus.NEW, storedEpic.getStatus(), "Статус эпика на сервере не обновлён.");
+        assertTrue(storedEpic.getSubtaskIds().isEmpty(), "Подзадачи эпика на сервере не удалены.");
+    }
+
+    @Test
+    void groupCommitShouldSendLatestValuesOfChangedKeysOnFlushAndClose() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        taskManager.startGroupCommit(60_000, 1_000);
+
+        Task newTask = taskManager.createTask(new Task("newTaskHeader", "newTaskDescription", CurrentStatus.NEW,
+                null, 0));
+        taskManager.updateTask(new Task(newTask.getId(), "updatedTaskHeader", CurrentStatus.DONE,
+                "updatedTaskDescription", null, Duration.ZERO));
+        taskManager.deleteTaskById(2);
+        taskManager.updateSubtask(new Subtask(3, "updatedSubHeader", CurrentStatus.DONE, "updatedSubDescription",
+                null, Duration.ZERO, 1));
+        taskManager.getTaskById(newTask.getId());
+        assertEquals(List.of("epic:1", "subtask:3", "task:2"), kvTaskClient.keys("").stream()
+                .filter(key -> key.contains(":")).sorted().collect(Collectors.toList()),
+                "Изменения отправлены до фиксации.");
+
+        taskManager.flush();
+        assertEquals(List.of("epic:1", "subtask:3", "task:4"), kvTaskClient.keys("").stream()
+                .filter(key -> key.contains(":")).sorted().collect(Collectors.toList()), "Неверные ключи задач.");
+        assertEquals(CurrentStatus.DONE, Managers.getGson().fromJson(kvTaskClient.load("epic:1"), Epic.class)
+                .getStatus(), "Эпик не отправлен при фиксации.");
+
+        taskManager.deleteTasks();
+        taskManager.close();
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+        assertEquals(List.of(), restoredHttpTaskManager.getTaskList(), "close() не отправил изменения.");
+        assertEquals(taskManager.getEpicList(), restoredHttpTaskManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredHttpTaskManager.getSubtaskList(),
+                "Подзадачи не совпадают.");
+        assertEquals(taskManager.getHistory(), restoredHttpTaskManager.getHistory(), "Неверная история просмотров.");
+    }
+
+    @Test
+    void putAllAndLoadAllShouldTransferManyKeysInOneRequest() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            values.put("batch:" + i, "\"value " + i + "\"");
+        }
+        kvTaskClient.putAll(values);
+        CompletableFuture<Void> overwrite = kvTaskClient.putAsync("batch:0", "\"overwritten\"");
+        Map<String, String> loaded = kvTaskClient.loadAll(List.of("batch:0", "batch:9", "absent"));
+
+        assertTrue(overwrite.isDone(), "Пакетная загрузка не дождалась записи того же ключа.");
+        assertEquals(Map.of("batch:0", "\"overwritten\"", "batch:9", "\"value 9\""), loaded,
+                "Неверные значения пакета.");
+        assertEquals("\"value 5\"", kvTaskClient.load("batch:5"), "Ключ пакета не сохранён отдельно.");
+        assertThrows(IllegalStateException.class, () -> kvTaskClient.putAll(Map.of()),
+                "Пустой пакет сохранён без ошибки.");
+    }
+
+    @Test
+    void mgetShouldAnswerErrorCodeInsteadOfBrokenBodyForBadKeysOrStorageFailure() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        String apiToken = client.send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8078/register"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString()).body();
+        HttpRequest nullKeyRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8078/mget?API_TOKEN=" + apiToken))
+                .POST(HttpRequest.BodyPublishers.ofString("[\"epic:1\", null]")).build();
+        assertEquals(400, client.send(nullKeyRequest, HttpResponse.BodyHandlers.ofString()).statusCode(),
+                "Пустой ключ принят.");
+
+        kvServer.stop();
+        kvServer = new KVServer(new InMemoryKVStorage() {
+            @Override
+            public String get(String key) {
+                throw new UncheckedIOException(new IOException("Диск недоступен"));
+            }
+        });
+        kvServer.start();
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> kvTaskClient.loadAll(List.of("epic:1")), "Ошибка хранилища не передана клиенту.");
+        assertTrue(exception.getMessage().contains("500"), "Ошибка хранилища не стала ответом 500.");
+    }
+
+    @Test
+    void asyncDurabilityShouldKeepOrderOfChangesAndAcknowledgeThemOnFlush() {
+        taskManager.setDurability(Durability.ASYNC);
+        for (int i = 0; i < 200; i++) {
+            Task createdTask = taskManager.createTask(new Task("asyncTaskHeader" + i, "asyncTaskDescription",
+                    CurrentStatus.NEW, null, 0));
+            taskManager.updateTask(new Task(createdTask.getId(), "updatedTaskHeader" + i, CurrentStatus.DONE,
+                    "updatedTaskDescription", null, Duration.ZERO));
+            if (i % 2 == 0) {
+                taskManager.deleteTaskById(createdTask.getId());
+            }
+            taskManager.getTaskById(2);
+        }
+        taskManager.deleteSubtasks();
+        taskManager.flush();
+
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+
+        assertEquals(101, restoredHttpTaskManager.getTaskList().size(), "Неверное количество задач.");
+        assertEquals(taskManager.getTaskList(), restoredHttpTaskManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredHttpTaskManager.getEpicList(), "Эпики не совпадают.");
+        assertTrue(restoredHttpTaskManager.getSubtaskList().isEmpty(), "Подзадачи не удалены.");
+        assertEquals(taskManager.getHistory(), restoredHttpTaskManager.getHistory(), "Неверная история просмотров.");
+    }
+
+    @Test
+    void asyncDurabilityShouldReportFailedRequestsOnFlush() {
+        taskManager.setDurability(Durability.ASYNC);
+        kvServer.stop();
+
+        assertDoesNotThrow(() -> taskManager.createTask(new Task("asyncTaskHeader", "asyncTaskDescription",
+                CurrentStatus.NEW, null, 0)), "Изменение в режиме ASYNC ждёт ответа сервера.");
+        assertThrows(ManagerSaveException.class, taskManager::flush, "Ошибка запроса не передана в flush().");
+        assertDoesNotThrow(taskManager::flush, "Ошибка запроса передана в flush() повторно.");
+    }
+
+    @Test
+    void loadFromKVServerShouldConvertLegacyWholeStorageKeys() {
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+        Gson gson = Managers.getGson();
+        kvTaskClient.delete("task:*");
+        kvTaskClient.delete("epic:*");
+        kvTaskClient.delete("subtask:*");
+        kvTaskClient.put("tasks", gson.toJson(taskManager.getTaskList()));
+        kvTaskClient.put("epics", gson.toJson(taskManager.getEpicList()));
+        kvTaskClient.put("subtasks", gson.toJson(taskManager.getSubtaskList()));
+        kvTaskClient.put("history", "[]");
+
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+
+        assertEquals(taskManager.getTaskList(), restoredHttpTaskManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredHttpTaskManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredHttpTaskManager.getSubtaskList(),
+                "Подзадачи не совпадают.");
+        assertEquals(List.of("epic:1", "history", "subtask:3", "task:2"),
+                kvTaskClient.keys("").stream().sorted().collect(Collectors.toList()),
+                "Прежний формат не переведён в ключи задач.");
+    }
+
+    @Test
+    void compressedSnapshotShouldBeStoredAsBase64GzipAndRestored() {
+        taskManager.setSnapshotCompression(Deflater.BEST_SPEED);
+        taskManager.save();
+        taskManager.getTaskById(2);
+        taskManager.createTask(new Task("Заголовок задачи", "Описание задачи", CurrentStatus.DONE,
+                LocalDateTime.of(2023, 3, 1, 9, 15), 45));
+        KVTaskClient kvTaskClient = new KVTaskClient("http://localhost:8078/");
+
+        for (String key : List.of("task:2", "task:4", "epic:1", "subtask:3", "history")) {
+            assertTrue(kvTaskClient.load(key).startsWith(SnapshotCompression.BASE64_PREFIX),
+                    "Значение ключа " + key + " не сжато.");
+        }
+
+        HttpTaskManager restoredHttpTaskManager = new HttpTaskManager("http://localhost:8078/");
+        restoredHttpTaskManager.loadFromKVServer();
+
+        assertEquals(SnapshotCompression.DEFAULT_LEVEL, restoredHttpTaskManager.getSnapshotCompression(),
+                "Сжатие снимка не определено.");
+        assertEquals(taskManager.getTaskList(), restoredHttpTaskManager.getTaskList(), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), restoredHttpTaskManager.getEpicList(), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), restoredHttpTaskManager.getSubtaskList(),
+                "Подзадачи не совпадают.");
+        assertEquals(List.of(savedTask), restoredHttpTaskManager.getHistory(), "Неверная история просмотров.");
+    }
+}
@@ -8,6 +8,10 @@ import tasks.Subtask;
 import tasks.Task;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -290,4 +294,30 @@ class InMemoryHistoryManagerTest {
         assertEquals(List.of(subtask, epic), historyOfViewAfterLastTaskWasDeleted,
                 "Неверный порядок просмотров.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void historyViewShouldFollowHistoryWithoutCopying() {
+        Collection<Task> historyView = historyManager.getHistoryView();
+
+        assertTrue(historyView.isEmpty(), "История просмотров не пуста.");
+
+        historyManager.add(savedSubtask);
+        historyManager.add(savedTask);
+        historyManager.add(savedEpic);
+        historyManager.add(savedSubtask);
+
+        assertEquals(List.of(savedTask, savedEpic, savedSubtask), new ArrayList<>(historyView),
+                "Неверный порядок просмотров.");
+
+        Iterator<Task> iterator = historyView.iterator();
+        iterator.next();
+        historyManager.remove(savedEpic.getId());
+
+        assertThrows(ConcurrentModificationException.class, iterator::next,
+                "Изменение истории во время обхода не обнаружено.");
+        assertEquals(List.of(savedTask, savedSubtask), new ArrayList<>(historyView),
+                "Неверный порядок просмотров.");
+        assertThrows(UnsupportedOperationException.class, () -> historyView.add(savedEpic),
+                "Представление изменяемо.");
+    }
+}
@@ -16,6 +16,7 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
     @BeforeEach
     void beforeEach() {
         taskManager = new InMemoryTaskManager();
+        taskManager.setEpicRollupCheck(true);
 
         List<Epic> epicsBeforeAnyCreated = taskManager.getEpicList();
         assertNotNull(epicsBeforeAnyCreated, "Задачи не возвращаются.");
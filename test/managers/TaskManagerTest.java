@@ -1,6 +1,7 @@
 package managers;
 
 import enums.CurrentStatus;
+import enums.TaskType;
 import org.junit.jupiter.api.Test;
 import tasks.Epic;
 import tasks.Subtask;
@@ -9,7 +10,9 @@ import tasks.Task;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -91,6 +94,60 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(CurrentStatus.IN_PROGRESS, savedEpicStatus, "Статусы не совпадают.");
     }
 
+    @Test
+    void epicStatusCalculationAfterSubtaskUpdatesAndDeletion() {
+        Subtask subtask2 = new Subtask(1, "newSubHeader2", "newSubDescription2",
+                CurrentStatus.DONE, null, 0);
+        taskManager.createSubtask(subtask2);
+
+        Subtask doneSubtask = new Subtask(subtask.getId(), "existingSubHeader", CurrentStatus.DONE,
+                "existingSubDescription", null, Duration.ZERO, 1);
+        taskManager.updateSubtask(doneSubtask);
+
+        assertEquals(CurrentStatus.DONE, taskManager.getEpicList().get(0).getStatus(), "Статусы не совпадают.");
+
+        Subtask inProgressSubtask = new Subtask(subtask2.getId(), "newSubHeader2", CurrentStatus.IN_PROGRESS,
+                "newSubDescription2", null, Duration.ZERO, 1);
+        taskManager.updateSubtask(inProgressSubtask);
+
+        assertEquals(CurrentStatus.IN_PROGRESS, taskManager.getEpicList().get(0).getStatus(),
+                "Статусы не совпадают.");
+
+        taskManager.deleteSubtaskById(subtask2.getId());
+
+        assertEquals(CurrentStatus.DONE, taskManager.getEpicList().get(0).getStatus(), "Статусы не совпадают.");
+    }
+
+    @Test
+    void epicRollupsShouldFollowStoredSubtaskUpdatedInPlace() {
+        Subtask storedSubtask = taskManager.getSubtaskById(subtask.getId());
+        storedSubtask.setStatus(CurrentStatus.DONE);
+        storedSubtask.setStartTime(LocalDateTime.of(2023, 3, 1, 10, 0));
+        storedSubtask.setDurationInMinutes(Duration.ofMinutes(30));
+        taskManager.updateSubtask(storedSubtask);
+        Epic epicAfterUpdate = taskManager.getEpicById(savedEpic.getId());
+
+        assertEquals(CurrentStatus.DONE, epicAfterUpdate.getStatus(), "Статусы не совпадают.");
+        assertEquals(LocalDateTime.of(2023, 3, 1, 10, 0), epicAfterUpdate.getStartTime(),
+                "Начальное время не совпадает.");
+        assertEquals(LocalDateTime.of(2023, 3, 1, 10, 30), epicAfterUpdate.getEndTime(),
+                "Конечное время не совпадает.");
+        assertEquals(List.of(savedTask, storedSubtask), taskManager.getPrioritizedTasks(),
+                "Неверный порядок задач по времени.");
+
+        storedSubtask = taskManager.getSubtaskById(subtask.getId());
+        storedSubtask.setStatus(CurrentStatus.IN_PROGRESS);
+        storedSubtask.setStartTime(LocalDateTime.of(2023, 1, 5, 9, 0));
+        taskManager.updateSubtask(storedSubtask);
+        epicAfterUpdate = taskManager.getEpicById(savedEpic.getId());
+
+        assertEquals(CurrentStatus.IN_PROGRESS, epicAfterUpdate.getStatus(), "Статусы не совпадают.");
+        assertEquals(LocalDateTime.of(2023, 1, 5, 9, 30), epicAfterUpdate.getEndTime(),
+                "Время прежнего положения подзадачи осталось у эпика.");
+        assertEquals(List.of(storedSubtask, savedTask), taskManager.getPrioritizedTasks(),
+                "Неверный порядок задач по времени.");
+    }
+
     @Test
     void getPrioritizedTasksTestWith3TimedTasksAnd3NullTimedTasks() {
         Task task1 = new Task("TestTaskHeader1", "TestTaskDescription1", CurrentStatus.IN_PROGRESS,
@@ -369,6 +426,7 @@ abstract class TaskManagerTest<T extends TaskManager> {
 
         assertEquals(3, taskManager.getEpicById(epic.getId()).getSubtaskIds().size(),
                 "Количество подзадач в списке эпика не совпадает.");
+        epics = taskManager.getEpicList();
         assertEquals(Duration.ofMinutes(300), epics.get(0).getDurationInMinutes(),
                 "Продолжительность не совпадает.");
         assertEquals(LocalDateTime.of(2023, 1, 10, 15, 25),
@@ -377,6 +435,45 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 .plus(Duration.ofMinutes(180)), epics.get(0).getEndTime(), "Конечное время не совпадает.");
     }
 
+    @Test
+    void startTimeAndEndTimeAndDurationCalculationForEpicAfterTimedSubtaskUpdateAndDeletion() {
+        Subtask subtask1 = new Subtask(1, "timedSubHeader1", "timedSubDescription1",
+                CurrentStatus.NEW, LocalDateTime.of(2023, 2, 1, 10, 10),
+                180);
+        Subtask subtask2 = new Subtask(1, "timedSubHeader2", "timedSubDescription2",
+                CurrentStatus.IN_PROGRESS, LocalDateTime.of(2023, 1, 10, 15, 25),
+                120);
+        taskManager.createSubtask(subtask1);
+        taskManager.createSubtask(subtask2);
+
+        Subtask movedSubtask2 = new Subtask(subtask2.getId(), "timedSubHeader2", CurrentStatus.IN_PROGRESS,
+                "timedSubDescription2", LocalDateTime.of(2023, 3, 1, 8, 0), Duration.ofMinutes(60), 1);
+        taskManager.updateSubtask(movedSubtask2);
+        Epic epicAfterUpdate = taskManager.getEpicList().get(0);
+
+        assertEquals(Duration.ofMinutes(240), epicAfterUpdate.getDurationInMinutes(),
+                "Продолжительность не совпадает.");
+        assertEquals(LocalDateTime.of(2023, 2, 1, 10, 10), epicAfterUpdate.getStartTime(),
+                "Начальное время не совпадает.");
+        assertEquals(LocalDateTime.of(2023, 3, 1, 9, 0), epicAfterUpdate.getEndTime(),
+                "Конечное время не совпадает.");
+
+        taskManager.deleteSubtaskById(subtask1.getId());
+        Epic epicAfterDeletion = taskManager.getEpicList().get(0);
+
+        assertEquals(Duration.ofMinutes(60), epicAfterDeletion.getDurationInMinutes(),
+                "Продолжительность не совпадает.");
+        assertEquals(LocalDateTime.of(2023, 3, 1, 8, 0), epicAfterDeletion.getStartTime(),
+                "Начальное время не совпадает.");
+
+        taskManager.deleteSubtasks();
+        Epic epicAfterAllDeleted = taskManager.getEpicList().get(0);
+
+        assertEquals(Duration.ZERO, epicAfterAllDeleted.getDurationInMinutes(), "Продолжительность не совпадает.");
+        assertNull(epicAfterAllDeleted.getStartTime(), "Начальное время не совпадает.");
+        assertNull(epicAfterAllDeleted.getEndTime(), "Конечное время не совпадает.");
+    }
+
     @Test
     void updateTaskTestWithTaskAsArgumentWithCorrectId() {
         List<Task> tasks = taskManager.getTaskList();
@@ -682,6 +779,43 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(task, tasksAfterAttemptToCreateNewTask.get(0), "Задачи не совпадают.");
     }
 
+    @Test
+    void checkTimeCrossingShouldAllowTaskBetweenTwoExistingTasksAndRejectTouchingOne() {
+        Task laterTask = new Task("laterTaskHeader", "laterTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 18, 12, 0), 60);
+        taskManager.createTask(laterTask);
+
+        Task taskInBetween = new Task("newTaskHeader", "newTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 18, 11, 1), 58);
+        taskManager.createTask(taskInBetween);
+
+        assertEquals(3, taskManager.getTaskList().size(), "Неверное количество задач.");
+
+        Task touchingTask = new Task("touchingTaskHeader", "touchingTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 18, 13, 0), 30);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> taskManager.createTask(touchingTask));
+        assertEquals(String.format("Время создаваемой задачи пересекается с задачей '%s' типа %s. " +
+                        "Время её начала - %s. Время её окончания - %s. Выберите другое время для новой задачи.",
+                laterTask.getHeader(), laterTask.getTaskType().toString(), laterTask.getStartTime().toString(),
+                laterTask.getEndTime().toString()), exception.getMessage());
+        assertEquals(3, taskManager.getTaskList().size(), "Неверное количество задач.");
+    }
+
+    @Test
+    void checkTimeCrossingShouldIgnoreOldVersionOfUpdatedTask() {
+        Task updatedTask = new Task("updatedTaskHeader", "updatedTaskDescription",
+                CurrentStatus.IN_PROGRESS, LocalDateTime.of(2023, 2, 18, 10, 30), 60);
+        updatedTask.setId(task.getId());
+        taskManager.updateTask(updatedTask);
+
+        List<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+
+        assertEquals(2, prioritizedTasks.size(), "Неверное количество задач.");
+        assertEquals(updatedTask, prioritizedTasks.get(0), "Задачи не совпадают.");
+    }
+
     @Test
     void deleteTasksTest() {
         List<Task> tasks = taskManager.getTaskList();
@@ -1033,4 +1167,223 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(List.of(subtask, epic), historyOfViewAfterLastTaskWasDeleted,
                 "Неверный порядок просмотров.");
     }
+
+    @Test
+    void readViewsShouldMatchListGettersAndNotAllowModification() {
+        Collection<Task> taskView = taskManager.getTaskView();
+        Collection<Subtask> subtaskView = taskManager.getSubtaskView();
+        Collection<Task> prioritizedTasksView = taskManager.getPrioritizedTasksView();
+
+        assertEquals(taskManager.getTaskList(), new ArrayList<>(taskView), "Задачи не совпадают.");
+        assertEquals(taskManager.getEpicList(), new ArrayList<>(taskManager.getEpicView()), "Эпики не совпадают.");
+        assertEquals(taskManager.getSubtaskList(), new ArrayList<>(subtaskView), "Подзадачи не совпадают.");
+        assertEquals(taskManager.getPrioritizedTasks(), new ArrayList<>(prioritizedTasksView),
+                "Неверный порядок задач.");
+        assertEquals(0, taskManager.getHistoryView().size(), "Представление не добавляет задачи в историю.");
+        assertThrows(UnsupportedOperationException.class, () -> taskView.add(task), "Представление изменяемо.");
+        assertThrows(UnsupportedOperationException.class, () -> prioritizedTasksView.clear(),
+                "Представление изменяемо.");
+
+        Task newTask = taskManager.createTask(new Task("newTaskHeader", "newTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 17, 10, 0), 30));
+        taskManager.getTaskById(newTask.getId());
+        taskManager.getEpicById(1);
+
+        assertEquals(2, taskView.size(), "Представление не отражает созданную задачу.");
+        assertTrue(taskView.contains(newTask), "Созданная задача не найдена в представлении.");
+        assertEquals(List.of(newTask, task, subtask), new ArrayList<>(prioritizedTasksView),
+                "Неверный порядок задач.");
+        assertEquals(taskManager.getHistory(), new ArrayList<>(taskManager.getHistoryView()),
+                "История не совпадает.");
+
+        taskManager.deleteSubtasks();
+
+        assertTrue(subtaskView.isEmpty(), "Представление не отражает удаление подзадач.");
+    }
+
+    @Test
+    void getPrioritizedTasksInRangeShouldReturnTasksStartingInsideIntervalAndPageByCursor() {
+        Task earlyTask = taskManager.createTask(new Task("earlyTaskHeader", "earlyTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 13, 9, 0), 30));
+        Task lateTask = taskManager.createTask(new Task("lateTaskHeader", "lateTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 20, 9, 0), 30));
+        LocalDateTime weekStart = LocalDateTime.of(2023, 2, 13, 0, 0);
+        LocalDateTime weekEnd = LocalDateTime.of(2023, 2, 20, 0, 0);
+
+        Collection<Task> week = taskManager.getPrioritizedTasks(weekStart, weekEnd);
+
+        assertEquals(List.of(earlyTask, task), new ArrayList<>(week), "Неверные задачи недели.");
+        assertEquals(List.of(earlyTask), new ArrayList<>(taskManager.getPrioritizedTasks(earlyTask.getStartTime(),
+                task.getStartTime())), "Начало интервала должно входить в него, а окончание - нет.");
+        assertThrows(UnsupportedOperationException.class, week::clear, "Представление изменяемо.");
+
+        taskManager.deleteTaskById(earlyTask.getId());
+
+        assertEquals(List.of(task), new ArrayList<>(week), "Представление не отражает удаление задачи.");
+
+        List<Task> firstPage = taskManager.getPrioritizedTasksAfter(LocalDateTime.MIN, LocalDateTime.MAX, 1);
+        List<Task> secondPage = taskManager.getPrioritizedTasksAfter(firstPage.get(0).getStartTime(),
+                LocalDateTime.MAX, 1);
+        List<Task> lastPage = taskManager.getPrioritizedTasksAfter(secondPage.get(0).getStartTime(),
+                LocalDateTime.MAX, 1);
+
+        assertEquals(List.of(task), firstPage, "Неверная первая страница.");
+        assertEquals(List.of(lateTask), secondPage, "Неверная вторая страница.");
+        assertEquals(0, lastPage.size(), "Задачи без времени не должны попадать в интервал.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getPrioritizedTasks(weekEnd, weekStart),
+                "Интервал с началом позже окончания принят.");
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.getPrioritizedTasksAfter(weekStart, weekEnd, 0), "Пустая страница принята.");
+    }
+
+    @Test
+    void createAllShouldCreateEpicWithSubtasksFromSameBatchAndCalculateEpicRollups() {
+        Subtask firstBatchSubtask = new Subtask(0, "batchSubHeader1", "batchSubDescription1", CurrentStatus.DONE,
+                LocalDateTime.of(2023, 2, 19, 10, 0), 30);
+        long versionBeforeBatch = taskManager.getVersion();
+        List<Task> createdTasks = taskManager.createAll(List.of(
+                new Epic("batchEpicHeader", "batchEpicDescription"),
+                firstBatchSubtask,
+                new Subtask(0, "batchSubHeader2", "batchSubDescription2", CurrentStatus.DONE,
+                        LocalDateTime.of(2023, 2, 19, 11, 0), 45),
+                new Subtask(1, "batchSubHeader3", "batchSubDescription3", CurrentStatus.DONE, null, 0),
+                new Task("batchTaskHeader", "batchTaskDescription", CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 2, 17, 10, 0), 30)), Map.of(1, 0, 2, 0));
+
+        assertEquals(5, createdTasks.size(), "Неверное количество созданных задач.");
+        assertEquals(versionBeforeBatch + 1, taskManager.getVersion(), "Пакет сменил версию не один раз.");
+        Epic batchEpic = taskManager.getEpicById(4);
+        assertEquals(createdTasks.get(0), batchEpic, "Эпики не совпадают.");
+        assertEquals(List.of(5L, 6L), batchEpic.getSubtaskIds(), "Списки подзадач не совпадают.");
+        assertEquals(4, ((Subtask) createdTasks.get(1)).getEpicId(), "Ссылка на эпик пакета не заменена его ID.");
+        assertEquals(0, firstBatchSubtask.getEpicId(), "Переданная подзадача изменена.");
+        assertEquals(CurrentStatus.DONE, batchEpic.getStatus(), "Статусы не совпадают.");
+        assertEquals(LocalDateTime.of(2023, 2, 19, 10, 0), batchEpic.getStartTime(), "Время начала не совпадает.");
+        assertEquals(LocalDateTime.of(2023, 2, 19, 11, 45), batchEpic.getEndTime(), "Время окончания не совпадает.");
+        assertEquals(CurrentStatus.IN_PROGRESS, taskManager.getEpicById(1).getStatus(), "Статусы не совпадают.");
+        assertEquals(List.of(createdTasks.get(4), task, createdTasks.get(1), createdTasks.get(2)),
+                taskManager.getPrioritizedTasks().subList(0, 4), "Неверный порядок задач.");
+    }
+
+    @Test
+    void createAllShouldRejectWholeBatchWhenTasksCrossOrReferenceMissingEpic() {
+        List<Task> crossingBatch = List.of(
+                new Task("batchTaskHeader1", "batchTaskDescription1", CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 2, 17, 10, 0), 30),
+                new Task("batchTaskHeader2", "batchTaskDescription2", CurrentStatus.NEW,
+                        LocalDateTime.of(2023, 2, 17, 10, 30), 30));
+        List<Task> missingEpicBatch = List.of(
+                new Task("batchTaskHeader", "batchTaskDescription", CurrentStatus.NEW, null, 0),
+                new Subtask(0, "batchSubHeader", "batchSubDescription", CurrentStatus.NEW, null, 0));
+
+        assertThrows(IllegalStateException.class, () -> taskManager.createAll(crossingBatch),
+                "Пересечение задач внутри пакета не обнаружено.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.createAll(missingEpicBatch),
+                "Подзадача с несуществующим эпиком принята.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.createAll(missingEpicBatch, Map.of(1, 0)),
+                "Ссылка на элемент пакета, не являющийся эпиком, принята.");
+        assertEquals(1, taskManager.getTaskList().size(), "Часть пакета создана.");
+        assertEquals(1, taskManager.getSubtaskList().size(), "Часть пакета создана.");
+        assertEquals(4, taskManager.createEpic(new Epic("newEpicHeader", "newEpicDescription")).getId(),
+                "Отклонённый пакет израсходовал ID.");
+    }
+
+    @Test
+    void updateAllShouldKeepCalculatedStatusAndTimeOfEpicWithoutSubtasks() {
+        Epic emptyEpic = taskManager.createEpic(new Epic("emptyEpicHeader", "emptyEpicDescription"));
+
+        taskManager.updateAll(List.of(new Epic(emptyEpic.getId(), "updatedHeader", CurrentStatus.DONE,
+                "updatedDescription", LocalDateTime.of(2023, 2, 19, 10, 0), LocalDateTime.of(2023, 2, 19, 11, 0),
+                Duration.ofMinutes(60))));
+
+        Epic updatedEpic = taskManager.getEpicById(emptyEpic.getId());
+        assertEquals("updatedHeader", updatedEpic.getHeader(), "Эпик не обновлён.");
+        assertEquals(CurrentStatus.NEW, updatedEpic.getStatus(), "Статус эпика без подзадач взят из пакета.");
+        assertNull(updatedEpic.getStartTime(), "Время эпика без подзадач взято из пакета.");
+        assertTrue(updatedEpic.getSubtaskIds().isEmpty(), "У эпика без подзадач появились подзадачи.");
+    }
+
+    @Test
+    void updateAllShouldLetTasksSwapTimeAndMoveSubtasksBetweenEpics() {
+        Epic anotherEpic = taskManager.createEpic(new Epic("anotherEpicHeader", "anotherEpicDescription"));
+        Task otherTask = taskManager.createTask(new Task("otherTaskHeader", "otherTaskDescription", CurrentStatus.NEW,
+                LocalDateTime.of(2023, 2, 19, 10, 0), 60));
+        Task movedTask = new Task(task.getId(), "movedTaskHeader", CurrentStatus.DONE, "movedTaskDescription",
+                otherTask.getStartTime(), Duration.ofMinutes(60));
+        Task movedOtherTask = new Task(otherTask.getId(), "movedOtherTaskHeader", CurrentStatus.DONE,
+                "movedOtherTaskDescription", task.getStartTime(), Duration.ofMinutes(60));
+        Subtask movedSubtask = new Subtask(subtask.getId(), "movedSubHeader", CurrentStatus.DONE, "movedSubDescription",
+                LocalDateTime.of(2023, 2, 20, 10, 0), Duration.ofMinutes(15), anotherEpic.getId());
+
+        assertThrows(IllegalStateException.class, () -> taskManager.updateTask(movedTask),
+                "Одиночное обновление должно пересекаться со второй задачей.");
+
+        taskManager.updateAll(List.of(movedTask, movedOtherTask, movedSubtask));
+
+        assertEquals(List.of(movedOtherTask, movedTask, movedSubtask), taskManager.getPrioritizedTasks(),
+                "Неверный порядок задач.");
+        assertEquals(0, taskManager.getEpicById(1).getSubtaskIds().size(), "Подзадача осталась в старом эпике.");
+        assertEquals(CurrentStatus.NEW, taskManager.getEpicById(1).getStatus(), "Статусы не совпадают.");
+        Epic anotherEpicAfterUpdate = taskManager.getEpicById(anotherEpic.getId());
+        assertEquals(List.of(subtask.getId()), anotherEpicAfterUpdate.getSubtaskIds(), "Списки подзадач не совпадают.");
+        assertEquals(CurrentStatus.DONE, anotherEpicAfterUpdate.getStatus(), "Статусы не совпадают.");
+        assertEquals(movedSubtask.getEndTime(), anotherEpicAfterUpdate.getEndTime(), "Время окончания не совпадает.");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.updateAll(List.of(movedTask, movedTask)),
+                "Повтор ID в пакете принят.");
+    }
+
+    @Test
+    void deleteByIdsShouldDeleteWholeBatchOrNothing() {
+        Subtask secondSubtask = taskManager.createSubtask(new Subtask(1, "secondSubHeader", "secondSubDescription",
+                CurrentStatus.DONE, LocalDateTime.of(2023, 2, 20, 10, 0), 15));
+        taskManager.getSubtaskById(subtask.getId());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.deleteByIds(TaskType.SUBTASK, new long[]{subtask.getId(), 100}),
+                "Удаление с несуществующим ID принято.");
+        assertEquals(2, taskManager.getSubtaskList().size(), "Часть пакета удалена.");
+
+        taskManager.deleteByIds(TaskType.SUBTASK, new long[]{subtask.getId(), subtask.getId()});
+
+        Epic epicAfterDeletion = taskManager.getEpicById(1);
+        assertEquals(List.of(secondSubtask), taskManager.getSubtaskList(), "Подзадачи не совпадают.");
+        assertEquals(CurrentStatus.DONE, epicAfterDeletion.getStatus(), "Статусы не совпадают.");
+        assertEquals(secondSubtask.getStartTime(), epicAfterDeletion.getStartTime(), "Время начала не совпадает.");
+        assertEquals(List.of(epicAfterDeletion), taskManager.getHistory(), "Удалённая подзадача осталась в истории.");
+
+        taskManager.deleteByIds(TaskType.EPIC, new long[]{1});
+
+        assertEquals(0, taskManager.getSubtaskList().size(), "Подзадачи эпика не удалены.");
+        assertEquals(List.of(task), taskManager.getPrioritizedTasks(), "Неверный порядок задач.");
+    }
+
+    @Test
+    void versionShouldGrowOnEveryChangeAndStayOnReads() {
+        long version = taskManager.getVersion();
+        long historyVersion = taskManager.getHistoryVersion();
+        taskManager.getTaskList();
+        taskManager.getEpicView();
+        taskManager.getHistory();
+        taskManager.getTaskById(100);
+        assertEquals(version, taskManager.getVersion(), "Номер изменился без изменений.");
+        assertEquals(historyVersion, taskManager.getHistoryVersion(), "Номер истории изменился без изменений.");
+
+        taskManager.getTaskById(task.getId());
+        assertEquals(version, taskManager.getVersion(), "Просмотр задачи изменил номер списков.");
+        assertTrue(taskManager.getHistoryVersion() > historyVersion, "Просмотр задачи не изменил номер истории.");
+        historyVersion = taskManager.getHistoryVersion();
+        taskManager.updateTask(new Task(task.getId(), "updatedHeader", CurrentStatus.DONE, "updatedDescription",
+                task.getStartTime(), task.getDurationInMinutes()));
+        assertTrue(taskManager.getVersion() > version, "Обновление задачи не изменило номер.");
+        assertTrue(taskManager.getHistoryVersion() > historyVersion, "Обновление задачи не изменило номер истории.");
+        version = taskManager.getVersion();
+        taskManager.createAll(List.of(new Epic("newEpicHeader", "newEpicDescription")));
+        assertTrue(taskManager.getVersion() > version, "Пакетное создание не изменило номер.");
+        version = taskManager.getVersion();
+        taskManager.deleteSubtaskById(subtask.getId());
+        assertTrue(taskManager.getVersion() > version, "Удаление подзадачи не изменило номер.");
+        version = taskManager.getVersion();
+        taskManager.deleteEpics();
+        assertTrue(taskManager.getVersion() > version, "Удаление эпиков не изменило номер.");
+    }
 }
@@ -1,8 +1,12 @@
 package network;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import enums.CurrentStatus;
+import enums.ExecutorMode;
+import managers.ConcurrentTaskManager;
 import managers.Managers;
 import managers.TaskManager;
 import org.junit.jupiter.api.AfterEach;
@@ -21,7 +25,9 @@ import java.net.http.HttpResponse;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
 
 class HttpTaskServerTest {
@@ -141,6 +147,60 @@ class HttpTaskServerTest {
         assertEquals(0, actualTasks.size());
     }
 
+    @Test
+    void getTasksTaskEndpointShouldAnswer304UntilTasksChange() throws IOException, InterruptedException {
+        URI url = URI.create("http://localhost:8080/tasks/task/");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(url).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        String eTag = response.headers().firstValue("ETag").orElseThrow();
+
+        HttpRequest conditionalRequest = HttpRequest.newBuilder().uri(url).header("If-None-Match", eTag).GET().build();
+        HttpResponse<String> notModified = client.send(conditionalRequest, HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, notModified.statusCode());
+        assertEquals("", notModified.body(), "Ответ 304 с телом.");
+        assertEquals(eTag, notModified.headers().firstValue("ETag").orElseThrow());
+        HttpRequest listRequest = HttpRequest.newBuilder().uri(url).header("If-None-Match", "\"other\", W/" + eTag)
+                .GET().build();
+        assertEquals(304, client.send(listRequest, HttpResponse.BodyHandlers.ofString()).statusCode(),
+                "ETag из списка не распознан.");
+
+        URI historyUrl = URI.create("http://localhost:8080/tasks/history/");
+        String historyETag = client.send(HttpRequest.newBuilder().uri(historyUrl).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).headers().firstValue("ETag").orElseThrow();
+        httpTaskManager.getTaskById(savedTask.getId());
+        HttpResponse<String> afterView = client.send(conditionalRequest, HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, afterView.statusCode(), "Просмотр задачи сменил ETag списка задач.");
+        HttpResponse<String> historyAfterView = client.send(HttpRequest.newBuilder().uri(historyUrl)
+                .header("If-None-Match", historyETag).GET().build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, historyAfterView.statusCode(), "Просмотр задачи не сменил ETag истории.");
+        assertNotEquals(historyETag, historyAfterView.headers().firstValue("ETag").orElseThrow());
+
+        httpTaskManager.deleteTasks();
+        HttpResponse<String> afterDeletion = client.send(conditionalRequest, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, afterDeletion.statusCode());
+        assertEquals("[]", afterDeletion.body(), "Отдан закэшированный список.");
+    }
+
+    @Test
+    void getTasksEndpointShouldStreamListFirstAndThenSendCachedBodyWithLength()
+            throws IOException, InterruptedException {
+        URI url = URI.create("http://localhost:8080/tasks/");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+
+        HttpResponse<String> streamed = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> cached = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, streamed.statusCode());
+        assertEquals("chunked", streamed.headers().firstValue("Transfer-Encoding").orElse(null),
+                "Список собран целиком до отправки.");
+        assertEquals(200, cached.statusCode());
+        assertEquals(cached.body().getBytes(UTF_8).length,
+                cached.headers().firstValueAsLong("Content-Length").orElse(-1), "Ответ не взят из кэша.");
+        assertEquals(streamed.body(), cached.body());
+        assertEquals(gson.toJson(httpTaskManager.getPrioritizedTasks()), streamed.body());
+    }
+
     @Test
     void getTasksTaskEndpointTestWith1TaskCreated() throws IOException, InterruptedException {
         URI url = URI.create("http://localhost:8080/tasks/task/");
@@ -316,6 +376,44 @@ class HttpTaskServerTest {
         assertEquals(0, actualTasks.size());
     }
 
+    @Test
+    void getTasksEndpointTestWithTimeRangeShouldResponseByPagesWithNextCursor()
+            throws IOException, InterruptedException {
+        Task laterTask = httpTaskManager.createTask(new Task("laterTaskHeader", "laterTaskDescription",
+                CurrentStatus.NEW, LocalDateTime.of(2023, 2, 19, 10, 0), 30));
+        Type taskType = new TypeToken<ArrayList<Task>>(){}.getType();
+
+        URI url = URI.create("http://localhost:8080/tasks/?from=2023-02-18T00:00&to=2023-02-20T00:00&limit=1");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        List<Task> firstPage = gson.fromJson(response.body(), taskType);
+        String nextCursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+
+        assertEquals(List.of(task), firstPage, "Неверная первая страница.");
+        assertEquals("2023-02-18T10:00", nextCursor, "Неверный курсор следующей страницы.");
+
+        url = URI.create("http://localhost:8080/tasks/?after=" + nextCursor + "&to=2023-02-20T00:00&limit=1");
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+
+        assertEquals(List.of(laterTask), gson.fromJson(response.body(), taskType), "Неверная вторая страница.");
+
+        url = URI.create("http://localhost:8080/tasks/?from=2023-02-19T00:00");
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+
+        assertEquals(List.of(laterTask), gson.fromJson(response.body(), taskType), "Неверные задачи интервала.");
+        assertTrue(response.headers().firstValue("X-Next-Cursor").isEmpty(), "Курсор передан без ограничения.");
+
+        url = URI.create("http://localhost:8080/tasks/?from=yesterday");
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
     @Test
     void getTasksSubtaskEpicIdEndpointTestWithCorrectId() throws IOException, InterruptedException {
         URI url = URI.create("http://localhost:8080/tasks/subtask/epic/?id=1");
@@ -407,6 +505,40 @@ class HttpTaskServerTest {
         assertEquals(404, response.statusCode());
     }
 
+    @Test
+    void concurrentRequestsShouldKeepManagerConsistentInEveryExecutorMode() throws Exception {
+        for (ExecutorMode executorMode : ExecutorMode.values()) {
+            if (executorMode == ExecutorMode.VIRTUAL_THREADS && !ServerExecutors.isVirtualThreadsSupported()) {
+                continue;
+            }
+            for (TaskManager taskManager : List.of(Managers.getDefault(), new ConcurrentTaskManager())) {
+                httpTaskServer.stop();
+                httpTaskServer = new HttpTaskServer(taskManager, executorMode, 4);
+                httpTaskServer.start();
+
+                List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    Task postTask = new Task("concurrentTaskHeader" + i, "concurrentTaskDescription",
+                            CurrentStatus.NEW, null, 0);
+                    HttpRequest post = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks/task/"))
+                            .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(postTask))).build();
+                    HttpRequest get = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks/task/"))
+                            .GET().build();
+                    responses.add(client.sendAsync(post, HttpResponse.BodyHandlers.ofString()));
+                    responses.add(client.sendAsync(get, HttpResponse.BodyHandlers.ofString()));
+                }
+                for (CompletableFuture<HttpResponse<String>> response : responses) {
+                    assertEquals(200, response.get().statusCode(), "Запрос в режиме " + executorMode + " не выполнен.");
+                }
+
+                List<Task> createdTasks = taskManager.getTaskList();
+                assertEquals(40, createdTasks.size(), "Задачи потеряны в режиме " + executorMode + ".");
+                assertEquals(40, createdTasks.stream().map(Task::getId).distinct().count(),
+                        "Задачам в режиме " + executorMode + " выданы одинаковые id.");
+            }
+        }
+    }
+
     @Test
     void postTasksTaskEndpointTestShouldCreateNewTask() throws IOException, InterruptedException {
         Task postTask = new Task("postTaskHeader", "postTaskDescription", CurrentStatus.NEW,
@@ -427,6 +559,49 @@ class HttpTaskServerTest {
         assertEquals(postTask, actualTasks.get(1), "Задачи не совпадают.");
     }
 
+    @Test
+    void postTasksBatchEndpointTestShouldCreateAndDeleteTasksInOneRequest() throws IOException, InterruptedException {
+        Epic batchEpic = new Epic("batchEpicHeader", "batchEpicDescription");
+        Subtask batchSubtask = new Subtask(0, "batchSubHeader", "batchSubDescription", CurrentStatus.DONE,
+                LocalDateTime.of(2023, 1, 31, 9, 30), 70);
+        JsonObject batchSubtaskJson = gson.toJsonTree(batchSubtask).getAsJsonObject();
+        batchSubtaskJson.addProperty("epicRef", 0);
+        JsonObject batch = new JsonObject();
+        JsonArray tasksToCreate = new JsonArray();
+        tasksToCreate.add(gson.toJsonTree(batchEpic));
+        tasksToCreate.add(batchSubtaskJson);
+        batch.add("create", tasksToCreate);
+        JsonObject idsToDelete = new JsonObject();
+        idsToDelete.add("task", gson.toJsonTree(new long[]{2}));
+        batch.add("delete", idsToDelete);
+
+        URI url = URI.create("http://localhost:8080/tasks/batch");
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(gson.toJson(batch));
+        HttpRequest request = HttpRequest.newBuilder().uri(url).POST(body).build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        List<Task> createdTasks = gson.fromJson(response.body(), new TypeToken<ArrayList<Task>>(){}.getType());
+        assertEquals(2, createdTasks.size(), "Неверное количество созданных задач.");
+        assertEquals(4, createdTasks.get(0).getId(), "ID эпика не совпадает.");
+        assertEquals(0, httpTaskManager.getTaskList().size(), "Задача не удалена.");
+        Subtask createdSubtask = httpTaskManager.getSubtaskById(5);
+        assertNotNull(createdSubtask, "Подзадача не создана.");
+        assertEquals(4, createdSubtask.getEpicId(), "Подзадача не привязана к эпику пакета.");
+        assertEquals(CurrentStatus.DONE, httpTaskManager.getEpicById(4).getStatus(), "Статусы не совпадают.");
+
+        JsonObject unknownIdsToDelete = new JsonObject();
+        unknownIdsToDelete.add("subtask", gson.toJsonTree(new long[]{3, 100}));
+        JsonObject deletionBatch = new JsonObject();
+        deletionBatch.add("delete", unknownIdsToDelete);
+        body = HttpRequest.BodyPublishers.ofString(gson.toJson(deletionBatch));
+        request = HttpRequest.newBuilder().uri(url).POST(body).build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+        assertEquals(2, httpTaskManager.getSubtaskList().size(), "Часть пакета применена.");
+    }
+
     @Test
     void postTasksTaskEndpointTestShouldUpdateExistingTask() throws IOException, InterruptedException {
         Task postTask = new Task("postTaskHeader", "postTaskDescription", CurrentStatus.NEW,
@@ -0,0 +1,132 @@
+package network;
+
+import enums.ExecutorMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import storage.LogStructuredKVStorage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KVServerTest {
+    private static final String URL = "http://localhost:" + KVServer.PORT + "/";
+    private static final int CLIENTS = 8;
+    private static final int KEYS_PER_CLIENT = 50;
+    private KVServer kvServer;
+
+    @AfterEach
+    void afterEach() {
+        if (kvServer != null) {
+            kvServer.stop();
+        }
+    }
+
+    @Test
+    void concurrentClientsShouldNotLoseWritesInEveryExecutorMode() throws Exception {
+        for (ExecutorMode executorMode : ExecutorMode.values()) {
+            if (executorMode == ExecutorMode.VIRTUAL_THREADS && !ServerExecutors.isVirtualThreadsSupported()) {
+                continue;
+            }
+            kvServer = new KVServer(executorMode);
+            kvServer.start();
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int client = 0; client < CLIENTS; client++) {
+                    int clientNumber = client;
+                    results.add(clients.submit(() -> writeAndCheck(clientNumber)));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                clients.shutdown();
+            }
+
+            KVTaskClient kvTaskClient = new KVTaskClient(URL);
+            assertEquals(CLIENTS * KEYS_PER_CLIENT * 2, kvTaskClient.keys("client").size(),
+                    "Часть ключей потеряна в режиме " + executorMode + ".");
+            kvTaskClient.delete("client*");
+            assertTrue(kvTaskClient.keys("").isEmpty(), "Ключи не удалены в режиме " + executorMode + ".");
+            kvServer.stop();
+            kvServer = null;
+        }
+    }
+
+    @Test
+    void valuesInLogStructuredStorageShouldSurviveRestart() throws IOException {
+        Path directory = Paths.get("resources/kv-server-test");
+        try {
+            kvServer = new KVServer(new LogStructuredKVStorage(directory));
+            kvServer.start();
+            KVTaskClient kvTaskClient = new KVTaskClient(URL);
+            kvTaskClient.put("task:1", "\"value\"");
+            kvTaskClient.putAll(Map.of("task:2", "\"second value\"", "epic:3", "\"epic value\""));
+            kvTaskClient.delete("epic*");
+            kvServer.stop();
+
+            kvServer = new KVServer(new LogStructuredKVStorage(directory));
+            kvServer.start();
+            kvTaskClient = new KVTaskClient(URL);
+
+            assertEquals(Map.of("task:1", "\"value\"", "task:2", "\"second value\""),
+                    kvTaskClient.loadAll(kvTaskClient.keys("")), "Значения не пережили перезапуск сервера.");
+        } finally {
+            kvServer.stop();
+            kvServer = null;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void virtualThreadsModeShouldRequireJava21() throws IOException {
+        if (ServerExecutors.isVirtualThreadsSupported()) {
+            kvServer = new KVServer(ExecutorMode.VIRTUAL_THREADS);
+            kvServer.start();
+            KVTaskClient kvTaskClient = new KVTaskClient(URL);
+            kvTaskClient.put("key", "\"value\"");
+            assertEquals("\"value\"", kvTaskClient.load("key"), "Значение не сохранено.");
+        } else {
+            assertThrows(IllegalStateException.class, () -> new KVServer(ExecutorMode.VIRTUAL_THREADS),
+                    "Режим виртуальных потоков создан без их поддержки.");
+        }
+    }
+
+    @Test
+    void boundedPoolShouldRequirePositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new KVServer(ExecutorMode.BOUNDED_POOL, 0),
+                "Пул без потоков создан.");
+    }
+
+    private void writeAndCheck(int clientNumber) {
+        KVTaskClient kvTaskClient = new KVTaskClient(URL);
+        Map<String, String> batch = new HashMap<>();
+        for (int i = 0; i < KEYS_PER_CLIENT; i++) {
+            kvTaskClient.put("client" + clientNumber + ":" + i, "\"value " + i + "\"");
+            batch.put("client" + clientNumber + ":batch" + i, "\"batch value " + i + "\"");
+        }
+        kvTaskClient.putAll(batch);
+        for (int i = 0; i < KEYS_PER_CLIENT; i++) {
+            assertEquals("\"value " + i + "\"", kvTaskClient.load("client" + clientNumber + ":" + i),
+                    "Значение клиента перезаписано другим клиентом.");
+        }
+        assertEquals(batch, kvTaskClient.loadAll(batch.keySet()), "Пакет клиента не совпадает.");
+    }
+}
@@ -0,0 +1,74 @@
+package network;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskRouterTest {
+    private TaskRouter router;
+
+    @BeforeEach
+    void beforeEach() {
+        router = new TaskRouter();
+        router.add("GET", "/tasks/", TaskRouter.Query.NONE, true, (httpExchange, match) -> {});
+        router.add("GET", "/tasks/", TaskRouter.Query.PARAMETERS, true, (httpExchange, match) -> {});
+        router.add("GET", "/tasks/task/", TaskRouter.Query.NONE, true, (httpExchange, match) -> {});
+        router.add("GET", "/tasks/task/", TaskRouter.Query.ID, false, (httpExchange, match) -> {});
+        router.add("POST", "/tasks/batch", TaskRouter.Query.NONE, false, (httpExchange, match) -> {});
+    }
+
+    @Test
+    void shouldMatchPathSegmentsExactlyIncludingTrailingSlash() {
+        assertTrue(router.route("GET", "/tasks/task/").isReadOnly());
+        assertNotNull(router.route("GET", "/tasks/"));
+        assertNotNull(router.route("POST", "/tasks/batch"));
+
+        for (String uri : List.of("/tasks/task", "/tasks", "/tasks/task/1", "/tasks//task/", "tasks/task/",
+                "/tasksx/task/", "/tasks/batch/")) {
+            assertNull(router.route(uri.equals("/tasks/batch/") ? "POST" : "GET", uri), uri);
+        }
+        assertNull(router.route("DELETE", "/tasks/task/"), "Метода нет среди маршрутов пути");
+    }
+
+    @Test
+    void shouldExtractIdOnlyFromDigits() {
+        TaskRouter.Match match = router.route("GET", "/tasks/task/?id=42");
+
+        assertFalse(match.isReadOnly());
+        assertEquals(42, match.getId());
+        assertEquals("42", match.getIdText());
+        for (String uri : List.of("/tasks/task/?id=", "/tasks/task/?id=-1", "/tasks/task/?id=1a", "/tasks/task/?",
+                "/tasks/task/?ids=1", "/tasks/task/?id=1&id=2")) {
+            assertNull(router.route("GET", uri), uri);
+        }
+        TaskRouter.Match overflow = router.route("GET", "/tasks/task/?id=99999999999999999999");
+        assertEquals(-1, overflow.getId(), "id за пределами long");
+        assertEquals("99999999999999999999", overflow.getIdText());
+    }
+
+    @Test
+    void shouldExtractParametersInOrderWithoutDecoding() {
+        TaskRouter.Match match = router.route("GET", "/tasks/?from=2022-01-01T10%3A00&to=&limit=5&id=a=b");
+
+        assertEquals(Map.of("from", "2022-01-01T10%3A00", "to", "", "limit", "5", "id", "a=b"),
+                match.getParameters());
+        assertEquals(List.of("from", "to", "limit", "id"), List.copyOf(match.getParameters().keySet()));
+        assertEquals(Map.of("limit", "2"), router.route("GET", "/tasks/?limit=1&limit=2").getParameters());
+        for (String uri : List.of("/tasks/?", "/tasks/?from", "/tasks/?=1", "/tasks/?from=1&", "/tasks/?fr-om=1",
+                "/tasks/?from=1&&to=2")) {
+            assertNull(router.route("GET", uri), uri);
+        }
+    }
+
+    @Test
+    void shouldRejectDuplicateRoute() {
+        assertThrows(IllegalArgumentException.class, () ->
+                router.add("GET", "/tasks/task/", TaskRouter.Query.ID, true, (httpExchange, match) -> {}));
+        assertThrows(IllegalArgumentException.class, () ->
+                router.add("GET", "tasks/", TaskRouter.Query.NONE, true, (httpExchange, match) -> {}));
+    }
+}
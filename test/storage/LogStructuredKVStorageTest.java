@@ -0,0 +1,165 @@
+package storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogStructuredKVStorageTest {
+    private final Path directory = Paths.get("resources/kv-storage-test");
+    private LogStructuredKVStorage storage;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        deleteDirectory();
+        storage = new LogStructuredKVStorage(directory, 512, false);
+    }
+
+    @AfterEach
+    void afterEach() throws IOException {
+        storage.close();
+        deleteDirectory();
+    }
+
+    @Test
+    void valuesShouldSurviveReopen() {
+        storage.put("task:1", "первое значение");
+        storage.put("task:1", "{\"header\":\"обновлённое значение\"}");
+        storage.putAll(Map.of("task:2", "два", "epic:3", "три", "subtask:4", "четыре"));
+        storage.remove("task:2");
+        storage.remove("absent");
+        storage.removeByPrefix("subtask:");
+
+        Map<String, String> expected = Map.of("task:1", "{\"header\":\"обновлённое значение\"}", "epic:3", "три");
+        assertEquals(expected, contents(storage), "Неверное содержимое хранилища.");
+
+        storage.close();
+        storage = new LogStructuredKVStorage(directory, 512, false);
+
+        assertEquals(expected, contents(storage), "Содержимое хранилища не восстановлено.");
+        assertNull(storage.get("task:2"), "Удалённый ключ восстановлен.");
+    }
+
+    @Test
+    void compactionShouldKeepLatestValuesAndNotResurrectRemovedKeys() {
+        Map<String, String> expected = fillWithOverwritesAndRemovals();
+        int segmentsBeforeCompaction = storage.segmentCount();
+        assertTrue(segmentsBeforeCompaction > 10, "Сегменты не переключаются по размеру.");
+        assertTrue(storage.garbageRatio() > 0.5, "Перезаписанные значения не учтены как мусор.");
+
+        storage.compact();
+
+        assertTrue(storage.segmentCount() < segmentsBeforeCompaction, "Уплотнение не сократило сегменты.");
+        assertEquals(0, storage.garbageRatio(), 1e-9, "После уплотнения остался мусор.");
+        assertEquals(expected, contents(storage), "Уплотнение изменило содержимое.");
+
+        storage.put("key:0", "после уплотнения");
+        expected.put("key:0", "после уплотнения");
+        storage.close();
+        storage = new LogStructuredKVStorage(directory, 512, false);
+
+        assertEquals(expected, contents(storage), "Содержимое после уплотнения не восстановлено.");
+    }
+
+    @Test
+    void recoveryWithoutHintsShouldScanSegments() throws IOException {
+        Map<String, String> expected = fillWithOverwritesAndRemovals();
+        storage.close();
+        for (Path hint : files(".hint")) {
+            Files.delete(hint);
+        }
+        storage = new LogStructuredKVStorage(directory, 512, false);
+
+        assertEquals(expected, contents(storage), "Каталог по сегментам без подсказок не восстановлен.");
+        assertFalse(files(".hint").isEmpty(), "Подсказки не записаны после чтения сегментов.");
+    }
+
+    @Test
+    void damagedTailOfLastSegmentShouldBeCutOff() throws IOException {
+        storage.put("key:1", "значение");
+        storage.put("key:2", "другое значение");
+        storage.close();
+        List<Path> segments = files(".log");
+        Path lastSegment = segments.get(segments.size() - 1);
+        long size = Files.size(lastSegment);
+        Files.delete(lastSegment.resolveSibling(lastSegment.getFileName().toString().replace(".log", ".hint")));
+        Files.write(lastSegment, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);//оборванная запись
+
+        storage = new LogStructuredKVStorage(directory, 512, false);
+
+        assertEquals(Map.of("key:1", "значение", "key:2", "другое значение"), contents(storage),
+                "Записи до повреждения потеряны.");
+        assertEquals(size, Files.size(lastSegment), "Повреждённый хвост не отрезан.");
+    }
+
+    @Test
+    void closedStorageShouldRejectWrites() {
+        storage.close();
+
+        assertThrows(IllegalStateException.class, () -> storage.put("key", "value"),
+                "Закрытое хранилище приняло запись.");
+    }
+
+    private Map<String, String> fillWithOverwritesAndRemovals() {
+        Map<String, String> expected = new HashMap<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 40; i++) {
+                String value = "значение " + i + " раунда " + round;
+                storage.put("key:" + i, value);
+                expected.put("key:" + i, value);
+            }
+            for (int i = round; i < 40; i += 7) {
+                storage.remove("key:" + i);
+                expected.remove("key:" + i);
+            }
+        }
+        return expected;
+    }
+
+    private static Map<String, String> contents(KVStorage storage) {
+        Map<String, String> contents = new TreeMap<>();
+        for (String key : storage.keys("")) {
+            contents.put(key, storage.get(key));
+        }
+        return contents;
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix))
+                    .sorted((first, second) -> Long.compare(id(first), id(second)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long id(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    private void deleteDirectory() throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,129 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashMapTest {
+
+    @Test
+    void putGetAndRemoveShouldBehaveLikeMap() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty(), "Новая таблица не пуста.");
+
+        assertNull(map.put(1, "one"), "Для нового ключа вернулось предыдущее значение.");
+        assertEquals("one", map.put(1, "first"), "Не вернулось предыдущее значение.");
+        map.put(-5, "minusFive");
+        map.put(Long.MAX_VALUE, "max");
+
+        assertEquals(3, map.size(), "Неверный размер таблицы.");
+        assertEquals("first", map.get(1), "Значения не совпадают.");
+        assertEquals("minusFive", map.get(-5), "Значения не совпадают.");
+        assertEquals("max", map.get(Long.MAX_VALUE), "Значения не совпадают.");
+        assertNull(map.get(2), "Найдено значение по отсутствующему ключу.");
+
+        assertEquals("first", map.remove(1), "Не вернулось удалённое значение.");
+        assertNull(map.remove(1), "Ключ удалён повторно.");
+        assertFalse(map.containsKey(1), "Удалённый ключ остался в таблице.");
+        assertEquals(2, map.size(), "Неверный размер таблицы.");
+
+        map.clear();
+        assertTrue(map.isEmpty(), "Таблица не очищена.");
+        assertNull(map.get(-5), "После очистки найдено значение.");
+    }
+
+    @Test
+    void nullValueShouldBeRejected() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        assertThrows(NullPointerException.class, () -> map.put(1, null), "Значение null сохранено.");
+    }
+
+    @Test
+    void randomOperationsShouldMatchHashMapAcrossResizesAndRemovals() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        //узкий диапазон ключей даёт длинные цепочки и частые удаления из их середины
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key), "Удалённые значения не совпадают.");
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i), "Предыдущие значения не совпадают.");
+            }
+        }
+
+        assertEquals(expected.size(), map.size(), "Размеры не совпадают.");
+        for (long key = 0; key < 5_000; key++) {
+            assertEquals(expected.get(key), map.get(key), "Значения не совпадают.");
+        }
+        long[] keys = map.keys();
+        assertEquals(expected.size(), keys.length, "Неверное количество ключей.");
+        for (long key : keys) {
+            assertTrue(expected.containsKey(key), "Лишний ключ в таблице.");
+        }
+    }
+
+    @Test
+    void valuesAndKeysShouldKeepInsertionOrderForStridedKeys() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        List<Long> expected = new ArrayList<>();
+        //одинаковые младшие биты ключей: при хеше по младшим битам все ключи легли бы в одну цепочку
+        for (long i = 0; i < 10_000; i++) {
+            long key = (i * 7 % 10_000) << 32;
+            map.put(key, key);
+            expected.add(key);
+        }
+        for (int i = 0; i < 10_000; i += 3) {
+            map.remove(expected.get(i));
+        }
+        map.put(expected.get(1), -1L);//замена значения не меняет порядок
+        List<Long> expectedKeys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 3 != 0) {
+                expectedKeys.add(expected.get(i));
+            }
+        }
+
+        assertEquals(expectedKeys, Arrays.stream(map.keys()).boxed().collect(Collectors.toList()),
+                "Ключи не в порядке добавления.");
+        assertEquals(-1L, map.values().iterator().next(), "Значения не в порядке добавления.");
+        for (long key : expectedKeys) {
+            assertTrue(map.containsKey(key), "Ключ не найден.");
+        }
+        assertNull(map.get(expected.get(0)), "Найден удалённый ключ.");
+    }
+
+    @Test
+    void valuesViewShouldBeLiveAndFailFast() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(1, "one");
+        map.put(2, "two");
+
+        assertEquals(2, map.values().size(), "Неверный размер представления.");
+        assertTrue(map.values().contains("two"), "Значение не найдено в представлении.");
+
+        map.put(3, "three");
+        assertEquals(3, map.values().size(), "Представление не отражает изменения таблицы.");
+        assertThrows(UnsupportedOperationException.class, () -> map.values().add("four"),
+                "Представление изменяемо.");
+
+        Iterator<String> iterator = map.values().iterator();
+        iterator.next();
+        map.remove(1);
+        assertThrows(ConcurrentModificationException.class, iterator::next,
+                "Изменение таблицы во время обхода не обнаружено.");
+    }
+}
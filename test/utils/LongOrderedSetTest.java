@@ -0,0 +1,66 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongOrderedSetTest {
+
+    @Test
+    void shouldKeepInsertionOrderAndRejectDuplicates() {
+        LongOrderedSet set = new LongOrderedSet();
+
+        assertTrue(set.add(5), "Новое значение не добавлено.");
+        assertTrue(set.add(3), "Новое значение не добавлено.");
+        assertTrue(set.add(9), "Новое значение не добавлено.");
+        assertFalse(set.add(3), "Повторное значение добавлено.");
+
+        assertEquals(List.of(5L, 3L, 9L), set.asList(), "Неверный порядок значений.");
+        assertTrue(set.remove(3), "Значение не удалено.");
+        assertFalse(set.remove(3), "Значение удалено повторно.");
+        assertFalse(set.contains(3), "Удалённое значение осталось в множестве.");
+        assertEquals(List.of(5L, 9L), set.asList(), "Неверный порядок значений после удаления.");
+        assertEquals(9L, set.get(1), "Неверное значение по индексу.");
+        assertTrue(set.add(3), "Удалённое значение не добавлено заново.");
+        assertEquals(List.of(5L, 9L, 3L), set.asList(), "Повторно добавленное значение не в конце.");
+        assertEquals(new LongOrderedSet(List.of(5L, 9L, 3L)), set, "Множества не совпадают.");
+        assertThrows(UnsupportedOperationException.class, () -> set.asList().add(1L), "Представление изменяемо.");
+
+        set.clear();
+        assertTrue(set.isEmpty(), "Множество не очищено.");
+        assertEquals(List.of(), set.asList(), "Множество не очищено.");
+    }
+
+    @Test
+    void randomOperationsShouldMatchLinkedHashSetAcrossCompactions() {
+        LongOrderedSet set = new LongOrderedSet();
+        Set<Long> expected = new LinkedHashSet<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextInt(3_000);
+            if (random.nextInt(2) == 0) {
+                assertEquals(expected.remove(value), set.remove(value), "Результаты удаления не совпадают.");
+            } else {
+                assertEquals(expected.add(value), set.add(value), "Результаты добавления не совпадают.");
+            }
+            if (i % 10_000 == 0) {
+                assertEquals(new ArrayList<>(expected), set.asList(), "Порядок значений не совпадает.");
+            }
+        }
+
+        List<Long> expectedList = new ArrayList<>(expected);
+        assertEquals(expectedList, set.asList(), "Порядок значений не совпадает.");
+        assertEquals(expectedList.size(), set.toArray().length, "Неверный размер копии.");
+        for (int i = 0; i < expectedList.size(); i += 97) {
+            assertEquals(expectedList.get(i), set.get(i), "Значения по индексу не совпадают.");
+        }
+        assertEquals(expectedList.hashCode(), set.hashCode(), "Хеш-коды не совпадают со списком.");
+    }
+}